@@ -1,8 +1,5 @@
 package uk.ac.imperial.simelec;
 
-import cern.jet.random.Normal;
-import cern.jet.random.Uniform;
-
 /**
  * Describes an electrical appliance.
  * 
@@ -25,6 +22,7 @@ public class Appliance extends Load {
 	private boolean owned = false;
 	private int cycle_time_left = 0;
 	int restart_delay_time_left = 0;
+	private RandomStream random;
 	
 
 	/**
@@ -56,7 +54,40 @@ public class Appliance extends Load {
 	public Appliance(String name, String profile, double ownership,
 			int standby, int mean, double cycles, int length, int restart,
 			double calibration) {
+		this(name, profile, ownership, standby, mean, cycles, length, restart,
+				calibration, RandomStream.GLOBAL);
+	}
+
+	/**
+	 * Creates a new appliance with specified attributes, drawing all of its
+	 * random numbers from a specified stream.
+	 * 
+	 * @param name
+	 *            a String giving the plain text name
+	 * @param profile
+	 *            a String describing the use profile
+	 * @param ownership
+	 *            a double giving the ownership probability
+	 * @param standby
+	 *            an int giving the standby power demand in Watts
+	 * @param mean
+	 *            an int giving the mean power demand in Watts
+	 * @param cycles
+	 *            a double giving the average number of duty cycles per year
+	 * @param length
+	 *            an int giving the length of an average cycle in minutes
+	 * @param restart
+	 *            an int giving the delay between cycles in minutes
+	 * @param calibration
+	 *            a double giving a calibration constant
+	 * @param random
+	 *            the RandomStream for this appliance
+	 */
+	public Appliance(String name, String profile, double ownership,
+			int standby, int mean, double cycles, int length, int restart,
+			double calibration, RandomStream random) {
 
+		this.random = random;
 		this.id = name.toUpperCase();
 		this.use_profile = profile.toUpperCase();
 		this.ownership_rate = ownership;
@@ -78,14 +109,39 @@ public class Appliance extends Load {
 
 	}
 
+	/**
+	 * Creates the Appliance at a given position in a household's packed
+	 * appliance state. No random numbers are drawn; the rated power and
+	 * ownership are taken from the state.
+	 * 
+	 * @param state
+	 *            the ApplianceState of the household
+	 * @param i
+	 *            an int giving the appliance index
+	 */
+	Appliance(ApplianceState state, int i) {
+		ApplianceCatalogue c = state.getCatalogue();
+		this.id = c.ids[i];
+		this.use_profile = c.profiles[i];
+		this.ownership_rate = c.ownership[i];
+		this.standby_power = c.standby[i];
+		this.mean_power = c.meanPower[i];
+		this.cycles_per_year = c.cyclesPerYear[i];
+		this.cycle_length = c.cycleLength[i];
+		this.restart_delay = c.restartDelay[i];
+		this.calibration = c.calibration[i];
+		this.rated_power = state.ratedPower[i];
+		this.owned = state.owned[i];
+		this.random = RandomStream.GLOBAL;
+	}
+
 	/**
 	 * Sets the rated power of this Appliance. Assumes that the true rated power
 	 * is normally distributed about the stated mean power for the appliance
 	 * type.
 	 */
 	private void setRatedPower() {
-		rated_power = (int) Normal
-				.staticNextDouble(mean_power, mean_power / 10);
+		rated_power = (int) random.nextNormal(mean_power, mean_power / 10);
 
 	}
 
@@ -95,8 +151,8 @@ public class Appliance extends Load {
 	 * delay.
 	 */
 	private void setRestartDelay() {
-		restart_delay_time_left = (int) Uniform.staticNextDouble()
-				* restart_delay * 2;
+		restart_delay_time_left = (int) random.nextDouble() * restart_delay
+				* 2;
 	}
 
 	/**
@@ -150,58 +206,73 @@ public class Appliance extends Load {
 
 		// Some appliances have a custom (variable) power profile depending
 		// on the time left
-		if (this.id.equals("WASHING_MACHINE")
-				|| this.id.equals("WASHER_DRYER")) {
-
-			int total_cycle_time = 0;
-
-			// Calculate the washing cycle time
-			if (this.id.equals("WASHING_MACHINE"))
-				total_cycle_time = 138;
-			if (this.id.equals("WASHER_DRYER"))
-				total_cycle_time = 198;
-
-			// This is an example power profile for an example washing
-			// machine. This simplistic model is based upon data from personal
-			// communication with a major washing machine manufacturer
-			int tmp = total_cycle_time - cycle_time_left + 1;
-
-			if (isBetween(tmp, 1, 8)) {
-				tmp_power = 73; // start-up and fill
-			} else if (isBetween(tmp, 9, 29)) {
-				tmp_power = 2056; // heating
-			} else if (isBetween(tmp, 30, 81)) {
-				tmp_power = 73; // Wash and drain
-			} else if (isBetween(tmp, 82, 92)) {
-				tmp_power = 73; // spin
-			} else if (isBetween(tmp, 93, 94)) {
-				tmp_power = 250; // rinse
-			} else if (isBetween(tmp, 95, 105)) {
-				tmp_power = 73; // Spin
-			} else if (isBetween(tmp, 106, 107)) {
-				tmp_power = 250; // rinse
-			} else if (isBetween(tmp, 108, 118)) {
-				tmp_power = 73; // Spin
-			} else if (isBetween(tmp, 119, 120)) {
-				tmp_power = 250; // rinse
-			} else if (isBetween(tmp, 121, 131)) {
-				tmp_power = 73; // Spin
-			} else if (isBetween(tmp, 132, 133)) {
-				tmp_power = 250; // rinse
-			} else if (isBetween(tmp, 134, 138)) {
-				tmp_power = 568; // fast spin
-			} else if (isBetween(tmp, 139, 198)) {
-				tmp_power = 2500; // Drying cycle
-			} else {
-				tmp_power = this.standby_power;
-			}
-
+		if (this.id.equals("WASHING_MACHINE")) {
+			tmp_power = getWashingPower(138, cycle_time_left,
+					this.standby_power);
+		} else if (this.id.equals("WASHER_DRYER")) {
+			tmp_power = getWashingPower(198, cycle_time_left,
+					this.standby_power);
 		}
 
 		return (tmp_power);
 
 	}
 
+	/**
+	 * Gets the power consumed by a washing machine or washer-dryer at a
+	 * certain point in its cycle.
+	 * 
+	 * @param total_cycle_time
+	 *            an int giving the length of the full cycle in minutes
+	 * @param cycle_time_left
+	 *            an int giving the number of minutes left in the cycle
+	 * @param standby_power
+	 *            an int giving the standby power in Watts
+	 * @return an int giving the power consumption in Watts at this time
+	 */
+	static int getWashingPower(int total_cycle_time, int cycle_time_left,
+			int standby_power) {
+
+		int tmp_power;
+
+		// This is an example power profile for an example washing
+		// machine. This simplistic model is based upon data from personal
+		// communication with a major washing machine manufacturer
+		int tmp = total_cycle_time - cycle_time_left + 1;
+
+		if (isBetween(tmp, 1, 8)) {
+			tmp_power = 73; // start-up and fill
+		} else if (isBetween(tmp, 9, 29)) {
+			tmp_power = 2056; // heating
+		} else if (isBetween(tmp, 30, 81)) {
+			tmp_power = 73; // Wash and drain
+		} else if (isBetween(tmp, 82, 92)) {
+			tmp_power = 73; // spin
+		} else if (isBetween(tmp, 93, 94)) {
+			tmp_power = 250; // rinse
+		} else if (isBetween(tmp, 95, 105)) {
+			tmp_power = 73; // Spin
+		} else if (isBetween(tmp, 106, 107)) {
+			tmp_power = 250; // rinse
+		} else if (isBetween(tmp, 108, 118)) {
+			tmp_power = 73; // Spin
+		} else if (isBetween(tmp, 119, 120)) {
+			tmp_power = 250; // rinse
+		} else if (isBetween(tmp, 121, 131)) {
+			tmp_power = 73; // Spin
+		} else if (isBetween(tmp, 132, 133)) {
+			tmp_power = 250; // rinse
+		} else if (isBetween(tmp, 134, 138)) {
+			tmp_power = 568; // fast spin
+		} else if (isBetween(tmp, 139, 198)) {
+			tmp_power = 2500; // Drying cycle
+		} else {
+			tmp_power = standby_power;
+		}
+
+		return (tmp_power);
+	}
+
 	/**
 	 * Calculate the length of this Appliance's operating cycle. The duration
 	 * (in minutes) is calculated as follows:
@@ -227,15 +298,14 @@ public class Appliance extends Load {
 
 			// The cycle length is approximated by the following function
 			// The average viewing time is approximately 73 minutes
-			length = (int) Math.round(70 * Math.pow(
-					(0 - Math.log10(1 - Uniform.staticNextDouble())), 1.1));
+			length = RandomVariates.tvViewingTime(random);
 
 		} else if ((this.id.equals("STORAGE_HEATER"))
 				|| (this.id.equals("ELEC_SPACE_HEATING"))) {
 
 			// Provide some variation on the cycle length of heating
 			// appliances
-			length = (int) Normal.staticNextDouble(this.cycle_length,
+			length = (int) random.nextNormal(this.cycle_length,
 					this.cycle_length / 10);
 		}
 
@@ -248,7 +318,18 @@ public class Appliance extends Load {
 	 * this Appliance is deemed to be owned.
 	 */
 	public void assignOwnership() {
-		double rnd = Uniform.staticNextDouble();
+		assignOwnership(RandomStream.GLOBAL);
+	}
+
+	/**
+	 * Assigns ownership of this Appliance, drawing from a specified random
+	 * number stream.
+	 * 
+	 * @param random
+	 *            the RandomStream to draw from
+	 */
+	public void assignOwnership(RandomStream random) {
+		double rnd = random.nextDouble();
 		owned = (rnd < this.ownership_rate);
 	}
 
@@ -261,6 +342,15 @@ public class Appliance extends Load {
 		return (this.owned);
 	}
 
+	/**
+	 * Gets the random number stream used by this Appliance.
+	 * 
+	 * @return a RandomStream
+	 */
+	RandomStream getRandomStream() {
+		return random;
+	}
+
 	/**
 	 * Runs the appliance. In other words, sets the power demand for the current
 	 * point in the cycle and step the timer.
@@ -0,0 +1,323 @@
+package uk.ac.imperial.simelec;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.List;
+
+/**
+ * The static description of every appliance type and the activity statistics
+ * that drive their use. The catalogue is held in parallel primitive arrays,
+ * indexed by appliance, so that it can be shared by every simulated household
+ * without creating an object per appliance.
+ *
+ * @author James Keirstead
+ *
+ */
+public class ApplianceCatalogue {
+
+	// Use profiles
+	static final int LEVEL = 0;
+	static final int ACTIVE_OCC = 1;
+	static final int CUSTOM = 2;
+	static final int ACTIVITY = 3;
+
+	// Appliances with special behaviour
+	static final int STANDARD = 0;
+	static final int TV = 1;
+	static final int STORAGE_HEATER = 2;
+	static final int ELEC_SPACE_HEATING = 3;
+	static final int WASHING_MACHINE = 4;
+	static final int WASHER_DRYER = 5;
+
+	// Appliance data
+	final String[] ids;
+	final String[] profiles;
+	final int[] profile;
+	final int[] activity;
+	final int[] kind;
+	final boolean[] laundry;
+	final double[] ownership;
+	final double[] energy;
+	final int[] standby;
+	final int[] meanPower;
+	final double[] cyclesPerYear;
+	final int[] cycleLength;
+	final int[] restartDelay;
+	final double[] calibration;
+
+	// Months in which storage heaters are switched on and off
+	final int[] monthOn;
+	final int[] monthOff;
+
+	// Activity statistics
+	final String[] activities;
+	private final double[] modifiers;
+
+	/**
+	 * Creates an ApplianceCatalogue from the appliance and activity data
+	 * files.
+	 *
+	 * @param appliances
+	 *            a NumericCsvReader positioned before the first row of
+	 *            <code>appliances.csv</code>
+	 * @param stats
+	 *            a NumericCsvReader positioned before the first row of
+	 *            <code>activities.csv</code>
+	 * @throws IOException
+	 *             if the files cannot be read
+	 */
+	ApplianceCatalogue(NumericCsvReader appliances, NumericCsvReader stats)
+			throws IOException {
+
+		// Activity names, in order of first appearance
+		List<String> names = new ArrayList<String>();
+		List<int[]> keys = new ArrayList<int[]>();
+		List<double[]> values = new ArrayList<double[]>();
+		while (stats.next()) {
+			String id = stats.getString(2).toUpperCase();
+			int a = names.indexOf(id);
+			if (a < 0) {
+				a = names.size();
+				names.add(id);
+			}
+			keys.add(new int[] { stats.getInt(0), stats.getInt(1), a });
+			double[] v = new double[144];
+			for (int i = 0; i < 144; i++) {
+				v[i] = stats.getDouble(i + 3);
+			}
+			values.add(v);
+		}
+		activities = names.toArray(new String[names.size()]);
+
+		// Activity statistics by day type, active occupants (0-5), activity,
+		// and ten minute period
+		modifiers = new double[2 * 6 * activities.length * 144];
+		for (int j = 0; j < keys.size(); j++) {
+			int[] k = keys.get(j);
+			System.arraycopy(values.get(j), 0, modifiers,
+					index(k[0] == 1, k[1], k[2]), 144);
+		}
+
+		// Appliances
+		List<String> rowIds = new ArrayList<String>();
+		List<String> rowProfiles = new ArrayList<String>();
+		List<double[]> rows = new ArrayList<double[]>();
+		while (appliances.next()) {
+			rowIds.add(appliances.getString(0).toUpperCase());
+			rowProfiles.add(appliances.getString(1).toUpperCase());
+			rows.add(new double[] { appliances.getDouble(2),
+					appliances.getDouble(3), appliances.getInt(4),
+					appliances.getInt(5), appliances.getDouble(6),
+					appliances.getInt(7), appliances.getInt(8),
+					appliances.getDouble(9) });
+		}
+
+		int n = rows.size();
+		ids = new String[n];
+		profiles = new String[n];
+		profile = new int[n];
+		activity = new int[n];
+		kind = new int[n];
+		laundry = new boolean[n];
+		ownership = new double[n];
+		energy = new double[n];
+		standby = new int[n];
+		meanPower = new int[n];
+		cyclesPerYear = new double[n];
+		cycleLength = new int[n];
+		restartDelay = new int[n];
+		calibration = new double[n];
+		monthOn = new int[n];
+		monthOff = new int[n];
+
+		for (int i = 0; i < n; i++) {
+			double[] row = rows.get(i);
+			ids[i] = rowIds.get(i);
+			profiles[i] = rowProfiles.get(i);
+			ownership[i] = row[0];
+			energy[i] = row[1];
+			standby[i] = (int) row[2];
+			meanPower[i] = (int) row[3];
+			cyclesPerYear[i] = row[4];
+			cycleLength[i] = (int) row[5];
+			restartDelay[i] = (int) row[6];
+			calibration[i] = row[7];
+
+			if (profiles[i].equals("LEVEL")) {
+				profile[i] = LEVEL;
+			} else if (profiles[i].equals("ACTIVE_OCC")) {
+				profile[i] = ACTIVE_OCC;
+			} else if (profiles[i].equals("CUSTOM")) {
+				profile[i] = CUSTOM;
+			} else {
+				profile[i] = ACTIVITY;
+			}
+			activity[i] = names.indexOf(profiles[i]);
+			laundry[i] = profiles[i].equals("ACT_LAUNDRY");
+			kind[i] = getKind(ids[i]);
+
+			setStorageHeaterMonths(i);
+		}
+	}
+
+	/**
+	 * Reads an ApplianceCatalogue from a {@link DataSnapshot}.
+	 *
+	 * @param in
+	 *            a ByteBuffer positioned at the start of the catalogue
+	 */
+	ApplianceCatalogue(ByteBuffer in) {
+		activities = DataSnapshot.readStrings(in);
+		modifiers = DataSnapshot.readDoubles(in);
+		ids = DataSnapshot.readStrings(in);
+		profiles = DataSnapshot.readStrings(in);
+		profile = DataSnapshot.readInts(in);
+		activity = DataSnapshot.readInts(in);
+		kind = DataSnapshot.readInts(in);
+		laundry = DataSnapshot.readBooleans(in);
+		ownership = DataSnapshot.readDoubles(in);
+		energy = DataSnapshot.readDoubles(in);
+		standby = DataSnapshot.readInts(in);
+		meanPower = DataSnapshot.readInts(in);
+		cyclesPerYear = DataSnapshot.readDoubles(in);
+		cycleLength = DataSnapshot.readInts(in);
+		restartDelay = DataSnapshot.readInts(in);
+		calibration = DataSnapshot.readDoubles(in);
+		monthOn = DataSnapshot.readInts(in);
+		monthOff = DataSnapshot.readInts(in);
+	}
+
+	/**
+	 * Writes this catalogue to a {@link DataSnapshot}, in the order read by
+	 * {@link #ApplianceCatalogue(ByteBuffer)}.
+	 *
+	 * @param out
+	 *            the DataOutputStream to write to
+	 * @throws IOException
+	 */
+	void write(DataOutputStream out) throws IOException {
+		DataSnapshot.writeStrings(out, activities);
+		DataSnapshot.writeDoubles(out, modifiers);
+		DataSnapshot.writeStrings(out, ids);
+		DataSnapshot.writeStrings(out, profiles);
+		DataSnapshot.writeInts(out, profile);
+		DataSnapshot.writeInts(out, activity);
+		DataSnapshot.writeInts(out, kind);
+		DataSnapshot.writeBooleans(out, laundry);
+		DataSnapshot.writeDoubles(out, ownership);
+		DataSnapshot.writeDoubles(out, energy);
+		DataSnapshot.writeInts(out, standby);
+		DataSnapshot.writeInts(out, meanPower);
+		DataSnapshot.writeDoubles(out, cyclesPerYear);
+		DataSnapshot.writeInts(out, cycleLength);
+		DataSnapshot.writeInts(out, restartDelay);
+		DataSnapshot.writeDoubles(out, calibration);
+		DataSnapshot.writeInts(out, monthOn);
+		DataSnapshot.writeInts(out, monthOff);
+	}
+
+	/**
+	 * Identifies appliances with special behaviour.
+	 *
+	 * @param id
+	 *            a String giving the appliance id
+	 * @return an int giving the kind of appliance
+	 */
+	private static int getKind(String id) {
+		if (id.equals("TV1") || id.equals("TV2") || id.equals("TV3")) {
+			return TV;
+		} else if (id.equals("STORAGE_HEATER")) {
+			return STORAGE_HEATER;
+		} else if (id.equals("ELEC_SPACE_HEATING")) {
+			return ELEC_SPACE_HEATING;
+		} else if (id.equals("WASHING_MACHINE")) {
+			return WASHING_MACHINE;
+		} else if (id.equals("WASHER_DRYER")) {
+			return WASHER_DRYER;
+		}
+		return STANDARD;
+	}
+
+	/**
+	 * Calculates the months in which a storage heater is switched on and off,
+	 * using the number of cycles per year.
+	 *
+	 * @param i
+	 *            an int giving the appliance index
+	 */
+	private void setStorageHeaterMonths(int i) {
+
+		// Assume January 14th is the coldest day of the year
+		Calendar cal = GregorianCalendar.getInstance();
+		cal.set(1997, 1, 14);
+		cal.add(Calendar.DAY_OF_YEAR, (int) cyclesPerYear[i] / 2);
+		monthOff[i] = cal.get(Calendar.MONTH);
+		cal.set(1997, 1, 14);
+		cal.add(Calendar.DAY_OF_YEAR, (int) -cyclesPerYear[i] / 2);
+		monthOn[i] = cal.get(Calendar.MONTH);
+	}
+
+	private int index(boolean weekend, int occupants, int activity) {
+		return (((weekend ? 1 : 0) * 6 + occupants) * activities.length + activity) * 144;
+	}
+
+	/**
+	 * Gets the proportion of households where at least one occupant is engaged
+	 * in the activity that drives an appliance's use.
+	 *
+	 * @param appliance
+	 *            an int giving the appliance index
+	 * @param weekend
+	 *            a boolean indicating a weekend (<code>true</code>) or weekday
+	 * @param occupants
+	 *            an int giving the number of active occupants. Values above
+	 *            five are treated as five.
+	 * @param period
+	 *            an int giving the ten minute period of the day (0-143)
+	 * @return a double giving the activity probability
+	 */
+	double getActivityProbability(int appliance, boolean weekend,
+			int occupants, int period) {
+		int occ = occupants < 1 ? 1 : (occupants > 5 ? 5 : occupants);
+		return modifiers[index(weekend, occ, activity[appliance]) + period];
+	}
+
+	/**
+	 * Gets the number of appliances in this catalogue.
+	 *
+	 * @return an int
+	 */
+	public int size() {
+		return ids.length;
+	}
+
+	/**
+	 * Gets the id of an appliance.
+	 *
+	 * @param i
+	 *            an int giving the appliance index
+	 * @return a String such as <code>FRIDGE</code>
+	 */
+	public String getId(int i) {
+		return ids[i];
+	}
+
+	/**
+	 * Finds the index of an appliance.
+	 *
+	 * @param id
+	 *            a String giving the appliance id
+	 * @return an int giving the index, or -1 if not found
+	 */
+	public int indexOf(String id) {
+		for (int i = 0; i < ids.length; i++) {
+			if (ids[i].equals(id))
+				return i;
+		}
+		return -1;
+	}
+}
@@ -0,0 +1,66 @@
+package uk.ac.imperial.simelec;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Breaks down the energy used by the loads, giving the total for each load
+ * name. For the appliance model, this is the energy used by each appliance.
+ *
+ * Loads can be added from several threads.
+ *
+ * @author James Keirstead
+ *
+ */
+public class ApplianceEnergy implements LoadOperator {
+
+	// Member fields
+	private final Map<String, Double> energy = new LinkedHashMap<String, Double>();
+
+	/**
+	 * Creates an empty ApplianceEnergy.
+	 */
+	public ApplianceEnergy() {
+	}
+
+	@Override
+	public void loadCompleted(Load load) {
+		double wh = 0;
+		for (double w : load.consumption)
+			wh += w;
+		double kwh = wh / 60 / 1000;
+
+		synchronized (energy) {
+			Double previous = energy.get(load.id);
+			energy.put(load.id, previous == null ? kwh : previous + kwh);
+		}
+	}
+
+	/**
+	 * Gets the energy used by a load.
+	 *
+	 * @param id
+	 *            a String giving the name of the load, for example
+	 *            <code>"TV1"</code>
+	 * @return a double giving the energy in kWh, or zero if no load of that
+	 *         name has been seen
+	 */
+	public double getEnergy(String id) {
+		synchronized (energy) {
+			Double kwh = energy.get(id);
+			return kwh == null ? 0 : kwh;
+		}
+	}
+
+	/**
+	 * Gets the energy used by every load.
+	 *
+	 * @return a Map from load name to energy in kWh, in the order in which the
+	 *         loads were first seen
+	 */
+	public Map<String, Double> getEnergy() {
+		synchronized (energy) {
+			return new LinkedHashMap<String, Double>(energy);
+		}
+	}
+}
@@ -27,18 +27,9 @@ package uk.ac.imperial.simelec;
 
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.util.ArrayList;
-import java.util.Calendar;
-import java.util.GregorianCalendar;
 import java.util.List;
 
-import cern.jet.random.Uniform;
-import cern.jet.random.engine.MersenneTwister;
-import cern.jet.random.engine.RandomEngine;
-import au.com.bytecode.opencsv.CSVReader;
-
 /**
  * Simulates the electricity demand for appliances in a household at one-minute
  * intervals for the course of a single day.
@@ -48,10 +39,6 @@ import au.com.bytecode.opencsv.CSVReader;
  */
 public class ApplianceModel extends LoadModel<Appliance> {
 
-	// Data files
-	private static String activity_file = "/data/activities.csv";
-	private static String appliance_file = "/data/appliances.csv";
-
 	// Define the relative monthly temperatures
 	// Data derived from MetOffice temperature data for the Midlands in 2007
 	// (http://www.metoffice.gov.uk/climate/uk/2007/) Crown Copyright
@@ -127,86 +114,9 @@ public class ApplianceModel extends LoadModel<Appliance> {
 	}
 
 	/**
-	 * Gets a ProbabilityModifier with a specified characteristics from a list.
-	 * 
-	 * @param activities
-	 *            a List of all ProbabilityModifier objects
-	 * @param weekend
-	 *            a boolean indicating whether to to find weekend
-	 *            <code>true</code> or weekday <code>false</code> modifiers.
-	 * @param occupants
-	 *            an int giving the number of active occupants that should be in
-	 *            the ProbabilityModifier.
-	 * @param id
-	 *            a String giving an identifier.
-	 * @return a ProbabilityModifier matching all of the specified arguments. If
-	 *         none found, then returns <code>null</code>
-	 */
-	ProbabilityModifier getProbabilityModifier(
-			List<ProbabilityModifier> activities, boolean weekend,
-			int occupants, String id) {
-
-		// TODO for six person households, is the best thing just to pretend
-		// that there are five people there?
-		occupants = SimElec.validateResidents(occupants);
-
-		for (ProbabilityModifier pm : activities) {
-			if (pm.isWeekend == weekend
-					&& pm.active_occupant_count == occupants
-					&& pm.ID.equals(id)) {
-				return (pm);
-			}
-		}
-
-		return null;
-	}
-
-	/**
-	 * Randomly assign ownership for appliances.
-	 * 
-	 * @param apps
-	 *            a List of Appliance objects.
-	 */
-	void configure_appliances(List<Appliance> apps) {
-		for (Appliance a : apps)
-			a.assignOwnership();
-	}
-
-	/**
-	 * Loads the activity statistics from a file.
-	 * 
-	 * @return a List of ProbabilityModifier objects describing each activity.
-	 * 
-	 * @throws IOException
-	 */
-	List<ProbabilityModifier> loadActivityStatistics() throws IOException {
-		InputStream is = this.getClass().getResourceAsStream(activity_file);
-		CSVReader reader = new CSVReader(new InputStreamReader(is), ',', '\'',
-				6);
-		List<String[]> activities = reader.readAll();
-		reader.close();
-		List<ProbabilityModifier> result = new ArrayList<ProbabilityModifier>();
-		for (String[] s : activities) {
-			int bool = Integer.valueOf(s[0]);
-			boolean weekend = (bool == 1);
-			int occupants = Integer.valueOf(s[1]);
-			String ID = s[2].toUpperCase();
-
-			ProbabilityModifier stats = new ProbabilityModifier(weekend,
-					occupants, ID);
-			for (int i = 0; i < 144; i++) {
-				stats.modifiers[i] = Double.valueOf(s[i + 3]);
-			}
-
-			result.add(stats);
-		}
-
-		return (result);
-
-	}
-
-	/**
-	 * Load the appliances from a file.
+	 * Load the appliances from the appliance catalogue. Each Appliance is
+	 * given a random rated power and restart delay, but ownership is not
+	 * assigned.
 	 * 
 	 * @return a List of Appliance objects
 	 * 
@@ -214,58 +124,19 @@ public class ApplianceModel extends LoadModel<Appliance> {
 	 */
 	List<Appliance> loadAppliances() throws IOException {
 
-		InputStream is = this.getClass().getResourceAsStream(appliance_file);
-		CSVReader reader = new CSVReader(new InputStreamReader(is), ',', '\'',
-				37);
-		List<String[]> appliances = reader.readAll();
-		reader.close();
-		List<Appliance> results = new ArrayList<Appliance>();
-		for (String[] s : appliances) {
-			// TODO energy (column 4, s[3]) not used?
-			Appliance a = new Appliance(s[0], s[1], Double.valueOf(s[2]),
-					Integer.valueOf(s[4]), Integer.valueOf(s[5]),
-					Double.valueOf(s[6]), Integer.valueOf(s[7]),
-					Integer.valueOf(s[8]), Double.valueOf(s[9]));
+		ApplianceCatalogue c = ModelData.getApplianceCatalogue();
+		List<Appliance> results = new ArrayList<Appliance>(c.size());
+		for (int i = 0; i < c.size(); i++) {
+			Appliance a = new Appliance(c.ids[i], c.profiles[i],
+					c.ownership[i], c.standby[i], c.meanPower[i],
+					c.cyclesPerYear[i], c.cycleLength[i], c.restartDelay[i],
+					c.calibration[i], streams.getAppliance(c.ids[i]));
 			results.add(a);
 		}
 
 		return (results);
 	}
 
-	/**
-	 * Describes a factor used to modify the probability of an appliance
-	 * running. Each modifier contains a vector of doubles which describes the
-	 * proportion of households where at least one occupant is engaged in a
-	 * particular activity during a particular ten minute period
-	 * 
-	 * @author jkeirste
-	 * 
-	 */
-	class ProbabilityModifier {
-
-		// Class variables
-		boolean isWeekend;
-		int active_occupant_count;
-		String ID;
-		double[] modifiers = new double[144];
-
-		/**
-		 * Create a ProbabilityModified with specified parameters.
-		 * 
-		 * @param weekend
-		 *            does this apply to a weekend? <code>true</code>
-		 * @param occupants
-		 *            an int giving the number of active occupants
-		 * @param id
-		 *            a String giving an identifier
-		 */
-		private ProbabilityModifier(boolean weekend, int occupants, String id) {
-			this.isWeekend = weekend;
-			this.active_occupant_count = occupants;
-			this.ID = id;
-		}
-	}
-
 	/**
 	 * Sets the seed for the random number generator.
 	 * 
@@ -273,189 +144,35 @@ public class ApplianceModel extends LoadModel<Appliance> {
 	 *            an int giving the seed
 	 */
 	public static void setSeed(int seed) {
-		// This will also apply to the static method of other distributions
-		RandomEngine engine = new MersenneTwister(seed);
-		Uniform.staticSetRandomEngine(engine);
+		RandomStream.setGlobalSeed(seed);
 	}
 
+	/**
+	 * Simulates each appliance in the household. The appliances are held in a
+	 * packed {@link ApplianceState}, which shares the static appliance data
+	 * with every other household, and the resulting profiles are then copied
+	 * into Appliance objects for reporting.
+	 * 
+	 * @throws IOException
+	 */
 	@Override
 	public void runModel() throws IOException {
 
 		// Get the occupancy
 		int[] occupancy = model.getOccupancy();
 
-		// Load in the basic data
-		List<ProbabilityModifier> activities = loadActivityStatistics();
-		loads = loadAppliances();
-
-		// Assign the appliances to households
-		configure_appliances(loads);
-
-		// Simulate each appliance
-		for (Appliance a : loads) {
-
-			// If the appliance is owned, then we simulate it.
-			// If not, it's already stored an array of empty values
-			if (a.isOwned()) {
-
-				// Initialise the daily simulation loop
-				int time = 0;
-
-				while (time < 1440) {
-					// Set the default (standby) power demand at this time step
-					a.power = a.standby_power;
-
-					// Get the ten minute period count
-					int iTenMinuteCount = (int) Math.floor((time - 1) / 10);
-
-					// Get the number of current active occupants for this
-					// minute. Convert from 10 minute to 1 minute resolution
-					int iActiveOccupants = occupancy[iTenMinuteCount];
-
-					// If this appliance is off having completed a cycle (ie. a
-					// restart delay)
-					if (a.isOff() && (a.awaitingRestart())) {
-
-						// Decrement the cycle time left
-						a.restart_delay_time_left--;
-
-					} else if (a.isOff()) {
-						// Else if this appliance is off but able to restart
-
-						// There must be active occupants, or the profile must
-						// not depend on occupancy for a start event to occur
-						if ((iActiveOccupants > 0 && !a.use_profile
-								.equals("CUSTOM"))
-								|| (a.use_profile.equals("LEVEL"))) {
-
-							// Variable to store the event probability (default
-							// to 1)
-							double dActivityProbability = 1;
-
-							// For appliances that depend on activity profiles
-							// and is not a custom profile ...
-							if ((!a.use_profile.equals("LEVEL"))
-									&& (!a.use_profile.equals("ACTIVE_OCC"))
-									&& (!a.use_profile.equals("CUSTOM"))) {
-
-								// Get the right activity
-								ProbabilityModifier pm = getProbabilityModifier(
-										activities, weekend, iActiveOccupants,
-										a.use_profile);
-
-								// Get the activity statistics for this profile
-								// at this time step
-								dActivityProbability = pm.modifiers[iTenMinuteCount];
-
-							} else if (a.id.equals("ELEC_SPACE_HEATING")) {
-								// For electric space heaters ... (excluding
-								// night storage heaters)
-
-								// If this appliance is an electric space
-								// heater, then activity probability is a
-								// function of the month of the year
-								dActivityProbability = oMonthlyRelativeTemperatureModifier[month - 1];
-							}
-
-							// Check the probability of a start event
-							if (Uniform.staticNextDouble() < (a.calibration * dActivityProbability)) {
-
-								// This is a start event
-								a.start();
-
-								// Once it's on, we need to "run" it too
-								a.run();
-
-							}
-						} else if (a.use_profile.equals("CUSTOM")
-								&& a.id.equals("STORAGE_HEATER")) {
-							// Custom appliance handler: storage heaters have a
-							// simple representation
-							// The number of cycles (one per day) set out in the
-							// calibration sheet is used to determine whether
-							// the storage heater is used
-
-							// This model does not account for the changes in
-							// the Economy 7 time. It assumes that the time
-							// starts at 00:30 each day
-							if (iTenMinuteCount == 4) { // ie. 00:30 - 00:40
-
-								// Assume January 14th is the coldest day of the
-								// year
-								int iMonthOn, iMonthOff;
-								Calendar cal = GregorianCalendar.getInstance();
-								cal.set(1997, 1, 14);
-
-								// Get the month and day when the storage
-								// heaters are turned on and off, using the
-								// number of cycles per year
-								cal.add(Calendar.DAY_OF_YEAR,
-										(int) a.cycles_per_year / 2);
-								iMonthOff = cal.get(Calendar.MONTH);
-								cal.set(1997, 1, 14);
-								cal.add(Calendar.DAY_OF_YEAR,
-										(int) -a.cycles_per_year / 2);
-								iMonthOn = cal.get(Calendar.MONTH);
-
-								// Declare a probability of use variable
-								double prob;
-
-								// If this is a month in which the appliance is
-								// turned on of off
-								if ((month == iMonthOff) || (month == iMonthOn)) {
-									// Pick a 50% chance since this month has
-									// only a month of year resolution
-									prob = 0.5 / 10; // (since there are 10
-														// minutes in this
-														// period)
-								} else if ((month > iMonthOff)
-										&& (month < iMonthOn)) {
-									// The appliance is not used in summer
-									prob = 0;
-								} else {
-									// The appliance is used in winter
-									prob = 1;
-								}
-
-								// Determine if a start event occurs
-								if (Uniform.staticNextDouble() <= prob) {
-
-									// This is a start event
-									a.start();
-									a.run();
-
-								}
-							}
-
-						}
-					} else {
-						// The appliance is on - if the occupants become
-						// inactive, switch off the appliance
-						if ((iActiveOccupants == 0)
-								&& (!a.use_profile.equals("LEVEL"))
-								&& (!a.use_profile.equals("ACT_LAUNDRY"))
-								&& (!a.use_profile.equals("CUSTOM"))) {
-
-							// Do nothing. The activity will be completed upon
-							// the return of the active occupancy.
-							// Note that LEVEL means that the appliance use is
-							// not related to active occupancy.
-							// Note also that laundry appliances do not switch
-							// off upon a transition to inactive occupancy.
-						} else {
-
-							a.run();
-
-						}
-					}
-
-					// Save the power value
-					a.consumption[time] = (double) a.power;
-
-					// Increment the time
-					time++;
-				}
-			}
+		// Assign the appliances to the household
+		ApplianceCatalogue catalogue = ModelData.getApplianceCatalogue();
+		ApplianceState state = new ApplianceState(catalogue, streams,
+				parameters);
+
+		// Simulate each appliance. If it isn't owned, it's already stored an
+		// array of empty values
+		loads = new ArrayList<Appliance>(catalogue.size());
+		for (int i = 0; i < catalogue.size(); i++) {
+			Appliance a = new Appliance(state, i);
+			state.simulate(i, occupancy, weekend, month, a.consumption);
+			loads.add(a);
 		}
 
 	}
@@ -0,0 +1,361 @@
+package uk.ac.imperial.simelec;
+
+/**
+ * The appliances of a single household and their state during the simulated
+ * day. Each field is a small array indexed by the appliance's position in an
+ * {@link ApplianceCatalogue}.
+ *
+ * @author James Keirstead
+ *
+ */
+public class ApplianceState {
+
+	// Member fields
+	private ApplianceCatalogue catalogue;
+	private RandomStream[] random;
+	private double[] calibration;
+	private double[] temperatureModifier;
+	final boolean[] owned;
+	final int[] ratedPower;
+	final int[] cycleTimeLeft;
+	final int[] restartDelayLeft;
+	final int[] power;
+	final int[] ownedIndices;
+
+	/**
+	 * Creates the appliances for a household. Each appliance is given a random
+	 * rated power and initial restart delay, and its ownership is then
+	 * assigned.
+	 *
+	 * @param catalogue
+	 *            the ApplianceCatalogue describing each appliance
+	 * @param streams
+	 *            the RandomStreams for the household
+	 */
+	public ApplianceState(ApplianceCatalogue catalogue, RandomStreams streams) {
+		this(catalogue, streams, catalogue.calibration,
+				ApplianceModel.oMonthlyRelativeTemperatureModifier);
+	}
+
+	/**
+	 * Creates the appliances for a household, overriding the calibration
+	 * constants.
+	 *
+	 * @param catalogue
+	 *            the ApplianceCatalogue describing each appliance
+	 * @param streams
+	 *            the RandomStreams for the household
+	 * @param parameters
+	 *            the ModelParameters giving the appliance calibration
+	 *            constants and monthly temperature modifiers
+	 */
+	public ApplianceState(ApplianceCatalogue catalogue, RandomStreams streams,
+			ModelParameters parameters) {
+		this(catalogue, streams, parameters
+				.getApplianceCalibration(catalogue), parameters
+				.getTemperatureModifiers());
+	}
+
+	private ApplianceState(ApplianceCatalogue catalogue,
+			RandomStreams streams, double[] calibration,
+			double[] temperatureModifier) {
+
+		this.catalogue = catalogue;
+		this.calibration = calibration;
+		this.temperatureModifier = temperatureModifier;
+		int n = catalogue.size();
+		random = new RandomStream[n];
+		owned = new boolean[n];
+		ratedPower = new int[n];
+		cycleTimeLeft = new int[n];
+		restartDelayLeft = new int[n];
+		power = new int[n];
+
+		for (int i = 0; i < n; i++) {
+			random[i] = streams.getAppliance(catalogue.ids[i]);
+
+			// Randomly delay the start of appliances that have a restart
+			// delay
+			restartDelayLeft[i] = (int) random[i].nextDouble()
+					* catalogue.restartDelay[i] * 2;
+
+			// Make the rated power variable over a normal distribution to
+			// provide some variation
+			int mean = catalogue.meanPower[i];
+			ratedPower[i] = (int) random[i].nextNormal(mean, mean / 10);
+		}
+
+		// Assign the appliances to the household
+		RandomStream r = streams.get(RandomStreams.OWNERSHIP);
+		int count = 0;
+		for (int i = 0; i < n; i++) {
+			owned[i] = r.nextDouble() < catalogue.ownership[i];
+			if (owned[i])
+				count++;
+		}
+
+		// Keep a list of the owned appliances, so that the others can be
+		// skipped when stepping through the day
+		ownedIndices = new int[count];
+		count = 0;
+		for (int i = 0; i < n; i++) {
+			if (owned[i])
+				ownedIndices[count++] = i;
+		}
+	}
+
+	/**
+	 * Advances an appliance by one minute.
+	 *
+	 * @param i
+	 *            an int giving the appliance index
+	 * @param time
+	 *            an int giving the minute of the day (0-1439)
+	 * @param occupancy
+	 *            an array of 144 active occupancy values at ten-minute
+	 *            intervals
+	 * @param weekend
+	 *            a boolean indicating whether this is a weekend
+	 * @param month
+	 *            an int giving the month of the year (1-12)
+	 * @return an int giving the power demand of the appliance during this
+	 *         minute (W)
+	 */
+	public int step(int i, int time, int[] occupancy, boolean weekend,
+			int month) {
+		return step(i, time, occupancy, weekend, month, true);
+	}
+
+	/**
+	 * Advances an appliance by one minute, optionally preventing new cycles
+	 * from starting.
+	 *
+	 * @param i
+	 *            an int giving the appliance index
+	 * @param time
+	 *            an int giving the minute of the day (0-1439)
+	 * @param occupancy
+	 *            an array of 144 active occupancy values at ten-minute
+	 *            intervals
+	 * @param weekend
+	 *            a boolean indicating whether this is a weekend
+	 * @param month
+	 *            an int giving the month of the year (1-12)
+	 * @param canStart
+	 *            a boolean indicating whether a new cycle may start
+	 * @return an int giving the power demand of the appliance during this
+	 *         minute (W)
+	 */
+	int step(int i, int time, int[] occupancy, boolean weekend, int month,
+			boolean canStart) {
+
+		if (!owned[i])
+			return 0;
+
+		ApplianceCatalogue c = catalogue;
+		int profile = c.profile[i];
+
+		// Set the default (standby) power demand at this time step
+		power[i] = c.standby[i];
+
+		// Get the ten minute period count
+		int iTenMinuteCount = (time - 1) / 10;
+
+		// Get the number of current active occupants for this
+		// minute. Convert from 10 minute to 1 minute resolution
+		int iActiveOccupants = occupancy[iTenMinuteCount];
+
+		if (cycleTimeLeft[i] <= 0 && restartDelayLeft[i] > 0) {
+
+			// If this appliance is off having completed a cycle (ie. a
+			// restart delay), decrement the restart delay
+			restartDelayLeft[i]--;
+
+		} else if (cycleTimeLeft[i] <= 0) {
+			// Else if this appliance is off but able to restart
+
+			// There must be active occupants, or the profile must
+			// not depend on occupancy for a start event to occur
+			if ((iActiveOccupants > 0 && profile != ApplianceCatalogue.CUSTOM)
+					|| profile == ApplianceCatalogue.LEVEL) {
+
+				// Variable to store the event probability (default to 1)
+				double dActivityProbability = 1;
+
+				if (profile == ApplianceCatalogue.ACTIVITY) {
+					// Get the activity statistics for this profile at this
+					// time step
+					dActivityProbability = c.getActivityProbability(i,
+							weekend, iActiveOccupants, iTenMinuteCount);
+
+				} else if (c.kind[i] == ApplianceCatalogue.ELEC_SPACE_HEATING) {
+					// For electric space heaters (excluding night storage
+					// heaters) activity probability is a function of the
+					// month of the year
+					dActivityProbability = temperatureModifier[month - 1];
+				}
+
+				// Check the probability of a start event
+				if (random[i].nextDouble() < (calibration[i] * dActivityProbability)
+						&& canStart) {
+					start(i);
+					run(i);
+				}
+
+			} else if (profile == ApplianceCatalogue.CUSTOM
+					&& c.kind[i] == ApplianceCatalogue.STORAGE_HEATER) {
+
+				// Storage heaters have a simple representation. This model
+				// does not account for the changes in the Economy 7 time. It
+				// assumes that the time starts at 00:30 each day
+				if (iTenMinuteCount == 4) { // ie. 00:30 - 00:40
+
+					double prob;
+					if ((month == c.monthOff[i]) || (month == c.monthOn[i])) {
+						// Pick a 50% chance since this month has only a
+						// month of year resolution
+						prob = 0.5 / 10; // (since there are 10 minutes in
+											// this period)
+					} else if ((month > c.monthOff[i])
+							&& (month < c.monthOn[i])) {
+						// The appliance is not used in summer
+						prob = 0;
+					} else {
+						// The appliance is used in winter
+						prob = 1;
+					}
+
+					// Determine if a start event occurs
+					if (random[i].nextDouble() <= prob && canStart) {
+						start(i);
+						run(i);
+					}
+				}
+			}
+		} else {
+			// The appliance is on - if the occupants become inactive, switch
+			// off the appliance. The activity will be completed upon the
+			// return of the active occupancy. Appliances whose use is not
+			// related to active occupancy, and laundry appliances, carry on.
+			if (iActiveOccupants > 0 || profile == ApplianceCatalogue.LEVEL
+					|| c.laundry[i] || profile == ApplianceCatalogue.CUSTOM) {
+				run(i);
+			}
+		}
+
+		return power[i];
+	}
+
+	/**
+	 * Simulates an appliance for a whole day.
+	 *
+	 * @param i
+	 *            an int giving the appliance index
+	 * @param occupancy
+	 *            an array of 144 active occupancy values at ten-minute
+	 *            intervals
+	 * @param weekend
+	 *            a boolean indicating whether this is a weekend
+	 * @param month
+	 *            an int giving the month of the year (1-12)
+	 * @param consumption
+	 *            an array of 1440 values in which to store the power demand (W)
+	 */
+	public void simulate(int i, int[] occupancy, boolean weekend, int month,
+			double[] consumption) {
+		if (!owned[i])
+			return;
+
+		for (int time = 0; time < consumption.length; time++) {
+			consumption[time] = step(i, time, occupancy, weekend, month);
+		}
+	}
+
+	/**
+	 * Starts an appliance. This calculates a new cycle length, resets the
+	 * restart delay, and sets the power.
+	 */
+	private void start(int i) {
+
+		// Determine how long this appliance is going to be on for
+		cycleTimeLeft[i] = calculateCycleLength(i);
+
+		// Determine if this appliance has a delay after the cycle before it
+		// can restart
+		restartDelayLeft[i] = catalogue.restartDelay[i];
+
+		// Set the power and decrement the cycle time left
+		power[i] = getPowerUsage(i, cycleTimeLeft[i]);
+		cycleTimeLeft[i]--;
+	}
+
+	/**
+	 * Runs an appliance, setting the power demand for the current point in the
+	 * cycle and stepping the timer.
+	 */
+	private void run(int i) {
+		power[i] = getPowerUsage(i, cycleTimeLeft[i]);
+		cycleTimeLeft[i]--;
+	}
+
+	private int getPowerUsage(int i, int cycleTimeLeft) {
+		switch (catalogue.kind[i]) {
+		case ApplianceCatalogue.WASHING_MACHINE:
+			return Appliance.getWashingPower(138, cycleTimeLeft,
+					catalogue.standby[i]);
+		case ApplianceCatalogue.WASHER_DRYER:
+			return Appliance.getWashingPower(198, cycleTimeLeft,
+					catalogue.standby[i]);
+		default:
+			return ratedPower[i];
+		}
+	}
+
+	private int calculateCycleLength(int i) {
+		int length = catalogue.cycleLength[i];
+
+		switch (catalogue.kind[i]) {
+		case ApplianceCatalogue.TV:
+			// The average viewing time is approximately 73 minutes
+			length = RandomVariates.tvViewingTime(random[i]);
+			break;
+		case ApplianceCatalogue.STORAGE_HEATER:
+		case ApplianceCatalogue.ELEC_SPACE_HEATING:
+			length = (int) random[i].nextNormal(length, length / 10);
+			break;
+		}
+
+		return length;
+	}
+
+	/**
+	 * Is an appliance owned by this household?
+	 *
+	 * @param i
+	 *            an int giving the appliance index
+	 * @return <code>true</code> if the appliance is owned
+	 */
+	public boolean isOwned(int i) {
+		return owned[i];
+	}
+
+	/**
+	 * Gets the current power demand of an appliance.
+	 *
+	 * @param i
+	 *            an int giving the appliance index
+	 * @return an int giving the power demand (W)
+	 */
+	public int getPower(int i) {
+		return owned[i] ? power[i] : 0;
+	}
+
+	/**
+	 * Gets the catalogue describing these appliances.
+	 *
+	 * @return an ApplianceCatalogue
+	 */
+	public ApplianceCatalogue getCatalogue() {
+		return catalogue;
+	}
+}
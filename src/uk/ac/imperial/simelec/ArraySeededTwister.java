@@ -0,0 +1,110 @@
+package uk.ac.imperial.simelec;
+
+import cern.jet.random.engine.RandomEngine;
+
+/**
+ * The MT19937 Mersenne Twister, seeded from an array of int values rather than
+ * a single int. This is the <code>init_by_array</code> seeding of M. Matsumoto
+ * and T. Nishimura's reference implementation (2002), so a seed can hold the
+ * whole of a 64-bit household seed and the key of a stream. Colt's
+ * <code>MersenneTwister</code> only accepts an int seed. The generator itself
+ * is the same.
+ *
+ * @author James Keirstead
+ *
+ */
+final class ArraySeededTwister extends RandomEngine {
+
+	private static final long serialVersionUID = 1L;
+
+	private static final int N = 624;
+	private static final int M = 397;
+	private static final int MATRIX_A = 0x9908b0df;
+	private static final int UPPER_MASK = 0x80000000;
+	private static final int LOWER_MASK = 0x7fffffff;
+
+	// Member fields
+	private int[] mt = new int[N];
+	private int mti;
+
+	/**
+	 * Creates a new ArraySeededTwister.
+	 *
+	 * @param key
+	 *            an array of at least one int giving the seed
+	 */
+	ArraySeededTwister(int[] key) {
+		if (key.length == 0)
+			throw new IllegalArgumentException("The seed is empty");
+
+		// init_genrand(19650218)
+		mt[0] = 19650218;
+		for (int i = 1; i < N; i++)
+			mt[i] = 1812433253 * (mt[i - 1] ^ (mt[i - 1] >>> 30)) + i;
+
+		int i = 1;
+		int j = 0;
+		for (int k = Math.max(N, key.length); k > 0; k--) {
+			mt[i] = (mt[i] ^ ((mt[i - 1] ^ (mt[i - 1] >>> 30)) * 1664525))
+					+ key[j] + j;
+			i++;
+			j++;
+			if (i >= N) {
+				mt[0] = mt[N - 1];
+				i = 1;
+			}
+			if (j >= key.length)
+				j = 0;
+		}
+		for (int k = N - 1; k > 0; k--) {
+			mt[i] = (mt[i] ^ ((mt[i - 1] ^ (mt[i - 1] >>> 30)) * 1566083941))
+					- i;
+			i++;
+			if (i >= N) {
+				mt[0] = mt[N - 1];
+				i = 1;
+			}
+		}
+		mt[0] = UPPER_MASK;
+		mti = N;
+	}
+
+	/**
+	 * Generates the next block of N values.
+	 */
+	private void nextBlock() {
+		int kk = 0;
+		int y;
+		for (; kk < N - M; kk++) {
+			y = (mt[kk] & UPPER_MASK) | (mt[kk + 1] & LOWER_MASK);
+			mt[kk] = mt[kk + M] ^ (y >>> 1) ^ ((y & 1) * MATRIX_A);
+		}
+		for (; kk < N - 1; kk++) {
+			y = (mt[kk] & UPPER_MASK) | (mt[kk + 1] & LOWER_MASK);
+			mt[kk] = mt[kk + (M - N)] ^ (y >>> 1) ^ ((y & 1) * MATRIX_A);
+		}
+		y = (mt[N - 1] & UPPER_MASK) | (mt[0] & LOWER_MASK);
+		mt[N - 1] = mt[M - 1] ^ (y >>> 1) ^ ((y & 1) * MATRIX_A);
+		mti = 0;
+	}
+
+	@Override
+	public int nextInt() {
+		if (mti >= N)
+			nextBlock();
+
+		int y = mt[mti++];
+		y ^= y >>> 11;
+		y ^= (y << 7) & 0x9d2c5680;
+		y ^= (y << 15) & 0xefc60000;
+		y ^= y >>> 18;
+		return y;
+	}
+
+	@Override
+	public Object clone() {
+		ArraySeededTwister copy = (ArraySeededTwister) super.clone();
+		copy.mt = mt.clone();
+		return copy;
+	}
+}
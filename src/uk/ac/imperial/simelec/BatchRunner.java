@@ -0,0 +1,263 @@
+package uk.ac.imperial.simelec;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Simulates a population of households on a pool of worker threads and
+ * collects their total demand in a {@link PopulationAggregate}. Household
+ * <code>i</code> takes its random numbers from
+ * {@link RandomStreams#forHousehold(long, long)}, so the results do not depend
+ * on the number of threads.
+ *
+ * @author James Keirstead
+ *
+ */
+public class BatchRunner {
+
+	/**
+	 * Receives each household as it is completed. Listeners are called from
+	 * the worker threads.
+	 */
+	public interface Listener {
+
+		/**
+		 * Called when a household has been simulated and added to the
+		 * aggregate.
+		 *
+		 * @param result
+		 *            the HouseholdResult
+		 * @param completed
+		 *            an int giving the number of households completed so far
+		 */
+		void householdCompleted(HouseholdResult result, int completed);
+	}
+
+	// Member fields
+	private List<HouseholdSpec> specs;
+	private long seed;
+	private long first;
+	private int threads;
+	private ModelParameters parameters;
+	private PopulationAggregate aggregate = new PopulationAggregate();
+	private AtomicInteger next = new AtomicInteger();
+	private AtomicInteger completed = new AtomicInteger();
+	private volatile boolean cancelled = false;
+	private boolean fastVariates = false;
+	private boolean runLighting = true;
+	private boolean runAppliances = true;
+
+	/**
+	 * Creates a new BatchRunner.
+	 *
+	 * @param specs
+	 *            a List of HouseholdSpec objects
+	 * @param seed
+	 *            a long giving the scenario seed
+	 * @param threads
+	 *            an int giving the number of worker threads
+	 */
+	public BatchRunner(List<HouseholdSpec> specs, long seed, int threads) {
+		this(specs, seed, threads, new ModelParameters());
+	}
+
+	/**
+	 * Creates a new BatchRunner with specified calibration constants.
+	 *
+	 * @param specs
+	 *            a List of HouseholdSpec objects
+	 * @param seed
+	 *            a long giving the scenario seed
+	 * @param threads
+	 *            an int giving the number of worker threads
+	 * @param parameters
+	 *            the ModelParameters to use for every household
+	 */
+	public BatchRunner(List<HouseholdSpec> specs, long seed, int threads,
+			ModelParameters parameters) {
+		this(specs, seed, 0, threads, parameters);
+	}
+
+	/**
+	 * Creates a new BatchRunner for a shard of a larger population. Household
+	 * <code>i</code> of the shard is simulated as household
+	 * <code>first + i</code> of the population, so that the results do not
+	 * depend on how the population is divided.
+	 *
+	 * @param specs
+	 *            a List of HouseholdSpec objects
+	 * @param seed
+	 *            a long giving the scenario seed
+	 * @param first
+	 *            a long giving the number of the first household
+	 * @param threads
+	 *            an int giving the number of worker threads
+	 * @param parameters
+	 *            the ModelParameters to use for every household
+	 */
+	public BatchRunner(List<HouseholdSpec> specs, long seed, long first,
+			int threads, ModelParameters parameters) {
+		this.specs = specs;
+		this.seed = seed;
+		this.first = first;
+		this.threads = Math.max(1, threads);
+		this.parameters = parameters;
+	}
+
+	/**
+	 * Simulates the population, blocking until every household has been
+	 * simulated or the run is cancelled.
+	 *
+	 * @param listener
+	 *            a Listener to notify as each household is completed, or
+	 *            <code>null</code>
+	 * @return the PopulationAggregate. If the run was cancelled, this holds
+	 *         the households completed before cancellation.
+	 * @throws IOException
+	 *             if the model data cannot be read
+	 * @throws InterruptedException
+	 *             if interrupted while waiting for the workers
+	 */
+	public PopulationAggregate run(Listener listener) throws IOException,
+			InterruptedException {
+
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		List<Future<Void>> workers = new ArrayList<Future<Void>>(threads);
+		try {
+			for (int t = 0; t < threads; t++) {
+				workers.add(executor.submit(new Worker(listener)));
+			}
+
+			for (Future<Void> f : workers) {
+				try {
+					f.get();
+				} catch (ExecutionException e) {
+					cancelled = true;
+					if (e.getCause() instanceof IOException)
+						throw (IOException) e.getCause();
+					throw new IllegalStateException(e.getCause());
+				}
+			}
+		} catch (InterruptedException e) {
+			cancelled = true;
+			throw e;
+		} finally {
+			executor.shutdown();
+		}
+
+		return aggregate;
+	}
+
+	/**
+	 * Simulates households until none are left.
+	 */
+	private class Worker implements Callable<Void> {
+
+		private Listener listener;
+
+		private Worker(Listener listener) {
+			this.listener = listener;
+		}
+
+		@Override
+		public Void call() throws IOException {
+			int i;
+			while (!cancelled && (i = next.getAndIncrement()) < specs.size()) {
+				RandomStreams streams = RandomStreams.forHousehold(seed, first
+						+ i);
+				streams.setFastVariates(fastVariates);
+				HouseholdSimulator h = new HouseholdSimulator(specs.get(i),
+						streams, parameters);
+				h.setRunLighting(runLighting);
+				h.setRunAppliances(runAppliances);
+				HouseholdResult result = HouseholdResult.simulate(first + i,
+						h);
+				aggregate.add(result);
+				int n = completed.incrementAndGet();
+				if (listener != null)
+					listener.householdCompleted(result, n);
+			}
+			return null;
+		}
+	}
+
+	/**
+	 * Sets whether the households draw normal and exponential values with the
+	 * ziggurat kernels of {@link RandomVariates}. This must be set before the
+	 * run is started.
+	 *
+	 * @param fast
+	 *            a boolean indicating if the ziggurat kernels should be used
+	 * @see RandomStreams#setFastVariates(boolean)
+	 */
+	public void setFastVariates(boolean fast) {
+		this.fastVariates = fast;
+	}
+
+	/**
+	 * Sets whether the lighting of each household is simulated. If not, the
+	 * lighting demand is zero. This must be set before the run is started.
+	 *
+	 * @param run
+	 *            a boolean indicating if the lighting should be simulated
+	 * @see HouseholdSimulator#setRunLighting(boolean)
+	 */
+	public void setRunLighting(boolean run) {
+		this.runLighting = run;
+	}
+
+	/**
+	 * Sets whether the appliances of each household are simulated. If not,
+	 * the appliance demand is zero. This must be set before the run is
+	 * started.
+	 *
+	 * @param run
+	 *            a boolean indicating if the appliances should be simulated
+	 * @see HouseholdSimulator#setRunAppliances(boolean)
+	 */
+	public void setRunAppliances(boolean run) {
+		this.runAppliances = run;
+	}
+
+	/**
+	 * Cancels the run. Households that are being simulated are completed, but
+	 * no new households are started.
+	 */
+	public void cancel() {
+		cancelled = true;
+	}
+
+	/**
+	 * Has the run been cancelled?
+	 *
+	 * @return <code>true</code> if the run was cancelled
+	 */
+	public boolean isCancelled() {
+		return cancelled;
+	}
+
+	/**
+	 * Gets the number of households completed so far.
+	 *
+	 * @return an int
+	 */
+	public int getCompleted() {
+		return completed.get();
+	}
+
+	/**
+	 * Gets the aggregate of the households completed so far.
+	 *
+	 * @return the PopulationAggregate
+	 */
+	public PopulationAggregate getAggregate() {
+		return aggregate;
+	}
+}
@@ -1,7 +1,5 @@
 package uk.ac.imperial.simelec;
 
-import cern.jet.random.Uniform;
-
 /**
  * Describes a single light bulb.
  * 
@@ -10,6 +8,10 @@ import cern.jet.random.Uniform;
  */
 public class Bulb extends Load {
 
+	// This calibration scaler is used to ensure that the output of a Bulb
+	// provides a sensible average output over a large number of runs.
+	static final float CALIBRATION = 0.008153686f;
+
 	// Member fields
 	protected int rating; // in Watts
 	protected float weight; // dimensionless
@@ -45,7 +47,22 @@ public class Bulb extends Load {
 	 *            an int giving the power consumption in Watts
 	 */
 	public Bulb(int id, int rating) {
-		this(id, rating, Bulb.getCalibratedWeight());		
+		this(id, rating, RandomStream.GLOBAL);
+	}
+
+	/**
+	 * Create a new Bulb with a specified id and rating, drawing its weight from
+	 * a specified random number stream.
+	 * 
+	 * @param id
+	 *            an int giving a numeric id
+	 * @param rating
+	 *            an int giving the power consumption in Watts
+	 * @param random
+	 *            the RandomStream from which to draw the bulb weighting
+	 */
+	public Bulb(int id, int rating, RandomStream random) {
+		this(id, rating, Bulb.getCalibratedWeight(random));
 	}
 
 	/**
@@ -53,17 +70,28 @@ public class Bulb extends Load {
 	 * the average consumption of the Bulb over a large number of simulations
 	 * reflects observed consumption from UK data.
 	 * 
+	 * @param random
+	 *            the RandomStream to draw from
 	 * @return a float giving a calibrated weight
 	 */
-	protected static float getCalibratedWeight() {
+	protected static float getCalibratedWeight(RandomStream random) {
+		return getCalibratedWeight(random, CALIBRATION);
+	}
 
-		// This calibration scaler is used to ensure that the output of a Bulb
-		// provides a sensible average output over a large number of runs.
-		float calibration = 0.008153686f;
+	/**
+	 * Gets a random calibrated weight using a specified calibration scaler.
+	 * 
+	 * @param random
+	 *            the RandomStream to draw from
+	 * @param calibration
+	 *            a float giving the calibration scaler, which is the mean
+	 *            weight
+	 * @return a float giving a calibrated weight
+	 */
+	static float getCalibratedWeight(RandomStream random, float calibration) {
 
 		// Calculate the random bulb use weighting
-		float randomWeight = (float) (-calibration * Math.log(Uniform
-				.staticNextDouble()));
+		float randomWeight = (float) random.nextExponential(calibration);
 
 		return randomWeight;
 	}
@@ -0,0 +1,501 @@
+package uk.ac.imperial.simelec;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import au.com.bytecode.opencsv.CSVWriter;
+
+/**
+ * Fits the appliance calibration constants so that the simulated mean annual
+ * energy of each appliance, per household owning it, matches a target. By
+ * default the targets are the annual energy figures in
+ * <code>appliances.csv</code>.
+ *
+ * Each iteration simulates the appliances of a sample of households and scales
+ * each calibration constant by the ratio of the target to the simulated energy
+ * drawn above standby. Household <code>i</code> always has the same
+ * specification and random streams, so successive iterations see common
+ * random numbers. The sample starts small and is doubled whenever the
+ * remaining errors are no larger than the sampling error.
+ *
+ * @author James Keirstead
+ *
+ */
+public class CalibrationFitter {
+
+	// Member fields
+	private List<HouseholdSpec> population;
+	private long seed;
+	private int threads;
+	private ApplianceCatalogue catalogue;
+	private double[] target;
+	private double tolerance = 0.02;
+	private int initialHouseholds = 420;
+	private int maxHouseholds = 420 * 64;
+	private int maxIterations = 50;
+
+	// Results
+	private double[] calibration;
+	private double[] energy;
+	private double[] error;
+	private int iterations;
+	private int households;
+	private boolean converged;
+
+	/**
+	 * Creates a CalibrationFitter for a population which is balanced across the
+	 * year. See {@link #getAnnualPopulation()}.
+	 *
+	 * @param seed
+	 *            a long giving the scenario seed
+	 * @param threads
+	 *            an int giving the number of worker threads
+	 * @throws IOException
+	 *             if the model data cannot be read
+	 */
+	public CalibrationFitter(long seed, int threads) throws IOException {
+		this(getAnnualPopulation(), seed, threads);
+	}
+
+	/**
+	 * Creates a CalibrationFitter for a specified population.
+	 *
+	 * @param population
+	 *            a List of HouseholdSpec objects. Household <code>i</code> of
+	 *            the sample is given specification <code>i</code> modulo the
+	 *            size of the list, so the list should be balanced across the
+	 *            year.
+	 * @param seed
+	 *            a long giving the scenario seed
+	 * @param threads
+	 *            an int giving the number of worker threads
+	 * @throws IOException
+	 *             if the model data cannot be read
+	 */
+	public CalibrationFitter(List<HouseholdSpec> population, long seed,
+			int threads) throws IOException {
+		if (population.isEmpty())
+			throw new IllegalArgumentException("The population is empty");
+
+		this.population = population;
+		this.seed = seed;
+		this.threads = Math.max(1, threads);
+		this.catalogue = ModelData.getApplianceCatalogue();
+		this.target = catalogue.energy.clone();
+	}
+
+	/**
+	 * Gets a population with every combination of month, number of residents
+	 * and day of the week, in which two days in seven are weekends.
+	 *
+	 * @return a List of 420 HouseholdSpec objects
+	 */
+	public static List<HouseholdSpec> getAnnualPopulation() {
+		List<HouseholdSpec> specs = new ArrayList<HouseholdSpec>(420);
+		for (int residents = 1; residents <= 5; residents++) {
+			for (int day = 0; day < 7; day++) {
+				for (int month = 1; month <= 12; month++) {
+					specs.add(new HouseholdSpec(month, residents, day >= 5));
+				}
+			}
+		}
+		return specs;
+	}
+
+	/**
+	 * Sets the target annual energy of an appliance.
+	 *
+	 * @param id
+	 *            a String giving the appliance id
+	 * @param kWh
+	 *            a non-negative double giving the mean annual energy per
+	 *            household owning the appliance (kWh)
+	 */
+	public void setTarget(String id, double kWh) {
+		if (!(kWh >= 0))
+			throw new IllegalArgumentException("Invalid target " + kWh);
+		target[getIndex(id)] = kWh;
+	}
+
+	/**
+	 * Gets the target annual energy of an appliance.
+	 *
+	 * @param id
+	 *            a String giving the appliance id
+	 * @return a double (kWh)
+	 */
+	public double getTarget(String id) {
+		return target[getIndex(id)];
+	}
+
+	/**
+	 * Sets the relative error at which an appliance is considered calibrated.
+	 * The default is 0.02.
+	 *
+	 * @param tolerance
+	 *            a positive double
+	 */
+	public void setTolerance(double tolerance) {
+		if (!(tolerance > 0))
+			throw new IllegalArgumentException("Invalid tolerance "
+					+ tolerance);
+		this.tolerance = tolerance;
+	}
+
+	/**
+	 * Sets the smallest and largest number of households to simulate in each
+	 * iteration. The defaults are 420 and 26880.
+	 *
+	 * @param initial
+	 *            an int giving the number of households in the first iteration
+	 * @param max
+	 *            an int giving the largest number of households
+	 */
+	public void setSampleSizes(int initial, int max) {
+		if (initial < 1 || max < initial)
+			throw new IllegalArgumentException(String.format(
+					"Invalid sample sizes %d and %d", initial, max));
+		this.initialHouseholds = initial;
+		this.maxHouseholds = max;
+	}
+
+	/**
+	 * Sets the largest number of iterations. The default is 50.
+	 *
+	 * @param max
+	 *            a positive int
+	 */
+	public void setMaxIterations(int max) {
+		if (max < 1)
+			throw new IllegalArgumentException("Invalid iterations " + max);
+		this.maxIterations = max;
+	}
+
+	/**
+	 * Fits the calibration constants, starting from the values in
+	 * <code>appliances.csv</code>.
+	 *
+	 * @return a ModelParameters holding the fitted calibration constants
+	 * @throws IOException
+	 *             if the model data cannot be read
+	 * @throws InterruptedException
+	 *             if interrupted while waiting for the workers
+	 */
+	public ModelParameters fit() throws IOException, InterruptedException {
+		return fit(new ModelParameters());
+	}
+
+	/**
+	 * Fits the calibration constants.
+	 *
+	 * @param start
+	 *            the ModelParameters giving the initial calibration constants
+	 *            and the other model parameters
+	 * @return a copy of <code>start</code> holding the fitted calibration
+	 *         constants
+	 * @throws IOException
+	 *             if the model data cannot be read
+	 * @throws InterruptedException
+	 *             if interrupted while waiting for the workers
+	 */
+	public ModelParameters fit(ModelParameters start) throws IOException,
+			InterruptedException {
+
+		ModelParameters p = new ModelParameters(start);
+		calibration = p.getApplianceCalibration(catalogue);
+		households = initialHouseholds;
+		converged = false;
+
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			for (iterations = 1; iterations <= maxIterations; iterations++) {
+				for (int i = 0; i < calibration.length; i++)
+					p.setApplianceCalibration(catalogue.ids[i], calibration[i]);
+
+				Sample sample = simulate(executor, p);
+				energy = sample.getEnergy();
+				error = sample.getStandardError();
+
+				// Check whether every appliance is within the tolerance, and
+				// whether the sample is large enough to tell
+				boolean done = true;
+				boolean noisy = false;
+				for (int i = 0; i < calibration.length; i++) {
+					if (!isFitted(i, sample))
+						continue;
+					double e = Math.abs(energy[i] - target[i]) / target[i];
+					double se = error[i] / target[i];
+					if (e > tolerance
+							|| (se > tolerance / 2 && households < maxHouseholds))
+						done = false;
+					if (e <= 2 * se)
+						noisy = true;
+				}
+
+				if (done) {
+					converged = true;
+					break;
+				}
+
+				// Keep the calibration that gave the last sample, so that the
+				// results describe the returned parameters
+				if (iterations == maxIterations)
+					break;
+
+				// Scale the calibration of each appliance, limiting the change
+				// when few cycles were seen
+				for (int i = 0; i < calibration.length; i++) {
+					if (!isFitted(i, sample))
+						continue;
+					double standby = sample.getStandbyEnergy(i);
+					double active = energy[i] - standby;
+					double ratio = active > 0 ? (target[i] - standby) / active
+							: 4;
+					calibration[i] *= Math.max(0.25, Math.min(4, ratio));
+				}
+
+				if (noisy && households < maxHouseholds)
+					households = Math.min(2 * households, maxHouseholds);
+			}
+		} finally {
+			executor.shutdown();
+		}
+
+		for (int i = 0; i < calibration.length; i++)
+			p.setApplianceCalibration(catalogue.ids[i], calibration[i]);
+		return p;
+	}
+
+	/**
+	 * Can the energy of an appliance be fitted? Appliances which only draw
+	 * standby power, whose standby consumption already exceeds the target, or
+	 * whose use does not depend on the calibration are left unchanged.
+	 */
+	private boolean isFitted(int i, Sample sample) {
+		return catalogue.profile[i] != ApplianceCatalogue.CUSTOM
+				&& catalogue.cyclesPerYear[i] >= 1
+				&& target[i] > sample.getStandbyEnergy(i);
+	}
+
+	/**
+	 * Simulates the appliances of the first <code>households</code>
+	 * households of the sample.
+	 */
+	private Sample simulate(ExecutorService executor,
+			final ModelParameters parameters) throws IOException,
+			InterruptedException {
+
+		List<Future<Sample>> futures = new ArrayList<Future<Sample>>(threads);
+		for (int t = 0; t < threads; t++) {
+			final int first = t;
+			futures.add(executor.submit(new Callable<Sample>() {
+				@Override
+				public Sample call() throws IOException {
+					Sample s = new Sample(catalogue.size());
+					for (int h = first; h < households; h += threads) {
+						s.add(h, parameters);
+					}
+					return s;
+				}
+			}));
+		}
+
+		Sample total = new Sample(catalogue.size());
+		for (Future<Sample> f : futures) {
+			try {
+				total.merge(f.get());
+			} catch (ExecutionException e) {
+				if (e.getCause() instanceof IOException)
+					throw (IOException) e.getCause();
+				throw new IllegalStateException(e.getCause());
+			}
+		}
+		return total;
+	}
+
+	/**
+	 * The annual energy of each appliance over a sample of households.
+	 */
+	private class Sample {
+
+		private long[] owners;
+		private double[] sum;
+		private double[] sumSquares;
+		private double[] standby;
+
+		private Sample(int n) {
+			owners = new long[n];
+			sum = new double[n];
+			sumSquares = new double[n];
+			standby = new double[n];
+		}
+
+		/**
+		 * Simulates one household and adds the annual energy of each
+		 * appliance it owns.
+		 */
+		private void add(int h, ModelParameters parameters) throws IOException {
+			HouseholdSpec spec = population.get(h % population.size());
+			RandomStreams streams = RandomStreams.forHousehold(seed, h);
+			int[] occupancy = OccupancyModel.simulate(spec.getResidents(),
+					spec.isWeekend(), streams.get(RandomStreams.OCCUPANCY));
+			ApplianceState state = new ApplianceState(catalogue, streams,
+					parameters);
+
+			for (int i : state.ownedIndices) {
+				double e = 0;
+				double s = 0;
+				for (int t = 0; t < HouseholdSimulator.MINUTES; t++) {
+					int p = state.step(i, t, occupancy, spec.isWeekend(),
+							spec.getMonth());
+					e += p;
+					if (p == catalogue.standby[i])
+						s += p;
+				}
+
+				// Convert from W-minutes per day to kWh per year
+				e *= 365.0 / 60 / 1000;
+				s *= 365.0 / 60 / 1000;
+				owners[i]++;
+				sum[i] += e;
+				sumSquares[i] += e * e;
+				standby[i] += s;
+			}
+		}
+
+		private void merge(Sample other) {
+			for (int i = 0; i < owners.length; i++) {
+				owners[i] += other.owners[i];
+				sum[i] += other.sum[i];
+				sumSquares[i] += other.sumSquares[i];
+				standby[i] += other.standby[i];
+			}
+		}
+
+		private double[] getEnergy() {
+			double[] result = new double[owners.length];
+			for (int i = 0; i < result.length; i++)
+				result[i] = owners[i] == 0 ? 0 : sum[i] / owners[i];
+			return result;
+		}
+
+		private double getStandbyEnergy(int i) {
+			return owners[i] == 0 ? 0 : standby[i] / owners[i];
+		}
+
+		private double[] getStandardError() {
+			double[] result = new double[owners.length];
+			for (int i = 0; i < result.length; i++) {
+				long n = owners[i];
+				if (n < 2) {
+					result[i] = Double.POSITIVE_INFINITY;
+				} else {
+					double mean = sum[i] / n;
+					double var = Math.max(0, (sumSquares[i] - n * mean * mean)
+							/ (n - 1));
+					result[i] = Math.sqrt(var / n);
+				}
+			}
+			return result;
+		}
+	}
+
+	private int getIndex(String id) {
+		int i = catalogue.indexOf(id.toUpperCase());
+		if (i < 0)
+			throw new IllegalArgumentException("Unknown appliance " + id);
+		return i;
+	}
+
+	/**
+	 * Gets the fitted calibration constant of an appliance.
+	 *
+	 * @param id
+	 *            a String giving the appliance id
+	 * @return a double
+	 */
+	public double getCalibration(String id) {
+		return calibration[getIndex(id)];
+	}
+
+	/**
+	 * Gets the simulated annual energy of an appliance in the last iteration.
+	 *
+	 * @param id
+	 *            a String giving the appliance id
+	 * @return a double giving the mean annual energy per household owning the
+	 *         appliance (kWh)
+	 */
+	public double getEnergy(String id) {
+		return energy[getIndex(id)];
+	}
+
+	/**
+	 * Gets the standard error of the simulated annual energy of an appliance
+	 * in the last iteration.
+	 *
+	 * @param id
+	 *            a String giving the appliance id
+	 * @return a double (kWh)
+	 */
+	public double getStandardError(String id) {
+		return error[getIndex(id)];
+	}
+
+	/**
+	 * Gets the number of iterations used by the last fit.
+	 *
+	 * @return an int
+	 */
+	public int getIterations() {
+		return iterations;
+	}
+
+	/**
+	 * Gets the number of households simulated in the last iteration.
+	 *
+	 * @return an int
+	 */
+	public int getHouseholds() {
+		return households;
+	}
+
+	/**
+	 * Did the last fit converge?
+	 *
+	 * @return <code>true</code> if every appliance was within the tolerance of
+	 *         its target
+	 */
+	public boolean isConverged() {
+		return converged;
+	}
+
+	/**
+	 * Writes the results of the last fit as a CSV table, giving the target,
+	 * simulated energy and standard error (kWh) and fitted calibration of
+	 * each appliance.
+	 *
+	 * @param out
+	 *            the Writer to write to. This is flushed but not closed.
+	 * @throws IOException
+	 *             if the table cannot be written
+	 */
+	public void write(Writer out) throws IOException {
+		CSVWriter writer = new CSVWriter(out, ',', '\0');
+		writer.writeNext(new String[] { "appliance", "target_kwh",
+				"simulated_kwh", "standard_error_kwh", "calibration" });
+		for (int i = 0; i < catalogue.size(); i++) {
+			writer.writeNext(new String[] { catalogue.ids[i],
+					String.valueOf(target[i]), String.valueOf(energy[i]),
+					String.valueOf(error[i]), String.valueOf(calibration[i]) });
+		}
+		writer.flush();
+	}
+}
@@ -0,0 +1,196 @@
+package uk.ac.imperial.simelec;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Steps a population of households through the day for coupling with an
+ * external model, such as a power-flow solver. Each call to
+ * {@link #step(int)} advances every household by one minute and returns its
+ * demand, and between steps the external model can send signals to the
+ * households, for example to curtail appliances.
+ *
+ * The households may be stepped in parallel blocks on an ExecutorService.
+ * Each block is always stepped by a single task, and the results do not
+ * depend on the number of blocks.
+ *
+ * @author James Keirstead
+ *
+ */
+public class CoSimulation {
+
+	// Member fields
+	private HouseholdSimulator[] households;
+	private double[] demand;
+	private int time = -1;
+	private ExecutorService executor;
+	private List<Callable<Void>> blocks;
+
+	/**
+	 * Creates a new CoSimulation which steps the households on the calling
+	 * thread. Household <code>i</code> takes its random numbers from
+	 * {@link RandomStreams#forHousehold(long, long)}.
+	 *
+	 * @param specs
+	 *            a List of HouseholdSpec objects
+	 * @param seed
+	 *            a long giving the scenario seed
+	 * @throws IOException
+	 *             if the model data cannot be read
+	 */
+	public CoSimulation(List<HouseholdSpec> specs, long seed)
+			throws IOException {
+		this(specs, seed, null, 1);
+	}
+
+	/**
+	 * Creates a new CoSimulation which steps the households in parallel
+	 * blocks.
+	 *
+	 * @param specs
+	 *            a List of HouseholdSpec objects
+	 * @param seed
+	 *            a long giving the scenario seed
+	 * @param executor
+	 *            the ExecutorService on which to step the blocks, or
+	 *            <code>null</code> to use the calling thread
+	 * @param nBlocks
+	 *            an int giving the number of blocks, typically the number of
+	 *            threads available to the executor
+	 * @throws IOException
+	 *             if the model data cannot be read
+	 */
+	public CoSimulation(List<HouseholdSpec> specs, long seed,
+			ExecutorService executor, int nBlocks) throws IOException {
+
+		households = new HouseholdSimulator[specs.size()];
+		for (int i = 0; i < households.length; i++) {
+			households[i] = new HouseholdSimulator(specs.get(i),
+					RandomStreams.forHousehold(seed, i));
+		}
+		demand = new double[households.length];
+
+		this.executor = executor;
+		if (nBlocks < 1)
+			nBlocks = 1;
+		blocks = new ArrayList<Callable<Void>>(nBlocks);
+		for (int b = 0; b < nBlocks; b++) {
+			final int from = (int) ((long) households.length * b / nBlocks);
+			final int to = (int) ((long) households.length * (b + 1) / nBlocks);
+			blocks.add(new Callable<Void>() {
+				@Override
+				public Void call() {
+					stepBlock(from, to);
+					return null;
+				}
+			});
+		}
+	}
+
+	/**
+	 * Advances every household by one minute.
+	 *
+	 * @param minute
+	 *            an int giving the minute to simulate. This must be the minute
+	 *            after the last one simulated, starting from 0.
+	 * @return an array giving the demand of each household during the minute
+	 *         (W). The array is overwritten by the next step.
+	 * @throws InterruptedException
+	 *             if interrupted while waiting for the blocks to finish
+	 */
+	public double[] step(int minute) throws InterruptedException {
+		if (minute != time + 1 || minute >= HouseholdSimulator.MINUTES)
+			throw new IllegalArgumentException(String.format(
+					"Cannot step to minute %d after minute %d", minute, time));
+
+		if (executor == null || blocks.size() == 1) {
+			stepBlock(0, households.length);
+		} else {
+			List<Future<Void>> results = executor.invokeAll(blocks);
+			for (Future<Void> f : results) {
+				try {
+					f.get();
+				} catch (ExecutionException e) {
+					throw new IllegalStateException(e.getCause());
+				}
+			}
+		}
+
+		time = minute;
+		return demand;
+	}
+
+	/**
+	 * Steps a contiguous block of households.
+	 */
+	private void stepBlock(int from, int to) {
+		for (int i = from; i < to; i++) {
+			demand[i] = households[i].step();
+		}
+	}
+
+	/**
+	 * Curtails a household, preventing its appliances from starting new
+	 * cycles until the curtailment is lifted.
+	 *
+	 * @param household
+	 *            an int giving the household index
+	 * @param curtailed
+	 *            a boolean indicating whether the household is curtailed
+	 */
+	public void setCurtailed(int household, boolean curtailed) {
+		households[household].setStartsAllowed(!curtailed);
+	}
+
+	/**
+	 * Curtails an appliance in a household, preventing it from starting new
+	 * cycles until the curtailment is lifted.
+	 *
+	 * @param household
+	 *            an int giving the household index
+	 * @param appliance
+	 *            a String giving the appliance id
+	 * @param curtailed
+	 *            a boolean indicating whether the appliance is curtailed
+	 */
+	public void setCurtailed(int household, String appliance,
+			boolean curtailed) {
+		households[household].setStartAllowed(appliance, !curtailed);
+	}
+
+	/**
+	 * Gets the number of households.
+	 *
+	 * @return an int
+	 */
+	public int size() {
+		return households.length;
+	}
+
+	/**
+	 * Gets the last minute simulated.
+	 *
+	 * @return an int giving the minute (0-1439), or -1 if no minutes have been
+	 *         simulated
+	 */
+	public int getTime() {
+		return time;
+	}
+
+	/**
+	 * Gets a household.
+	 *
+	 * @param household
+	 *            an int giving the household index
+	 * @return the HouseholdSimulator, which gives the lighting and appliance
+	 *         demand separately
+	 */
+	public HouseholdSimulator getHousehold(int household) {
+		return households[household];
+	}
+}
@@ -0,0 +1,292 @@
+package uk.ac.imperial.simelec;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * A binary copy of the model data, compiled from the bundled CSV files when
+ * SimElec is packaged. Reading the snapshot is much faster than parsing the
+ * CSV files, which shortens the time taken to simulate the first household.
+ *
+ * The snapshot is a digest of the CSV files from which it was compiled,
+ * followed by a sequence of big-endian arrays, each preceded by its length.
+ * It is bundled in the jar as {@value #RESOURCE} and is read by
+ * {@link ModelData} if present and compiled from the current CSV files.
+ *
+ * @author James Keirstead
+ *
+ */
+public class DataSnapshot {
+
+	/** The name of the bundled snapshot resource */
+	public static final String RESOURCE = "/data/snapshot.bin";
+
+	// Format identifiers
+	private static final int MAGIC = 0x53454C44;
+	private static final int VERSION = 3;
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	// Model data
+	final byte[] sources;
+	final int[][] irradiance;
+	final int[][] bulbs;
+	final ApplianceCatalogue appliances;
+	final double[][][] startStates;
+	final double[][][][] transitions;
+
+	private DataSnapshot(byte[] sources, int[][] irradiance, int[][] bulbs,
+			ApplianceCatalogue appliances, double[][][] startStates,
+			double[][][][] transitions) {
+		this.sources = sources;
+		this.irradiance = irradiance;
+		this.bulbs = bulbs;
+		this.appliances = appliances;
+		this.startStates = startStates;
+		this.transitions = transitions;
+	}
+
+	/**
+	 * Creates a DataSnapshot by parsing the bundled CSV files. Any existing
+	 * snapshot is ignored.
+	 *
+	 * @return a new DataSnapshot
+	 * @throws IOException
+	 *             if the data files cannot be read
+	 */
+	public static DataSnapshot fromCsv() throws IOException {
+		double[][][] startStates = new double[2][][];
+		double[][][][] transitions = new double[2][6][][];
+		for (int d = 0; d < 2; d++) {
+			startStates[d] = ModelData.parseOccupancyStartStates(d == 1);
+			for (int r = 1; r <= 5; r++) {
+				transitions[d][r] = ModelData.parseTransitionProbabilities(r,
+						d == 1);
+			}
+		}
+
+		return new DataSnapshot(ModelData.getBundledDigest(),
+				ModelData.parseIrradiance(),
+				ModelData.parseBulbConfigurations(),
+				ModelData.parseApplianceCatalogue(), startStates, transitions);
+	}
+
+	/**
+	 * Writes this snapshot.
+	 *
+	 * @param os
+	 *            the OutputStream to write to. This is not closed.
+	 * @throws IOException
+	 *             if the snapshot cannot be written
+	 */
+	public void write(OutputStream os) throws IOException {
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+				os));
+		out.writeInt(MAGIC);
+		out.writeInt(VERSION);
+		out.writeInt(sources.length);
+		out.write(sources);
+
+		writeInts(out, irradiance);
+		writeInts(out, bulbs);
+		appliances.write(out);
+		for (int d = 0; d < 2; d++) {
+			writeDoubles(out, startStates[d]);
+			for (int r = 1; r <= 5; r++) {
+				writeDoubles(out, transitions[d][r]);
+			}
+		}
+		out.flush();
+	}
+
+	/**
+	 * Reads a snapshot.
+	 *
+	 * @param is
+	 *            the InputStream to read from. This is not closed.
+	 * @return a new DataSnapshot
+	 * @throws IOException
+	 *             if the snapshot cannot be read or is not valid
+	 */
+	public static DataSnapshot read(InputStream is) throws IOException {
+
+		// Read the whole snapshot at once so that the arrays can be copied
+		// out in bulk
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 * 1024);
+		byte[] buffer = new byte[16 * 1024];
+		int n;
+		while ((n = is.read(buffer)) != -1) {
+			bytes.write(buffer, 0, n);
+		}
+		ByteBuffer in = ByteBuffer.wrap(bytes.toByteArray());
+
+		try {
+			if (in.getInt() != MAGIC)
+				throw new IOException("Not a SimElec data snapshot");
+			int version = in.getInt();
+			if (version != VERSION)
+				throw new IOException(String.format(
+						"Unsupported data snapshot version %d", version));
+
+			byte[] sources = new byte[in.getInt()];
+			in.get(sources);
+			int[][] irradiance = readInts2(in);
+			int[][] bulbs = readInts2(in);
+			ApplianceCatalogue appliances = new ApplianceCatalogue(in);
+			double[][][] startStates = new double[2][][];
+			double[][][][] transitions = new double[2][6][][];
+			for (int d = 0; d < 2; d++) {
+				startStates[d] = readDoubles2(in);
+				for (int r = 1; r <= 5; r++) {
+					transitions[d][r] = readDoubles2(in);
+				}
+			}
+
+			return new DataSnapshot(sources, irradiance, bulbs, appliances,
+					startStates, transitions);
+		} catch (BufferUnderflowException e) {
+			throw new IOException("Truncated data snapshot", e);
+		}
+	}
+
+	/**
+	 * Was this snapshot compiled from the bundled CSV files? A snapshot left
+	 * over from a build with different data files is not.
+	 *
+	 * @return <code>true</code> if the CSV files are unchanged
+	 * @throws IOException
+	 *             if the CSV files cannot be read
+	 */
+	public boolean isCurrent() throws IOException {
+		return Arrays.equals(sources, ModelData.getBundledDigest());
+	}
+
+	static void writeInts(DataOutputStream out, int[] data)
+			throws IOException {
+		out.writeInt(data.length);
+		for (int x : data)
+			out.writeInt(x);
+	}
+
+	static void writeInts(DataOutputStream out, int[][] data)
+			throws IOException {
+		out.writeInt(data.length);
+		for (int[] row : data)
+			writeInts(out, row);
+	}
+
+	static void writeDoubles(DataOutputStream out, double[] data)
+			throws IOException {
+		out.writeInt(data.length);
+		for (double x : data)
+			out.writeDouble(x);
+	}
+
+	static void writeDoubles(DataOutputStream out, double[][] data)
+			throws IOException {
+		out.writeInt(data.length);
+		for (double[] row : data)
+			writeDoubles(out, row);
+	}
+
+	static void writeBooleans(DataOutputStream out, boolean[] data)
+			throws IOException {
+		out.writeInt(data.length);
+		for (boolean x : data)
+			out.writeBoolean(x);
+	}
+
+	static void writeStrings(DataOutputStream out, String[] data)
+			throws IOException {
+		out.writeInt(data.length);
+		for (String s : data) {
+			byte[] b = s.getBytes(UTF8);
+			out.writeInt(b.length);
+			out.write(b);
+		}
+	}
+
+	static int[] readInts(ByteBuffer in) {
+		int[] data = new int[in.getInt()];
+		in.asIntBuffer().get(data);
+		in.position(in.position() + 4 * data.length);
+		return data;
+	}
+
+	static int[][] readInts2(ByteBuffer in) {
+		int[][] data = new int[in.getInt()][];
+		for (int i = 0; i < data.length; i++)
+			data[i] = readInts(in);
+		return data;
+	}
+
+	static double[] readDoubles(ByteBuffer in) {
+		double[] data = new double[in.getInt()];
+		in.asDoubleBuffer().get(data);
+		in.position(in.position() + 8 * data.length);
+		return data;
+	}
+
+	static double[][] readDoubles2(ByteBuffer in) {
+		double[][] data = new double[in.getInt()][];
+		for (int i = 0; i < data.length; i++)
+			data[i] = readDoubles(in);
+		return data;
+	}
+
+	static boolean[] readBooleans(ByteBuffer in) {
+		boolean[] data = new boolean[in.getInt()];
+		for (int i = 0; i < data.length; i++)
+			data[i] = in.get() != 0;
+		return data;
+	}
+
+	static String[] readStrings(ByteBuffer in) {
+		String[] data = new String[in.getInt()];
+		for (int i = 0; i < data.length; i++) {
+			byte[] b = new byte[in.getInt()];
+			in.get(b);
+			data[i] = new String(b, UTF8);
+		}
+		return data;
+	}
+
+	/**
+	 * Compiles the bundled CSV files into a snapshot. This is run when SimElec
+	 * is packaged.
+	 *
+	 * @param args
+	 *            a single argument giving the snapshot file to write
+	 * @throws IOException
+	 *             if the snapshot cannot be written
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length != 1) {
+			System.err.println("Usage: DataSnapshot <output file>");
+			System.exit(1);
+		}
+
+		File file = new File(args[0]);
+		File parent = file.getAbsoluteFile().getParentFile();
+		if (!parent.exists())
+			parent.mkdirs();
+
+		OutputStream os = new FileOutputStream(file);
+		try {
+			fromCsv().write(os);
+		} finally {
+			os.close();
+		}
+		System.out.printf("Wrote data snapshot to %s (%d bytes)%n",
+				file.getPath(), file.length());
+	}
+}
@@ -1,9 +1,5 @@
 package uk.ac.imperial.simelec;
 
-import cern.jet.random.Uniform;
-import cern.jet.random.engine.MersenneTwister;
-import cern.jet.random.engine.RandomEngine;
-
 /**
  * Describes a discrete probability density function.
  * 
@@ -71,13 +67,24 @@ public class DiscretePDF {
 	 * @return an integer giving the index of the selected interval
 	 */
 	public int getRandomIndex() {
+		return getRandomIndex(RandomStream.GLOBAL);
+	}
+
+	/**
+	 * Draw from this DiscretePDF using a specified random number stream.
+	 * 
+	 * @param random
+	 *            the RandomStream to draw from
+	 * @return an integer giving the index of the selected interval
+	 */
+	public int getRandomIndex(RandomStream random) {
 
 		if (this.sum()!=1f) {
 			this.normalize();
 		}
 		
 		// Draw a random value value
-		float rand = (float) Uniform.staticNextDouble();
+		float rand = (float) random.nextDouble();
 		
 		// Initialize the loop
 		int interval = 0;
@@ -122,8 +129,7 @@ public class DiscretePDF {
 	 *            an int giving the seed
 	 */
 	public static void setSeed(int seed) {
-		RandomEngine engine = new MersenneTwister(seed);
-		Uniform.staticSetRandomEngine(engine);
+		RandomStream.setGlobalSeed(seed);
 	}
 	
 	
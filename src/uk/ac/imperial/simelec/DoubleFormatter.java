@@ -0,0 +1,178 @@
+package uk.ac.imperial.simelec;
+
+/**
+ * Formats doubles as decimal text directly into a byte buffer, for writing
+ * the load profiles. Whole numbers, such as standby powers and bulb ratings,
+ * are written as integers without a decimal point. Other values are written
+ * with as few decimal places as read back to exactly the same double, or
+ * rounded to a fixed number of decimal places if a precision is set.
+ *
+ * Values with eighteen or more digits before the decimal point or very small
+ * magnitudes are left to {@link Double#toString(double)}. A DoubleFormatter
+ * reuses its buffer and so must not be shared between threads.
+ *
+ * @author James Keirstead
+ *
+ */
+final class DoubleFormatter {
+
+	/** The largest number of characters written for one value */
+	static final int MAX_LENGTH = 32;
+
+	/** The largest supported number of decimal places */
+	static final int MAX_PRECISION = 15;
+
+	// Powers of ten which are exactly representable as doubles
+	private static final double[] POWERS = new double[18];
+	static {
+		POWERS[0] = 1;
+		for (int i = 1; i < POWERS.length; i++)
+			POWERS[i] = POWERS[i - 1] * 10;
+	}
+
+	// Integers above this may not be exactly representable
+	private static final double EXACT = 1L << 53;
+
+	// Member fields
+	private int precision;
+	private byte[] buffer = new byte[MAX_LENGTH];
+	private char[] chars = new char[MAX_LENGTH];
+
+	/**
+	 * Creates a DoubleFormatter which writes the shortest exact form of each
+	 * value.
+	 */
+	DoubleFormatter() {
+		this(-1);
+	}
+
+	/**
+	 * Creates a DoubleFormatter with a fixed number of decimal places.
+	 *
+	 * @param precision
+	 *            an int giving the number of decimal places (0 to 15), or -1
+	 *            to write the shortest exact form of each value. Trailing
+	 *            zeros are not written.
+	 * @throws IllegalArgumentException
+	 *             if the precision is out of range
+	 */
+	DoubleFormatter(int precision) {
+		if (precision < -1 || precision > MAX_PRECISION)
+			throw new IllegalArgumentException(String.format(
+					"Precision of %d decimal places is not supported",
+					precision));
+		this.precision = precision;
+	}
+
+	/**
+	 * Formats a value as a String.
+	 *
+	 * @param x
+	 *            the value
+	 * @return a String
+	 */
+	String format(double x) {
+		int n = format(x, buffer, 0);
+		for (int i = 0; i < n; i++)
+			chars[i] = (char) buffer[i];
+		return new String(chars, 0, n);
+	}
+
+	/**
+	 * Formats a value into a byte array.
+	 *
+	 * @param x
+	 *            the value
+	 * @param b
+	 *            the array, which must have at least {@link #MAX_LENGTH} bytes
+	 *            free from <code>offset</code>
+	 * @param offset
+	 *            an int giving the index at which to write
+	 * @return an int giving the index after the last byte written
+	 */
+	int format(double x, byte[] b, int offset) {
+		boolean negative = x < 0 || (x == 0 && 1 / x < 0);
+		double a = Math.abs(x);
+
+		if (precision >= 0) {
+			double scaled = a * POWERS[precision];
+			if (scaled < EXACT) {
+				long m = Math.round(scaled);
+				int p = precision;
+				while (p > 0 && m % 10 == 0) {
+					m /= 10;
+					p--;
+				}
+				return write(negative && m != 0, m, p, b, offset);
+			}
+		} else {
+			if (a < EXACT && a == Math.rint(a))
+				return write(negative, (long) a, 0, b, offset);
+
+			if (a >= 1e-5) {
+
+				// Most values that aren't whole have only a few decimal places
+				for (int p = 1; p <= 3; p++) {
+					double scaled = a * POWERS[p];
+					if (scaled >= EXACT)
+						break;
+					long m = Math.round(scaled);
+					if (m / POWERS[p] == a)
+						return write(negative, m, p, b, offset);
+				}
+
+				/*
+				 * Otherwise round to as many decimal places as an exact
+				 * mantissa allows and, if that gives back the same value,
+				 * remove decimal places for as long as it still does.
+				 */
+				int p = POWERS.length - 1;
+				double scaled = a * POWERS[p];
+				while (scaled >= EXACT && p > 0)
+					scaled = a * POWERS[--p];
+
+				long m = Math.round(scaled);
+				if (p > 0 && m / POWERS[p] == a) {
+					while (p > 0) {
+						long shorter = Math.round(a * POWERS[p - 1]);
+						if (shorter / POWERS[p - 1] != a)
+							break;
+						m = shorter;
+						p--;
+					}
+					return write(negative, m, p, b, offset);
+				}
+			}
+		}
+
+		String s = Double.toString(x);
+		for (int i = 0; i < s.length(); i++)
+			b[offset++] = (byte) s.charAt(i);
+		return offset;
+	}
+
+	/**
+	 * Writes <code>m * 10^-p</code> in decimal.
+	 */
+	private static int write(boolean negative, long m, int p, byte[] b,
+			int offset) {
+		if (negative)
+			b[offset++] = '-';
+
+		// Count the digits, with at least one before the decimal point
+		int digits = 1;
+		for (long t = m / 10; t > 0; t /= 10)
+			digits++;
+		digits = Math.max(digits, p + 1);
+
+		int end = offset + digits + (p > 0 ? 1 : 0);
+		int i = end;
+		for (int d = 0; d < digits; d++) {
+			if (d == p && p > 0)
+				b[--i] = '.';
+			b[--i] = (byte) ('0' + m % 10);
+			m /= 10;
+		}
+		return end;
+	}
+}
@@ -0,0 +1,634 @@
+package uk.ac.imperial.simelec;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import au.com.bytecode.opencsv.CSVWriter;
+import cern.jet.stat.Probability;
+
+/**
+ * Calculates the expected behaviour of a household-day analytically, without
+ * drawing any random numbers.
+ *
+ * The number of active occupants is a Markov chain defined by the occupancy
+ * start states and transition probability matrices, so its distribution in
+ * each ten-minute period is found exactly by propagating the distribution of
+ * the start state through the day.
+ *
+ * Each appliance is also a Markov chain once its state is taken to be the
+ * number of active occupants together with the time left in its cycle or
+ * restart delay. Propagating this joint distribution minute by minute gives
+ * the exact expected start rate and power demand of every appliance, averaged
+ * over ownership and rated power, in the same way as the occupancy.
+ *
+ * The lighting model is not a Markov chain in this sense, as each household's
+ * irradiance threshold and bulb weights are shared by every minute of the
+ * day. For lighting, the expected rate at which bulbs are switched on is
+ * given instead, assuming every bulb is off. This is the rate at the start of
+ * each lighting event, averaged over the bulb configuration, irradiance
+ * threshold, bulb weights and occupancy.
+ *
+ * The results are exact up to the rounding of the random draws in the
+ * stochastic model, and so equal the mean of a very large number of
+ * {@link HouseholdSimulator} runs for the same HouseholdSpec and
+ * ModelParameters.
+ *
+ * @author James Keirstead
+ *
+ */
+public class ExpectedProfile {
+
+	// Number of rows for each period in the transition probability matrices
+	private static final int ROWS = 7;
+
+	// Number of ten-minute periods
+	private static final int PERIODS = 144;
+
+	// Member fields
+	private HouseholdSpec spec;
+	private ApplianceCatalogue catalogue;
+	private double[][] occupancy;
+	private double[] lightingStarts;
+	private double[][] applianceStarts;
+	private double[][] applianceDemand;
+
+	/**
+	 * Calculates the expected profiles of a household-day with the default
+	 * model parameters.
+	 *
+	 * @param spec
+	 *            the HouseholdSpec describing the household-day
+	 * @throws IOException
+	 *             if the model data cannot be read
+	 */
+	public ExpectedProfile(HouseholdSpec spec) throws IOException {
+		this(spec, new ModelParameters());
+	}
+
+	/**
+	 * Calculates the expected profiles of a household-day.
+	 *
+	 * @param spec
+	 *            the HouseholdSpec describing the household-day
+	 * @param parameters
+	 *            the ModelParameters to use
+	 * @throws IOException
+	 *             if the model data cannot be read
+	 */
+	public ExpectedProfile(HouseholdSpec spec, ModelParameters parameters)
+			throws IOException {
+		this.spec = spec;
+		this.catalogue = ModelData.getApplianceCatalogue();
+
+		double[][] tpm = ModelData.getTransitionProbabilities(
+				spec.getResidents(), spec.isWeekend());
+		occupancy = getOccupancyDistribution(
+				ModelData.getOccupancyStartStates(spec.getResidents(),
+						spec.isWeekend()), tpm);
+
+		lightingStarts = getLightingStarts(parameters);
+
+		int n = catalogue.size();
+		double[] calibration = parameters.getApplianceCalibration(catalogue);
+		double[] modifier = parameters.getTemperatureModifiers();
+		applianceStarts = new double[n][HouseholdSimulator.MINUTES];
+		applianceDemand = new double[n][HouseholdSimulator.MINUTES];
+		for (int i = 0; i < n; i++) {
+			simulateAppliance(i, tpm, calibration[i],
+					modifier[spec.getMonth() - 1]);
+		}
+	}
+
+	/**
+	 * Propagates the distribution of the number of active occupants through
+	 * the day.
+	 */
+	private static double[][] getOccupancyDistribution(double[] start,
+			double[][] tpm) {
+
+		double[][] result = new double[PERIODS][];
+		result[0] = normalize(start);
+		for (int p = 1; p < PERIODS; p++) {
+			double[] prev = result[p - 1];
+			double[] next = new double[prev.length];
+			for (int k = 0; k < prev.length; k++) {
+				if (prev[k] == 0)
+					continue;
+				double[] row = normalize(tpm[(p - 1) * ROWS + k]);
+				for (int j = 0; j < row.length; j++) {
+					next[j] += prev[k] * row[j];
+				}
+			}
+			result[p] = next;
+		}
+		return result;
+	}
+
+	/**
+	 * Normalizes relative probabilities in the same way as a
+	 * {@link DiscretePDF}.
+	 */
+	private static double[] normalize(double[] values) {
+		double[] result = new double[values.length];
+		double sum = 0;
+		for (int i = 0; i < values.length; i++) {
+			result[i] = values[i] < 0 ? 0 : values[i];
+			sum += result[i];
+		}
+		if (sum <= 0)
+			throw new IllegalStateException(
+					"An occupancy distribution has no positive probabilities");
+		for (int i = 0; i < values.length; i++) {
+			result[i] /= sum;
+		}
+		return result;
+	}
+
+	/**
+	 * Calculates the expected number of bulbs switched on in each minute,
+	 * assuming every bulb is off. A bulb with weight <code>w</code> is
+	 * switched on with probability <code>min(1, w * e)</code> in low light,
+	 * where <code>e</code> is the effective occupancy. The weights are
+	 * exponentially distributed with mean <code>c</code>, so the expected
+	 * value of this is <code>c * e * (1 - exp(-1 / (c * e)))</code>.
+	 */
+	private double[] getLightingStarts(ModelParameters parameters)
+			throws IOException {
+
+		// Mean number of bulbs
+		int[][] houses = ModelData.getBulbConfigurations();
+		double bulbs = 0;
+		for (int[] h : houses) {
+			bulbs += h.length;
+		}
+		bulbs /= houses.length;
+
+		// Expected switch-on probability for each number of active occupants
+		double c = (float) parameters.getBulbCalibration();
+		double[] hazard = new double[occupancy[0].length];
+		for (int k = 0; k < hazard.length; k++) {
+			double m = c * LightingConditions.getEffectiveOccupancy(k);
+			hazard[k] = m > 0 ? m * (1 - Math.exp(-1 / m)) : 0;
+		}
+
+		int[] irradiance = ModelData.getIrradiance(spec.getMonth());
+		double mean = parameters.getMeanIrradiance();
+		double sd = parameters.getSdIrradiance();
+		double[] result = new double[HouseholdSimulator.MINUTES];
+		for (int t = 0; t < result.length; t++) {
+
+			// Probability that the irradiance is below the threshold
+			double dark;
+			if (sd > 0) {
+				dark = 1 - Probability.normal((irradiance[t] - mean) / sd);
+			} else {
+				dark = irradiance[t] < mean ? 1 : 0;
+			}
+			double low = dark + (1 - dark)
+					* LightingConditions.LOW_LIGHT_CHANCE;
+
+			double[] occ = occupancy[t / 10];
+			double h = 0;
+			for (int k = 0; k < occ.length; k++) {
+				h += occ[k] * hazard[k];
+			}
+			result[t] = bulbs * low * h;
+		}
+		return result;
+	}
+
+	/**
+	 * Propagates the joint distribution of the number of active occupants and
+	 * the state of an appliance through the day, following the rules of
+	 * {@link ApplianceState#step(int, int, int[], boolean, int)}. An
+	 * appliance in state <code>s</code> is free to start if
+	 * <code>s = 0</code>, waiting to restart if <code>0 &lt; s &lt;= R</code>,
+	 * and running with <code>s - R</code> minutes of its cycle left if
+	 * <code>s &gt; R</code>, where <code>R</code> is its restart delay. Every
+	 * state counts down by one each minute, except that a running appliance
+	 * pauses while it is waiting for active occupants.
+	 */
+	private void simulateAppliance(int i, double[][] tpm, double calibration,
+			double modifier) {
+
+		ApplianceCatalogue c = catalogue;
+		int profile = c.profile[i];
+		int delay = c.restartDelay[i];
+		int standby = c.standby[i];
+		double rated = getMeanRatedPower(c.meanPower[i]);
+
+		// Distribution of the cycle time left after a start event, and the
+		// expected power in the minute the appliance starts
+		double[] length = getCycleLengthDistribution(i);
+		double[] left = new double[Math.min(length.length,
+				HouseholdSimulator.MINUTES + 2)];
+		double startPower = 0;
+		for (int l = 0; l < length.length; l++) {
+			if (length[l] == 0)
+				continue;
+			left[Math.min(Math.max(0, l - 2), left.length - 1)] += length[l];
+			startPower += length[l] * getPower(i, l - 1, rated);
+		}
+
+		double[] tail = new double[left.length];
+		for (int l = left.length - 1; l >= 0; l--) {
+			tail[l] = left[l] + (l + 1 < left.length ? tail[l + 1] : 0);
+		}
+
+		// Power while running. If this does not depend on the time left, a
+		// cycle which cannot finish before the end of the day behaves the same
+		// as one which runs until the end of the day, so these are combined.
+		double[] running = new double[left.length];
+		for (int l = 1; l < running.length; l++) {
+			running[l] = getPower(i, l, rated);
+		}
+		boolean constant = c.kind[i] != ApplianceCatalogue.WASHING_MACHINE
+				&& c.kind[i] != ApplianceCatalogue.WASHER_DRYER;
+
+		// Only appliances which depend on active occupancy need the joint
+		// distribution
+		boolean coupled = profile == ApplianceCatalogue.ACTIVE_OCC
+				|| profile == ApplianceCatalogue.ACTIVITY;
+		int states = coupled ? occupancy[0].length : 1;
+		int size = delay + left.length;
+		double[][] mass = new double[states][size];
+		double[][] next = new double[states][size];
+		if (coupled) {
+			for (int k = 0; k < states; k++) {
+				mass[k][0] = occupancy[0][k];
+			}
+		} else {
+			mass[0][0] = 1;
+		}
+
+		double[] starts = applianceStarts[i];
+		double[] demand = applianceDemand[i];
+		double ownership = c.ownership[i];
+		int period = 0;
+		for (int t = 0; t < HouseholdSimulator.MINUTES; t++) {
+
+			int top = constant ? Math.min(left.length - 1,
+					HouseholdSimulator.MINUTES - t) : left.length - 1;
+			int end = Math.min(size, delay + top + 2);
+
+			// Move the occupancy to the next period
+			int p = (t - 1) / 10;
+			if (coupled && p != period) {
+				double[][] tmp = new double[states][size];
+				for (int k = 0; k < states; k++) {
+					double[] row = null;
+					for (int s = 0; s < end; s++) {
+						double m = mass[k][s];
+						if (m == 0)
+							continue;
+						if (row == null)
+							row = normalize(tpm[(p - 1) * ROWS + k]);
+						for (int j = 0; j < states; j++) {
+							tmp[j][s] += m * row[j];
+						}
+					}
+				}
+				mass = tmp;
+			}
+			period = p;
+
+			double started = 0;
+			double power = 0;
+			for (int k = 0; k < states; k++) {
+				double[] from = mass[k];
+				double[] to = next[k];
+				Arrays.fill(to, 0);
+
+				// Free to start
+				double q = getStartProbability(i, k, p, calibration, modifier);
+				double m = from[0] * q;
+				started += m;
+				power += m * startPower + (from[0] - m) * standby;
+				to[0] += from[0] - m;
+				if (m > 0) {
+					for (int l = 0; l < top; l++) {
+						to[delay + l] += m * left[l];
+					}
+					to[delay + top] += m * tail[top];
+				}
+
+				// Waiting to restart
+				for (int s = 1; s <= delay; s++) {
+					power += from[s] * standby;
+					to[s - 1] += from[s];
+				}
+
+				// Running
+				boolean run = k > 0 || profile == ApplianceCatalogue.LEVEL
+						|| c.laundry[i] || profile == ApplianceCatalogue.CUSTOM;
+				for (int s = delay + 1; s < end; s++) {
+					double f = from[s];
+					if (f == 0) {
+						continue;
+					} else if (run) {
+						power += f * running[s - delay];
+						to[s - 1] += f;
+					} else {
+						power += f * standby;
+						to[Math.min(s, delay + top)] += f;
+					}
+				}
+			}
+
+			double[][] tmp = mass;
+			mass = next;
+			next = tmp;
+			starts[t] = ownership * started;
+			demand[t] = ownership * power;
+		}
+	}
+
+	/**
+	 * Gets the probability that an appliance which is free to start does so.
+	 */
+	private double getStartProbability(int i, int occupants, int period,
+			double calibration, double modifier) {
+		ApplianceCatalogue c = catalogue;
+		int profile = c.profile[i];
+		int month = spec.getMonth();
+
+		double p;
+		if ((occupants > 0 && profile != ApplianceCatalogue.CUSTOM)
+				|| profile == ApplianceCatalogue.LEVEL) {
+			double activity = 1;
+			if (profile == ApplianceCatalogue.ACTIVITY) {
+				activity = c.getActivityProbability(i, spec.isWeekend(),
+						occupants, period);
+			} else if (c.kind[i] == ApplianceCatalogue.ELEC_SPACE_HEATING) {
+				activity = modifier;
+			}
+			p = calibration * activity;
+
+		} else if (profile == ApplianceCatalogue.CUSTOM
+				&& c.kind[i] == ApplianceCatalogue.STORAGE_HEATER
+				&& period == 4) {
+			if (month == c.monthOff[i] || month == c.monthOn[i]) {
+				p = 0.5 / 10;
+			} else if (month > c.monthOff[i] && month < c.monthOn[i]) {
+				p = 0;
+			} else {
+				p = 1;
+			}
+
+		} else {
+			p = 0;
+		}
+		return Math.max(0, Math.min(1, p));
+	}
+
+	/**
+	 * Gets the distribution of an appliance's cycle length.
+	 *
+	 * @return an array giving the probability of each length in minutes
+	 */
+	private double[] getCycleLengthDistribution(int i) {
+		int length = catalogue.cycleLength[i];
+		int max = HouseholdSimulator.MINUTES + 2;
+		double[] result;
+
+		switch (catalogue.kind[i]) {
+		case ApplianceCatalogue.TV:
+			// The length is round(70 * y^1.1), where P(y > x) = 10^-x
+			result = new double[max + 1];
+			double prev = 0;
+			for (int l = 0; l < max; l++) {
+				double cdf = 1 - Math.pow(10,
+						-Math.pow((l + 0.5) / 70, 1 / 1.1));
+				result[l] = cdf - prev;
+				prev = cdf;
+			}
+			result[max] = 1 - prev;
+			return result;
+
+		case ApplianceCatalogue.STORAGE_HEATER:
+		case ApplianceCatalogue.ELEC_SPACE_HEATING:
+			// The length is a normal variate truncated to an int. Lengths of
+			// two minutes or less all behave the same way.
+			int sd = length / 10;
+			if (sd == 0)
+				break;
+			int hi = Math.min(max, length + 12 * sd);
+			result = new double[hi + 1];
+			result[2] = Probability.normal((3.0 - length) / sd);
+			double sum = result[2];
+			for (int l = 3; l < hi; l++) {
+				result[l] = Probability.normal((l + 1.0 - length) / sd)
+						- Probability.normal((double) (l - length) / sd);
+				sum += result[l];
+			}
+			result[hi] = 1 - sum;
+			return result;
+		}
+
+		result = new double[Math.max(length, 0) + 1];
+		result[Math.max(length, 0)] = 1;
+		return result;
+	}
+
+	/**
+	 * Gets the expected rated power of an appliance. This is a normal variate
+	 * with a standard deviation of a tenth of the mean, truncated to an int.
+	 */
+	private static double getMeanRatedPower(int mean) {
+		int sd = mean / 10;
+		if (sd == 0)
+			return mean;
+
+		// E[X] = sum of P(X >= k) - sum of P(X <= -k), for k >= 1
+		double result = 0;
+		int hi = mean + 12 * sd;
+		for (int k = 1; k <= hi; k++) {
+			result += 1 - Probability.normal((double) (k - mean) / sd);
+			result -= Probability.normal((double) (-k - mean) / sd);
+		}
+		return result;
+	}
+
+	/**
+	 * Gets the expected power of a running appliance with a given time left
+	 * in its cycle.
+	 */
+	private double getPower(int i, int cycleTimeLeft, double rated) {
+		switch (catalogue.kind[i]) {
+		case ApplianceCatalogue.WASHING_MACHINE:
+			return Appliance.getWashingPower(138, cycleTimeLeft,
+					catalogue.standby[i]);
+		case ApplianceCatalogue.WASHER_DRYER:
+			return Appliance.getWashingPower(198, cycleTimeLeft,
+					catalogue.standby[i]);
+		default:
+			return rated;
+		}
+	}
+
+	/**
+	 * Gets the distribution of the number of active occupants.
+	 *
+	 * @return an array of 144 rows at ten-minute intervals, each giving the
+	 *         probability of zero, one, two, ... active occupants
+	 */
+	public double[][] getOccupancyDistribution() {
+		double[][] result = new double[occupancy.length][];
+		for (int p = 0; p < result.length; p++) {
+			result[p] = occupancy[p].clone();
+		}
+		return result;
+	}
+
+	/**
+	 * Gets the expected number of active occupants.
+	 *
+	 * @return an array of 144 values at ten-minute intervals
+	 */
+	public double[] getMeanOccupancy() {
+		double[] result = new double[occupancy.length];
+		for (int p = 0; p < result.length; p++) {
+			for (int k = 0; k < occupancy[p].length; k++) {
+				result[p] += k * occupancy[p][k];
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Gets the expected number of bulbs switched on in each minute, assuming
+	 * every bulb is off. Bulbs which are already lit cannot be switched on, so
+	 * this is an upper bound on the simulated switch-on rate, and is close to
+	 * it when few lights are in use.
+	 *
+	 * @return an array of 1440 values at one-minute intervals
+	 */
+	public double[] getLightingSwitchOnRate() {
+		return lightingStarts.clone();
+	}
+
+	/**
+	 * Gets the expected number of appliance cycles started in each minute.
+	 *
+	 * @return an array of 1440 values at one-minute intervals
+	 */
+	public double[] getApplianceStartRate() {
+		return sum(applianceStarts);
+	}
+
+	/**
+	 * Gets the expected number of cycles of an appliance started in each
+	 * minute.
+	 *
+	 * @param id
+	 *            a String giving the appliance id, such as <code>KETTLE</code>
+	 * @return an array of 1440 values at one-minute intervals
+	 */
+	public double[] getApplianceStartRate(String id) {
+		return applianceStarts[indexOf(id)].clone();
+	}
+
+	/**
+	 * Gets the expected appliance demand.
+	 *
+	 * @return an array of 1440 values at one-minute intervals (W)
+	 */
+	public double[] getApplianceDemand() {
+		return sum(applianceDemand);
+	}
+
+	/**
+	 * Gets the expected demand of an appliance.
+	 *
+	 * @param id
+	 *            a String giving the appliance id, such as <code>KETTLE</code>
+	 * @return an array of 1440 values at one-minute intervals (W)
+	 */
+	public double[] getApplianceDemand(String id) {
+		return applianceDemand[indexOf(id)].clone();
+	}
+
+	private int indexOf(String id) {
+		int i = catalogue.indexOf(id.toUpperCase());
+		if (i < 0)
+			throw new IllegalArgumentException("Unknown appliance " + id);
+		return i;
+	}
+
+	private static double[] sum(double[][] values) {
+		double[] result = new double[HouseholdSimulator.MINUTES];
+		for (double[] v : values) {
+			for (int t = 0; t < result.length; t++) {
+				result[t] += v[t];
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Gets the HouseholdSpec of this profile.
+	 *
+	 * @return a HouseholdSpec
+	 */
+	public HouseholdSpec getSpec() {
+		return spec;
+	}
+
+	/**
+	 * Writes the expected profiles to a CSV file. The first rows give the
+	 * total appliance demand, the appliance start rate and the lighting
+	 * switch-on rate, followed by the demand of each appliance.
+	 *
+	 * @param file
+	 *            the File to write
+	 * @throws IOException
+	 *             if the file cannot be written
+	 */
+	public void write(File file) throws IOException {
+		List<String[]> results = new ArrayList<String[]>();
+		results.add(Load.buildExportString("APPLIANCE", getApplianceDemand()));
+		results.add(Load.buildExportString("APPLIANCE_STARTS",
+				getApplianceStartRate()));
+		results.add(Load.buildExportString("LIGHTING_SWITCH_ONS",
+				lightingStarts));
+		for (int i = 0; i < catalogue.size(); i++) {
+			results.add(Load.buildExportString(catalogue.getId(i),
+					applianceDemand[i]));
+		}
+
+		CSVWriter writer = new CSVWriter(new FileWriter(file), ',', '\0');
+		writer.writeAll(results);
+		writer.close();
+	}
+
+	/**
+	 * Calculates the expected profiles of a household-day and writes them to
+	 * <code>expected_output.csv</code>.
+	 *
+	 * @param args
+	 *            the month (1-12), the number of residents, <code>we</code>
+	 *            or <code>wd</code> for a weekend or weekday, and the output
+	 *            directory
+	 * @throws IOException
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length != 4) {
+			System.err
+					.println("Usage: ExpectedProfile <month> <residents> <we|wd> <dir>");
+			System.exit(1);
+		}
+
+		HouseholdSpec spec = new HouseholdSpec(Integer.valueOf(args[0]),
+				Integer.valueOf(args[1]), args[2].equals("we"));
+		File dir = new File(args[3]);
+		if (!dir.isDirectory())
+			dir.mkdirs();
+		File out = new File(dir, "expected_output.csv");
+		new ExpectedProfile(spec).write(out);
+		System.out.printf("Complete.  Results can be found in '%s'%n", out);
+	}
+}
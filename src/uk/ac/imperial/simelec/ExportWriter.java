@@ -0,0 +1,88 @@
+package uk.ac.imperial.simelec;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Writes Load profiles to an output file, one row for each profile. The rows
+ * are the same as those written by a <code>CSVWriter</code> from
+ * {@link Load#buildExportString(String, double[], int, boolean, int)}, but
+ * each row is formatted into a reusable byte buffer with a
+ * {@link DoubleFormatter}, so no String is created for the values.
+ * 
+ * @author James Keirstead
+ * 
+ */
+class ExportWriter implements Closeable {
+
+	// Member fields
+	private OutputStream out;
+	private int resolution;
+	private boolean energy;
+	private DoubleFormatter formatter;
+	private byte[] buffer = new byte[16384];
+
+	/**
+	 * Creates an ExportWriter.
+	 * 
+	 * @param out
+	 *            the OutputStream to write
+	 * @param resolution
+	 *            an int giving the length of each output interval in minutes
+	 * @param energy
+	 *            a boolean indicating whether to write the energy in each
+	 *            interval in Wh (<code>true</code>) or the mean power in W (
+	 *            <code>false</code>)
+	 * @param precision
+	 *            an int giving the number of decimal places, or -1 to write
+	 *            each value exactly
+	 */
+	ExportWriter(OutputStream out, int resolution, boolean energy,
+			int precision) {
+		this.out = out;
+		this.resolution = resolution;
+		this.energy = energy;
+		this.formatter = new DoubleFormatter(precision);
+	}
+
+	/**
+	 * Writes a row for a Load profile.
+	 * 
+	 * @param id
+	 *            a String giving the Load's name
+	 * @param consumption
+	 *            an array giving the consumption values in watts at one-minute
+	 *            intervals
+	 * @throws IOException
+	 *             if the row cannot be written
+	 */
+	void writeRow(String id, double[] consumption) throws IOException {
+		double[] values = Load.aggregate(consumption, resolution, energy);
+		byte[] name = id.getBytes();
+
+		int length = name.length + 1 + values.length
+				* (DoubleFormatter.MAX_LENGTH + 1);
+		if (buffer.length < length)
+			buffer = new byte[length];
+
+		System.arraycopy(name, 0, buffer, 0, name.length);
+		int n = name.length;
+		for (double v : values) {
+			buffer[n++] = ',';
+			n = formatter.format(v, buffer, n);
+		}
+		buffer[n++] = '\n';
+		out.write(buffer, 0, n);
+	}
+
+	/**
+	 * Closes the underlying stream.
+	 * 
+	 * @throws IOException
+	 */
+	@Override
+	public void close() throws IOException {
+		out.close();
+	}
+}
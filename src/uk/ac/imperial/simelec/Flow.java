@@ -0,0 +1,102 @@
+package uk.ac.imperial.simelec;
+
+/**
+ * Interfaces for publishing simulation results to subscribers with demand
+ * signalling. These have the same methods and contracts as the interfaces of
+ * <code>java.util.concurrent.Flow</code> (the Reactive Streams
+ * specification), which is not available on the Java 7 runtime supported by
+ * SimElec. A subscriber written against one can be adapted to the other by
+ * simple delegation.
+ *
+ * @author James Keirstead
+ *
+ */
+public final class Flow {
+
+	private Flow() {
+	}
+
+	/**
+	 * A producer of items which are received by Subscribers. Each Subscriber
+	 * receives items only after requesting them through its Subscription.
+	 *
+	 * @param <T>
+	 *            the type of item published
+	 */
+	public interface Publisher<T> {
+
+		/**
+		 * Adds a Subscriber. The Subscriber's <code>onSubscribe</code> method
+		 * is called with a new Subscription.
+		 *
+		 * @param subscriber
+		 *            the Subscriber
+		 */
+		void subscribe(Subscriber<? super T> subscriber);
+	}
+
+	/**
+	 * A receiver of items. Its methods are called in order and never
+	 * concurrently.
+	 *
+	 * @param <T>
+	 *            the type of item received
+	 */
+	public interface Subscriber<T> {
+
+		/**
+		 * Called before any other method with the Subscription used to
+		 * request items.
+		 *
+		 * @param subscription
+		 *            the Subscription
+		 */
+		void onSubscribe(Subscription subscription);
+
+		/**
+		 * Called with the next item. This is only called when the item has
+		 * been requested.
+		 *
+		 * @param item
+		 *            the item
+		 */
+		void onNext(T item);
+
+		/**
+		 * Called when the Publisher has failed. No further methods are
+		 * called.
+		 *
+		 * @param throwable
+		 *            the cause of the failure
+		 */
+		void onError(Throwable throwable);
+
+		/**
+		 * Called when all items have been published. No further methods are
+		 * called.
+		 */
+		void onComplete();
+	}
+
+	/**
+	 * Links a Publisher and a Subscriber.
+	 */
+	public interface Subscription {
+
+		/**
+		 * Requests up to <code>n</code> further items. Requests are
+		 * cumulative.
+		 *
+		 * @param n
+		 *            a long giving the number of items. Non-positive values
+		 *            cause the Subscriber's <code>onError</code> method to be
+		 *            called.
+		 */
+		void request(long n);
+
+		/**
+		 * Stops the Subscriber receiving further items.
+		 */
+		void cancel();
+	}
+}
@@ -0,0 +1,121 @@
+package uk.ac.imperial.simelec;
+
+/**
+ * The simulated demand profiles of a single household-day.
+ *
+ * @author James Keirstead
+ *
+ */
+public class HouseholdResult {
+
+	// Member fields
+	private final long household;
+	private final HouseholdSpec spec;
+	private final int[] occupancy;
+	private final double[] lighting;
+	private final double[] appliances;
+
+	/**
+	 * Creates a new HouseholdResult.
+	 *
+	 * @param household
+	 *            a long giving the household number
+	 * @param spec
+	 *            the HouseholdSpec of the household
+	 * @param occupancy
+	 *            an array of 144 active occupancy values at ten-minute
+	 *            intervals
+	 * @param lighting
+	 *            an array of 1440 lighting demand values (W)
+	 * @param appliances
+	 *            an array of 1440 appliance demand values (W)
+	 */
+	public HouseholdResult(long household, HouseholdSpec spec, int[] occupancy,
+			double[] lighting, double[] appliances) {
+		this.household = household;
+		this.spec = spec;
+		this.occupancy = occupancy;
+		this.lighting = lighting;
+		this.appliances = appliances;
+	}
+
+	/**
+	 * Simulates a whole day for a household.
+	 *
+	 * @param household
+	 *            a long giving the household number
+	 * @param simulator
+	 *            a HouseholdSimulator which has not yet been stepped
+	 * @return the HouseholdResult
+	 */
+	public static HouseholdResult simulate(long household,
+			HouseholdSimulator simulator) {
+		double[] lighting = new double[HouseholdSimulator.MINUTES];
+		double[] appliances = new double[HouseholdSimulator.MINUTES];
+		for (int t = 0; t < lighting.length; t++) {
+			simulator.step();
+			lighting[t] = simulator.getLightingDemand();
+			appliances[t] = simulator.getApplianceDemand();
+		}
+		return new HouseholdResult(household, simulator.getSpec(),
+				simulator.getOccupancy(), lighting, appliances);
+	}
+
+	/**
+	 * Gets the household number.
+	 *
+	 * @return a long
+	 */
+	public long getHousehold() {
+		return household;
+	}
+
+	/**
+	 * Gets the HouseholdSpec of the household.
+	 *
+	 * @return a HouseholdSpec
+	 */
+	public HouseholdSpec getSpec() {
+		return spec;
+	}
+
+	/**
+	 * Gets the number of active occupants.
+	 *
+	 * @return an array of 144 values at ten-minute intervals
+	 */
+	public int[] getOccupancy() {
+		return occupancy;
+	}
+
+	/**
+	 * Gets the lighting demand.
+	 *
+	 * @return an array of 1440 values at one-minute intervals (W)
+	 */
+	public double[] getLighting() {
+		return lighting;
+	}
+
+	/**
+	 * Gets the appliance demand.
+	 *
+	 * @return an array of 1440 values at one-minute intervals (W)
+	 */
+	public double[] getAppliances() {
+		return appliances;
+	}
+
+	/**
+	 * Gets the total demand.
+	 *
+	 * @return a new array of 1440 values at one-minute intervals (W)
+	 */
+	public double[] getTotal() {
+		double[] total = new double[lighting.length];
+		for (int i = 0; i < total.length; i++) {
+			total[i] = lighting[i] + appliances[i];
+		}
+		return total;
+	}
+}
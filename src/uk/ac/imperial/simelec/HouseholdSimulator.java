@@ -0,0 +1,339 @@
+package uk.ac.imperial.simelec;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Simulates the electricity demand of a single household one minute at a
+ * time. The household's occupancy, bulbs and appliances are set up when it is
+ * created, and each call to {@link #step()} then advances the lighting and
+ * appliances by one minute using the same rules as the {@link LightingModel}
+ * and {@link ApplianceModel}. For the same RandomStreams, the household's
+ * demand is identical to that of the two models. No profiles are stored or
+ * written.
+ *
+ * @author James Keirstead
+ *
+ */
+public class HouseholdSimulator {
+
+	// Number of minutes in the simulated day
+	public static final int MINUTES = 1440;
+
+	// Member fields
+	private HouseholdSpec spec;
+	private int[] occupancy;
+	private int time = -1;
+
+	// Lighting
+	private int[] bulbRating;
+	private int[][] switches;
+	private int[] nextSwitch;
+	private int nextEvent;
+	private double lit;
+	private double lighting;
+
+	// Appliances
+	private ApplianceState appliances;
+	private boolean[] blocked;
+	private double applianceDemand;
+	private boolean runLighting = true;
+	private boolean runAppliances = true;
+
+	/**
+	 * Creates a new HouseholdSimulator.
+	 *
+	 * @param spec
+	 *            the HouseholdSpec describing the household-day
+	 * @param streams
+	 *            the RandomStreams for the household
+	 * @throws IOException
+	 *             if the model data cannot be read
+	 */
+	public HouseholdSimulator(HouseholdSpec spec, RandomStreams streams)
+			throws IOException {
+		this(spec, streams, new ModelParameters());
+	}
+
+	/**
+	 * Creates a new HouseholdSimulator with specified calibration constants.
+	 *
+	 * @param spec
+	 *            the HouseholdSpec describing the household-day
+	 * @param streams
+	 *            the RandomStreams for the household
+	 * @param parameters
+	 *            the ModelParameters to use
+	 * @throws IOException
+	 *             if the model data cannot be read
+	 */
+	public HouseholdSimulator(HouseholdSpec spec, RandomStreams streams,
+			ModelParameters parameters) throws IOException {
+
+		this.spec = spec;
+
+		// Simulate the occupancy
+		occupancy = OccupancyModel.simulate(spec.getResidents(),
+				spec.isWeekend(), streams.get(RandomStreams.OCCUPANCY));
+
+		// Set up the lighting. The switching times of every bulb are drawn
+		// now, one bulb after another, in the same order as the LightingModel.
+		RandomStream lightingRandom = streams.get(RandomStreams.LIGHTING);
+		float threshold = (float) lightingRandom.nextNormal(
+				parameters.getMeanIrradiance(), parameters.getSdIrradiance());
+
+		int[][] houses = ModelData.getBulbConfigurations();
+		RandomStream random = streams.get(RandomStreams.BULBS);
+		int[] ratings = houses[random.nextIntFromTo(0, houses.length - 1)];
+		bulbRating = ratings;
+		float calibration = (float) parameters.getBulbCalibration();
+		float[] weights = new float[ratings.length];
+		for (int i = 0; i < ratings.length; i++) {
+			weights[i] = Bulb.getCalibratedWeight(random, calibration);
+		}
+
+		LightingConditions conditions = new LightingConditions(
+				ModelData.getIrradiance(spec.getMonth()), threshold, occupancy);
+		switches = new int[ratings.length][];
+		nextSwitch = new int[ratings.length];
+		for (int i = 0; i < ratings.length; i++) {
+			switches[i] = getSwitches(conditions, weights[i], lightingRandom);
+		}
+		nextEvent = getNextLightingEvent();
+
+		// Set up the appliances
+		appliances = new ApplianceState(ModelData.getApplianceCatalogue(),
+				streams, parameters);
+		blocked = new boolean[appliances.owned.length];
+	}
+
+	/**
+	 * Advances this household by one minute.
+	 *
+	 * @return a double giving the total demand of the household during the new
+	 *         minute (W)
+	 */
+	public double step() {
+		if (time + 1 >= MINUTES)
+			throw new IllegalStateException("The simulated day has finished");
+
+		time++;
+		if (runLighting)
+			stepLighting();
+		if (runAppliances)
+			stepAppliances();
+
+		return getDemand();
+	}
+
+	/**
+	 * Draws the switching times of a bulb. When a bulb is switched on, it
+	 * stays on for a random duration and the next switch-on event is drawn
+	 * from the end of that period.
+	 *
+	 * @return an array of int values giving the minutes in which the bulb is
+	 *         switched on and off, in turn
+	 */
+	private static int[] getSwitches(LightingConditions conditions,
+			float weight, RandomStream random) {
+		int[] result = new int[8];
+		int n = 0;
+		int t = conditions.nextSwitchOn(0, weight, random);
+		while (t >= 0) {
+			if (n + 2 > result.length)
+				result = Arrays.copyOf(result, 2 * result.length);
+			result[n++] = t;
+			t = Math.min(t + LightingModel.getLightDuration(random), MINUTES);
+			result[n++] = t;
+			t = conditions.nextSwitchOn(t, weight, random);
+		}
+		return Arrays.copyOf(result, n);
+	}
+
+	/**
+	 * Advances each bulb by one minute. The bulbs are only examined in
+	 * minutes when one of them is switched on or off.
+	 */
+	private void stepLighting() {
+		if (time == nextEvent) {
+			for (int i = 0; i < bulbRating.length; i++) {
+				int[] s = switches[i];
+				while (nextSwitch[i] < s.length && s[nextSwitch[i]] == time) {
+					if (nextSwitch[i] % 2 == 0) {
+						lit += bulbRating[i];
+					} else {
+						lit -= bulbRating[i];
+					}
+					nextSwitch[i]++;
+				}
+			}
+			nextEvent = getNextLightingEvent();
+		}
+
+		// As in Bulb.on, the first minute of the day is never lit
+		lighting = time > 0 ? lit : 0;
+	}
+
+	/**
+	 * Finds the next minute in which a bulb is switched on or off.
+	 *
+	 * @return an int giving the minute, or <code>MINUTES</code> if there are
+	 *         no further events
+	 */
+	private int getNextLightingEvent() {
+		int next = MINUTES;
+		for (int i = 0; i < bulbRating.length; i++) {
+			if (nextSwitch[i] < switches[i].length
+					&& switches[i][nextSwitch[i]] < next)
+				next = switches[i][nextSwitch[i]];
+		}
+		return next;
+	}
+
+	/**
+	 * Advances each appliance by one minute.
+	 */
+	private void stepAppliances() {
+		int[] owned = appliances.ownedIndices;
+		boolean weekend = spec.isWeekend();
+		int month = spec.getMonth();
+
+		applianceDemand = 0;
+		for (int j = 0; j < owned.length; j++) {
+			int i = owned[j];
+			applianceDemand += appliances.step(i, time, occupancy, weekend,
+					month, !blocked[i]);
+		}
+	}
+
+	/**
+	 * Sets whether the lighting of this household is simulated. If not, the
+	 * lighting demand is always zero. The lighting and appliances draw from
+	 * separate random number streams, so the appliances are not affected.
+	 * This should be set before the household is stepped.
+	 *
+	 * @param run
+	 *            a boolean indicating if the lighting should be simulated
+	 */
+	public void setRunLighting(boolean run) {
+		this.runLighting = run;
+	}
+
+	/**
+	 * Sets whether the appliances of this household are simulated. If not,
+	 * the appliance demand is always zero. This should be set before the
+	 * household is stepped.
+	 *
+	 * @param run
+	 *            a boolean indicating if the appliances should be simulated
+	 */
+	public void setRunAppliances(boolean run) {
+		this.runAppliances = run;
+	}
+
+	/**
+	 * Sets whether the appliances in this household may start new cycles.
+	 * Appliances which are already running are not affected. The random
+	 * numbers for a start event are still drawn while starts are prevented, so
+	 * the rest of the simulation is unchanged.
+	 *
+	 * @param allowed
+	 *            a boolean indicating whether appliances may start
+	 */
+	public void setStartsAllowed(boolean allowed) {
+		for (int i = 0; i < blocked.length; i++) {
+			blocked[i] = !allowed;
+		}
+	}
+
+	/**
+	 * Sets whether an appliance in this household may start new cycles.
+	 *
+	 * @param id
+	 *            a String giving the appliance id, such as
+	 *            <code>WASHING_MACHINE</code>
+	 * @param allowed
+	 *            a boolean indicating whether the appliance may start
+	 * @see #setStartsAllowed(boolean)
+	 */
+	public void setStartAllowed(String id, boolean allowed) {
+		int i = appliances.getCatalogue().indexOf(id.toUpperCase());
+		if (i < 0)
+			throw new IllegalArgumentException("Unknown appliance " + id);
+		blocked[i] = !allowed;
+	}
+
+	/**
+	 * Gets the current minute of the day.
+	 *
+	 * @return an int giving the minute (0-1439), or -1 if the household has
+	 *         not yet been stepped
+	 */
+	public int getTime() {
+		return time;
+	}
+
+	/**
+	 * Has the whole day been simulated?
+	 *
+	 * @return <code>true</code> if there are no more minutes to simulate
+	 */
+	public boolean isFinished() {
+		return time + 1 >= MINUTES;
+	}
+
+	/**
+	 * Gets the lighting demand in the current minute.
+	 *
+	 * @return a double giving the demand (W)
+	 */
+	public double getLightingDemand() {
+		return lighting;
+	}
+
+	/**
+	 * Gets the appliance demand in the current minute.
+	 *
+	 * @return a double giving the demand (W)
+	 */
+	public double getApplianceDemand() {
+		return applianceDemand;
+	}
+
+	/**
+	 * Gets the total demand in the current minute.
+	 *
+	 * @return a double giving the demand (W)
+	 */
+	public double getDemand() {
+		return lighting + applianceDemand;
+	}
+
+	/**
+	 * Gets the simulated occupancy of this household.
+	 *
+	 * @return an array of 144 int values giving the number of active occupants
+	 *         at ten-minute intervals
+	 */
+	public int[] getOccupancy() {
+		return occupancy.clone();
+	}
+
+	/**
+	 * Gets the HouseholdSpec of this household.
+	 *
+	 * @return a HouseholdSpec
+	 */
+	public HouseholdSpec getSpec() {
+		return spec;
+	}
+
+	/**
+	 * Gets the state of this household's appliances.
+	 *
+	 * @return an ApplianceState
+	 */
+	ApplianceState getApplianceState() {
+		return appliances;
+	}
+}
@@ -0,0 +1,80 @@
+package uk.ac.imperial.simelec;
+
+/**
+ * Describes a household-day to be simulated: the month, the number of
+ * residents, and whether the day is a weekday or weekend.
+ *
+ * @author James Keirstead
+ *
+ */
+public class HouseholdSpec {
+
+	// Member fields
+	private final int month;
+	private final int residents;
+	private final boolean weekend;
+
+	/**
+	 * Creates a new HouseholdSpec.
+	 *
+	 * @param month
+	 *            an int giving the month of the year (1-12)
+	 * @param residents
+	 *            an int giving the number of residents (1-5)
+	 * @param weekend
+	 *            a boolean indicating a weekend (<code>true</code>) or weekday
+	 */
+	public HouseholdSpec(int month, int residents, boolean weekend) {
+		this.month = SimElec.validateMonth(month);
+		this.residents = SimElec.validateResidents(residents);
+		this.weekend = weekend;
+	}
+
+	/**
+	 * Gets the month of the year.
+	 *
+	 * @return an int (1-12)
+	 */
+	public int getMonth() {
+		return month;
+	}
+
+	/**
+	 * Gets the number of residents.
+	 *
+	 * @return an int (1-5)
+	 */
+	public int getResidents() {
+		return residents;
+	}
+
+	/**
+	 * Is this a weekend?
+	 *
+	 * @return <code>true</code> for a weekend, <code>false</code> for a
+	 *         weekday
+	 */
+	public boolean isWeekend() {
+		return weekend;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (!(o instanceof HouseholdSpec))
+			return false;
+		HouseholdSpec s = (HouseholdSpec) o;
+		return month == s.month && residents == s.residents
+				&& weekend == s.weekend;
+	}
+
+	@Override
+	public int hashCode() {
+		return (month * 31 + residents) * 2 + (weekend ? 1 : 0);
+	}
+
+	@Override
+	public String toString() {
+		return String.format("month %d, %d residents, %s", month, residents,
+				weekend ? "weekend" : "weekday");
+	}
+}
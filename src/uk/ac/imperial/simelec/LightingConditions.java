@@ -0,0 +1,171 @@
+package uk.ac.imperial.simelec;
+
+/**
+ * Describes the conditions for lighting use in a household over a single day.
+ * The day is divided into segments within which both the natural light level
+ * (relative to the household's irradiance threshold) and the number of active
+ * occupants are constant. Within a segment each bulb has a constant
+ * probability of being switched on in each minute, so the time of the next
+ * switch-on event can be drawn directly rather than testing every minute.
+ *
+ * @author James Keirstead
+ *
+ */
+public class LightingConditions {
+
+	// Probability of low light when the irradiance is above the threshold
+	static final float LOW_LIGHT_CHANCE = 0.05f;
+
+	// Segments of the day: [start, end) in minutes
+	private int[] start;
+	private int[] end;
+	private float[] lowLight; // probability of low light
+	private float[] effective; // effective occupancy
+	private int nSegments;
+
+	/**
+	 * Creates the LightingConditions for a household.
+	 *
+	 * @param irradiance
+	 *            an array of 1440 irradiance values in W/m2
+	 * @param threshold
+	 *            a float giving the household's irradiance threshold in W/m2
+	 * @param occupancy
+	 *            an array of 144 active occupancy values at ten-minute
+	 *            intervals
+	 */
+	public LightingConditions(int[] irradiance, float threshold,
+			int[] occupancy) {
+
+		start = new int[irradiance.length];
+		end = new int[irradiance.length];
+		lowLight = new float[irradiance.length];
+		effective = new float[irradiance.length];
+
+		for (int t = 0; t < irradiance.length; t++) {
+			float low = irradiance[t] < threshold ? 1f : LOW_LIGHT_CHANCE;
+			float eff = getEffectiveOccupancy(occupancy[t / 10]);
+
+			if (nSegments > 0 && lowLight[nSegments - 1] == low
+					&& effective[nSegments - 1] == eff) {
+				end[nSegments - 1] = t + 1;
+			} else {
+				start[nSegments] = t;
+				end[nSegments] = t + 1;
+				lowLight[nSegments] = low;
+				effective[nSegments] = eff;
+				nSegments++;
+			}
+		}
+	}
+
+	/**
+	 * Draws the time of the next switch-on event for a bulb. In each minute,
+	 * a bulb is switched on if it is dark (or with a small probability if it
+	 * is light) and a draw against the effective occupancy multiplied by the
+	 * bulb weight succeeds. Within a segment, the number of minutes before
+	 * this happens is geometrically distributed and is drawn with a single
+	 * random number.
+	 *
+	 * @param from
+	 *            an int giving the first minute to consider
+	 * @param weight
+	 *            a float giving the bulb weight
+	 * @param random
+	 *            the RandomStream to draw from
+	 * @return an int giving the minute of the next switch-on event, or -1 if
+	 *         the bulb is not switched on again during the day
+	 */
+	public int nextSwitchOn(int from, float weight, RandomStream random) {
+
+		int s = findSegment(from);
+		if (s < 0)
+			return -1;
+
+		int t = from;
+		for (; s < nSegments; s++) {
+			float p = lowLight[s] * Math.min(1f, effective[s] * weight);
+			if (t < start[s])
+				t = start[s];
+
+			if (p <= 0) {
+				continue;
+			} else if (p >= 1) {
+				return t;
+			}
+
+			// Number of minutes without a switch-on event
+			double k = Math.floor(Math.log(random.nextDouble())
+					/ Math.log1p(-(double) p));
+			if (t + k < end[s])
+				return t + (int) k;
+		}
+
+		return -1;
+	}
+
+	/**
+	 * Finds the segment containing a given minute.
+	 *
+	 * @param t
+	 *            an int giving the minute
+	 * @return an int giving the segment index, or -1 if <code>t</code> is
+	 *         beyond the end of the day
+	 */
+	private int findSegment(int t) {
+		if (t < 0 || t >= end[nSegments - 1])
+			return -1;
+
+		int lo = 0;
+		int hi = nSegments - 1;
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (end[mid] <= t) {
+				lo = mid + 1;
+			} else {
+				hi = mid;
+			}
+		}
+		return lo;
+	}
+
+	/**
+	 * Gets the number of segments in the day.
+	 *
+	 * @return an int
+	 */
+	public int getSegmentCount() {
+		return nSegments;
+	}
+
+	/**
+	 * Effective occupancy represents the sharing of light use.
+	 *
+	 * Derived from: U.S. Department of Energy, Energy Information
+	 * Administration, 1993 Residential Energy Consumption Survey, Mean Annual
+	 * Electricity Consumption for Lighting, by Family Income by Number of
+	 * Household Members
+	 *
+	 * @param occ
+	 *            an int giving the active number of household occupants
+	 * @return a float giving the effective occupant factor
+	 */
+	static float getEffectiveOccupancy(int occ) {
+		switch (occ) {
+		case 0:
+			return (0f);
+		case 1:
+			return (1.000f);
+		case 2:
+			return (1.528f);
+		case 3:
+			return (1.694f);
+		case 4:
+			return (1.983f);
+		case 5:
+			return (2.094f);
+		}
+
+		return (0f);
+	}
+}
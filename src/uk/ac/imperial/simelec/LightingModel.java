@@ -27,17 +27,9 @@ package uk.ac.imperial.simelec;
 
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.util.ArrayList;
 import java.util.List;
 
-import au.com.bytecode.opencsv.CSVReader;
-import cern.jet.random.Normal;
-import cern.jet.random.Uniform;
-import cern.jet.random.engine.MersenneTwister;
-import cern.jet.random.engine.RandomEngine;
-
 /**
  * Simulates electricity demand for lighting in a household at one-minute
  * intervals during the day.
@@ -47,12 +39,9 @@ import cern.jet.random.engine.RandomEngine;
  */
 public class LightingModel extends LoadModel<Bulb> {
 
-	private float mean_irradiance = 60f;
-	private float sd_irradiance = 10f;	
-	
-	// Data files
-	private static String irradiance_file = "/data/irradiance.csv";
-	private static String bulbs_file = "/data/bulbs.csv";
+	// Default irradiance threshold distribution (W/m2)
+	static final float MEAN_IRRADIANCE = 60f;
+	static final float SD_IRRADIANCE = 10f;
 
 	/**
 	 * Create a LightingModel for a specified month and output directory
@@ -118,8 +107,8 @@ public class LightingModel extends LoadModel<Bulb> {
 		LightingModel model = new LightingModel(month, dir, occ);
 
 		if (args.length == 6) {
-			model.mean_irradiance = Float.valueOf(args[2]);
-			model.sd_irradiance = Float.valueOf(args[3]);
+			model.parameters.setMeanIrradiance(Float.valueOf(args[2]));
+			model.parameters.setSdIrradiance(Float.valueOf(args[3]));
 		}
 
 		model.run();
@@ -127,7 +116,10 @@ public class LightingModel extends LoadModel<Bulb> {
 
 	/**
 	 * 
-	 * Runs the LightingModel.
+	 * Runs the LightingModel. The lighting conditions for the household (the
+	 * periods of low light and the effective occupancy) are calculated once,
+	 * and then the switch-on events for each bulb are drawn directly from
+	 * them.
 	 * 
 	 * @throws IOException
 	 * 
@@ -139,9 +131,11 @@ public class LightingModel extends LoadModel<Bulb> {
 		if (!dir.isDirectory())
 			dir.mkdirs();
 
+		RandomStream random = streams.get(RandomStreams.LIGHTING);
+
 		// Calculation the irradiance threshold for the house
-		float iThreshold = (float) Normal.staticNextDouble(
-				this.mean_irradiance, this.sd_irradiance);
+		float iThreshold = (float) random.nextNormal(
+				parameters.getMeanIrradiance(), parameters.getSdIrradiance());
 
 		// Calculate the number of bulbs in the household
 		loads = getBulbs();
@@ -149,82 +143,27 @@ public class LightingModel extends LoadModel<Bulb> {
 
 		int[] occupancy = model.getOccupancy();
 
+		LightingConditions conditions = new LightingConditions(irradiance,
+				iThreshold, occupancy);
+
 		// Main simulation loop
 		// for each bulb in the household
 		for (Bulb b : loads) {
 
-			// for each minute of the day
-			int t = 0;
-			while (t < 1440) {
-
-				// Get the irradiance at that moment
-				int ir = irradiance[t];
-
-				// Get the number of active occupants, adjusting for 10 minute
-				// intervals
-				int occ = occupancy[(int) Math.floor(t / 10f)];
-
-				// if at least one active occupant and insufficient irradiance,
-				// turn on a bulb
-				boolean low_light = (ir < iThreshold)
-						|| (Uniform.staticNextDouble() < 0.05);
-
-				// Get effective occupant to account for sharing
-				float effective_occupancy = getEffectiveOccupancy(occ);
-
-				// if bulb switched on:
-				if (low_light
-						&& Uniform.staticNextDouble() < (effective_occupancy * b.weight)) {
-					int duration = getLightDuration();
-					for (int j = 0; j < duration; j++) {
-						if (t >= 1440)
-							break;
-						if (occ != 0) {
-							b.on(t);
-							t++;
-						}
-					}
-				} else {
+			// for each switch-on event during the day
+			int t = conditions.nextSwitchOn(0, b.weight, random);
+			while (t >= 0) {
+				int duration = getLightDuration(random);
+				for (int j = 0; j < duration && t < 1440; j++) {
+					b.on(t);
 					t++;
 				}
+				t = conditions.nextSwitchOn(t, b.weight, random);
 			}
 		}
 
 	}
 
-	
-
-	/**
-	 * Effective occupancy represents the sharing of light use.
-	 * 
-	 * Derived from: U.S. Department of Energy, Energy Information
-	 * Administration, 1993 Residential Energy Consumption Survey, Mean Annual
-	 * Electricity Consumption for Lighting, by Family Income by Number of
-	 * Household Members
-	 * 
-	 * @param occ
-	 *            an int giving the active number of household occupants
-	 * @return a float giving the effective occupant factor
-	 */
-	private float getEffectiveOccupancy(int occ) {
-		switch (occ) {
-		case 0:
-			return (0f);
-		case 1:
-			return (1.000f);
-		case 2:
-			return (1.528f);
-		case 3:
-			return (1.694f);
-		case 4:
-			return (1.983f);
-		case 5:
-			return (2.094f);
-		}
-
-		return (0f);
-	}
-
 	/**
 	 * Gets the bulbs in the household based on 100 sample bulb configurations.
 	 * The data has been generated stochastically, based upon statistics
@@ -239,28 +178,19 @@ public class LightingModel extends LoadModel<Bulb> {
 	private List<Bulb> getBulbs() throws IOException {
 
 		// Load in the raw data
-		InputStream is = this.getClass().getResourceAsStream(bulbs_file);
-		CSVReader reader = new CSVReader(new InputStreamReader(is), ',', '\'',
-				10);
-		List<String[]> myEntries = reader.readAll();
-		reader.close();
+		int[][] houses = ModelData.getBulbConfigurations();
 
 		// Choose a random house
-		int house = Uniform.staticNextIntFromTo(0, myEntries.size() - 1);
-
-		// Create a set of bulbs corresponding to that line.
-		String[] data = myEntries.get(house);
-		int nBulbs = Integer.valueOf(data[1]);
-		List<Bulb> bulbs = new ArrayList<Bulb>(nBulbs);
-
-		// Note that the input data file is a ragged array. To get CSVReader
-		// to work, it has been padded with 0 values for bulb ratings. However
-		// the first column "nBulbs" specifies how many valid values to read.
-		for (int i = 0; i < nBulbs; i++) {
-
-			// Read in the power rating of the bulb
-			int rating = Integer.valueOf(data[2 + i]);
-			Bulb b = new Bulb(i, rating);
+		RandomStream random = streams.get(RandomStreams.BULBS);
+		int house = random.nextIntFromTo(0, houses.length - 1);
+
+		// Create a set of bulbs corresponding to that house
+		int[] ratings = houses[house];
+		float calibration = (float) parameters.getBulbCalibration();
+		List<Bulb> bulbs = new ArrayList<Bulb>(ratings.length);
+		for (int i = 0; i < ratings.length; i++) {
+			Bulb b = new Bulb(i, ratings[i], Bulb.getCalibratedWeight(random,
+					calibration));
 			bulbs.add(b);
 		}
 
@@ -277,19 +207,7 @@ public class LightingModel extends LoadModel<Bulb> {
 	 * @throws IOException
 	 */
 	private int[] getIrradianceData(int month) throws IOException {
-
-		InputStream is = this.getClass().getResourceAsStream(irradiance_file);
-		CSVReader reader = new CSVReader(new InputStreamReader(is), ',', '\'',
-				8);
-		List<String[]> myEntries = reader.readAll();
-		reader.close();
-
-		int[] answer = new int[myEntries.size()];
-		for (int i = 0; i < myEntries.size(); i++) {
-			answer[i] = Integer.valueOf(myEntries.get(i)[1 + month]);
-		}
-		return (answer);
-
+		return ModelData.getIrradiance(month);
 	}
 
 	/**
@@ -300,54 +218,12 @@ public class LightingModel extends LoadModel<Bulb> {
 	 * Source: M. Stokes, M. Rylatt, K. Lomas, A simple model of domestic
 	 * lighting demand, Energy and Buildings 36 (2004) 103-116
 	 * 
-	 * @return
+	 * @param random
+	 *            the RandomStream to draw from
+	 * @return an int giving the duration in minutes
 	 */
-	private int getLightDuration() {
-		int interval = Uniform.staticNextIntFromTo(0, 8);
-		int low = 0;
-		int up = 0;
-		switch (interval) {
-		case 0:
-			low = 1;
-			up = 1;
-			break;
-		case 1:
-			low = 2;
-			up = 2;
-			break;
-		case 2:
-			low = 3;
-			up = 4;
-			break;
-		case 3:
-			low = 5;
-			up = 8;
-			break;
-		case 4:
-			low = 9;
-			up = 16;
-			break;
-		case 5:
-			low = 17;
-			up = 27;
-			break;
-		case 6:
-			low = 28;
-			up = 49;
-			break;
-		case 7:
-			low = 50;
-			up = 91;
-			break;
-		case 8:
-			low = 92;
-			up = 259;
-			break;
-		}
-
-		float rnd = (float) Uniform.staticNextDouble();
-
-		return (int) (low + rnd * (up - low));
+	static int getLightDuration(RandomStream random) {
+		return RandomVariates.lightDuration(random);
 	}
 
 	/**
@@ -357,9 +233,7 @@ public class LightingModel extends LoadModel<Bulb> {
 	 *            an int giving the seed
 	 */
 	public static void setSeed(int seed) {
-		// TODO verify that this works for the Normal draws as well
-		RandomEngine engine = new MersenneTwister(seed);
-		Uniform.staticSetRandomEngine(engine);
+		RandomStream.setGlobalSeed(seed);
 	}
 
 }
@@ -11,6 +11,15 @@ public abstract class Load {
 	protected String id;
 	protected double[] consumption = new double[1440]; // W
 
+	// Formats the exported values; one for each thread as it has a buffer
+	private static final ThreadLocal<DoubleFormatter> FORMATTER =
+			new ThreadLocal<DoubleFormatter>() {
+		@Override
+		protected DoubleFormatter initialValue() {
+			return new DoubleFormatter();
+		}
+	};
+
 	/**
 	 * Converts this Load into a formatted String array for export.
 	 * 
@@ -21,6 +30,46 @@ public abstract class Load {
 		return Load.buildExportString(this.id, this.consumption);
 	}
 
+	/**
+	 * Converts this Load into a formatted String array for export at a
+	 * specified time resolution.
+	 * 
+	 * @param resolution
+	 *            an int giving the length of each output interval in minutes
+	 * @param energy
+	 *            a boolean indicating whether to report the energy in each
+	 *            interval in Wh (<code>true</code>) or the mean power in W (
+	 *            <code>false</code>)
+	 * @return a String array containing the load's name, and then one entry
+	 *         for each interval
+	 */
+	public String[] toExportString(int resolution, boolean energy) {
+		return Load.buildExportString(this.id, this.consumption, resolution,
+				energy);
+	}
+
+	/**
+	 * Converts this Load into a formatted String array for export at a
+	 * specified time resolution and precision.
+	 * 
+	 * @param resolution
+	 *            an int giving the length of each output interval in minutes
+	 * @param energy
+	 *            a boolean indicating whether to report the energy in each
+	 *            interval in Wh (<code>true</code>) or the mean power in W (
+	 *            <code>false</code>)
+	 * @param precision
+	 *            an int giving the number of decimal places, or -1 to write
+	 *            each value exactly
+	 * @return a String array containing the load's name, and then one entry
+	 *         for each interval
+	 */
+	public String[] toExportString(int resolution, boolean energy,
+			int precision) {
+		return Load.buildExportString(this.id, this.consumption, resolution,
+				energy, precision);
+	}
+
 	/**
 	 * Creates a formatted String array for exporting a Load profile.
 	 * 
@@ -31,15 +80,134 @@ public abstract class Load {
 	 *            watts
 	 * @return a String array containing the load's name, and then 1440 entries
 	 *         representing the consumption in Watts at each minute interval.
+	 *         Whole numbers are written without a decimal point and other
+	 *         values with the fewest digits that read back exactly.
 	 */
 	public static String[] buildExportString(String id, double[] consumption) {
+		DoubleFormatter f = FORMATTER.get();
 		String[] tmp = new String[consumption.length + 1];
 		tmp[0] = id;
 		for (int i = 0; i < consumption.length; i++)
-			tmp[i + 1] = String.valueOf(consumption[i]);
+			tmp[i + 1] = f.format(consumption[i]);
 		return tmp;
 	}
 
+	/**
+	 * Creates a formatted String array for exporting a Load profile at a
+	 * specified time resolution. Each interval is aggregated as the array is
+	 * built, either by averaging the power or integrating it to give energy.
+	 * 
+	 * @param id
+	 *            a String giving the Load's name
+	 * @param consumption
+	 *            an array giving the consumption values in watts at one-minute
+	 *            intervals
+	 * @param resolution
+	 *            an int giving the length of each output interval in minutes.
+	 *            This must divide exactly into the length of
+	 *            <code>consumption</code>.
+	 * @param energy
+	 *            a boolean indicating whether to report the energy in each
+	 *            interval in Wh (<code>true</code>) or the mean power in W (
+	 *            <code>false</code>)
+	 * @return a String array containing the load's name, and then one entry
+	 *         for each interval
+	 */
+	public static String[] buildExportString(String id, double[] consumption,
+			int resolution, boolean energy) {
+		return buildExportString(id, consumption, resolution, energy, -1);
+	}
+
+	/**
+	 * Creates a formatted String array for exporting a Load profile at a
+	 * specified time resolution and precision.
+	 * 
+	 * @param id
+	 *            a String giving the Load's name
+	 * @param consumption
+	 *            an array giving the consumption values in watts at one-minute
+	 *            intervals
+	 * @param resolution
+	 *            an int giving the length of each output interval in minutes.
+	 *            This must divide exactly into the length of
+	 *            <code>consumption</code>.
+	 * @param energy
+	 *            a boolean indicating whether to report the energy in each
+	 *            interval in Wh (<code>true</code>) or the mean power in W (
+	 *            <code>false</code>)
+	 * @param precision
+	 *            an int giving the number of decimal places (0 to 15), or -1
+	 *            to write each value exactly. See
+	 *            {@link SimElec#validatePrecision(int)}.
+	 * @return a String array containing the load's name, and then one entry
+	 *         for each interval
+	 */
+	public static String[] buildExportString(String id, double[] consumption,
+			int resolution, boolean energy, int precision) {
+
+		if (resolution == 1 && !energy && precision < 0)
+			return buildExportString(id, consumption);
+
+		DoubleFormatter f = precision < 0 ? FORMATTER.get()
+				: new DoubleFormatter(precision);
+		double[] values = aggregate(consumption, resolution, energy);
+		String[] tmp = new String[values.length + 1];
+		tmp[0] = id;
+		for (int i = 0; i < values.length; i++)
+			tmp[i + 1] = f.format(values[i]);
+		return tmp;
+	}
+
+	/**
+	 * Aggregates a Load profile to a specified time resolution, either by
+	 * averaging the power or integrating it to give energy.
+	 * 
+	 * @param consumption
+	 *            an array giving the consumption values in watts at one-minute
+	 *            intervals
+	 * @param resolution
+	 *            an int giving the length of each output interval in minutes
+	 * @param energy
+	 *            a boolean indicating whether to give the energy in each
+	 *            interval in Wh (<code>true</code>) or the mean power in W (
+	 *            <code>false</code>)
+	 * @return an array with one entry for each interval. At one-minute
+	 *         resolution, the power profile is returned as it is.
+	 * @throws IllegalArgumentException
+	 *             if the resolution does not divide the length of the profile
+	 */
+	static double[] aggregate(double[] consumption, int resolution,
+			boolean energy) {
+
+		if (resolution < 1 || consumption.length % resolution != 0)
+			throw new IllegalArgumentException(String.format(
+					"Resolution of %d minutes does not divide %d minutes",
+					resolution, consumption.length));
+
+		if (resolution == 1 && !energy)
+			return consumption;
+
+		int n = consumption.length / resolution;
+		double divisor = energy ? 60 : resolution;
+		double[] values = new double[n];
+		for (int i = 0; i < n; i++) {
+			double sum = 0;
+			for (int j = i * resolution; j < (i + 1) * resolution; j++)
+				sum += consumption[j];
+			values[i] = sum / divisor;
+		}
+		return values;
+	}
+
+	/**
+	 * Gets the name of this Load.
+	 * 
+	 * @return a String
+	 */
+	public String getId() {
+		return id;
+	}
+
 	/**
 	 * Gets the consumption of this Load at a specified time interval
 	 * 
@@ -1,13 +1,10 @@
 package uk.ac.imperial.simelec;
 
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
-import au.com.bytecode.opencsv.CSVWriter;
-
 /**
  * A template for simulation models of Load objects
  * 
@@ -25,6 +22,15 @@ public abstract class LoadModel<V extends Load> {
 	protected List<V> loads;
 	protected boolean totalOnly = true;
 	protected double[] totalConsumption; // W
+	protected RandomStreams streams = RandomStreams.global();
+	protected ModelParameters parameters = new ModelParameters();
+	protected int resolution = 1; // minutes
+	protected boolean energyOutput = false;
+	protected boolean compressed = false;
+	protected int precision = -1; // decimal places, or -1 for exact
+	protected boolean writeProfiles = true;
+	protected List<LoadOperator> operators = new ArrayList<LoadOperator>();
+	private OutputSink sink;
 
 	/**
 	 * Create a new LoadModel specifying various parameters
@@ -60,7 +66,7 @@ public abstract class LoadModel<V extends Load> {
 
 		runModel();
 
-		// Write the results to a CSV file
+		// Pass the profiles to the operators and write them to a CSV file
 		writeResults(out_file);
 
 	}
@@ -74,10 +80,13 @@ public abstract class LoadModel<V extends Load> {
 	protected abstract void runModel() throws IOException;
 
 	/**
-	 * Writes the results of this LoadModel to a specified File
+	 * Writes the results of this LoadModel to a specified File, after giving
+	 * each Load to the operators
 	 * 
 	 * @param file
-	 *            the file on which to write the results
+	 *            the file on which to write the results. If the output is
+	 *            compressed, <code>.gz</code> is added to its name. Nothing is
+	 *            written if the profiles are not to be written.
 	 * @throws IOException
 	 *             if there are problems writing the results to file
 	 */
@@ -92,29 +101,31 @@ public abstract class LoadModel<V extends Load> {
 			for (int i = 0; i < totalConsumption.length; i++) {
 				totalConsumption[i] += l.getConsumption(i + 1);
 			}
+			for (LoadOperator op : operators) {
+				op.loadCompleted(l);
+			}
 		}
 
+		if (!writeProfiles)
+			return;
 		
-		// Write the data back to the simulation sheet
-		ArrayList<String[]> results;
-		if (totalOnly) {
-			results = new ArrayList<String[]>(1);
-			String label = this.getClass().getSimpleName()
-					.replaceFirst("Model", "");
-			results.add(Load.buildExportString(label.toUpperCase(),
-					totalConsumption));
-		} else {
-			results = new ArrayList<String[]>(loads.size());
-			for (Load a : loads) {
-				results.add(a.toExportString());
+		// Write the data to a file
+		ExportWriter writer = new ExportWriter(OutputFiles.newOutputStream(
+				file, compressed, sink), resolution, energyOutput, precision);
+		try {
+			if (totalOnly) {
+				String label = this.getClass().getSimpleName()
+						.replaceFirst("Model", "");
+				writer.writeRow(label.toUpperCase(), totalConsumption);
+			} else {
+				for (Load a : loads) {
+					writer.writeRow(a.id, a.consumption);
+				}
 			}
+		} finally {
+			writer.close();
 		}
 
-		// Write the data to a file
-		CSVWriter writer = new CSVWriter(new FileWriter(file), ',', '\0');
-		writer.writeAll(results);
-		writer.close();
-
 	}
 
 	/**
@@ -128,6 +139,120 @@ public abstract class LoadModel<V extends Load> {
 		this.totalOnly = total;
 	}
 
+	/**
+	 * Sets the time resolution of the output file. Profiles are always
+	 * simulated at one-minute intervals and aggregated to this resolution as
+	 * they are written.
+	 * 
+	 * @param minutes
+	 *            an int giving the length of each output interval in minutes.
+	 *            See {@link SimElec#validateResolution(int)}.
+	 */
+	public void setOutputResolution(int minutes) {
+		this.resolution = SimElec.validateResolution(minutes);
+	}
+
+	/**
+	 * Sets whether the output file should report the energy in each interval
+	 * (Wh) rather than the mean power (W).
+	 * 
+	 * @param energy
+	 *            a boolean indicating if energy should be reported
+	 */
+	public void setOutputEnergy(boolean energy) {
+		this.energyOutput = energy;
+	}
+
+	/**
+	 * Sets the number of decimal places written in the output file. By
+	 * default, each value is written exactly.
+	 * 
+	 * @param digits
+	 *            an int giving the number of decimal places, or -1 to write
+	 *            each value exactly. See {@link SimElec#validatePrecision(int)}.
+	 */
+	public void setOutputPrecision(int digits) {
+		this.precision = SimElec.validatePrecision(digits);
+	}
+
+	/**
+	 * Sets whether the output file should be compressed with GZIP, in which
+	 * case <code>.gz</code> is added to its name.
+	 * 
+	 * @param compressed
+	 *            a boolean indicating if the output should be compressed
+	 */
+	public void setCompressedOutput(boolean compressed) {
+		this.compressed = compressed;
+	}
+
+	/**
+	 * Sets whether the profiles should be written to the output file. If not,
+	 * the results are only available through {@link #getLoads()},
+	 * {@link #getTotalConsumption()} and any operators.
+	 * 
+	 * @param write
+	 *            a boolean indicating if the output file should be written
+	 */
+	public void setWriteProfiles(boolean write) {
+		this.writeProfiles = write;
+	}
+
+	/**
+	 * Adds an operator, which is given the profile of each Load simulated by
+	 * this LoadModel when it is run. Every Load is given to the operators,
+	 * even if only the totals are written.
+	 * 
+	 * @param op
+	 *            the LoadOperator to add
+	 */
+	public void addOperator(LoadOperator op) {
+		operators.add(op);
+	}
+
+	/**
+	 * Sets the random number streams used by this LoadModel. By default, all
+	 * draws are taken from the global random number generator.
+	 * 
+	 * @param streams
+	 *            the RandomStreams for the simulated household
+	 */
+	public void setRandomStreams(RandomStreams streams) {
+		this.streams = streams;
+	}
+
+	/**
+	 * Sets the calibration constants used by this LoadModel. By default, the
+	 * model uses the values of a new {@link ModelParameters}.
+	 * 
+	 * @param parameters
+	 *            the ModelParameters to use. A copy is taken.
+	 */
+	public void setParameters(ModelParameters parameters) {
+		this.parameters = new ModelParameters(parameters);
+	}
+
+	/**
+	 * Sets an OutputSink to collect the output file, instead of writing it to
+	 * the output directory.
+	 * 
+	 * @param sink
+	 *            the OutputSink, or <code>null</code> to write the file
+	 */
+	void setOutputSink(OutputSink sink) {
+		this.sink = sink;
+	}
+
+	/**
+	 * Gets the loads simulated by this LoadModel.
+	 * 
+	 * @return a List of Load objects, or <code>null</code> if the model has not
+	 *         been run
+	 */
+	public List<V> getLoads() {
+		return loads;
+	}
+
 	/**
 	 * Gets the total load profile from this LoadModel.
 	 * 
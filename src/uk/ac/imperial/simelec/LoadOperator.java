@@ -0,0 +1,26 @@
+package uk.ac.imperial.simelec;
+
+/**
+ * Computes a metric online from the load profiles of a simulation, such as a
+ * tariff cost or the peak demand, so that the output files need not be read
+ * back. Operators are attached to a {@link LoadModel} or {@link SimElec} and
+ * are given each Load as its profile is completed, whether or not the
+ * profiles are written to file.
+ *
+ * An operator accumulates over every Load it is given, so one operator can be
+ * attached to several runs to give a metric for the whole population.
+ *
+ * @author James Keirstead
+ *
+ */
+public interface LoadOperator {
+
+	/**
+	 * Called when the profile of a Load has been simulated.
+	 *
+	 * @param load
+	 *            the Load, whose profile gives the demand (W) at each of 1440
+	 *            one-minute intervals. The Load must not be modified.
+	 */
+	void loadCompleted(Load load);
+}
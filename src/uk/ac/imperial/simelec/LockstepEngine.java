@@ -0,0 +1,186 @@
+package uk.ac.imperial.simelec;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Simulates a block of households together, one minute at a time. After each
+ * minute, the demand of every household is summed and the population
+ * aggregate for that minute is passed to a {@link Listener}. No household
+ * profiles are stored, so the memory needed is independent of the length of
+ * the day.
+ *
+ * @author James Keirstead
+ *
+ */
+public class LockstepEngine {
+
+	/**
+	 * Receives the population aggregate after each simulated minute.
+	 */
+	public interface Listener {
+
+		/**
+		 * Called when a minute has been simulated for every household.
+		 *
+		 * @param minute
+		 *            an int giving the minute of the day (0-1439)
+		 * @param lighting
+		 *            a double giving the total lighting demand (W)
+		 * @param appliances
+		 *            a double giving the total appliance demand (W)
+		 */
+		void minuteCompleted(int minute, double lighting, double appliances);
+	}
+
+	// Member fields
+	private List<HouseholdSimulator> households = new ArrayList<HouseholdSimulator>();
+	private int time = -1;
+	private double lighting;
+	private double appliances;
+
+	/**
+	 * Creates an empty LockstepEngine.
+	 */
+	public LockstepEngine() {
+	}
+
+	/**
+	 * Creates a LockstepEngine for a block of households. Household
+	 * <code>i</code> takes its random numbers from
+	 * {@link RandomStreams#forHousehold(long, long)} with household number
+	 * <code>first + i</code>.
+	 *
+	 * @param specs
+	 *            a List of HouseholdSpec objects
+	 * @param seed
+	 *            a long giving the scenario seed
+	 * @param first
+	 *            a long giving the household number of the first household
+	 * @throws IOException
+	 *             if the model data cannot be read
+	 */
+	public LockstepEngine(List<HouseholdSpec> specs, long seed, long first)
+			throws IOException {
+		for (int i = 0; i < specs.size(); i++) {
+			addHousehold(new HouseholdSimulator(specs.get(i),
+					RandomStreams.forHousehold(seed, first + i)));
+		}
+	}
+
+	/**
+	 * Adds a household to this engine. Households can only be added before
+	 * the first minute is simulated.
+	 *
+	 * @param household
+	 *            the HouseholdSimulator to add
+	 */
+	public void addHousehold(HouseholdSimulator household) {
+		if (time >= 0)
+			throw new IllegalStateException(
+					"Households cannot be added once the simulation has started");
+		households.add(household);
+	}
+
+	/**
+	 * Advances every household by one minute.
+	 *
+	 * @return a double giving the total demand of all households during the
+	 *         new minute (W)
+	 */
+	public double step() {
+		if (isFinished())
+			throw new IllegalStateException("The simulated day has finished");
+
+		time++;
+		lighting = 0;
+		appliances = 0;
+		for (HouseholdSimulator h : households) {
+			h.step();
+			lighting += h.getLightingDemand();
+			appliances += h.getApplianceDemand();
+		}
+
+		return lighting + appliances;
+	}
+
+	/**
+	 * Simulates the rest of the day, notifying a listener after each minute.
+	 *
+	 * @param listener
+	 *            the Listener to notify, or <code>null</code>
+	 */
+	public void run(Listener listener) {
+		while (!isFinished()) {
+			step();
+			if (listener != null)
+				listener.minuteCompleted(time, lighting, appliances);
+		}
+	}
+
+	/**
+	 * Simulates the rest of the day and returns the aggregate profile.
+	 *
+	 * @return an array of 1440 values giving the total demand of all
+	 *         households at one-minute intervals (W). Minutes that had already
+	 *         been simulated are zero.
+	 */
+	public double[] run() {
+		final double[] total = new double[HouseholdSimulator.MINUTES];
+		run(new Listener() {
+			@Override
+			public void minuteCompleted(int minute, double lighting,
+					double appliances) {
+				total[minute] = lighting + appliances;
+			}
+		});
+		return total;
+	}
+
+	/**
+	 * Has the whole day been simulated?
+	 *
+	 * @return <code>true</code> if there are no more minutes to simulate
+	 */
+	public boolean isFinished() {
+		return time + 1 >= HouseholdSimulator.MINUTES;
+	}
+
+	/**
+	 * Gets the current minute of the day.
+	 *
+	 * @return an int giving the minute (0-1439), or -1 if no minutes have been
+	 *         simulated
+	 */
+	public int getTime() {
+		return time;
+	}
+
+	/**
+	 * Gets the total lighting demand in the current minute.
+	 *
+	 * @return a double giving the demand (W)
+	 */
+	public double getLightingDemand() {
+		return lighting;
+	}
+
+	/**
+	 * Gets the total appliance demand in the current minute.
+	 *
+	 * @return a double giving the demand (W)
+	 */
+	public double getApplianceDemand() {
+		return appliances;
+	}
+
+	/**
+	 * Gets the households in this engine.
+	 *
+	 * @return a List of HouseholdSimulator objects
+	 */
+	public List<HouseholdSimulator> getHouseholds() {
+		return households;
+	}
+}
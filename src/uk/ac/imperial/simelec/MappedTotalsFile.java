@@ -0,0 +1,281 @@
+package uk.ac.imperial.simelec;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A file of fixed-length records, each holding the 1440 one-minute total
+ * demand values (W) of one household-day. The file is created at its full
+ * size and mapped into memory, and the record of household <code>i</code> is
+ * always at the same position, so threads can write their own households
+ * directly into the file without any locking. Other programs can map the
+ * same file to read the results.
+ *
+ * The file starts with a 32-byte header: the int <code>0x53454c4d</code>
+ * ("SELM"), the format version, the number of records as a long and the
+ * number of values per record as an int. A flag byte for each record
+ * follows, set to 1 once the record has been written, padded to a multiple
+ * of eight bytes. The records follow as doubles. Every number is
+ * little-endian.
+ *
+ * As a {@link BatchRunner.Listener}, a MappedTotalsFile writes each completed
+ * household into the record with its household number.
+ *
+ * @author James Keirstead
+ *
+ */
+public class MappedTotalsFile implements BatchRunner.Listener {
+
+	// File format identifiers
+	private static final int MAGIC = 0x53454c4d; // "SELM"
+	private static final int VERSION = 1;
+	private static final int HEADER_BYTES = 32;
+
+	/** The number of values in each record */
+	public static final int VALUES = HouseholdSimulator.MINUTES;
+
+	private static final int RECORD_BYTES = VALUES * 8;
+
+	// Member fields
+	private File file;
+	private long records;
+	private boolean readOnly;
+	private MappedByteBuffer flags;
+	private MappedByteBuffer[] chunks;
+	private DoubleBuffer[] values;
+	private int recordsPerChunk;
+
+	private MappedTotalsFile(File file, long records, boolean readOnly,
+			long maxChunkBytes) throws IOException {
+		this.file = file;
+		this.records = records;
+		this.readOnly = readOnly;
+		this.recordsPerChunk = (int) Math.max(1, maxChunkBytes / RECORD_BYTES);
+
+		FileChannel.MapMode mode = readOnly ? FileChannel.MapMode.READ_ONLY
+				: FileChannel.MapMode.READ_WRITE;
+		RandomAccessFile raf = new RandomAccessFile(file, readOnly ? "r" : "rw");
+		try {
+			FileChannel channel = raf.getChannel();
+			long dataStart = getDataStart(records);
+			if (channel.size() < dataStart + records * RECORD_BYTES)
+				throw new IOException(String.format(
+						"'%s' is shorter than its %d records", file, records));
+
+			flags = channel.map(mode, HEADER_BYTES, records);
+
+			int n = (int) ((records + recordsPerChunk - 1) / recordsPerChunk);
+			chunks = new MappedByteBuffer[n];
+			values = new DoubleBuffer[n];
+			for (int i = 0; i < n; i++) {
+				long first = (long) i * recordsPerChunk;
+				long count = Math.min(recordsPerChunk, records - first);
+				chunks[i] = channel.map(mode, dataStart + first * RECORD_BYTES,
+						count * RECORD_BYTES);
+				chunks[i].order(ByteOrder.LITTLE_ENDIAN);
+				values[i] = chunks[i].asDoubleBuffer();
+			}
+		} finally {
+			// The mappings remain valid after the channel is closed
+			raf.close();
+		}
+	}
+
+	/**
+	 * Creates a new file with space for a number of records, replacing any
+	 * existing file, and maps it for writing. Every record is initially zero
+	 * and marked as not written.
+	 *
+	 * @param file
+	 *            the File to create
+	 * @param records
+	 *            a long giving the number of records
+	 * @return the MappedTotalsFile
+	 * @throws IOException
+	 *             if the file cannot be created
+	 */
+	public static MappedTotalsFile create(File file, long records)
+			throws IOException {
+		return create(file, records, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Creates a new file, mapping its records in chunks of at most a given
+	 * size. A single mapping cannot exceed 2 GB.
+	 */
+	static MappedTotalsFile create(File file, long records, long maxChunkBytes)
+			throws IOException {
+		if (records < 0 || records > Integer.MAX_VALUE)
+			throw new IllegalArgumentException(String.format(
+					"Invalid number of records: %d", records));
+
+		ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+		header.order(ByteOrder.LITTLE_ENDIAN);
+		header.putInt(MAGIC).putInt(VERSION).putLong(records).putInt(VALUES);
+
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		try {
+			raf.setLength(0);
+			raf.setLength(getDataStart(records) + records * RECORD_BYTES);
+			raf.write(header.array());
+		} finally {
+			raf.close();
+		}
+
+		return new MappedTotalsFile(file, records, false, maxChunkBytes);
+	}
+
+	/**
+	 * Opens an existing file.
+	 *
+	 * @param file
+	 *            the File to open
+	 * @param readOnly
+	 *            a boolean indicating if the file should be mapped read-only
+	 * @return the MappedTotalsFile
+	 * @throws IOException
+	 *             if the file cannot be read or is not a totals file
+	 */
+	public static MappedTotalsFile open(File file, boolean readOnly)
+			throws IOException {
+		ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+		header.order(ByteOrder.LITTLE_ENDIAN);
+
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			if (raf.length() < HEADER_BYTES)
+				throw new IOException(String.format(
+						"'%s' is not a SimElec totals file", file));
+			raf.readFully(header.array());
+		} finally {
+			raf.close();
+		}
+
+		if (header.getInt() != MAGIC || header.getInt() != VERSION)
+			throw new IOException(String.format(
+					"'%s' is not a SimElec totals file", file));
+		long records = header.getLong();
+		if (records < 0 || records > Integer.MAX_VALUE
+				|| header.getInt() != VALUES)
+			throw new IOException(String.format(
+					"'%s' has an invalid header", file));
+
+		return new MappedTotalsFile(file, records, readOnly,
+				Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Gets the position of the first record in a file.
+	 */
+	private static long getDataStart(long records) {
+		return HEADER_BYTES + (records + 7) / 8 * 8;
+	}
+
+	/**
+	 * Writes a record. Different records may be written by different threads
+	 * at the same time.
+	 *
+	 * @param record
+	 *            a long giving the record number
+	 * @param totals
+	 *            an array of 1440 values, for example from
+	 *            {@link SimElec#getGrandTotals()} or
+	 *            {@link LoadModel#getTotalConsumption()}
+	 * @throws IllegalArgumentException
+	 *             if the array is not of length 1440
+	 */
+	public void write(long record, double[] totals) {
+		check(record);
+		if (totals.length != VALUES)
+			throw new IllegalArgumentException(String.format(
+					"Expected %d values but found %d", VALUES, totals.length));
+
+		DoubleBuffer b = values[(int) (record / recordsPerChunk)];
+		int offset = (int) (record % recordsPerChunk) * VALUES;
+		for (int i = 0; i < VALUES; i++) {
+			b.put(offset + i, totals[i]);
+		}
+		flags.put((int) record, (byte) 1);
+	}
+
+	/**
+	 * Reads a record.
+	 *
+	 * @param record
+	 *            a long giving the record number
+	 * @return an array of 1440 values
+	 */
+	public double[] read(long record) {
+		check(record);
+		DoubleBuffer b = values[(int) (record / recordsPerChunk)];
+		int offset = (int) (record % recordsPerChunk) * VALUES;
+		double[] totals = new double[VALUES];
+		for (int i = 0; i < VALUES; i++) {
+			totals[i] = b.get(offset + i);
+		}
+		return totals;
+	}
+
+	/**
+	 * Has a record been written?
+	 *
+	 * @param record
+	 *            a long giving the record number
+	 * @return <code>true</code> if the record has been written
+	 */
+	public boolean isWritten(long record) {
+		check(record);
+		return flags.get((int) record) != 0;
+	}
+
+	/**
+	 * Writes the total demand of a completed household into the record with
+	 * its household number.
+	 */
+	@Override
+	public void householdCompleted(HouseholdResult result, int completed) {
+		write(result.getHousehold(), result.getTotal());
+	}
+
+	/**
+	 * Forces any changes to be written to the storage device.
+	 */
+	public void force() {
+		if (readOnly)
+			return;
+		flags.force();
+		for (MappedByteBuffer b : chunks) {
+			b.force();
+		}
+	}
+
+	/**
+	 * Gets the number of records in this file.
+	 *
+	 * @return a long
+	 */
+	public long getRecords() {
+		return records;
+	}
+
+	/**
+	 * Gets the underlying file.
+	 *
+	 * @return a File
+	 */
+	public File getFile() {
+		return file;
+	}
+
+	private void check(long record) {
+		if (record < 0 || record >= records)
+			throw new IndexOutOfBoundsException(String.format(
+					"Record %d is outside 0 to %d", record, records - 1));
+	}
+}
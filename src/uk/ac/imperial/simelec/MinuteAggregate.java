@@ -0,0 +1,87 @@
+package uk.ac.imperial.simelec;
+
+/**
+ * The total demand of a population of households in one minute of the day.
+ *
+ * @author James Keirstead
+ *
+ */
+public class MinuteAggregate {
+
+	// Member fields
+	private final int minute;
+	private final int households;
+	private final double lighting;
+	private final double appliances;
+
+	/**
+	 * Creates a new MinuteAggregate.
+	 *
+	 * @param minute
+	 *            an int giving the minute of the day (0-1439)
+	 * @param households
+	 *            an int giving the number of households
+	 * @param lighting
+	 *            a double giving the total lighting demand (W)
+	 * @param appliances
+	 *            a double giving the total appliance demand (W)
+	 */
+	public MinuteAggregate(int minute, int households, double lighting,
+			double appliances) {
+		this.minute = minute;
+		this.households = households;
+		this.lighting = lighting;
+		this.appliances = appliances;
+	}
+
+	/**
+	 * Gets the minute of the day.
+	 *
+	 * @return an int (0-1439)
+	 */
+	public int getMinute() {
+		return minute;
+	}
+
+	/**
+	 * Gets the number of households.
+	 *
+	 * @return an int
+	 */
+	public int getHouseholds() {
+		return households;
+	}
+
+	/**
+	 * Gets the total lighting demand.
+	 *
+	 * @return a double (W)
+	 */
+	public double getLighting() {
+		return lighting;
+	}
+
+	/**
+	 * Gets the total appliance demand.
+	 *
+	 * @return a double (W)
+	 */
+	public double getAppliances() {
+		return appliances;
+	}
+
+	/**
+	 * Gets the total demand.
+	 *
+	 * @return a double (W)
+	 */
+	public double getTotal() {
+		return lighting + appliances;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%d: %.1f W lighting, %.1f W appliances", minute,
+				lighting, appliances);
+	}
+}
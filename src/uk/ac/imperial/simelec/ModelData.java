@@ -0,0 +1,523 @@
+package uk.ac.imperial.simelec;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+
+/**
+ * Provides the input data bundled with SimElec. Each data file is parsed the
+ * first time it is needed and then held in memory, so that simulating many
+ * households does not repeatedly parse the same files.
+ *
+ * If the jar contains a {@link DataSnapshot}, compiled from the data files
+ * when SimElec is packaged, all of the data are read from it at once instead.
+ * A snapshot compiled from different data files, such as one left over from
+ * an earlier build, is ignored.
+ *
+ * Custom data can be used by placing files with the same names as the bundled
+ * files, such as <code>appliances.csv</code>, in one or more external data
+ * directories. See {@link #setDataDirectories(File...)}.
+ *
+ * @author James Keirstead
+ *
+ */
+public class ModelData {
+
+	// Data files
+	private static String resource_dir = "/data/";
+	private static String irradiance_file = "irradiance.csv";
+	private static String bulbs_file = "bulbs.csv";
+	private static String activity_file = "activities.csv";
+	private static String appliance_file = "appliances.csv";
+	private static String start_states_weekend = "occ_start_states_weekend.csv";
+	private static String start_states_weekday = "occ_start_states_weekday.csv";
+	private static String tpm_template = "tpm_%d_%s.csv";
+
+	// External data directories
+	private static File[] directories = new File[0];
+	private static String digest;
+
+	// Cached data
+	private static boolean snapshotChecked = false;
+	private static int[][] irradiance;
+	private static int[][] bulbs;
+	private static ApplianceCatalogue appliances;
+	private static double[][][] startStates = new double[2][][];
+	private static double[][][][] transitions = new double[2][][][];
+
+	private ModelData() {
+	}
+
+	/**
+	 * Sets the external data directories. Each data file is read from the
+	 * first of these directories which contains it, or from the bundled data
+	 * if none do. Any data which have already been read are discarded, and
+	 * the data snapshot is not used while external directories are set.
+	 *
+	 * As the model data are shared, this should be called before any
+	 * households are simulated. Every process taking part in a run must use
+	 * the same directories; a {@link ShardJob} records those of the process
+	 * which creates it and its workers apply them. The data files should not
+	 * be changed while they are in use, as the digest used to identify cached
+	 * results is only calculated once (see {@link #getDataDigest()}).
+	 *
+	 * @param dirs
+	 *            the directories to search, in order. If none are given, only
+	 *            the bundled data are used.
+	 * @throws IllegalArgumentException
+	 *             if a directory does not exist
+	 */
+	public static synchronized void setDataDirectories(File... dirs) {
+		for (File d : dirs) {
+			if (!d.isDirectory())
+				throw new IllegalArgumentException("Not a directory: " + d);
+		}
+		directories = dirs.clone();
+		digest = null;
+		snapshotChecked = directories.length > 0;
+		irradiance = null;
+		bulbs = null;
+		appliances = null;
+		startStates = new double[2][][];
+		transitions = new double[2][][][];
+	}
+
+	/**
+	 * Gets the external data directories.
+	 *
+	 * @return an array of File objects, which is empty if only the bundled
+	 *         data are used
+	 */
+	public static synchronized File[] getDataDirectories() {
+		return directories.clone();
+	}
+
+	/**
+	 * Gets a digest of the data files read from the external data
+	 * directories, so that results simulated from different data can be told
+	 * apart. The digest covers the name and contents of each data file found
+	 * in the directories, and is calculated once after the directories are
+	 * set.
+	 *
+	 * @return a String of hexadecimal digits, or an empty String if only the
+	 *         bundled data are used
+	 * @throws IOException
+	 *             if a data file cannot be read
+	 */
+	public static synchronized String getDataDigest() throws IOException {
+		if (directories.length == 0)
+			return "";
+		if (digest != null)
+			return digest;
+
+		MessageDigest md = newDigest();
+		for (String name : getFileNames()) {
+			File f = find(name);
+			if (f != null)
+				update(md, name, FileUtils.readFileToByteArray(f));
+		}
+		StringBuilder sb = new StringBuilder();
+		for (byte b : md.digest()) {
+			sb.append(String.format("%02x", b));
+		}
+		digest = sb.toString();
+		return digest;
+	}
+
+	/**
+	 * Gets a digest of the bundled data files, in the same form as
+	 * {@link #getDataDigest()}. This identifies the data from which a
+	 * {@link DataSnapshot} was compiled.
+	 * 
+	 * @return the bytes of the digest
+	 * @throws IOException
+	 *             if a data file cannot be read
+	 */
+	static byte[] getBundledDigest() throws IOException {
+		MessageDigest md = newDigest();
+		for (String name : getFileNames()) {
+			InputStream is = ModelData.class.getResourceAsStream(resource_dir
+					+ name);
+			if (is == null)
+				continue;
+			try {
+				update(md, name, IOUtils.toByteArray(is));
+			} finally {
+				is.close();
+			}
+		}
+		return md.digest();
+	}
+
+	/**
+	 * Gets the names of the data files.
+	 * 
+	 * @return a List of file names
+	 */
+	private static List<String> getFileNames() {
+		List<String> names = new ArrayList<String>();
+		names.add(irradiance_file);
+		names.add(bulbs_file);
+		names.add(activity_file);
+		names.add(appliance_file);
+		names.add(start_states_weekday);
+		names.add(start_states_weekend);
+		for (int r = 1; r <= 5; r++) {
+			names.add(String.format(tpm_template, r, "weekday"));
+			names.add(String.format(tpm_template, r, "weekend"));
+		}
+		return names;
+	}
+
+	private static MessageDigest newDigest() {
+		try {
+			return MessageDigest.getInstance("SHA-1");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static void update(MessageDigest md, String name, byte[] contents)
+			throws IOException {
+		md.update(name.getBytes("UTF-8"));
+		md.update((byte) 0);
+		md.update(contents);
+		md.update((byte) 0);
+	}
+
+	/**
+	 * Finds a data file in the external data directories.
+	 *
+	 * @param file
+	 *            a String giving the file name
+	 * @return the File in the first directory which contains it, or
+	 *         <code>null</code> if none do
+	 */
+	private static File find(String file) {
+		for (File d : directories) {
+			File f = new File(d, file);
+			if (f.isFile())
+				return f;
+		}
+		return null;
+	}
+
+	/**
+	 * Opens a data file, from the external data directories if it is found
+	 * there and otherwise from the bundled data.
+	 *
+	 * @param file
+	 *            a String giving the file name
+	 * @param skip
+	 *            an int giving the number of header lines to skip
+	 * @return a NumericCsvReader positioned before the first row
+	 * @throws IOException
+	 *             if the file cannot be found or read
+	 */
+	static NumericCsvReader open(String file, int skip) throws IOException {
+		InputStream is = null;
+		File f = find(file);
+		if (f != null)
+			is = new FileInputStream(f);
+		if (is == null)
+			is = ModelData.class.getResourceAsStream(resource_dir + file);
+		if (is == null)
+			throw new IOException("Unable to find data file " + file);
+		return new NumericCsvReader(is, skip);
+	}
+
+	/**
+	 * Loads the data snapshot, if there is one and it was compiled from the
+	 * bundled data files. This is only attempted once.
+	 *
+	 * @throws IOException
+	 *             if the snapshot exists but cannot be read
+	 */
+	private static void checkSnapshot() throws IOException {
+		if (snapshotChecked)
+			return;
+		snapshotChecked = true;
+
+		InputStream is = ModelData.class
+				.getResourceAsStream(DataSnapshot.RESOURCE);
+		if (is == null)
+			return;
+
+		DataSnapshot snapshot;
+		try {
+			snapshot = DataSnapshot.read(is);
+		} finally {
+			is.close();
+		}
+
+		// A stale snapshot is ignored and the data files parsed instead
+		if (!snapshot.isCurrent())
+			return;
+		irradiance = snapshot.irradiance;
+		bulbs = snapshot.bulbs;
+		appliances = snapshot.appliances;
+		startStates = snapshot.startStates;
+		transitions = snapshot.transitions;
+	}
+
+	/**
+	 * Gets the irradiance profile for a month.
+	 *
+	 * @param month
+	 *            an int giving the month of the year (1-12)
+	 * @return an array of irradiance values in W/m2 at one-minute intervals.
+	 *         This array is shared and must not be modified.
+	 * @throws IOException
+	 */
+	public static synchronized int[] getIrradiance(int month)
+			throws IOException {
+
+		checkSnapshot();
+		if (irradiance == null)
+			irradiance = parseIrradiance();
+
+		return irradiance[SimElec.validateMonth(month) - 1];
+	}
+
+	/**
+	 * Parses the irradiance data file.
+	 *
+	 * @return an array of irradiance profiles for each month
+	 * @throws IOException
+	 */
+	static int[][] parseIrradiance() throws IOException {
+		int[][] tmp = new int[12][HouseholdSimulator.MINUTES];
+		NumericCsvReader reader = open(irradiance_file, 8);
+		int i = 0;
+		try {
+			for (; reader.next(); i++) {
+				if (i == tmp[0].length)
+					break;
+				for (int m = 0; m < 12; m++) {
+					tmp[m][i] = reader.getInt(2 + m);
+				}
+			}
+		} finally {
+			reader.close();
+		}
+		if (i != tmp[0].length)
+			throw new IOException(String.format(
+					"%s must have %d rows of data", irradiance_file,
+					tmp[0].length));
+		return tmp;
+	}
+
+	/**
+	 * Gets the sample bulb configurations. Each configuration gives the power
+	 * rating in Watts of every bulb in one of the sample houses.
+	 *
+	 * @return an array of bulb ratings for each sample house. This array is
+	 *         shared and must not be modified.
+	 * @throws IOException
+	 */
+	public static synchronized int[][] getBulbConfigurations()
+			throws IOException {
+
+		checkSnapshot();
+		if (bulbs == null)
+			bulbs = parseBulbConfigurations();
+
+		return bulbs;
+	}
+
+	/**
+	 * Parses the bulb configuration data file.
+	 *
+	 * @return an array of bulb ratings for each sample house
+	 * @throws IOException
+	 */
+	static int[][] parseBulbConfigurations() throws IOException {
+		List<int[]> tmp = new ArrayList<int[]>();
+
+		// Note that the input data file is a ragged array, which has been
+		// padded with 0 values for bulb ratings. The first column "nBulbs"
+		// specifies how many valid values to read.
+		NumericCsvReader reader = open(bulbs_file, 10);
+		try {
+			while (reader.next()) {
+				int nBulbs = reader.getInt(1);
+				int[] ratings = new int[nBulbs];
+				for (int j = 0; j < nBulbs; j++) {
+					ratings[j] = reader.getInt(2 + j);
+				}
+				tmp.add(ratings);
+			}
+		} finally {
+			reader.close();
+		}
+		return tmp.toArray(new int[tmp.size()][]);
+	}
+
+	/**
+	 * Gets the catalogue of appliances and the activity statistics which
+	 * drive their use.
+	 *
+	 * @return the shared ApplianceCatalogue
+	 * @throws IOException
+	 */
+	public static synchronized ApplianceCatalogue getApplianceCatalogue()
+			throws IOException {
+
+		checkSnapshot();
+		if (appliances == null)
+			appliances = parseApplianceCatalogue();
+
+		return appliances;
+	}
+
+	/**
+	 * Parses the appliance and activity data files.
+	 *
+	 * @return a new ApplianceCatalogue
+	 * @throws IOException
+	 */
+	static ApplianceCatalogue parseApplianceCatalogue() throws IOException {
+		NumericCsvReader appliances = open(appliance_file, 37);
+		try {
+			NumericCsvReader stats = open(activity_file, 6);
+			try {
+				return new ApplianceCatalogue(appliances, stats);
+			} finally {
+				stats.close();
+			}
+		} finally {
+			appliances.close();
+		}
+	}
+
+	/**
+	 * Gets the distribution of the number of active occupants between 00:00
+	 * and 00:10.
+	 *
+	 * @param residents
+	 *            an int giving the number of residents (1-5)
+	 * @param weekend
+	 *            a boolean indicating a weekend (<code>true</code>) or weekday
+	 * @return an array giving the relative probability of each number of
+	 *         active occupants. This array is shared and must not be
+	 *         modified.
+	 * @throws IOException
+	 */
+	public static synchronized double[] getOccupancyStartStates(
+			int residents, boolean weekend) throws IOException {
+
+		checkSnapshot();
+		int d = weekend ? 1 : 0;
+		if (startStates[d] == null)
+			startStates[d] = parseOccupancyStartStates(weekend);
+
+		return startStates[d][SimElec.validateResidents(residents)];
+	}
+
+	/**
+	 * Parses an occupancy start state data file.
+	 *
+	 * @param weekend
+	 *            a boolean indicating a weekend (<code>true</code>) or weekday
+	 * @return an array giving the start state distribution for each number
+	 *         of residents
+	 * @throws IOException
+	 */
+	static double[][] parseOccupancyStartStates(boolean weekend)
+			throws IOException {
+		List<double[]> rows = new ArrayList<double[]>();
+		NumericCsvReader reader = open(weekend ? start_states_weekend
+				: start_states_weekday, 2);
+		try {
+			while (reader.next()) {
+				double[] row = new double[reader.getColumnCount()];
+				for (int r = 1; r < row.length; r++) {
+					row[r] = reader.getFloat(r);
+				}
+				rows.add(row);
+			}
+		} finally {
+			reader.close();
+		}
+
+		// Transpose to give the distribution for each number of residents
+		int columns = rows.get(0).length;
+		double[][] tmp = new double[columns][rows.size()];
+		for (int j = 0; j < rows.size(); j++) {
+			for (int r = 1; r < columns; r++) {
+				tmp[r][j] = rows.get(j)[r];
+			}
+		}
+		return tmp;
+	}
+
+	/**
+	 * Gets the transition probabilities between numbers of active occupants.
+	 * Row <code>(t - 1) * 7 + n</code> gives the relative probability of each
+	 * number of active occupants in period <code>t</code> (1-143), given
+	 * <code>n</code> active occupants in the period before.
+	 *
+	 * @param residents
+	 *            an int giving the number of residents (1-5)
+	 * @param weekend
+	 *            a boolean indicating a weekend (<code>true</code>) or weekday
+	 * @return an array of transition probability rows. This array is shared
+	 *         and must not be modified.
+	 * @throws IOException
+	 */
+	public static synchronized double[][] getTransitionProbabilities(
+			int residents, boolean weekend) throws IOException {
+
+		checkSnapshot();
+		int d = weekend ? 1 : 0;
+		int r = SimElec.validateResidents(residents);
+		if (transitions[d] == null)
+			transitions[d] = new double[6][][];
+
+		if (transitions[d][r] == null)
+			transitions[d][r] = parseTransitionProbabilities(r, weekend);
+
+		return transitions[d][r];
+	}
+
+	/**
+	 * Parses a transition probability matrix data file.
+	 *
+	 * @param residents
+	 *            an int giving the number of residents (1-5)
+	 * @param weekend
+	 *            a boolean indicating a weekend (<code>true</code>) or weekday
+	 * @return an array of transition probability rows
+	 * @throws IOException
+	 */
+	static double[][] parseTransitionProbabilities(int residents,
+			boolean weekend) throws IOException {
+		List<double[]> tmp = new ArrayList<double[]>();
+		NumericCsvReader reader = open(String.format(tpm_template, residents,
+				weekend ? "weekend" : "weekday"), 1);
+		try {
+			while (reader.next()) {
+
+				// Only the transitions to zero to four active occupants are
+				// read, as in the original model
+				int columns = reader.getColumnCount();
+				double[] row = new double[columns - 2];
+				for (int i = 2; i < columns - 2; i++) {
+					row[i - 2] = reader.getFloat(i);
+				}
+				tmp.add(row);
+			}
+		} finally {
+			reader.close();
+		}
+		return tmp.toArray(new double[tmp.size()][]);
+	}
+}
@@ -0,0 +1,270 @@
+package uk.ac.imperial.simelec;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The calibration constants used by the {@link HouseholdSimulator}, and by the
+ * lighting and appliance models of a {@link SimElec} run. A new
+ * ModelParameters holds the default values, and any of them can then be
+ * overridden, either with the typed setters or by name with
+ * {@link #set(String, double)}. The names are:
+ * <ul>
+ * <li><code>bulb_calibration</code>, the mean bulb use weighting</li>
+ * <li><code>mean_irradiance</code> and <code>sd_irradiance</code>, the
+ * distribution of the household's irradiance threshold (W/m2)</li>
+ * <li><code>temperature_modifier.M</code>, the relative temperature modifier
+ * for electric space heating in month <code>M</code> (1-12)</li>
+ * <li><code>calibration.ID</code>, the calibration constant of the appliance
+ * <code>ID</code>, such as <code>calibration.FRIDGE</code></li>
+ * </ul>
+ *
+ * @author James Keirstead
+ *
+ */
+public class ModelParameters {
+
+	// Parameter names
+	public static final String BULB_CALIBRATION = "bulb_calibration";
+	public static final String MEAN_IRRADIANCE = "mean_irradiance";
+	public static final String SD_IRRADIANCE = "sd_irradiance";
+	public static final String TEMPERATURE_MODIFIER = "temperature_modifier.";
+	public static final String CALIBRATION = "calibration.";
+
+	// Member fields
+	private double bulbCalibration = Bulb.CALIBRATION;
+	private double meanIrradiance = LightingModel.MEAN_IRRADIANCE;
+	private double sdIrradiance = LightingModel.SD_IRRADIANCE;
+	private double[] temperatureModifier = ApplianceModel.oMonthlyRelativeTemperatureModifier
+			.clone();
+	private Map<String, Double> calibration = new LinkedHashMap<String, Double>();
+
+	/**
+	 * Creates a ModelParameters with the default values.
+	 */
+	public ModelParameters() {
+	}
+
+	/**
+	 * Creates a copy of a ModelParameters.
+	 *
+	 * @param other
+	 *            the ModelParameters to copy
+	 */
+	public ModelParameters(ModelParameters other) {
+		this.bulbCalibration = other.bulbCalibration;
+		this.meanIrradiance = other.meanIrradiance;
+		this.sdIrradiance = other.sdIrradiance;
+		this.temperatureModifier = other.temperatureModifier.clone();
+		this.calibration = new LinkedHashMap<String, Double>(
+				other.calibration);
+	}
+
+	/**
+	 * Sets a parameter by name.
+	 *
+	 * @param name
+	 *            a String giving the parameter name
+	 * @param value
+	 *            a double giving the new value
+	 * @throws IllegalArgumentException
+	 *             if the name is not recognised
+	 */
+	public void set(String name, double value) {
+		if (name.equals(BULB_CALIBRATION)) {
+			setBulbCalibration(value);
+		} else if (name.equals(MEAN_IRRADIANCE)) {
+			setMeanIrradiance(value);
+		} else if (name.equals(SD_IRRADIANCE)) {
+			setSdIrradiance(value);
+		} else if (name.startsWith(TEMPERATURE_MODIFIER)) {
+			int month;
+			try {
+				month = Integer.valueOf(name.substring(TEMPERATURE_MODIFIER
+						.length()));
+			} catch (NumberFormatException e) {
+				throw new IllegalArgumentException("Unknown parameter " + name);
+			}
+			setTemperatureModifier(month, value);
+		} else if (name.startsWith(CALIBRATION)
+				&& name.length() > CALIBRATION.length()) {
+			setApplianceCalibration(name.substring(CALIBRATION.length()),
+					value);
+		} else {
+			throw new IllegalArgumentException("Unknown parameter " + name);
+		}
+	}
+
+	/**
+	 * Gets the bulb calibration scaler.
+	 *
+	 * @return a double giving the mean bulb use weighting
+	 */
+	public double getBulbCalibration() {
+		return bulbCalibration;
+	}
+
+	/**
+	 * Sets the bulb calibration scaler.
+	 *
+	 * @param value
+	 *            a non-negative double giving the mean bulb use weighting
+	 */
+	public void setBulbCalibration(double value) {
+		this.bulbCalibration = validate(BULB_CALIBRATION, value);
+	}
+
+	/**
+	 * Gets the mean irradiance threshold.
+	 *
+	 * @return a double (W/m2)
+	 */
+	public double getMeanIrradiance() {
+		return meanIrradiance;
+	}
+
+	/**
+	 * Sets the mean irradiance threshold.
+	 *
+	 * @param value
+	 *            a non-negative double (W/m2)
+	 */
+	public void setMeanIrradiance(double value) {
+		this.meanIrradiance = validate(MEAN_IRRADIANCE, value);
+	}
+
+	/**
+	 * Gets the standard deviation of the irradiance threshold.
+	 *
+	 * @return a double (W/m2)
+	 */
+	public double getSdIrradiance() {
+		return sdIrradiance;
+	}
+
+	/**
+	 * Sets the standard deviation of the irradiance threshold.
+	 *
+	 * @param value
+	 *            a non-negative double (W/m2)
+	 */
+	public void setSdIrradiance(double value) {
+		this.sdIrradiance = validate(SD_IRRADIANCE, value);
+	}
+
+	/**
+	 * Gets the relative temperature modifier for electric space heating.
+	 *
+	 * @param month
+	 *            an int giving the month of the year (1-12)
+	 * @return a double
+	 * @throws IllegalArgumentException
+	 *             if the month is not valid
+	 */
+	public double getTemperatureModifier(int month) {
+		return temperatureModifier[checkMonth(month) - 1];
+	}
+
+	/**
+	 * Sets the relative temperature modifier for electric space heating.
+	 *
+	 * @param month
+	 *            an int giving the month of the year (1-12)
+	 * @param value
+	 *            a non-negative double
+	 * @throws IllegalArgumentException
+	 *             if the month or value is not valid
+	 */
+	public void setTemperatureModifier(int month, double value) {
+		temperatureModifier[checkMonth(month) - 1] = validate(
+				TEMPERATURE_MODIFIER + month, value);
+	}
+
+	/**
+	 * Gets the relative temperature modifiers for each month.
+	 *
+	 * @return the array of twelve modifiers. This array must not be modified.
+	 */
+	double[] getTemperatureModifiers() {
+		return temperatureModifier;
+	}
+
+	/**
+	 * Sets the calibration constant of an appliance, overriding the value in
+	 * <code>appliances.csv</code>.
+	 *
+	 * @param id
+	 *            a String giving the appliance id, such as <code>FRIDGE</code>
+	 * @param value
+	 *            a non-negative double
+	 */
+	public void setApplianceCalibration(String id, double value) {
+		calibration.put(id.toUpperCase(), validate(CALIBRATION + id, value));
+	}
+
+	/**
+	 * Gets the calibration constant of every appliance in a catalogue,
+	 * including any overrides.
+	 *
+	 * @param catalogue
+	 *            the ApplianceCatalogue
+	 * @return a new array of calibration constants, indexed as the catalogue
+	 * @throws IllegalArgumentException
+	 *             if an override names an appliance which is not in the
+	 *             catalogue
+	 */
+	double[] getApplianceCalibration(ApplianceCatalogue catalogue) {
+		double[] result = catalogue.calibration.clone();
+		for (Map.Entry<String, Double> e : calibration.entrySet()) {
+			int i = catalogue.indexOf(e.getKey());
+			if (i < 0)
+				throw new IllegalArgumentException("Unknown appliance "
+						+ e.getKey());
+			result[i] = e.getValue();
+		}
+		return result;
+	}
+
+	private static int checkMonth(int month) {
+		if (month < 1 || month > 12)
+			throw new IllegalArgumentException("Invalid month " + month);
+		return month;
+	}
+
+	private static double validate(String name, double value) {
+		if (!(value >= 0) || Double.isInfinite(value))
+			throw new IllegalArgumentException(String.format(
+					"Invalid value for %s: %s", name, value));
+		return value;
+	}
+
+	/**
+	 * Gets the value of every parameter by name. The appliance calibration
+	 * constants are only included if they have been overridden.
+	 *
+	 * @return a Map from the names accepted by {@link #set(String, double)} to
+	 *         their values
+	 */
+	public Map<String, Double> getValues() {
+		Map<String, Double> values = new LinkedHashMap<String, Double>();
+		values.put(BULB_CALIBRATION, bulbCalibration);
+		values.put(MEAN_IRRADIANCE, meanIrradiance);
+		values.put(SD_IRRADIANCE, sdIrradiance);
+		for (int m = 1; m <= 12; m++)
+			values.put(TEMPERATURE_MODIFIER + m, temperatureModifier[m - 1]);
+		for (Map.Entry<String, Double> e : calibration.entrySet())
+			values.put(CALIBRATION + e.getKey(), e.getValue());
+		return values;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		for (Map.Entry<String, Double> e : getValues().entrySet()) {
+			if (sb.length() > 0)
+				sb.append(", ");
+			sb.append(e.getKey()).append('=').append(e.getValue());
+		}
+		return sb.toString();
+	}
+}
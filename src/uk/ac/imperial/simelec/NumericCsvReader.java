@@ -0,0 +1,331 @@
+package uk.ac.imperial.simelec;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reads the rows of a CSV data file directly from its bytes. The cells of
+ * each row are located in the read buffer and parsed into numbers only when
+ * they are requested, so no String is created for a numeric cell.
+ *
+ * As with the <code>CSVReader</code> previously used for the model data, a
+ * fixed number of header lines is skipped first, whatever they contain. Every
+ * following line is one row, with cells separated by commas. Quoted cells are
+ * not supported in these rows.
+ *
+ * Numbers are parsed to the same values as {@link Integer#valueOf(String)},
+ * {@link Float#valueOf(String)} and {@link Double#valueOf(String)}. Short
+ * decimals, which make up almost all of the model data, are converted
+ * directly; anything else falls back to the standard parsers.
+ *
+ * @author James Keirstead
+ *
+ */
+class NumericCsvReader {
+
+	// Powers of ten which are exactly representable as doubles and floats
+	private static final double[] DOUBLE_POWERS = new double[23];
+	private static final float[] FLOAT_POWERS = new float[11];
+	static {
+		DOUBLE_POWERS[0] = 1;
+		for (int i = 1; i < DOUBLE_POWERS.length; i++)
+			DOUBLE_POWERS[i] = DOUBLE_POWERS[i - 1] * 10;
+		FLOAT_POWERS[0] = 1;
+		for (int i = 1; i < FLOAT_POWERS.length; i++)
+			FLOAT_POWERS[i] = FLOAT_POWERS[i - 1] * 10;
+	}
+
+	// Member fields
+	private InputStream in;
+	private byte[] buffer = new byte[65536];
+	private int position;
+	private int limit;
+	private int lineEnd;
+	private boolean eof;
+	private int[] start = new int[16];
+	private int[] end = new int[16];
+	private int columns;
+
+	// Result of the last call to parse
+	private long mantissa;
+	private int exponent;
+	private boolean hasPoint;
+
+	/**
+	 * Creates a NumericCsvReader.
+	 *
+	 * @param in
+	 *            the InputStream to read
+	 * @param skip
+	 *            an int giving the number of header lines to skip
+	 * @throws IOException
+	 *             if the header lines cannot be read
+	 */
+	NumericCsvReader(InputStream in, int skip) throws IOException {
+		this.in = in;
+		for (int i = 0; i < skip; i++) {
+			if (findLineEnd() < 0)
+				break;
+			position = Math.min(lineEnd + 1, limit);
+		}
+	}
+
+	/**
+	 * Finds the end of the line starting at <code>position</code>, reading
+	 * more of the stream as needed.
+	 *
+	 * @return an int giving the index of the newline, or of the end of the
+	 *         data if the last line has no newline, or -1 if there are no more
+	 *         lines
+	 */
+	private int findLineEnd() throws IOException {
+		int i = position;
+		while (true) {
+			for (; i < limit; i++) {
+				if (buffer[i] == '\n') {
+					lineEnd = i;
+					return i;
+				}
+			}
+			if (eof) {
+				lineEnd = limit;
+				return position < limit ? limit : -1;
+			}
+
+			// Move the partial line to the start of the buffer and fill the
+			// rest, growing the buffer for very long lines
+			int n = limit - position;
+			if (n == buffer.length) {
+				byte[] b = new byte[buffer.length * 2];
+				System.arraycopy(buffer, position, b, 0, n);
+				buffer = b;
+			} else {
+				System.arraycopy(buffer, position, buffer, 0, n);
+			}
+			i -= position;
+			position = 0;
+			limit = n;
+			int r = in.read(buffer, limit, buffer.length - limit);
+			if (r < 0) {
+				eof = true;
+			} else {
+				limit += r;
+			}
+		}
+	}
+
+	/**
+	 * Advances to the next row.
+	 *
+	 * @return <code>true</code> if there is another row, or
+	 *         <code>false</code> at the end of the file
+	 * @throws IOException
+	 *             if the file cannot be read
+	 */
+	boolean next() throws IOException {
+		if (columns > 0) {
+			position = Math.min(lineEnd + 1, limit);
+			columns = 0;
+		}
+		if (findLineEnd() < 0)
+			return false;
+
+		int e = lineEnd;
+		if (e > position && buffer[e - 1] == '\r')
+			e--;
+
+		int s = position;
+		for (int i = position; i <= e; i++) {
+			if (i == e || buffer[i] == ',') {
+				if (columns == start.length) {
+					start = grow(start);
+					end = grow(end);
+				}
+				start[columns] = s;
+				end[columns] = i;
+				columns++;
+				s = i + 1;
+			}
+		}
+		return true;
+	}
+
+	private static int[] grow(int[] a) {
+		int[] b = new int[a.length * 2];
+		System.arraycopy(a, 0, b, 0, a.length);
+		return b;
+	}
+
+	/**
+	 * Gets the number of cells in the current row.
+	 *
+	 * @return an int
+	 */
+	int getColumnCount() {
+		return columns;
+	}
+
+	/**
+	 * Gets a cell as an int.
+	 *
+	 * @param column
+	 *            an int giving the column index
+	 * @return an int
+	 * @throws NumberFormatException
+	 *             if the cell is not an integer
+	 */
+	int getInt(int column) {
+		check(column);
+		if (parse(start[column], end[column]) && exponent == 0
+				&& mantissa <= Integer.MAX_VALUE
+				&& mantissa >= Integer.MIN_VALUE && !hasPoint)
+			return (int) mantissa;
+		return Integer.valueOf(getString(column).trim());
+	}
+
+	/**
+	 * Gets a cell as a float.
+	 *
+	 * @param column
+	 *            an int giving the column index
+	 * @return a float
+	 * @throws NumberFormatException
+	 *             if the cell is not a number
+	 */
+	float getFloat(int column) {
+		check(column);
+		if (parse(start[column], end[column])) {
+			long m = Math.abs(mantissa);
+			if (m < (1 << 24) && exponent <= 0
+					&& -exponent < FLOAT_POWERS.length)
+				return mantissa / FLOAT_POWERS[-exponent];
+			if (m < (1 << 24) && exponent > 0
+					&& exponent < FLOAT_POWERS.length)
+				return mantissa * FLOAT_POWERS[exponent];
+		}
+		return Float.valueOf(getString(column));
+	}
+
+	/**
+	 * Gets a cell as a double.
+	 *
+	 * @param column
+	 *            an int giving the column index
+	 * @return a double
+	 * @throws NumberFormatException
+	 *             if the cell is not a number
+	 */
+	double getDouble(int column) {
+		check(column);
+		if (parse(start[column], end[column])) {
+			long m = Math.abs(mantissa);
+			if (m < (1L << 53) && exponent <= 0
+					&& -exponent < DOUBLE_POWERS.length)
+				return mantissa / DOUBLE_POWERS[-exponent];
+			if (m < (1L << 53) && exponent > 0
+					&& exponent < DOUBLE_POWERS.length)
+				return mantissa * DOUBLE_POWERS[exponent];
+		}
+		return Double.valueOf(getString(column));
+	}
+
+	/**
+	 * Gets a cell as a String.
+	 *
+	 * @param column
+	 *            an int giving the column index
+	 * @return a String
+	 */
+	String getString(int column) {
+		check(column);
+		return new String(buffer, start[column], end[column] - start[column]);
+	}
+
+	private void check(int column) {
+		if (column < 0 || column >= columns)
+			throw new ArrayIndexOutOfBoundsException(column);
+	}
+
+	/**
+	 * Parses a decimal number such as <code>-12.5e3</code> into
+	 * <code>mantissa * 10^exponent</code>, ignoring surrounding spaces. The
+	 * <code>hasPoint</code> flag records whether it was written as an
+	 * integer.
+	 *
+	 * @return <code>true</code> if the whole cell is such a number and the
+	 *         mantissa did not overflow. Negative zero is left to the
+	 *         standard parsers.
+	 */
+	private boolean parse(int from, int to) {
+		byte[] b = buffer;
+		while (from < to && b[from] == ' ')
+			from++;
+		while (to > from && b[to - 1] == ' ')
+			to--;
+
+		int i = from;
+		boolean negative = false;
+		if (i < to && (b[i] == '-' || b[i] == '+')) {
+			negative = b[i] == '-';
+			i++;
+		}
+
+		long m = 0;
+		int e = 0;
+		int digits = 0;
+		hasPoint = false;
+		for (; i < to; i++) {
+			int d = b[i] - '0';
+			if (d >= 0 && d <= 9) {
+				if (m > (Long.MAX_VALUE - 9) / 10)
+					return false;
+				m = m * 10 + d;
+				if (hasPoint)
+					e--;
+				digits++;
+			} else if (b[i] == '.' && !hasPoint) {
+				hasPoint = true;
+			} else {
+				break;
+			}
+		}
+		if (digits == 0 || (negative && m == 0))
+			return false;
+
+		if (i < to && (b[i] == 'e' || b[i] == 'E')) {
+			hasPoint = true;
+			i++;
+			boolean minus = false;
+			if (i < to && (b[i] == '-' || b[i] == '+')) {
+				minus = b[i] == '-';
+				i++;
+			}
+			int x = 0;
+			int n = 0;
+			for (; i < to; i++, n++) {
+				int d = b[i] - '0';
+				if (d < 0 || d > 9 || x > 10000)
+					return false;
+				x = x * 10 + d;
+			}
+			if (n == 0)
+				return false;
+			e += minus ? -x : x;
+		}
+		if (i != to)
+			return false;
+
+		mantissa = negative ? -m : m;
+		exponent = e;
+		return true;
+	}
+
+	/**
+	 * Closes the underlying stream.
+	 *
+	 * @throws IOException
+	 */
+	void close() throws IOException {
+		in.close();
+	}
+}
@@ -26,11 +26,7 @@
 package uk.ac.imperial.simelec;
 
 import java.io.File;
-import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -52,11 +48,10 @@ public class OccupancyModel {
 	private String out_dir;
 	private File out_file;
 	private boolean has_run = false;
-
-	// Data variables
-	private static String start_states_weekend = "/data/occ_start_states_weekend.csv";
-	private static String start_states_weekday = "/data/occ_start_states_weekday.csv";
-	private static String template = "/data/tpm_%d_%s.csv";
+	private int[] occupancy;
+	private RandomStreams streams = RandomStreams.global();
+	private boolean compressed = false;
+	private OutputSink sink;
 
 	/**
 	 * Simulates the number of active occupants within a household for a single
@@ -151,75 +146,79 @@ public class OccupancyModel {
 		if (!dir.isDirectory())
 			dir.mkdirs();
 
-		// Step 2: Determine the active occupancy start state between 00:00 and
-		// 00:10
-
-		// Load in the start state data from occ_start_states
-		String filename = weekend ? start_states_weekend : start_states_weekday;
-		InputStream is = this.getClass().getResourceAsStream(filename);		
-		CSVReader reader = new CSVReader(new InputStreamReader(is), ',', '\'', 2);
-		List<String[]> myEntries = reader.readAll();
-		reader.close();
+		// Simulate the trajectory
+		RandomStream random = streams.get(RandomStreams.OCCUPANCY);
+		int[] trajectory = simulate(nResidents, weekend, random);
 
-		double[] vector = new double[myEntries.size()]; // vector = n rows
-		int j = 0;
-		for (String[] s : myEntries) {
-			vector[j] = Float.valueOf(s[nResidents]);
-			j++;
+		// Create a list to save the results
+		List<String[]> results = new ArrayList<String[]>(144);
+		for (int t = 0; t < trajectory.length; t++) {
+			String[] tmp = { String.valueOf(t + 1),
+					String.valueOf(trajectory[t]) };
+			results.add(tmp);
 		}
 
-		// Draw from the cumulative distribution
-		DiscretePDF pdf = new DiscretePDF(vector);
-		int initialState = pdf.getRandomIndex();
+		// Save the result to a CSV file
+		CSVWriter writer = new CSVWriter(OutputFiles.newWriter(out_file,
+				compressed, sink), ',', '\0');
+		writer.writeAll(results);
+		writer.close();
+
+		occupancy = trajectory;
+		has_run = true;
+		// System.out.println("done.");
+	}
+
+	/**
+	 * Simulates the number of active occupants in a household for a single day
+	 * without writing any output.
+	 * 
+	 * @param residents
+	 *            an int between 1 and 5 giving the number of residents
+	 * @param weekend
+	 *            a boolean indicating whether to simulate a weekday (
+	 *            <code>false</code>) or weekend (<code>true</code>)
+	 * @param random
+	 *            the RandomStream to draw from
+	 * @return an array of 144 int values giving the occupancy at ten-minute
+	 *         intervals during the day
+	 * @throws IOException
+	 */
+	public static int[] simulate(int residents, boolean weekend,
+			RandomStream random) throws IOException {
+
+		// Step 2: Determine the active occupancy start state between 00:00 and
+		// 00:10
+		DiscretePDF pdf = new DiscretePDF(ModelData.getOccupancyStartStates(
+				residents, weekend));
+		int initialState = pdf.getRandomIndex(random);
 
 		// Step 3: Determine the active occupancy transitions for each ten
 		// minute period of the day.
-
-		// First load in the correct file
-		filename = String.format(template, nResidents, weekend ? "weekend"
-				: "weekday");
-		is = this.getClass().getResourceAsStream(filename);
-		reader = new CSVReader(new InputStreamReader(is), ',', '\'', 1);
-		myEntries = reader.readAll();
-		reader.close();
-		// Create a list to save the results
-		List<String[]> results = new ArrayList<String[]>(144);
-		String[] tmp = { "1", String.valueOf(initialState) };
-		results.add(tmp);
+		double[][] tpm = ModelData.getTransitionProbabilities(residents,
+				weekend);
+		int[] trajectory = new int[144];
+		trajectory[0] = initialState;
 
 		// Already have initial state; so iterate over remaining entries
 		for (int t = 1; t < 144; t++) {
 
-			// First calculate the row
-			int rowID = (t - 1) * 7 + initialState;
-			String[] row = myEntries.get(rowID);
-
-			// Grab the vector of transition probabilities
-			vector = new double[row.length - 2];
-			for (int i = 2; i < row.length - 2; i++) {
-				vector[i - 2] = Float.valueOf(row[i]);
-			}
-
 			// Draw for the probability
-			pdf = new DiscretePDF(vector);
-			int newState = pdf.getRandomIndex();
+			int rowID = (t - 1) * 7 + initialState;
+			pdf = new DiscretePDF(tpm[rowID]);
+			int newState = pdf.getRandomIndex(random);
 
-			String[] tmp2 = { String.valueOf(t + 1), String.valueOf(newState) };
-			results.add(tmp2);
+			trajectory[t] = newState;
 			initialState = newState;
 		}
 
-		// Save the result to a CSV file
-		CSVWriter writer = new CSVWriter(new FileWriter(out_file), ',', '\0');
-		writer.writeAll(results);
-		writer.close();
-
-		has_run = true;
-		// System.out.println("done.");
+		return trajectory;
 	}
 
 	/**
-	 * Retrieves occupancy data calculated by this OccupancyModel.
+	 * Retrieves occupancy data calculated by this OccupancyModel. Once the
+	 * trajectory has been simulated or read, it is held in memory so that
+	 * several load models can share it.
 	 * 
 	 * @return an array of 144 int values giving the occupancy at ten-minute
 	 *         intervals during the day
@@ -227,10 +226,14 @@ public class OccupancyModel {
 	 */
 	public int[] getOccupancy() throws IOException {
 
-		if (!has_run)
+		if (occupancy == null && !has_run)
 			this.run();
 
-		CSVReader reader = new CSVReader(new FileReader(out_file));
+		if (occupancy != null)
+			return occupancy.clone();
+
+		CSVReader reader = new CSVReader(OutputFiles.newReader(OutputFiles
+				.find(out_file)));
 		List<String[]> myEntries = reader.readAll();
 		reader.close();
 		int[] result = new int[myEntries.size()];
@@ -238,7 +241,71 @@ public class OccupancyModel {
 			result[i] = Integer.valueOf(myEntries.get(i)[1]);
 		}
 
-		return (result);
+		occupancy = result;
+		return (result.clone());
+	}
+
+	/**
+	 * Sets the random number streams used by this OccupancyModel. By default,
+	 * all draws are taken from the global random number generator.
+	 * 
+	 * @param streams
+	 *            the RandomStreams for the simulated household
+	 */
+	public void setRandomStreams(RandomStreams streams) {
+		this.streams = streams;
+	}
+
+	/**
+	 * Sets whether the output file should be compressed with GZIP, in which
+	 * case <code>.gz</code> is added to its name. Either form of the file can
+	 * be read back by {@link #getOccupancy()}.
+	 * 
+	 * @param compressed
+	 *            a boolean indicating if the output should be compressed
+	 */
+	public void setCompressedOutput(boolean compressed) {
+		this.compressed = compressed;
+	}
+
+	/**
+	 * Sets an OutputSink to collect the output file, instead of writing it to
+	 * the output directory.
+	 * 
+	 * @param sink
+	 *            the OutputSink, or <code>null</code> to write the file
+	 */
+	void setOutputSink(OutputSink sink) {
+		this.sink = sink;
+	}
+
+	/**
+	 * Gets the output file written by this OccupancyModel, or the existing
+	 * file that will be read if it hasn't been run.
+	 * 
+	 * @return the output File
+	 */
+	File getResultFile() {
+		return has_run ? OutputFiles.getFile(out_file, compressed)
+				: OutputFiles.find(out_file);
+	}
+
+	/**
+	 * Gets the output directory of this OccupancyModel.
+	 * 
+	 * @return a String giving the output directory
+	 */
+	public String getOutputDirectory() {
+		return out_dir;
+	}
+
+	/**
+	 * Has this OccupancyModel been run?
+	 * 
+	 * @return <code>true</code> if the occupancy trajectory has been simulated
+	 */
+	public boolean hasRun() {
+		return has_run;
 	}
 
 }
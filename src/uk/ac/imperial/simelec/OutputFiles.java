@@ -0,0 +1,181 @@
+package uk.ac.imperial.simelec;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Opens the output files of the simulation models, which may be written
+ * either as plain text or compressed with GZIP. A compressed file has the
+ * same name as the plain file with <code>.gz</code> appended.
+ *
+ * @author James Keirstead
+ *
+ */
+final class OutputFiles {
+
+	/** The suffix added to the names of compressed files */
+	static final String GZIP_SUFFIX = ".gz";
+
+	private OutputFiles() {
+	}
+
+	/**
+	 * Gets the name of an output file.
+	 *
+	 * @param file
+	 *            the plain output File
+	 * @param compressed
+	 *            a boolean indicating if the file is compressed
+	 * @return the File to write
+	 */
+	static File getFile(File file, boolean compressed) {
+		return compressed ? new File(file.getPath() + GZIP_SUFFIX) : file;
+	}
+
+	/**
+	 * Finds an existing output file, which may have been written either plain
+	 * or compressed.
+	 *
+	 * @param file
+	 *            the plain output File
+	 * @return the plain File if it exists, otherwise the compressed File if
+	 *         that exists, otherwise the plain File
+	 */
+	static File find(File file) {
+		if (!file.exists()) {
+			File gz = getFile(file, true);
+			if (gz.exists())
+				return gz;
+		}
+		return file;
+	}
+
+	/**
+	 * Is a file compressed?
+	 *
+	 * @param file
+	 *            the File
+	 * @return <code>true</code> if the file name ends in <code>.gz</code>
+	 */
+	static boolean isCompressed(File file) {
+		return file.getName().endsWith(GZIP_SUFFIX);
+	}
+
+	/**
+	 * Opens a Writer on an output file. Any copy of the file in the other
+	 * format is deleted, so that the files in a directory always come from the
+	 * same run.
+	 *
+	 * @param file
+	 *            the plain output File
+	 * @param compressed
+	 *            a boolean indicating if the file should be compressed
+	 * @return a Writer
+	 * @throws IOException
+	 *             if the file cannot be opened
+	 */
+	static Writer newWriter(File file, boolean compressed) throws IOException {
+		return new OutputStreamWriter(newOutputStream(file, compressed));
+	}
+
+	/**
+	 * Opens a Writer on an output file, or on a file in an OutputSink.
+	 *
+	 * @param file
+	 *            the plain output File
+	 * @param compressed
+	 *            a boolean indicating if the file should be compressed
+	 * @param sink
+	 *            the OutputSink to write to, or <code>null</code> to write
+	 *            the file
+	 * @return a Writer
+	 * @throws IOException
+	 *             if the file cannot be opened
+	 */
+	static Writer newWriter(File file, boolean compressed, OutputSink sink)
+			throws IOException {
+		return new OutputStreamWriter(newOutputStream(file, compressed, sink));
+	}
+
+	/**
+	 * Opens a buffered OutputStream on an output file. Any copy of the file in
+	 * the other format is deleted.
+	 *
+	 * @param file
+	 *            the plain output File
+	 * @param compressed
+	 *            a boolean indicating if the file should be compressed
+	 * @return an OutputStream
+	 * @throws IOException
+	 *             if the file cannot be opened
+	 */
+	static OutputStream newOutputStream(File file, boolean compressed)
+			throws IOException {
+		File target = getFile(file, compressed);
+		File other = getFile(file, !compressed);
+		if (other.exists() && !other.delete())
+			throw new IOException(String.format("Unable to delete '%s'",
+					other));
+
+		OutputStream out = new FileOutputStream(target);
+		if (compressed)
+			return new ParallelGzipOutputStream(out);
+		return new BufferedOutputStream(out);
+	}
+
+	/**
+	 * Opens an OutputStream on an output file, or on a file in an
+	 * OutputSink.
+	 *
+	 * @param file
+	 *            the plain output File
+	 * @param compressed
+	 *            a boolean indicating if the file should be compressed
+	 * @param sink
+	 *            the OutputSink to write to, or <code>null</code> to write
+	 *            the file
+	 * @return an OutputStream
+	 * @throws IOException
+	 *             if the file cannot be opened
+	 */
+	static OutputStream newOutputStream(File file, boolean compressed,
+			OutputSink sink) throws IOException {
+		if (sink != null)
+			return sink.newOutputStream(file, compressed);
+		return newOutputStream(file, compressed);
+	}
+
+	/**
+	 * Opens a Reader on an output file, decompressing it if its name ends in
+	 * <code>.gz</code>.
+	 *
+	 * @param file
+	 *            the File to read
+	 * @return a Reader
+	 * @throws IOException
+	 *             if the file cannot be opened
+	 */
+	static Reader newReader(File file) throws IOException {
+		InputStream in = new BufferedInputStream(new FileInputStream(file));
+		if (isCompressed(file)) {
+			try {
+				in = new GZIPInputStream(in, 8192);
+			} catch (IOException e) {
+				in.close();
+				throw e;
+			}
+		}
+		return new InputStreamReader(in);
+	}
+}
@@ -0,0 +1,68 @@
+package uk.ac.imperial.simelec;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.OutputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Collects the output files of a run in memory rather than writing them to
+ * the output directory. Each file is held under the name it would have been
+ * given, including the <code>.gz</code> suffix if it is compressed, once the
+ * stream writing it is closed.
+ *
+ * @author James Keirstead
+ *
+ */
+final class OutputSink {
+
+	private Map<String, byte[]> files = new LinkedHashMap<String, byte[]>();
+
+	/**
+	 * Opens an OutputStream for an output file.
+	 *
+	 * @param file
+	 *            the plain output File
+	 * @param compressed
+	 *            a boolean indicating if the file should be compressed
+	 * @return an OutputStream
+	 * @see OutputFiles#newOutputStream(File, boolean)
+	 */
+	OutputStream newOutputStream(File file, boolean compressed) {
+		final String name = OutputFiles.getFile(file, compressed).getName();
+		OutputStream out = new ByteArrayOutputStream(8192) {
+			@Override
+			public void close() {
+				put(name, toByteArray());
+			}
+		};
+		if (compressed)
+			return new ParallelGzipOutputStream(out);
+		return out;
+	}
+
+	/**
+	 * Adds a file.
+	 *
+	 * @param name
+	 *            a String giving the file name
+	 * @param bytes
+	 *            the contents of the file
+	 */
+	synchronized void put(String name, byte[] bytes) {
+		files.put(name, bytes);
+	}
+
+	/**
+	 * Gets a file.
+	 *
+	 * @param name
+	 *            a String giving the file name
+	 * @return the contents of the file, or <code>null</code> if it hasn't been
+	 *         written
+	 */
+	synchronized byte[] get(String name) {
+		return files.get(name);
+	}
+}
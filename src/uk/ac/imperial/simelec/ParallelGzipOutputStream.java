@@ -0,0 +1,233 @@
+package uk.ac.imperial.simelec;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * An OutputStream which writes data in the GZIP format, compressing blocks of
+ * the data in parallel. Each block is compressed independently into a
+ * complete GZIP member and the members are written in order, so the output
+ * can be read by any GZIP reader, including {@link java.util.zip.GZIPInputStream}.
+ *
+ * Blocks are compressed on an ExecutorService, by default a pool of daemon
+ * threads shared by every stream. At most a few blocks per thread are held in
+ * memory at once; writing waits for the oldest block to be compressed when
+ * that limit is reached. Output which fits in a single block is compressed
+ * directly on the calling thread.
+ *
+ * @author James Keirstead
+ *
+ */
+public class ParallelGzipOutputStream extends OutputStream {
+
+	/** The default size of each compressed block in bytes */
+	public static final int DEFAULT_BLOCK_SIZE = 128 * 1024;
+
+	private static ExecutorService sharedExecutor;
+
+	// Member fields
+	private OutputStream out;
+	private ExecutorService executor;
+	private int blockSize;
+	private int maxPending;
+	private byte[] block;
+	private int count;
+	private ArrayDeque<Future<byte[]>> pending = new ArrayDeque<Future<byte[]>>();
+	private boolean written = false;
+	private boolean closed = false;
+
+	/**
+	 * Creates a ParallelGzipOutputStream which compresses blocks of the
+	 * default size on the shared thread pool.
+	 *
+	 * @param out
+	 *            the OutputStream to which the compressed data are written
+	 */
+	public ParallelGzipOutputStream(OutputStream out) {
+		this(out, getSharedExecutor(), DEFAULT_BLOCK_SIZE);
+	}
+
+	/**
+	 * Creates a ParallelGzipOutputStream.
+	 *
+	 * @param out
+	 *            the OutputStream to which the compressed data are written
+	 * @param executor
+	 *            the ExecutorService on which to compress the blocks
+	 * @param blockSize
+	 *            an int giving the number of bytes in each block
+	 * @throws IllegalArgumentException
+	 *             if the block size is not positive
+	 */
+	public ParallelGzipOutputStream(OutputStream out, ExecutorService executor,
+			int blockSize) {
+		if (blockSize <= 0)
+			throw new IllegalArgumentException("Block size must be positive");
+
+		this.out = out;
+		this.executor = executor;
+		this.blockSize = blockSize;
+		this.block = new byte[blockSize];
+		this.maxPending = 2 * Runtime.getRuntime().availableProcessors();
+	}
+
+	/**
+	 * Gets the thread pool shared by streams created without an
+	 * ExecutorService. Its threads are daemons, so the pool doesn't need to be
+	 * shut down.
+	 *
+	 * @return an ExecutorService
+	 */
+	private static synchronized ExecutorService getSharedExecutor() {
+		if (sharedExecutor == null) {
+			sharedExecutor = Executors.newFixedThreadPool(Runtime.getRuntime()
+					.availableProcessors(), new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable r) {
+					Thread t = new Thread(r, "simelec-gzip");
+					t.setDaemon(true);
+					return t;
+				}
+			});
+		}
+		return sharedExecutor;
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		ensureOpen();
+		block[count++] = (byte) b;
+		if (count == blockSize)
+			submit();
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		ensureOpen();
+		if (off < 0 || len < 0 || off + len > b.length)
+			throw new IndexOutOfBoundsException();
+
+		while (len > 0) {
+			int n = Math.min(len, blockSize - count);
+			System.arraycopy(b, off, block, count, n);
+			count += n;
+			off += n;
+			len -= n;
+			if (count == blockSize)
+				submit();
+		}
+	}
+
+	/**
+	 * Compresses the data written since the last block and writes out every
+	 * block compressed so far.
+	 */
+	@Override
+	public void flush() throws IOException {
+		ensureOpen();
+		if (count > 0)
+			submit();
+		while (!pending.isEmpty())
+			writeNext();
+		out.flush();
+	}
+
+	/**
+	 * Writes the remaining data and closes the underlying stream. An empty
+	 * stream is written as a single empty GZIP member.
+	 */
+	@Override
+	public void close() throws IOException {
+		if (closed)
+			return;
+
+		try {
+			if (pending.isEmpty() && (count > 0 || !written)) {
+				// A single remaining block isn't worth handing to another thread
+				out.write(compress(block, count));
+				count = 0;
+				written = true;
+			}
+			flush();
+		} finally {
+			closed = true;
+			block = null;
+			for (Future<byte[]> f : pending)
+				f.cancel(false);
+			out.close();
+		}
+	}
+
+	/**
+	 * Submits the current block for compression, first writing out the oldest
+	 * pending block if the limit on pending blocks has been reached.
+	 */
+	private void submit() throws IOException {
+		if (pending.size() >= maxPending)
+			writeNext();
+
+		final byte[] data = block;
+		final int length = count;
+		pending.add(executor.submit(new Callable<byte[]>() {
+			@Override
+			public byte[] call() throws IOException {
+				return compress(data, length);
+			}
+		}));
+		block = new byte[blockSize];
+		count = 0;
+		written = true;
+	}
+
+	/**
+	 * Waits for the oldest pending block to be compressed and writes it.
+	 */
+	private void writeNext() throws IOException {
+		Future<byte[]> f = pending.remove();
+		try {
+			out.write(f.get());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while compressing");
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException)
+				throw (IOException) cause;
+			throw new IOException("Unable to compress data", cause);
+		}
+	}
+
+	/**
+	 * Compresses a block of data into a complete GZIP member.
+	 *
+	 * @param data
+	 *            the data
+	 * @param length
+	 *            an int giving the number of bytes of data to compress
+	 * @return an array of compressed bytes
+	 * @throws IOException
+	 */
+	private static byte[] compress(byte[] data, int length) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(
+				Math.max(64, length / 4));
+		GZIPOutputStream gzip = new GZIPOutputStream(bytes, 8192);
+		gzip.write(data, 0, length);
+		gzip.close();
+		return bytes.toByteArray();
+	}
+
+	private void ensureOpen() throws IOException {
+		if (closed)
+			throw new IOException("Stream closed");
+	}
+}
@@ -0,0 +1,373 @@
+package uk.ac.imperial.simelec;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+import au.com.bytecode.opencsv.CSVWriter;
+
+/**
+ * Runs a population of households over a grid of {@link ModelParameters}.
+ * Each axis of the grid gives a list of values for one named parameter, and
+ * every combination of values is a point. The households at each point are
+ * simulated in parallel by a {@link BatchRunner}.
+ *
+ * Every point uses the same scenario seed, so household <code>i</code> draws
+ * the same random numbers at every point wherever the model logic allows.
+ * Differences between points are therefore due to the parameters rather than
+ * to sampling noise.
+ *
+ * @author James Keirstead
+ *
+ */
+public class ParameterSweep {
+
+	/**
+	 * Receives the results of each point as it is completed.
+	 */
+	public interface Listener {
+
+		/**
+		 * Called when every household at a point has been simulated.
+		 *
+		 * @param point
+		 *            the completed Point
+		 */
+		void pointCompleted(Point point);
+	}
+
+	/**
+	 * The results of a single point of the sweep.
+	 */
+	public static class Point {
+
+		private int index;
+		private double[] values;
+		private ModelParameters parameters;
+		private PopulationAggregate aggregate;
+
+		private Point(int index, double[] values, ModelParameters parameters,
+				PopulationAggregate aggregate) {
+			this.index = index;
+			this.values = values;
+			this.parameters = parameters;
+			this.aggregate = aggregate;
+		}
+
+		/**
+		 * Gets the position of this point in the grid.
+		 *
+		 * @return an int, starting from zero
+		 */
+		public int getIndex() {
+			return index;
+		}
+
+		/**
+		 * Gets the value of each axis at this point.
+		 *
+		 * @return an array of values, in the order the axes were added
+		 */
+		public double[] getValues() {
+			return values.clone();
+		}
+
+		/**
+		 * Gets the parameters used at this point.
+		 *
+		 * @return a ModelParameters
+		 */
+		public ModelParameters getParameters() {
+			return new ModelParameters(parameters);
+		}
+
+		/**
+		 * Gets the population demand at this point.
+		 *
+		 * @return a PopulationAggregate
+		 */
+		public PopulationAggregate getAggregate() {
+			return aggregate;
+		}
+
+		/**
+		 * Gets the mean daily lighting energy per household.
+		 *
+		 * @return a double (kWh)
+		 */
+		public double getLightingEnergy() {
+			return energy(aggregate.getMeanLighting());
+		}
+
+		/**
+		 * Gets the mean daily appliance energy per household.
+		 *
+		 * @return a double (kWh)
+		 */
+		public double getApplianceEnergy() {
+			return energy(aggregate.getMeanAppliances());
+		}
+
+		/**
+		 * Gets the mean daily total energy per household.
+		 *
+		 * @return a double (kWh)
+		 */
+		public double getTotalEnergy() {
+			return energy(aggregate.getMeanTotal());
+		}
+
+		/**
+		 * Gets the peak of the mean total demand per household.
+		 *
+		 * @return a double (W)
+		 */
+		public double getPeakDemand() {
+			double[] total = aggregate.getMeanTotal();
+			return total[getPeakMinute(total)];
+		}
+
+		/**
+		 * Gets the minute of the peak mean total demand.
+		 *
+		 * @return an int (0-1439)
+		 */
+		public int getPeakMinute() {
+			return getPeakMinute(aggregate.getMeanTotal());
+		}
+
+		private static int getPeakMinute(double[] total) {
+			int peak = 0;
+			for (int i = 1; i < total.length; i++) {
+				if (total[i] > total[peak])
+					peak = i;
+			}
+			return peak;
+		}
+
+		private static double energy(double[] power) {
+			double sum = 0;
+			for (double p : power)
+				sum += p;
+			return sum / 60 / 1000;
+		}
+	}
+
+	// Member fields
+	private List<HouseholdSpec> specs;
+	private long seed;
+	private int threads;
+	private ModelParameters base;
+	private List<String> names = new ArrayList<String>();
+	private List<double[]> axes = new ArrayList<double[]>();
+	private volatile BatchRunner runner;
+	private volatile boolean cancelled = false;
+
+	/**
+	 * Creates a new ParameterSweep around the default parameters.
+	 *
+	 * @param specs
+	 *            a List of HouseholdSpec objects to simulate at each point
+	 * @param seed
+	 *            a long giving the scenario seed
+	 * @param threads
+	 *            an int giving the number of worker threads
+	 */
+	public ParameterSweep(List<HouseholdSpec> specs, long seed, int threads) {
+		this(specs, seed, threads, new ModelParameters());
+	}
+
+	/**
+	 * Creates a new ParameterSweep around specified parameters.
+	 *
+	 * @param specs
+	 *            a List of HouseholdSpec objects to simulate at each point
+	 * @param seed
+	 *            a long giving the scenario seed
+	 * @param threads
+	 *            an int giving the number of worker threads
+	 * @param base
+	 *            the ModelParameters to use for any parameter not on an axis
+	 */
+	public ParameterSweep(List<HouseholdSpec> specs, long seed, int threads,
+			ModelParameters base) {
+		this.specs = specs;
+		this.seed = seed;
+		this.threads = threads;
+		this.base = new ModelParameters(base);
+	}
+
+	/**
+	 * Adds an axis to the grid.
+	 *
+	 * @param name
+	 *            a String giving the parameter name. See
+	 *            {@link ModelParameters#set(String, double)}.
+	 * @param values
+	 *            the values of the parameter
+	 * @throws IllegalArgumentException
+	 *             if the name or a value is not valid, or if there are no
+	 *             values
+	 */
+	public void addAxis(String name, double... values) {
+		if (values.length == 0)
+			throw new IllegalArgumentException("No values given for " + name);
+
+		// Check the name and values before the sweep starts
+		ModelParameters test = new ModelParameters(base);
+		for (double v : values)
+			test.set(name, v);
+
+		names.add(name);
+		axes.add(values.clone());
+	}
+
+	/**
+	 * Gets the number of points in the grid.
+	 *
+	 * @return an int
+	 */
+	public int size() {
+		int n = 1;
+		for (double[] axis : axes)
+			n *= axis.length;
+		return n;
+	}
+
+	/**
+	 * Gets the values of each axis at a point. The last axis varies fastest.
+	 *
+	 * @param index
+	 *            an int giving the point index
+	 * @return an array of values, in the order the axes were added
+	 */
+	double[] getValues(int index) {
+		double[] values = new double[axes.size()];
+		for (int a = axes.size() - 1; a >= 0; a--) {
+			double[] axis = axes.get(a);
+			values[a] = axis[index % axis.length];
+			index /= axis.length;
+		}
+		return values;
+	}
+
+	private ModelParameters getParameters(double[] values) {
+		ModelParameters p = new ModelParameters(base);
+		for (int a = 0; a < values.length; a++)
+			p.set(names.get(a), values[a]);
+		return p;
+	}
+
+	/**
+	 * Runs the sweep, notifying a listener as each point is completed. The
+	 * points are run in order.
+	 *
+	 * @param listener
+	 *            the Listener to notify
+	 * @throws IOException
+	 *             if the model data cannot be read
+	 * @throws InterruptedException
+	 *             if interrupted while waiting for the workers
+	 * @throws IllegalArgumentException
+	 *             if an axis names an unknown appliance
+	 */
+	public void run(Listener listener) throws IOException,
+			InterruptedException {
+
+		// Check any appliance names before starting
+		getParameters(getValues(0)).getApplianceCalibration(
+				ModelData.getApplianceCatalogue());
+
+		int n = size();
+		for (int i = 0; i < n && !cancelled; i++) {
+			double[] values = getValues(i);
+			ModelParameters p = getParameters(values);
+			runner = new BatchRunner(specs, seed, threads, p);
+			PopulationAggregate aggregate = runner.run(null);
+			if (runner.isCancelled())
+				break;
+			listener.pointCompleted(new Point(i, values, p, aggregate));
+		}
+	}
+
+	/**
+	 * Runs the sweep, writing a row of summary results to a CSV table as each
+	 * point is completed. The table has a column for each axis, followed by
+	 * the number of households, the mean daily lighting, appliance and total
+	 * energy per household (kWh), and the peak mean demand (W) and its
+	 * minute.
+	 *
+	 * @param out
+	 *            the Writer to write the table to. This is flushed after
+	 *            each row but not closed.
+	 * @throws IOException
+	 *             if the model data cannot be read or the table cannot be
+	 *             written
+	 * @throws InterruptedException
+	 *             if interrupted while waiting for the workers
+	 */
+	public void run(Writer out) throws IOException, InterruptedException {
+		final CSVWriter writer = new CSVWriter(out, ',', '\0');
+
+		List<String> header = new ArrayList<String>();
+		header.add("point");
+		header.addAll(names);
+		header.add("households");
+		header.add("lighting_kwh");
+		header.add("appliance_kwh");
+		header.add("total_kwh");
+		header.add("peak_w");
+		header.add("peak_minute");
+		writer.writeNext(header.toArray(new String[header.size()]));
+		writer.flush();
+
+		final IOException[] error = new IOException[1];
+		run(new Listener() {
+			@Override
+			public void pointCompleted(Point point) {
+				String[] row = new String[names.size() + 7];
+				int k = 0;
+				row[k++] = String.valueOf(point.getIndex());
+				for (double v : point.values)
+					row[k++] = String.valueOf(v);
+				row[k++] = String.valueOf(point.aggregate.getCount());
+				row[k++] = String.valueOf(point.getLightingEnergy());
+				row[k++] = String.valueOf(point.getApplianceEnergy());
+				row[k++] = String.valueOf(point.getTotalEnergy());
+				row[k++] = String.valueOf(point.getPeakDemand());
+				row[k++] = String.valueOf(point.getPeakMinute());
+				writer.writeNext(row);
+				try {
+					writer.flush();
+				} catch (IOException e) {
+					error[0] = e;
+					cancel();
+				}
+			}
+		});
+
+		if (error[0] != null)
+			throw error[0];
+	}
+
+	/**
+	 * Cancels the sweep. The current point is abandoned and no further points
+	 * are started.
+	 */
+	public void cancel() {
+		cancelled = true;
+		BatchRunner r = runner;
+		if (r != null)
+			r.cancel();
+	}
+
+	/**
+	 * Has the sweep been cancelled?
+	 *
+	 * @return <code>true</code> if the sweep was cancelled
+	 */
+	public boolean isCancelled() {
+		return cancelled;
+	}
+}
@@ -0,0 +1,78 @@
+package uk.ac.imperial.simelec;
+
+/**
+ * Finds the peak of the combined demand of the loads, and the load factor.
+ * The profiles of every load given are summed minute by minute, so for a
+ * population of households this is the coincident peak.
+ *
+ * Loads can be added from several threads.
+ *
+ * @author James Keirstead
+ *
+ */
+public class PeakDemand implements LoadOperator {
+
+	// Member fields
+	private final double[] demand = new double[1440]; // W
+
+	/**
+	 * Creates an empty PeakDemand.
+	 */
+	public PeakDemand() {
+	}
+
+	@Override
+	public synchronized void loadCompleted(Load load) {
+		for (int i = 0; i < demand.length; i++)
+			demand[i] += load.consumption[i];
+	}
+
+	/**
+	 * Gets the peak demand.
+	 *
+	 * @return a double giving the largest combined demand in any minute (W)
+	 */
+	public synchronized double getPeak() {
+		return demand[getPeakMinute()];
+	}
+
+	/**
+	 * Gets the minute of the peak demand.
+	 *
+	 * @return an int giving the first minute of the day (0-1439) with the
+	 *         largest combined demand
+	 */
+	public synchronized int getPeakMinute() {
+		int peak = 0;
+		for (int i = 1; i < demand.length; i++) {
+			if (demand[i] > demand[peak])
+				peak = i;
+		}
+		return peak;
+	}
+
+	/**
+	 * Gets the load factor, the ratio of the mean demand to the peak demand.
+	 *
+	 * @return a double between 0 and 1, or zero if there is no demand
+	 */
+	public synchronized double getLoadFactor() {
+		double peak = getPeak();
+		if (peak <= 0)
+			return 0;
+		double sum = 0;
+		for (double w : demand)
+			sum += w;
+		return sum / demand.length / peak;
+	}
+
+	/**
+	 * Gets the combined demand.
+	 *
+	 * @return an array of 1440 values giving the summed demand in each minute
+	 *         (W)
+	 */
+	public synchronized double[] getDemand() {
+		return demand.clone();
+	}
+}
@@ -0,0 +1,507 @@
+package uk.ac.imperial.simelec;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import au.com.bytecode.opencsv.CSVWriter;
+
+/**
+ * Summary statistics of the demand of a population of households, for the
+ * lighting, appliance and total demand. For each minute of the day the
+ * aggregate holds the sum and sum of squares of the household demand and the
+ * largest household demand. For each household-day it also holds the sum and
+ * sum of squares of the daily energy and of the household's peak demand, and
+ * the largest peak.
+ *
+ * The model's demand is always a whole number of Watts, so every statistic is
+ * held as an integer. Merging aggregates is therefore exact: the result does
+ * not depend on the order in which households or aggregates are combined.
+ * Aggregates can be saved in a compact binary format, so that the partial
+ * results of threads, processes or separate runs can be reduced later.
+ *
+ * Households can be added from several threads.
+ *
+ * @author James Keirstead
+ *
+ */
+public class PopulationAggregate {
+
+	// Models
+	public static final int LIGHTING = 0;
+	public static final int APPLIANCES = 1;
+	public static final int TOTAL = 2;
+	private static final int MODELS = 3;
+
+	// File format identifiers
+	private static final int MAGIC = 0x53454C41;
+	private static final int VERSION = 2;
+
+	// Member fields
+	private long count;
+	private long[][] sum = new long[MODELS][HouseholdSimulator.MINUTES];
+	private long[][] sumSquares = new long[MODELS][HouseholdSimulator.MINUTES];
+	private long[][] max = new long[MODELS][HouseholdSimulator.MINUTES];
+	private long[] energy = new long[MODELS];
+	private BigInteger[] energySquares = new BigInteger[MODELS];
+	private long[] peak = new long[MODELS];
+	private long[] peakSquares = new long[MODELS];
+	private long[] maxPeak = new long[MODELS];
+
+	/**
+	 * Creates an empty PopulationAggregate.
+	 */
+	public PopulationAggregate() {
+		Arrays.fill(energySquares, BigInteger.ZERO);
+	}
+
+	/**
+	 * Adds a household to the population.
+	 *
+	 * @param result
+	 *            the HouseholdResult to add
+	 * @throws IllegalArgumentException
+	 *             if a demand is negative or not a whole number of Watts
+	 */
+	public void add(HouseholdResult result) {
+		double[] l = result.getLighting();
+		double[] a = result.getAppliances();
+
+		// Convert the profiles before taking the lock
+		long[][] demand = new long[MODELS][sum[0].length];
+		for (int i = 0; i < demand[0].length; i++) {
+			demand[LIGHTING][i] = toWatts(l[i]);
+			demand[APPLIANCES][i] = toWatts(a[i]);
+			demand[TOTAL][i] = demand[LIGHTING][i] + demand[APPLIANCES][i];
+		}
+
+		synchronized (this) {
+			for (int m = 0; m < MODELS; m++) {
+				long[] d = demand[m];
+				long e = 0;
+				long p = 0;
+				for (int i = 0; i < d.length; i++) {
+					sum[m][i] += d[i];
+					sumSquares[m][i] += d[i] * d[i];
+					if (d[i] > max[m][i])
+						max[m][i] = d[i];
+					e += d[i];
+					if (d[i] > p)
+						p = d[i];
+				}
+				energy[m] += e;
+				energySquares[m] = energySquares[m].add(BigInteger.valueOf(e)
+						.multiply(BigInteger.valueOf(e)));
+				peak[m] += p;
+				peakSquares[m] += p * p;
+				if (p > maxPeak[m])
+					maxPeak[m] = p;
+			}
+			count++;
+		}
+	}
+
+	private static long toWatts(double x) {
+		long w = (long) x;
+		if (w != x || w < 0)
+			throw new IllegalArgumentException("Invalid demand " + x);
+		return w;
+	}
+
+	/**
+	 * Adds the households of another population to this one.
+	 *
+	 * @param other
+	 *            the PopulationAggregate to add
+	 */
+	public void merge(PopulationAggregate other) {
+		PopulationAggregate o = other.copy();
+		synchronized (this) {
+			for (int m = 0; m < MODELS; m++) {
+				for (int i = 0; i < sum[m].length; i++) {
+					sum[m][i] += o.sum[m][i];
+					sumSquares[m][i] += o.sumSquares[m][i];
+					max[m][i] = Math.max(max[m][i], o.max[m][i]);
+				}
+				energy[m] += o.energy[m];
+				energySquares[m] = energySquares[m].add(o.energySquares[m]);
+				peak[m] += o.peak[m];
+				peakSquares[m] += o.peakSquares[m];
+				maxPeak[m] = Math.max(maxPeak[m], o.maxPeak[m]);
+			}
+			count += o.count;
+		}
+	}
+
+	/**
+	 * Creates a copy of this aggregate.
+	 *
+	 * @return a new PopulationAggregate
+	 */
+	public synchronized PopulationAggregate copy() {
+		PopulationAggregate c = new PopulationAggregate();
+		c.count = count;
+		for (int m = 0; m < MODELS; m++) {
+			c.sum[m] = sum[m].clone();
+			c.sumSquares[m] = sumSquares[m].clone();
+			c.max[m] = max[m].clone();
+		}
+		c.energy = energy.clone();
+		c.energySquares = energySquares.clone();
+		c.peak = peak.clone();
+		c.peakSquares = peakSquares.clone();
+		c.maxPeak = maxPeak.clone();
+		return c;
+	}
+
+	/**
+	 * Gets the number of households in the population.
+	 *
+	 * @return a long
+	 */
+	public synchronized long getCount() {
+		return count;
+	}
+
+	/**
+	 * Gets the mean demand per household.
+	 *
+	 * @param model
+	 *            an int giving the model: {@link #LIGHTING},
+	 *            {@link #APPLIANCES} or {@link #TOTAL}
+	 * @return an array of 1440 values at one-minute intervals (W)
+	 */
+	public synchronized double[] getMean(int model) {
+		double[] result = new double[sum[model].length];
+		for (int i = 0; i < result.length; i++) {
+			result[i] = count == 0 ? 0 : (double) sum[model][i] / count;
+		}
+		return result;
+	}
+
+	/**
+	 * Gets the sample standard deviation of the household demand.
+	 *
+	 * @param model
+	 *            an int giving the model
+	 * @return an array of 1440 values at one-minute intervals (W)
+	 */
+	public synchronized double[] getStandardDeviation(int model) {
+		double[] result = new double[sum[model].length];
+		for (int i = 0; i < result.length; i++) {
+			result[i] = sd(sum[model][i], sumSquares[model][i]);
+		}
+		return result;
+	}
+
+	/**
+	 * Gets the largest demand of any household in each minute.
+	 *
+	 * @param model
+	 *            an int giving the model
+	 * @return an array of 1440 values at one-minute intervals (W)
+	 */
+	public synchronized double[] getMaximum(int model) {
+		double[] result = new double[max[model].length];
+		for (int i = 0; i < result.length; i++) {
+			result[i] = max[model][i];
+		}
+		return result;
+	}
+
+	/**
+	 * Gets the mean daily energy per household.
+	 *
+	 * @param model
+	 *            an int giving the model
+	 * @return a double (Wh)
+	 */
+	public synchronized double getMeanEnergy(int model) {
+		return count == 0 ? 0 : (double) energy[model] / count / 60;
+	}
+
+	/**
+	 * Gets the sample standard deviation of the daily energy per household.
+	 *
+	 * @param model
+	 *            an int giving the model
+	 * @return a double (Wh)
+	 */
+	public synchronized double getEnergyStandardDeviation(int model) {
+		if (count < 2)
+			return 0;
+
+		// n * sum(x^2) - sum(x)^2 is exact in integers
+		BigInteger n = BigInteger.valueOf(count);
+		BigInteger s = BigInteger.valueOf(energy[model]);
+		double ss = energySquares[model].multiply(n).subtract(s.multiply(s))
+				.doubleValue();
+		return Math.sqrt(ss / count / (count - 1)) / 60;
+	}
+
+	/**
+	 * Gets the mean of each household's peak demand.
+	 *
+	 * @param model
+	 *            an int giving the model
+	 * @return a double (W)
+	 */
+	public synchronized double getMeanPeak(int model) {
+		return count == 0 ? 0 : (double) peak[model] / count;
+	}
+
+	/**
+	 * Gets the sample standard deviation of each household's peak demand.
+	 *
+	 * @param model
+	 *            an int giving the model
+	 * @return a double (W)
+	 */
+	public synchronized double getPeakStandardDeviation(int model) {
+		return sd(peak[model], peakSquares[model]);
+	}
+
+	/**
+	 * Gets the largest peak demand of any household.
+	 *
+	 * @param model
+	 *            an int giving the model
+	 * @return a double (W)
+	 */
+	public synchronized double getMaximumPeak(int model) {
+		return maxPeak[model];
+	}
+
+	private double sd(long s, long ss) {
+		if (count < 2)
+			return 0;
+		double mean = (double) s / count;
+		return Math.sqrt(Math.max(0, (ss - mean * s) / (count - 1)));
+	}
+
+	/**
+	 * Gets the mean lighting demand per household.
+	 *
+	 * @return an array of 1440 values at one-minute intervals (W)
+	 */
+	public double[] getMeanLighting() {
+		return getMean(LIGHTING);
+	}
+
+	/**
+	 * Gets the mean appliance demand per household.
+	 *
+	 * @return an array of 1440 values at one-minute intervals (W)
+	 */
+	public double[] getMeanAppliances() {
+		return getMean(APPLIANCES);
+	}
+
+	/**
+	 * Gets the mean total demand per household.
+	 *
+	 * @return an array of 1440 values at one-minute intervals (W)
+	 */
+	public double[] getMeanTotal() {
+		return getMean(TOTAL);
+	}
+
+	/**
+	 * Writes the mean lighting, appliance and total demand per household to a
+	 * CSV file, in the same format as the <code>totals.csv</code> file of a
+	 * single run.
+	 *
+	 * @param file
+	 *            the File to write
+	 * @param resolution
+	 *            an int giving the output resolution in minutes. See
+	 *            {@link SimElec#validateResolution(int)}.
+	 * @param energy
+	 *            a boolean indicating if energy (Wh) should be reported rather
+	 *            than mean power (W)
+	 * @throws IOException
+	 *             if the file cannot be written
+	 */
+	public synchronized void write(File file, int resolution, boolean energy)
+			throws IOException {
+		ArrayList<String[]> results = new ArrayList<String[]>(3);
+		results.add(Load.buildExportString("LIGHTING", getMeanLighting(),
+				resolution, energy));
+		results.add(Load.buildExportString("APPLIANCE", getMeanAppliances(),
+				resolution, energy));
+		results.add(Load.buildExportString("TOTAL", getMeanTotal(),
+				resolution, energy));
+
+		CSVWriter writer = new CSVWriter(new FileWriter(file), ',', '\0');
+		writer.writeAll(results);
+		writer.close();
+	}
+
+	/**
+	 * Writes this aggregate in a compact binary format. Every statistic is
+	 * written as a variable-length integer, so small values take fewer bytes.
+	 *
+	 * @param os
+	 *            the OutputStream to write to. This is flushed but not
+	 *            closed.
+	 * @throws IOException
+	 *             if the aggregate cannot be written
+	 */
+	public synchronized void write(OutputStream os) throws IOException {
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+				os));
+		out.writeInt(MAGIC);
+		out.writeInt(VERSION);
+		out.writeInt(sum[0].length);
+		writeVarLong(out, count);
+		for (int m = 0; m < MODELS; m++) {
+			for (int i = 0; i < sum[m].length; i++) {
+				writeVarLong(out, sum[m][i]);
+				writeVarLong(out, sumSquares[m][i]);
+				writeVarLong(out, max[m][i]);
+			}
+			writeVarLong(out, energy[m]);
+			byte[] b = energySquares[m].toByteArray();
+			writeVarLong(out, b.length);
+			out.write(b);
+			writeVarLong(out, peak[m]);
+			writeVarLong(out, peakSquares[m]);
+			writeVarLong(out, maxPeak[m]);
+		}
+		out.flush();
+	}
+
+	/**
+	 * Reads an aggregate written by {@link #write(OutputStream)}.
+	 *
+	 * @param is
+	 *            the InputStream to read from. This is not closed.
+	 * @return a new PopulationAggregate
+	 * @throws IOException
+	 *             if the aggregate cannot be read or is not valid
+	 */
+	public static PopulationAggregate read(InputStream is) throws IOException {
+		DataInputStream in = new DataInputStream(new BufferedInputStream(is));
+		if (in.readInt() != MAGIC)
+			throw new IOException("Not a population aggregate");
+		int version = in.readInt();
+		if (version != VERSION)
+			throw new IOException(String.format(
+					"Unsupported population aggregate version %d", version));
+
+		PopulationAggregate a = new PopulationAggregate();
+		if (in.readInt() != a.sum[0].length)
+			throw new IOException("Invalid population aggregate length");
+		a.count = readVarLong(in);
+		for (int m = 0; m < MODELS; m++) {
+			for (int i = 0; i < a.sum[m].length; i++) {
+				a.sum[m][i] = readVarLong(in);
+				a.sumSquares[m][i] = readVarLong(in);
+				a.max[m][i] = readVarLong(in);
+			}
+			a.energy[m] = readVarLong(in);
+			byte[] b = new byte[(int) readVarLong(in)];
+			in.readFully(b);
+			a.energySquares[m] = new BigInteger(b);
+			a.peak[m] = readVarLong(in);
+			a.peakSquares[m] = readVarLong(in);
+			a.maxPeak[m] = readVarLong(in);
+		}
+		return a;
+	}
+
+	/**
+	 * Writes a non-negative long in groups of seven bits, least significant
+	 * first, with the top bit of each byte set if more bytes follow.
+	 */
+	private static void writeVarLong(DataOutputStream out, long v)
+			throws IOException {
+		while ((v & ~0x7FL) != 0) {
+			out.writeByte((int) ((v & 0x7F) | 0x80));
+			v >>>= 7;
+		}
+		out.writeByte((int) v);
+	}
+
+	private static long readVarLong(DataInputStream in) throws IOException {
+		long v = 0;
+		for (int shift = 0; shift < 64; shift += 7) {
+			int b = in.read();
+			if (b < 0)
+				throw new EOFException("Truncated population aggregate");
+			v |= (long) (b & 0x7F) << shift;
+			if ((b & 0x80) == 0)
+				return v;
+		}
+		throw new IOException("Invalid population aggregate");
+	}
+
+	/**
+	 * Saves this aggregate to a file. See {@link #write(OutputStream)}.
+	 *
+	 * @param file
+	 *            the File to write
+	 * @throws IOException
+	 *             if the file cannot be written
+	 */
+	public void save(File file) throws IOException {
+		OutputStream os = new FileOutputStream(file);
+		try {
+			write(os);
+		} finally {
+			os.close();
+		}
+	}
+
+	/**
+	 * Loads an aggregate saved by {@link #save(File)}.
+	 *
+	 * @param file
+	 *            the File to read
+	 * @return a new PopulationAggregate
+	 * @throws IOException
+	 *             if the file cannot be read or is not valid
+	 */
+	public static PopulationAggregate load(File file) throws IOException {
+		InputStream is = new FileInputStream(file);
+		try {
+			return read(is);
+		} catch (IOException e) {
+			throw new IOException(e.getMessage() + ": " + file, e);
+		} finally {
+			is.close();
+		}
+	}
+
+	@Override
+	public synchronized boolean equals(Object o) {
+		if (!(o instanceof PopulationAggregate))
+			return false;
+		PopulationAggregate a = ((PopulationAggregate) o).copy();
+		return count == a.count && Arrays.deepEquals(sum, a.sum)
+				&& Arrays.deepEquals(sumSquares, a.sumSquares)
+				&& Arrays.deepEquals(max, a.max)
+				&& Arrays.equals(energy, a.energy)
+				&& Arrays.equals(energySquares, a.energySquares)
+				&& Arrays.equals(peak, a.peak)
+				&& Arrays.equals(peakSquares, a.peakSquares)
+				&& Arrays.equals(maxPeak, a.maxPeak);
+	}
+
+	@Override
+	public synchronized int hashCode() {
+		return (int) count * 31 + Arrays.hashCode(energy);
+	}
+}
@@ -0,0 +1,242 @@
+package uk.ac.imperial.simelec;
+
+import java.util.AbstractList;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.List;
+
+/**
+ * Generates synthetic populations of household-days from weighted
+ * distributions of the number of residents, the month and the day type.
+ *
+ * The specification of household <code>i</code> depends only on the
+ * generator's seed and <code>i</code>, so a population can be split into
+ * shards which are generated independently and in any order. Shards are
+ * returned as lazy lists which create each HouseholdSpec when it is requested,
+ * so even very large populations are never held in memory. A shard can be
+ * simulated directly by a {@link BatchRunner}, for example:
+ *
+ * <pre>
+ * List&lt;HouseholdSpec&gt; shard = generator.getShard(first, count);
+ * new BatchRunner(shard, seed, first, threads, parameters).run(null);
+ * </pre>
+ *
+ * @author James Keirstead
+ *
+ */
+public class PopulationGenerator {
+
+	// Separates the draws of the population from each household's
+	// RandomStreams, which are derived from a seed and household number in
+	// the same way
+	private static final long POPULATION_SALT = 0x7f4a7c15d1b54a32L;
+
+	// Member fields
+	private long seed;
+	private double[] residents;
+	private double[] days;
+	private double[] monthWeights;
+	private double weekend = 2.0 / 7;
+
+	/**
+	 * Creates a PopulationGenerator. By default each number of residents is
+	 * equally likely, each month is weighted by its number of days in a
+	 * non-leap year, and two days in seven are weekends.
+	 *
+	 * @param seed
+	 *            a long giving the population seed
+	 */
+	public PopulationGenerator(long seed) {
+		this.seed = seed;
+		setResidentWeights(1, 1, 1, 1, 1);
+		setMonthWeights(31, 28, 31, 30, 31, 30, 31, 31, 30, 31, 30, 31);
+	}
+
+	/**
+	 * Sets the relative weights of one to five residents.
+	 *
+	 * @param weights
+	 *            five non-negative doubles, for one to five residents
+	 */
+	public void setResidentWeights(double... weights) {
+		if (weights.length != 5)
+			throw new IllegalArgumentException(
+					"Five resident weights are required");
+		residents = cumulative(weights);
+	}
+
+	/**
+	 * Sets the relative weights of each month. The day type is drawn with the
+	 * current weekend probability.
+	 *
+	 * @param weights
+	 *            twelve non-negative doubles, for January to December
+	 */
+	public void setMonthWeights(double... weights) {
+		if (weights.length != 12)
+			throw new IllegalArgumentException(
+					"Twelve month weights are required");
+		cumulative(weights);
+		monthWeights = weights.clone();
+		setDays();
+	}
+
+	/**
+	 * Sets the probability that a household-day is a weekend. The month is
+	 * drawn with the current month weights.
+	 *
+	 * @param p
+	 *            a double between 0 and 1
+	 */
+	public void setWeekendProbability(double p) {
+		if (!(p >= 0 && p <= 1))
+			throw new IllegalArgumentException("Invalid probability " + p);
+		weekend = p;
+		setDays();
+	}
+
+	private void setDays() {
+		double[] w = new double[24];
+		for (int m = 0; m < 12; m++) {
+			w[2 * m] = monthWeights[m] * (1 - weekend);
+			w[2 * m + 1] = monthWeights[m] * weekend;
+		}
+		days = cumulative(w);
+	}
+
+	/**
+	 * Weights each month and day type by the number of such days in a
+	 * calendar year. This replaces the month weights and weekend probability.
+	 *
+	 * @param year
+	 *            an int giving the year
+	 */
+	public void setCalendar(int year) {
+		double[] w = new double[24];
+		Calendar cal = new GregorianCalendar(year, Calendar.JANUARY, 1);
+		while (cal.get(Calendar.YEAR) == year) {
+			int day = cal.get(Calendar.DAY_OF_WEEK);
+			boolean we = day == Calendar.SATURDAY || day == Calendar.SUNDAY;
+			w[2 * cal.get(Calendar.MONTH) + (we ? 1 : 0)]++;
+			cal.add(Calendar.DAY_OF_YEAR, 1);
+		}
+		days = cumulative(w);
+	}
+
+	/**
+	 * Converts weights into a cumulative distribution.
+	 */
+	private static double[] cumulative(double[] weights) {
+		double[] c = new double[weights.length];
+		double sum = 0;
+		for (int i = 0; i < weights.length; i++) {
+			if (!(weights[i] >= 0) || Double.isInfinite(weights[i]))
+				throw new IllegalArgumentException("Invalid weight "
+						+ weights[i]);
+			sum += weights[i];
+			c[i] = sum;
+		}
+		if (sum <= 0)
+			throw new IllegalArgumentException("The weights sum to zero");
+		for (int i = 0; i < c.length; i++)
+			c[i] /= sum;
+		return c;
+	}
+
+	/**
+	 * Finds the category of a uniform random number in a cumulative
+	 * distribution, skipping any categories with zero weight.
+	 */
+	private static int sample(double[] c, double u) {
+		int i = 0;
+		while (i < c.length - 1 && u >= c[i])
+			i++;
+		return i;
+	}
+
+	/**
+	 * Gets the specification of a household.
+	 *
+	 * @param household
+	 *            a long giving the household number
+	 * @return a HouseholdSpec
+	 */
+	public HouseholdSpec get(long household) {
+		return get(household, residents, days);
+	}
+
+	private HouseholdSpec get(long household, double[] residents,
+			double[] days) {
+		long h = getKey(seed, household);
+		int r = sample(residents, toUniform(h));
+		int d = sample(days, toUniform(RandomStreams.mix(h)));
+		return new HouseholdSpec(d / 2 + 1, r + 1, d % 2 == 1);
+	}
+
+	/**
+	 * Gets the key from which a household's specification is drawn.
+	 *
+	 * @param seed
+	 *            a long giving the population seed
+	 * @param household
+	 *            a long giving the household number
+	 * @return a long
+	 */
+	static long getKey(long seed, long household) {
+		return RandomStreams.mix(seed ^ POPULATION_SALT
+				^ RandomStreams.mix(household));
+	}
+
+	/**
+	 * Converts the top 53 bits of a long into a double in [0, 1).
+	 */
+	private static double toUniform(long bits) {
+		return (bits >>> 11) * 0x1.0p-53;
+	}
+
+	/**
+	 * Gets a shard of the population. The shard is a read-only list which
+	 * creates each HouseholdSpec when it is requested, using the weights at
+	 * the time the shard was created.
+	 *
+	 * @param first
+	 *            a long giving the number of the first household in the shard
+	 * @param count
+	 *            an int giving the number of households in the shard
+	 * @return a List of HouseholdSpec objects
+	 */
+	public List<HouseholdSpec> getShard(final long first, final int count) {
+		if (first < 0 || count < 0)
+			throw new IllegalArgumentException(String.format(
+					"Invalid shard of %d households from %d", count, first));
+
+		final double[] r = residents;
+		final double[] d = days;
+		return new AbstractList<HouseholdSpec>() {
+			@Override
+			public HouseholdSpec get(int index) {
+				if (index < 0 || index >= count)
+					throw new IndexOutOfBoundsException("Index: " + index);
+				return PopulationGenerator.this.get(first + index, r, d);
+			}
+
+			@Override
+			public int size() {
+				return count;
+			}
+		};
+	}
+
+	/**
+	 * Gets the number of shards needed to cover a population.
+	 *
+	 * @param households
+	 *            a long giving the number of households
+	 * @param shardSize
+	 *            an int giving the number of households in each shard
+	 * @return a long
+	 */
+	public static long getShardCount(long households, int shardSize) {
+		return households / shardSize + (households % shardSize == 0 ? 0 : 1);
+	}
+}
@@ -0,0 +1,175 @@
+package uk.ac.imperial.simelec;
+
+import cern.jet.random.Normal;
+import cern.jet.random.Uniform;
+import cern.jet.random.engine.MersenneTwister;
+import cern.jet.random.engine.RandomEngine;
+
+/**
+ * A source of random numbers for the simulation models. The default stream
+ * draws from the static Colt distributions shared by the whole application;
+ * other streams have their own generator so that their sequence of draws is
+ * unaffected by any other part of the simulation.
+ *
+ * @author James Keirstead
+ *
+ */
+public class RandomStream {
+
+	/**
+	 * The stream backed by the static <code>Uniform</code> and
+	 * <code>Normal</code> distributions.
+	 */
+	public static final RandomStream GLOBAL = new RandomStream() {
+
+		@Override
+		public double nextDouble() {
+			return Uniform.staticNextDouble();
+		}
+
+		@Override
+		public double nextNormal(double mean, double sd) {
+			return Normal.staticNextDouble(mean, sd);
+		}
+	};
+
+	// Member fields
+	private RandomEngine engine;
+	private Normal normal;
+	private boolean fast = false;
+
+	/**
+	 * Creates a new RandomStream with its own generator.
+	 *
+	 * @param seed
+	 *            an int giving the seed for the generator
+	 */
+	public RandomStream(int seed) {
+		this.engine = new MersenneTwister(seed);
+		this.normal = new Normal(0, 1, engine);
+	}
+
+	/**
+	 * Creates a new RandomStream with its own generator, optionally drawing
+	 * normal and exponential values with the ziggurat kernels of
+	 * {@link RandomVariates}. These are faster, but give different values
+	 * from the default stream for the same seed.
+	 *
+	 * @param seed
+	 *            an int giving the seed for the generator
+	 * @param fastVariates
+	 *            a boolean indicating if the ziggurat kernels should be used
+	 */
+	public RandomStream(int seed, boolean fastVariates) {
+		this(seed);
+		this.fast = fastVariates;
+	}
+
+	/**
+	 * Creates a new RandomStream with its own generator, seeded from an array
+	 * of int values. See {@link ArraySeededTwister}.
+	 *
+	 * @param seed
+	 *            an array of at least one int giving the seed
+	 * @param fastVariates
+	 *            a boolean indicating if the ziggurat kernels should be used
+	 */
+	RandomStream(int[] seed, boolean fastVariates) {
+		this.engine = new ArraySeededTwister(seed);
+		this.normal = new Normal(0, 1, engine);
+		this.fast = fastVariates;
+	}
+
+	/**
+	 * Creates a RandomStream without a generator. Subclasses must override
+	 * {@link #nextDouble()} and {@link #nextNormal(double, double)}.
+	 */
+	protected RandomStream() {
+	}
+
+	/**
+	 * Draws a uniformly distributed value.
+	 *
+	 * @return a double in the open interval (0, 1)
+	 */
+	public double nextDouble() {
+		return engine.raw();
+	}
+
+	/**
+	 * Draws a uniformly distributed integer. This matches
+	 * <code>Uniform.nextIntFromTo</code>.
+	 *
+	 * @param from
+	 *            an int giving the lower bound
+	 * @param to
+	 *            an int giving the upper bound
+	 * @return an int in the closed interval [from, to]
+	 */
+	public int nextIntFromTo(int from, int to) {
+		return (int) (from + (long) ((1L + to - from) * nextDouble()));
+	}
+
+	/**
+	 * Draws a normally distributed value.
+	 *
+	 * @param mean
+	 *            a double giving the mean
+	 * @param sd
+	 *            a double giving the standard deviation
+	 * @return a double
+	 */
+	public double nextNormal(double mean, double sd) {
+		if (fast)
+			return mean + sd * RandomVariates.normal(this);
+		return normal.nextDouble(mean, sd);
+	}
+
+	/**
+	 * Draws an exponentially distributed value. By default this is
+	 * <code>-mean * log(u)</code> for a single uniform value
+	 * <code>u</code>.
+	 *
+	 * @param mean
+	 *            a double giving the mean
+	 * @return a double
+	 */
+	public double nextExponential(double mean) {
+		if (fast)
+			return mean * RandomVariates.exponential(this);
+		return -mean * Math.log(nextDouble());
+	}
+
+	/**
+	 * Sets the seed for the {@link #GLOBAL} stream. Both the uniform and
+	 * normal distributions are reseeded so that a seeded run is reproducible.
+	 *
+	 * @param seed
+	 *            an int giving the seed
+	 */
+	public static void setGlobalSeed(int seed) {
+		RandomEngine engine = new MersenneTwister(seed);
+		Uniform.staticSetRandomEngine(engine);
+		SharedNormal.setRandomEngine(engine);
+	}
+
+	/**
+	 * Provides access to the shared instance behind
+	 * <code>Normal.staticNextDouble</code>, which Colt does not allow to be
+	 * reseeded directly.
+	 */
+	private static class SharedNormal extends Normal {
+
+		private static final long serialVersionUID = 1L;
+
+		private SharedNormal() {
+			super(0, 1, null);
+		}
+
+		private static void setRandomEngine(RandomEngine engine) {
+			synchronized (Normal.class) {
+				shared = new Normal(0, 1, engine);
+			}
+		}
+	}
+}
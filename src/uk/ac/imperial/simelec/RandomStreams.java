@@ -0,0 +1,158 @@
+package uk.ac.imperial.simelec;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Provides a household's random numbers as a set of independent, keyed
+ * streams. Each part of the model (occupancy, bulb selection, appliance
+ * ownership, and each individual appliance) draws from its own stream, so
+ * changing one part of a scenario does not shift the random numbers seen by
+ * any other part. Two runs with the same household seed therefore share their
+ * randomness wherever their logic matches; this is the basis of the common
+ * random numbers approach to comparing scenarios.
+ *
+ * @author James Keirstead
+ *
+ */
+public class RandomStreams {
+
+	// Stream keys
+	public static final String OCCUPANCY = "occupancy";
+	public static final String BULBS = "bulbs";
+	public static final String LIGHTING = "lighting";
+	public static final String OWNERSHIP = "ownership";
+	public static final String APPLIANCE = "appliance.";
+
+	private static final RandomStreams GLOBAL = new RandomStreams();
+
+	// Member fields
+	private long seed;
+	private Map<String, RandomStream> streams;
+	private boolean fastVariates = false;
+
+	/**
+	 * Creates a new set of RandomStreams for a household.
+	 *
+	 * @param seed
+	 *            a long giving the household seed
+	 */
+	public RandomStreams(long seed) {
+		this.seed = seed;
+		this.streams = new HashMap<String, RandomStream>();
+	}
+
+	/**
+	 * Creates the global RandomStreams.
+	 */
+	private RandomStreams() {
+	}
+
+	/**
+	 * Gets the RandomStreams which return {@link RandomStream#GLOBAL} for every
+	 * key. This is the default for all models.
+	 *
+	 * @return the global RandomStreams
+	 */
+	public static RandomStreams global() {
+		return GLOBAL;
+	}
+
+	/**
+	 * Creates the RandomStreams for a numbered household within a scenario.
+	 *
+	 * @param seed
+	 *            a long giving the scenario seed
+	 * @param household
+	 *            a long giving the household number
+	 * @return a new RandomStreams
+	 */
+	public static RandomStreams forHousehold(long seed, long household) {
+		return new RandomStreams(mix(seed ^ mix(household)));
+	}
+
+	/**
+	 * Gets the stream for a specified key, creating it if necessary.
+	 *
+	 * @param key
+	 *            a String identifying the stream
+	 * @return the RandomStream for <code>key</code>
+	 */
+	public RandomStream get(String key) {
+		if (streams == null)
+			return RandomStream.GLOBAL;
+
+		RandomStream s = streams.get(key);
+		if (s == null) {
+			s = createStream(key);
+			streams.put(key, s);
+		}
+		return s;
+	}
+
+	/**
+	 * Gets the stream used by a specified appliance.
+	 *
+	 * @param id
+	 *            a String giving the appliance id
+	 * @return the RandomStream for the appliance
+	 */
+	public RandomStream getAppliance(String id) {
+		return get(APPLIANCE.concat(id));
+	}
+
+	/**
+	 * Creates a new stream for a key. The stream's generator is seeded from
+	 * the whole of the household seed and the key, so no two streams share a
+	 * seed. Subclasses may override this to control the values returned by
+	 * particular streams.
+	 *
+	 * @param key
+	 *            a String identifying the stream
+	 * @return a new RandomStream
+	 */
+	protected RandomStream createStream(String key) {
+		int[] words = new int[2 + key.length()];
+		words[0] = (int) seed;
+		words[1] = (int) (seed >>> 32);
+		for (int i = 0; i < key.length(); i++)
+			words[2 + i] = key.charAt(i);
+		return new RandomStream(words, fastVariates);
+	}
+
+	/**
+	 * Sets whether streams created from now on draw normal and exponential
+	 * values with the ziggurat kernels of {@link RandomVariates}. This is
+	 * faster but changes the results for a given seed. It has no effect on
+	 * the global RandomStreams.
+	 *
+	 * @param fast
+	 *            a boolean indicating if the ziggurat kernels should be used
+	 */
+	public void setFastVariates(boolean fast) {
+		this.fastVariates = fast;
+	}
+
+	/**
+	 * Gets the seed of this RandomStreams.
+	 *
+	 * @return a long giving the household seed
+	 */
+	public long getSeed() {
+		return seed;
+	}
+
+	/**
+	 * Scrambles a value using the SplitMix64 finaliser so that nearby seeds
+	 * and keys give unrelated streams.
+	 *
+	 * @param z
+	 *            a long
+	 * @return a scrambled long
+	 */
+	static long mix(long z) {
+		z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+		z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+		return z ^ (z >>> 31);
+	}
+}
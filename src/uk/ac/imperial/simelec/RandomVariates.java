@@ -0,0 +1,292 @@
+package uk.ac.imperial.simelec;
+
+import java.util.Arrays;
+
+/**
+ * Sampling kernels for the distributions used by the models. Each kernel
+ * draws its uniform values from a {@link RandomStream}, so it works with the
+ * per-household streams as well as the global one.
+ *
+ * The table-driven kernels for the television viewing time and the lighting
+ * event duration return exactly the same value as the original formulae for
+ * the same uniform draws, so they don't change the results of a seeded run.
+ * The ziggurat kernels for the normal and exponential distributions use the
+ * uniform draws differently from Colt and <code>Math.log</code>, and so are
+ * only used by streams created with fast variates (see
+ * {@link RandomStream#RandomStream(int, boolean)}).
+ *
+ * @author James Keirstead
+ *
+ */
+public final class RandomVariates {
+
+	private static final double TWO_32 = 4294967296.0;
+
+	// Ziggurat tables for the standard normal distribution, from G. Marsaglia
+	// and W. W. Tsang, The ziggurat method for generating random variables,
+	// Journal of Statistical Software 5 (2000)
+	private static final double NORMAL_R = 3.442619855899;
+	private static final long[] KN = new long[128];
+	private static final double[] WN = new double[128];
+	private static final double[] FN = new double[128];
+
+	// Ziggurat tables for the standard exponential distribution
+	private static final double EXP_R = 7.697117470131487;
+	private static final long[] KE = new long[256];
+	private static final double[] WE = new double[256];
+	private static final double[] FE = new double[256];
+
+	static {
+		double m1 = 2147483648.0;
+		double dn = NORMAL_R;
+		double tn = dn;
+		double vn = 9.91256303526217e-3;
+		double q = vn / Math.exp(-0.5 * dn * dn);
+		KN[0] = (long) ((dn / q) * m1);
+		KN[1] = 0;
+		WN[0] = q / m1;
+		WN[127] = dn / m1;
+		FN[0] = 1;
+		FN[127] = Math.exp(-0.5 * dn * dn);
+		for (int i = 126; i >= 1; i--) {
+			dn = Math.sqrt(-2 * Math.log(vn / dn + Math.exp(-0.5 * dn * dn)));
+			KN[i + 1] = (long) ((dn / tn) * m1);
+			tn = dn;
+			FN[i] = Math.exp(-0.5 * dn * dn);
+			WN[i] = dn / m1;
+		}
+
+		double de = EXP_R;
+		double te = de;
+		double ve = 3.949659822581572e-3;
+		q = ve / Math.exp(-de);
+		KE[0] = (long) ((de / q) * TWO_32);
+		KE[1] = 0;
+		WE[0] = q / TWO_32;
+		WE[255] = de / TWO_32;
+		FE[0] = 1;
+		FE[255] = Math.exp(-de);
+		for (int i = 254; i >= 1; i--) {
+			de = -Math.log(ve / de + Math.exp(-de));
+			KE[i + 1] = (long) ((de / te) * TWO_32);
+			te = de;
+			FE[i] = Math.exp(-de);
+			WE[i] = de / TWO_32;
+		}
+	}
+
+	// Inverse CDF table for the television viewing time. TV_THRESHOLD[k] is
+	// the smallest uniform value giving a time of at least k minutes, and
+	// TV_GUIDE[b] the time given by the uniform value b / TV_GUIDE_SIZE.
+	private static final int TV_GUIDE_SIZE = 4096;
+	private static final double[] TV_THRESHOLD;
+	private static final int[] TV_GUIDE = new int[TV_GUIDE_SIZE + 1];
+
+	static {
+		int max = tvFormula(Math.nextAfter(1.0, 0));
+		TV_THRESHOLD = new double[max + 1];
+		for (int k = 1; k <= max; k++) {
+			TV_THRESHOLD[k] = findTvThreshold(k);
+		}
+		for (int b = 0; b < TV_GUIDE_SIZE; b++) {
+			TV_GUIDE[b] = countTvThresholds((double) b / TV_GUIDE_SIZE, 0, max);
+		}
+		TV_GUIDE[TV_GUIDE_SIZE] = max;
+	}
+
+	// The bounds of the intervals of the lighting event duration (minutes)
+	private static final int[] LIGHT_LOW = { 1, 2, 3, 5, 9, 17, 28, 50, 92 };
+	private static final int[] LIGHT_UP = { 1, 2, 4, 8, 16, 27, 49, 91, 259 };
+
+	private RandomVariates() {
+	}
+
+	/**
+	 * Draws a value from the standard normal distribution with the ziggurat
+	 * method. Most draws take a single uniform value and no transcendental
+	 * functions.
+	 *
+	 * @param random
+	 *            the RandomStream to draw from
+	 * @return a double
+	 */
+	public static double normal(RandomStream random) {
+		int hz = nextInt(random);
+		int iz = hz & 127;
+		if (Math.abs((long) hz) < KN[iz])
+			return hz * WN[iz];
+
+		// The base strip and the edges of the rectangles
+		while (true) {
+			double x = hz * WN[iz];
+			if (iz == 0) {
+				double y;
+				do {
+					x = -Math.log(random.nextDouble()) / NORMAL_R;
+					y = -Math.log(random.nextDouble());
+				} while (y + y < x * x);
+				return hz > 0 ? NORMAL_R + x : -NORMAL_R - x;
+			}
+			if (FN[iz] + random.nextDouble() * (FN[iz - 1] - FN[iz]) < Math
+					.exp(-0.5 * x * x))
+				return x;
+
+			hz = nextInt(random);
+			iz = hz & 127;
+			if (Math.abs((long) hz) < KN[iz])
+				return hz * WN[iz];
+		}
+	}
+
+	/**
+	 * Draws a value from the standard exponential distribution, with a mean
+	 * of one, with the ziggurat method. Most draws take a single uniform value
+	 * and no logarithm.
+	 *
+	 * @param random
+	 *            the RandomStream to draw from
+	 * @return a double
+	 */
+	public static double exponential(RandomStream random) {
+		long jz = nextInt(random) & 0xffffffffL;
+		int iz = (int) (jz & 255);
+		if (jz < KE[iz])
+			return jz * WE[iz];
+
+		while (true) {
+			if (iz == 0)
+				return EXP_R - Math.log(random.nextDouble());
+
+			double x = jz * WE[iz];
+			if (FE[iz] + random.nextDouble() * (FE[iz - 1] - FE[iz]) < Math
+					.exp(-x))
+				return x;
+
+			jz = nextInt(random) & 0xffffffffL;
+			iz = (int) (jz & 255);
+			if (jz < KE[iz])
+				return jz * WE[iz];
+		}
+	}
+
+	/**
+	 * Gets 32 random bits from a uniform draw. The uniform values of the
+	 * Mersenne Twister streams are multiples of 2^-32, so no bits are lost.
+	 */
+	private static int nextInt(RandomStream random) {
+		return (int) (long) (random.nextDouble() * TWO_32);
+	}
+
+	/**
+	 * Draws a television viewing time.
+	 *
+	 * @param random
+	 *            the RandomStream to draw from
+	 * @return an int giving the viewing time in minutes
+	 */
+	public static int tvViewingTime(RandomStream random) {
+		return tvViewingTime(random.nextDouble());
+	}
+
+	/**
+	 * Gets the television viewing time for a uniform value from a table of
+	 * the inverse CDF. This gives the same result as the approximation
+	 * <code>round(70 * (-log10(1 - u))^1.1)</code> derived from the Time Use
+	 * Survey data, which has a mean of approximately 73 minutes.
+	 *
+	 * @param u
+	 *            a double in the interval [0, 1)
+	 * @return an int giving the viewing time in minutes
+	 */
+	static int tvViewingTime(double u) {
+		if (!(u >= 0 && u < 1))
+			return tvFormula(u);
+
+		int b = (int) (u * TV_GUIDE_SIZE);
+		return countTvThresholds(u, TV_GUIDE[b], TV_GUIDE[b + 1]);
+	}
+
+	/**
+	 * Counts the thresholds no greater than a uniform value, given that the
+	 * count lies between two bounds.
+	 */
+	private static int countTvThresholds(double u, int low, int high) {
+		while (low < high) {
+			int mid = (low + high + 1) >>> 1;
+			if (TV_THRESHOLD[mid] <= u) {
+				low = mid;
+			} else {
+				high = mid - 1;
+			}
+		}
+		return low;
+	}
+
+	private static int tvFormula(double u) {
+		return (int) Math.round(70 * Math.pow((0 - Math.log10(1 - u)), 1.1));
+	}
+
+	/**
+	 * Finds the smallest double giving a viewing time of at least k minutes,
+	 * starting from the exact inverse and searching the neighbouring doubles
+	 * so that the table agrees with the formula as it is evaluated.
+	 */
+	private static double findTvThreshold(int k) {
+		double guess = 1 - Math.pow(10, -Math.pow((k - 0.5) / 70, 1 / 1.1));
+		long hi = Double.doubleToLongBits(Math.min(guess,
+				Math.nextAfter(1.0, 0)));
+		long lo = hi;
+
+		// Bracket the threshold, so that lo gives less than k and hi at least k
+		long step = 1;
+		while (tvFormula(Double.longBitsToDouble(hi)) < k) {
+			lo = hi;
+			hi = Math.min(hi + step, Double.doubleToLongBits(Math.nextAfter(
+					1.0, 0)));
+			step *= 2;
+		}
+		step = 1;
+		while (lo > 0 && tvFormula(Double.longBitsToDouble(lo)) >= k) {
+			hi = lo;
+			lo = Math.max(lo - step, 0);
+			step *= 2;
+		}
+
+		while (hi - lo > 1) {
+			long mid = (lo + hi) >>> 1;
+			if (tvFormula(Double.longBitsToDouble(mid)) >= k) {
+				hi = mid;
+			} else {
+				lo = mid;
+			}
+		}
+		return Double.longBitsToDouble(hi);
+	}
+
+	/**
+	 * Draws the duration of a lighting event from the distribution of M.
+	 * Stokes, M. Rylatt, K. Lomas, A simple model of domestic lighting demand,
+	 * Energy and Buildings 36 (2004) 103-116. One of nine intervals is chosen
+	 * with equal probability, and the duration drawn uniformly from within
+	 * it.
+	 *
+	 * @param random
+	 *            the RandomStream to draw from
+	 * @return an int giving the duration in minutes
+	 */
+	public static int lightDuration(RandomStream random) {
+		int interval = random.nextIntFromTo(0, 8);
+		float rnd = (float) random.nextDouble();
+		int low = LIGHT_LOW[interval];
+		return (int) (low + rnd * (LIGHT_UP[interval] - low));
+	}
+
+	/**
+	 * Gets the smallest uniform values giving each television viewing time.
+	 *
+	 * @return an array whose entry k is the threshold for k minutes
+	 */
+	static double[] getTvThresholds() {
+		return Arrays.copyOf(TV_THRESHOLD, TV_THRESHOLD.length);
+	}
+}
@@ -0,0 +1,350 @@
+package uk.ac.imperial.simelec;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A two-tier cache of SimElec results. Results are stored under a content
+ * address derived from the full simulation specification, so that identical
+ * seeded runs can be served without re-simulating. The first tier is a
+ * least-recently-used map held in memory; the optional second tier is a
+ * directory of files with a bound on its total size.
+ *
+ * @author James Keirstead
+ *
+ */
+public class ResultCache {
+
+	// File format identifiers
+	private static final int MAGIC = 0x53454c43; // "SELC"
+	private static final String SUFFIX = ".bin";
+
+	private int maxEntries;
+	private File directory;
+	private long maxBytes;
+	private Map<String, Entry> memory;
+
+	/**
+	 * Creates a new memory-only ResultCache.
+	 *
+	 * @param maxEntries
+	 *            an int giving the maximum number of results to hold in memory
+	 */
+	public ResultCache(int maxEntries) {
+		this(maxEntries, null, 0);
+	}
+
+	/**
+	 * Creates a new ResultCache with both memory and disk tiers.
+	 *
+	 * @param maxEntries
+	 *            an int giving the maximum number of results to hold in memory
+	 * @param directory
+	 *            the directory in which to store cached results, or
+	 *            <code>null</code> to disable the disk tier
+	 * @param maxBytes
+	 *            a long giving the maximum total size of the disk tier in
+	 *            bytes. When exceeded, the least recently used files are
+	 *            deleted.
+	 */
+	public ResultCache(int maxEntries, File directory, long maxBytes) {
+		if (maxEntries < 0)
+			throw new IllegalArgumentException(
+					"Maximum number of entries must be non-negative");
+
+		this.maxEntries = maxEntries;
+		this.directory = directory;
+		this.maxBytes = maxBytes;
+		this.memory = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(
+					Map.Entry<String, ResultCache.Entry> eldest) {
+				return size() > ResultCache.this.maxEntries;
+			}
+		};
+
+		if (directory != null && !directory.isDirectory())
+			directory.mkdirs();
+	}
+
+	/**
+	 * Calculates the content address of a simulation specification.
+	 *
+	 * @param spec
+	 *            a String fully describing a simulation run
+	 * @return a hexadecimal SHA-1 digest of <code>spec</code>
+	 */
+	public static String digest(String spec) {
+		try {
+			MessageDigest md = MessageDigest.getInstance("SHA-1");
+			byte[] hash = md.digest(spec.getBytes("UTF-8"));
+			StringBuilder sb = new StringBuilder(hash.length * 2);
+			for (byte b : hash) {
+				sb.append(String.format("%02x", b));
+			}
+			return sb.toString();
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		} catch (UnsupportedEncodingException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Retrieves a cached result. The memory tier is checked first, then the
+	 * disk tier; results found on disk are promoted into memory.
+	 *
+	 * @param key
+	 *            a String giving the content address of the result
+	 * @return the cached Entry, or <code>null</code> if not found
+	 */
+	public synchronized Entry get(String key) {
+
+		Entry e = memory.get(key);
+		if (e != null || directory == null)
+			return e;
+
+		File f = getFile(key);
+		if (!f.exists())
+			return null;
+
+		try {
+			e = read(f);
+		} catch (IOException io) {
+			// A damaged cache file is treated as a miss
+			f.delete();
+			return null;
+		}
+
+		// Touch the file so that it is treated as recently used
+		f.setLastModified(System.currentTimeMillis());
+		memory.put(key, e);
+		return e;
+	}
+
+	/**
+	 * Stores a result in the cache.
+	 *
+	 * @param key
+	 *            a String giving the content address of the result
+	 * @param entry
+	 *            the Entry to store
+	 * @throws IOException
+	 *             if the result cannot be written to the disk tier
+	 */
+	public synchronized void put(String key, Entry entry) throws IOException {
+
+		memory.put(key, entry);
+
+		if (directory != null) {
+			File f = getFile(key);
+			File tmp = new File(directory, key.concat(".tmp"));
+			write(entry, tmp);
+			if (f.exists())
+				f.delete();
+			if (!tmp.renameTo(f)) {
+				tmp.delete();
+				throw new IOException(String.format(
+						"Unable to write cache file '%s'", f));
+			}
+			evict();
+		}
+	}
+
+	/**
+	 * Removes all entries from both tiers of this ResultCache.
+	 */
+	public synchronized void clear() {
+		memory.clear();
+		for (File f : listFiles())
+			f.delete();
+	}
+
+	/**
+	 * Gets the number of results held in the memory tier.
+	 *
+	 * @return an int giving the number of results
+	 */
+	public synchronized int size() {
+		return memory.size();
+	}
+
+	/**
+	 * Deletes the least recently used files from the disk tier until its total
+	 * size is within bounds.
+	 */
+	private void evict() {
+
+		File[] files = listFiles();
+		long total = 0;
+		for (File f : files)
+			total += f.length();
+
+		if (total <= maxBytes)
+			return;
+
+		Arrays.sort(files, new Comparator<File>() {
+			public int compare(File a, File b) {
+				return Long.compare(a.lastModified(), b.lastModified());
+			}
+		});
+
+		for (File f : files) {
+			if (total <= maxBytes)
+				break;
+			long size = f.length();
+			if (f.delete())
+				total -= size;
+		}
+	}
+
+	private File[] listFiles() {
+		if (directory == null)
+			return new File[0];
+
+		File[] files = directory.listFiles(new FilenameFilter() {
+			public boolean accept(File dir, String name) {
+				return name.endsWith(SUFFIX);
+			}
+		});
+		return files == null ? new File[0] : files;
+	}
+
+	private File getFile(String key) {
+		return new File(directory, key.concat(SUFFIX));
+	}
+
+	private static void write(Entry entry, File file) throws IOException {
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+				new FileOutputStream(file)));
+		try {
+			out.writeInt(MAGIC);
+			write(entry, out);
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Writes an Entry to a stream. This format is shared with the records of
+	 * a {@link ResultsStore}.
+	 *
+	 * @param entry
+	 *            the Entry to write
+	 * @param out
+	 *            the DataOutputStream on which to write it
+	 * @throws IOException
+	 */
+	static void write(Entry entry, DataOutputStream out) throws IOException {
+		out.writeInt(entry.totals.length);
+		for (double d : entry.totals)
+			out.writeDouble(d);
+
+		out.writeInt(entry.files.size());
+		for (Map.Entry<String, byte[]> f : entry.files.entrySet()) {
+			out.writeUTF(f.getKey());
+			out.writeInt(f.getValue().length);
+			out.write(f.getValue());
+		}
+	}
+
+	private static Entry read(File file) throws IOException {
+		DataInputStream in = new DataInputStream(new BufferedInputStream(
+				new FileInputStream(file)));
+		try {
+			if (in.readInt() != MAGIC)
+				throw new IOException("Not a SimElec cache file");
+			return read(in);
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Reads an Entry written by {@link #write(Entry, DataOutputStream)}.
+	 *
+	 * @param in
+	 *            the DataInputStream from which to read
+	 * @return the Entry
+	 * @throws IOException
+	 */
+	static Entry read(DataInputStream in) throws IOException {
+		double[] totals = new double[in.readInt()];
+		for (int i = 0; i < totals.length; i++)
+			totals[i] = in.readDouble();
+
+		int n = in.readInt();
+		Map<String, byte[]> files = new LinkedHashMap<String, byte[]>(n);
+		for (int i = 0; i < n; i++) {
+			String name = in.readUTF();
+			byte[] data = new byte[in.readInt()];
+			in.readFully(data);
+			files.put(name, data);
+		}
+
+		return new Entry(totals, files);
+	}
+
+	/**
+	 * A single cached result, consisting of the grand total load profile and
+	 * the contents of each output file written by the run.
+	 *
+	 * @author James Keirstead
+	 *
+	 */
+	public static class Entry {
+
+		private double[] totals;
+		private Map<String, byte[]> files;
+
+		/**
+		 * Creates a new Entry.
+		 *
+		 * @param totals
+		 *            an array giving the grand total load profile (W)
+		 * @param files
+		 *            a Map of output file names to their contents
+		 */
+		public Entry(double[] totals, Map<String, byte[]> files) {
+			this.totals = totals.clone();
+			this.files = Collections
+					.unmodifiableMap(new LinkedHashMap<String, byte[]>(files));
+		}
+
+		/**
+		 * Gets the grand total load profile.
+		 *
+		 * @return an array giving the load (W) at each time interval
+		 */
+		public double[] getTotals() {
+			return totals.clone();
+		}
+
+		/**
+		 * Gets the output files stored in this Entry.
+		 *
+		 * @return an unmodifiable Map of file names to contents
+		 */
+		public Map<String, byte[]> getFiles() {
+			return files;
+		}
+	}
+}
@@ -0,0 +1,409 @@
+package uk.ac.imperial.simelec;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * An append-only store for the results of many SimElec runs. Rather than
+ * writing a directory of output files for every household, each result is
+ * appended as a record to a large segment file, and an index maps the
+ * household number and seed of each record to its position. A store holds a
+ * few segment files however many households it contains.
+ *
+ * Results are added through a {@link Writer}. Every Writer appends to its own
+ * segments, so any number of Writers, in one or several processes, can add
+ * to the same store at once without locking. A segment is claimed by creating
+ * its index file, which fails if another Writer has already done so.
+ *
+ * Each segment <code>segment-N.dat</code> holds a sequence of records, each
+ * in the format of a {@link ResultCache.Entry}. Its index,
+ * <code>segment-N.idx</code>, holds a fixed-length entry for each record,
+ * giving the household, seed, offset and length. An index entry is only
+ * written once its record is complete, so a Writer that fails part way
+ * through a record leaves no trace in the index.
+ *
+ * @author James Keirstead
+ *
+ */
+public class ResultsStore {
+
+	// File format identifiers
+	private static final int DATA_MAGIC = 0x53454c53; // "SELS"
+	private static final int INDEX_MAGIC = 0x53454c49; // "SELI"
+	private static final int VERSION = 1;
+	private static final int HEADER_BYTES = 8;
+	private static final int INDEX_ENTRY_BYTES = 28;
+	private static final String DATA_SUFFIX = ".dat";
+	private static final String INDEX_SUFFIX = ".idx";
+
+	/** The default maximum size of a segment file in bytes */
+	public static final long DEFAULT_SEGMENT_BYTES = 1L << 30;
+
+	// Member fields
+	private File directory;
+	private long segmentBytes;
+	private Map<Key, Location> index = new HashMap<Key, Location>();
+	private Map<Integer, Long> indexRead = new HashMap<Integer, Long>();
+
+	/**
+	 * Opens a ResultsStore with the default segment size, creating the
+	 * directory if necessary.
+	 *
+	 * @param directory
+	 *            the directory holding the store
+	 * @throws IOException
+	 *             if the existing index files cannot be read
+	 */
+	public ResultsStore(File directory) throws IOException {
+		this(directory, DEFAULT_SEGMENT_BYTES);
+	}
+
+	/**
+	 * Opens a ResultsStore, creating the directory if necessary.
+	 *
+	 * @param directory
+	 *            the directory holding the store
+	 * @param segmentBytes
+	 *            a long giving the size in bytes at which a Writer starts a
+	 *            new segment
+	 * @throws IOException
+	 *             if the existing index files cannot be read
+	 */
+	public ResultsStore(File directory, long segmentBytes) throws IOException {
+		if (segmentBytes <= 0)
+			throw new IllegalArgumentException("Segment size must be positive");
+
+		this.directory = directory;
+		this.segmentBytes = segmentBytes;
+
+		if (!directory.isDirectory())
+			directory.mkdirs();
+		refresh();
+	}
+
+	/**
+	 * Opens a new Writer on this store. The Writer's first segment is created
+	 * when it appends its first result.
+	 *
+	 * @return a Writer
+	 */
+	public Writer openWriter() {
+		return new Writer();
+	}
+
+	/**
+	 * Reads any index entries added since the store was opened or last
+	 * refreshed, including those written by other processes.
+	 *
+	 * @throws IOException
+	 *             if an index file cannot be read
+	 */
+	public synchronized void refresh() throws IOException {
+		for (int segment : listSegments()) {
+			File f = getFile(segment, INDEX_SUFFIX);
+			Long read = indexRead.get(segment);
+			long from = read == null ? 0 : read;
+
+			RandomAccessFile raf = new RandomAccessFile(f, "r");
+			try {
+				long length = raf.length();
+				if (from == 0) {
+					// A new index may not have its header yet
+					if (length < HEADER_BYTES)
+						continue;
+					if (raf.readInt() != INDEX_MAGIC
+							|| raf.readInt() != VERSION)
+						throw new IOException(String.format(
+								"'%s' is not a SimElec results index", f));
+					from = HEADER_BYTES;
+				}
+
+				// Ignore an entry which is still being written
+				int n = (int) ((length - from) / INDEX_ENTRY_BYTES);
+				byte[] b = new byte[n * INDEX_ENTRY_BYTES];
+				raf.seek(from);
+				raf.readFully(b);
+				ByteBuffer buffer = ByteBuffer.wrap(b);
+				for (int i = 0; i < n; i++) {
+					Key key = new Key(buffer.getLong(), buffer.getLong());
+					add(key, new Location(segment, buffer.getLong(),
+							buffer.getInt()));
+				}
+				indexRead.put(segment, from + b.length);
+			} finally {
+				raf.close();
+			}
+		}
+	}
+
+	/**
+	 * Retrieves a result from this store. If a household has been stored
+	 * more than once with the same seed, the last record in the
+	 * highest-numbered segment is returned.
+	 *
+	 * @param household
+	 *            a long giving the household number
+	 * @param seed
+	 *            a long giving the seed
+	 * @return the ResultCache.Entry holding the totals and output files, or
+	 *         <code>null</code> if the result is not in the store
+	 * @throws IOException
+	 *             if the record cannot be read
+	 */
+	public synchronized ResultCache.Entry get(long household, long seed)
+			throws IOException {
+		Key key = new Key(household, seed);
+		Location loc = index.get(key);
+		if (loc == null) {
+			refresh();
+			loc = index.get(key);
+			if (loc == null)
+				return null;
+		}
+
+		byte[] b = new byte[loc.length];
+		RandomAccessFile raf = new RandomAccessFile(getFile(loc.segment,
+				DATA_SUFFIX), "r");
+		try {
+			raf.seek(loc.offset);
+			raf.readFully(b);
+		} finally {
+			raf.close();
+		}
+
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(b));
+		ResultCache.Entry entry = ResultCache.read(in);
+		if (in.read() >= 0)
+			throw new IOException("Damaged record in results store");
+		return entry;
+	}
+
+	/**
+	 * Is a result held in this store? Results added by other processes since
+	 * the last {@link #refresh()} are not seen.
+	 *
+	 * @param household
+	 *            a long giving the household number
+	 * @param seed
+	 *            a long giving the seed
+	 * @return <code>true</code> if the result is held
+	 */
+	public synchronized boolean contains(long household, long seed) {
+		return index.containsKey(new Key(household, seed));
+	}
+
+	/**
+	 * Gets the number of distinct results in this store, as of the last
+	 * {@link #refresh()}.
+	 *
+	 * @return an int giving the number of results
+	 */
+	public synchronized int size() {
+		return index.size();
+	}
+
+	/**
+	 * Gets the directory holding this store.
+	 *
+	 * @return a File
+	 */
+	public File getDirectory() {
+		return directory;
+	}
+
+	private synchronized void add(Key key, Location loc) {
+		Location old = index.get(key);
+		if (old == null || old.segment < loc.segment
+				|| (old.segment == loc.segment && old.offset <= loc.offset))
+			index.put(key, loc);
+	}
+
+	private int[] listSegments() {
+		File[] files = directory.listFiles(new FilenameFilter() {
+			public boolean accept(File dir, String name) {
+				return name.startsWith("segment-")
+						&& name.endsWith(INDEX_SUFFIX);
+			}
+		});
+		if (files == null)
+			return new int[0];
+
+		int[] segments = new int[files.length];
+		int n = 0;
+		for (File f : files) {
+			String name = f.getName();
+			try {
+				segments[n] = Integer.parseInt(name.substring(8, name.length()
+						- INDEX_SUFFIX.length()));
+				n++;
+			} catch (NumberFormatException e) {
+				// Not one of ours
+			}
+		}
+		segments = Arrays.copyOf(segments, n);
+		Arrays.sort(segments);
+		return segments;
+	}
+
+	private File getFile(int segment, String suffix) {
+		return new File(directory, String.format("segment-%05d%s", segment,
+				suffix));
+	}
+
+	/**
+	 * Appends results to a store. A Writer may be shared between threads.
+	 *
+	 * @author James Keirstead
+	 *
+	 */
+	public class Writer implements Closeable {
+
+		private int segment = -1;
+		private FileOutputStream data;
+		private FileOutputStream indexOut;
+		private long position;
+		private ByteArrayOutputStream record = new ByteArrayOutputStream();
+		private boolean closed = false;
+
+		private Writer() {
+		}
+
+		/**
+		 * Appends a result to the store.
+		 *
+		 * @param household
+		 *            a long giving the household number
+		 * @param seed
+		 *            a long giving the seed
+		 * @param entry
+		 *            the ResultCache.Entry holding the totals and output files
+		 * @throws IOException
+		 *             if the result cannot be written
+		 */
+		public synchronized void append(long household, long seed,
+				ResultCache.Entry entry) throws IOException {
+			if (closed)
+				throw new IOException("Writer closed");
+
+			record.reset();
+			ResultCache.write(entry, new DataOutputStream(record));
+
+			if (data == null || position + record.size() > segmentBytes
+					&& position > HEADER_BYTES)
+				startSegment();
+
+			long offset = position;
+			record.writeTo(data);
+			position += record.size();
+
+			ByteBuffer b = ByteBuffer.allocate(INDEX_ENTRY_BYTES);
+			b.putLong(household).putLong(seed).putLong(offset)
+					.putInt(record.size());
+			indexOut.write(b.array());
+
+			add(new Key(household, seed), new Location(segment, offset,
+					record.size()));
+		}
+
+		/**
+		 * Closes the current segment and claims a new one.
+		 */
+		private void startSegment() throws IOException {
+			closeSegment();
+
+			int[] existing = listSegments();
+			int n = existing.length == 0 ? 0
+					: existing[existing.length - 1] + 1;
+			while (!getFile(n, INDEX_SUFFIX).createNewFile())
+				n++;
+
+			segment = n;
+			ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+			data = new FileOutputStream(getFile(n, DATA_SUFFIX));
+			data.write(header.putInt(DATA_MAGIC).putInt(VERSION).array());
+			indexOut = new FileOutputStream(getFile(n, INDEX_SUFFIX), true);
+			header.clear();
+			indexOut.write(header.putInt(INDEX_MAGIC).putInt(VERSION).array());
+			position = HEADER_BYTES;
+		}
+
+		private void closeSegment() throws IOException {
+			try {
+				if (data != null)
+					data.close();
+			} finally {
+				data = null;
+				if (indexOut != null)
+					indexOut.close();
+				indexOut = null;
+			}
+		}
+
+		/**
+		 * Closes this Writer.
+		 *
+		 * @throws IOException
+		 */
+		@Override
+		public synchronized void close() throws IOException {
+			closed = true;
+			closeSegment();
+		}
+	}
+
+	/**
+	 * The household number and seed identifying a result.
+	 */
+	private static class Key {
+
+		private final long household;
+		private final long seed;
+
+		private Key(long household, long seed) {
+			this.household = household;
+			this.seed = seed;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof Key))
+				return false;
+			Key k = (Key) o;
+			return household == k.household && seed == k.seed;
+		}
+
+		@Override
+		public int hashCode() {
+			long h = household * 31 + seed;
+			return (int) (h ^ (h >>> 32));
+		}
+	}
+
+	/**
+	 * The position of a record in a segment.
+	 */
+	private static class Location {
+
+		private final int segment;
+		private final long offset;
+		private final int length;
+
+		private Location(int segment, long offset, int length) {
+			this.segment = segment;
+			this.offset = offset;
+			this.length = length;
+		}
+	}
+}
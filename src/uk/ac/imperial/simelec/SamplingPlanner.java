@@ -0,0 +1,244 @@
+package uk.ac.imperial.simelec;
+
+/**
+ * Plans the random household configurations of a population run so that
+ * population averages converge with fewer households. The planner controls
+ * the draws that fix a household's configuration: its occupancy start state,
+ * its bulb configuration (one of the sample houses in <code>bulbs.csv</code>),
+ * and the ownership of each appliance. Across the population, each of these
+ * draws is spread evenly over its range rather than sampled independently;
+ * all other draws come from the household's ordinary {@link RandomStreams}.
+ *
+ * Each planned draw is still uniformly distributed for any one household, so
+ * population means remain unbiased.
+ *
+ * @author James Keirstead
+ *
+ */
+public class SamplingPlanner {
+
+	/**
+	 * Methods for sampling household configurations.
+	 */
+	public enum Method {
+		/** Independent draws for each household */
+		RANDOM,
+		/**
+		 * Systematic stratified sampling: each dimension is divided into one
+		 * stratum per household, with a single random offset shared by all
+		 * strata
+		 */
+		STRATIFIED,
+		/**
+		 * Latin hypercube sampling: as for stratified sampling, but with an
+		 * independent random position within each stratum
+		 */
+		LATIN_HYPERCUBE
+	}
+
+	// Planned dimensions. Each appliance's ownership draw has its own
+	// dimension, starting from OWNERSHIP.
+	static final int OCCUPANCY_START = 0;
+	static final int BULB_CONFIGURATION = 1;
+	static final int OWNERSHIP = 2;
+
+	private int households;
+	private long seed;
+	private Method method;
+
+	/**
+	 * Creates a new SamplingPlanner.
+	 *
+	 * @param households
+	 *            an int giving the number of households in the population
+	 * @param seed
+	 *            a long giving the random number seed for the population
+	 * @param method
+	 *            the sampling Method
+	 */
+	public SamplingPlanner(int households, long seed, Method method) {
+		if (households < 1)
+			throw new IllegalArgumentException(
+					"A population must have at least one household");
+
+		this.households = households;
+		this.seed = seed;
+		this.method = method;
+	}
+
+	/**
+	 * Gets the random number streams for a household in the population.
+	 *
+	 * @param household
+	 *            an int giving the household number, from 0 to
+	 *            <code>households - 1</code>
+	 * @return the RandomStreams for this household
+	 */
+	public RandomStreams getStreams(int household) {
+		if (household < 0 || household >= households)
+			throw new IndexOutOfBoundsException(String.format(
+					"Household %d is not in a population of %d", household,
+					households));
+
+		if (method == Method.RANDOM)
+			return RandomStreams.forHousehold(seed, household);
+
+		return new PlannedStreams(household);
+	}
+
+	/**
+	 * Gets the planned uniform value for a household in a given dimension.
+	 *
+	 * @param dimension
+	 *            an int identifying the planned draw
+	 * @param household
+	 *            an int giving the household number
+	 * @return a double in the open interval (0, 1), as for
+	 *         {@link RandomStream#nextDouble()}
+	 */
+	double getUniform(int dimension, int household) {
+
+		long key = RandomStreams.mix(seed + RandomStreams.mix(dimension));
+		int stratum = permute(household, households, (int) key);
+
+		double offset;
+		if (method == Method.LATIN_HYPERCUBE) {
+			offset = toUniform(RandomStreams.mix(key ^ household));
+		} else {
+			offset = toUniform(RandomStreams.mix(key));
+		}
+
+		// The offset is never zero, but the sum may round up to the number of
+		// households
+		return Math.min((stratum + offset) / households,
+				Math.nextAfter(1.0, 0));
+	}
+
+	/**
+	 * Gets the number of households in this plan.
+	 *
+	 * @return an int
+	 */
+	public int getHouseholds() {
+		return households;
+	}
+
+	/**
+	 * Converts the top 52 bits of a long into a double in (0, 1), at the
+	 * centre of one of 2^52 equal intervals.
+	 */
+	private static double toUniform(long bits) {
+		return ((bits >>> 12) + 0.5) * 0x1.0p-52;
+	}
+
+	/**
+	 * Permutes an index within a range without storing the permutation. This
+	 * is the hash-based permutation of Kensler (2013), "Correlated
+	 * Multi-Jittered Sampling", Pixar Technical Memo 13-01.
+	 *
+	 * @param i
+	 *            an int giving the index to permute, in [0, l)
+	 * @param l
+	 *            an int giving the length of the range
+	 * @param p
+	 *            an int selecting the permutation
+	 * @return an int in [0, l)
+	 */
+	static int permute(int i, int l, int p) {
+		int w = l - 1;
+		w |= w >>> 1;
+		w |= w >>> 2;
+		w |= w >>> 4;
+		w |= w >>> 8;
+		w |= w >>> 16;
+		do {
+			i ^= p;
+			i *= 0xe170893d;
+			i ^= p >>> 16;
+			i ^= (i & w) >>> 4;
+			i ^= p >>> 8;
+			i *= 0x0929eb3f;
+			i ^= p >>> 23;
+			i ^= (i & w) >>> 1;
+			i *= 1 | p >>> 27;
+			i *= 0x6935fa69;
+			i ^= (i & w) >>> 11;
+			i *= 0x74dcb303;
+			i ^= (i & w) >>> 2;
+			i *= 0x9e501cc3;
+			i ^= (i & w) >>> 2;
+			i *= 0xc860a3df;
+			i &= w;
+			i ^= i >>> 5;
+		} while (i >= l);
+		return (int) (((i & 0xffffffffL) + (p & 0xffffffffL)) % l);
+	}
+
+	/**
+	 * The RandomStreams for a planned household. The occupancy, bulb and
+	 * ownership streams take their first draws from the plan.
+	 */
+	private class PlannedStreams extends RandomStreams {
+
+		private int household;
+
+		private PlannedStreams(int household) {
+			super(RandomStreams.forHousehold(seed, household).getSeed());
+			this.household = household;
+		}
+
+		@Override
+		protected RandomStream createStream(String key) {
+			RandomStream tail = super.createStream(key);
+			if (key.equals(RandomStreams.OCCUPANCY)) {
+				return new PlannedStream(household, OCCUPANCY_START, 1, tail);
+			} else if (key.equals(RandomStreams.BULBS)) {
+				return new PlannedStream(household, BULB_CONFIGURATION, 1, tail);
+			} else if (key.equals(RandomStreams.OWNERSHIP)) {
+				return new PlannedStream(household, SamplingPlanner.OWNERSHIP,
+						Integer.MAX_VALUE - SamplingPlanner.OWNERSHIP, tail);
+			}
+			return tail;
+		}
+	}
+
+	/**
+	 * A RandomStream whose first few draws come from the plan.
+	 */
+	private class PlannedStream extends RandomStream {
+
+		private int household;
+		private int dimension;
+		private int planned;
+		private RandomStream tail;
+
+		private PlannedStream(int household, int dimension, int planned,
+				RandomStream tail) {
+			this.household = household;
+			this.dimension = dimension;
+			this.planned = planned;
+			this.tail = tail;
+		}
+
+		@Override
+		public double nextDouble() {
+			if (planned > 0) {
+				planned--;
+				return getUniform(dimension++, household);
+			}
+			return tail.nextDouble();
+		}
+
+		@Override
+		public double nextNormal(double mean, double sd) {
+			return tail.nextNormal(mean, sd);
+		}
+
+		@Override
+		public double nextExponential(double mean) {
+			if (planned > 0)
+				return super.nextExponential(mean);
+			return tail.nextExponential(mean);
+		}
+	}
+}
@@ -0,0 +1,321 @@
+package uk.ac.imperial.simelec;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Coordinates a sharded population run across several processes, which may be
+ * on different machines sharing a filesystem. The coordinator and its
+ * {@link ShardWorker}s communicate through a job directory:
+ * <ul>
+ * <li><code>job.properties</code> describes the {@link ShardJob}</li>
+ * <li><code>todo/</code> holds a file for each shard waiting to be run</li>
+ * <li><code>running/</code> holds the shards claimed by a worker. A worker
+ * claims a shard by moving its file here, and touches the file regularly
+ * while the shard is running.</li>
+ * <li><code>done/</code> holds the saved {@link PopulationAggregate} of each
+ * completed shard</li>
+ * <li><code>finished</code> is created once every shard has been merged, and
+ * tells the workers to stop</li>
+ * </ul>
+ * If a running shard is not touched within the timeout, its worker is assumed
+ * to have failed and the shard is returned to the queue. The timeout is
+ * measured on the coordinator's clock from when it last saw the shard's
+ * modification time change, so the clocks of the machines need not agree.
+ * Shards are
+ * deterministic, so a shard which is completed more than once gives the same
+ * result each time.
+ *
+ * @author James Keirstead
+ *
+ */
+public class ShardCoordinator {
+
+	// Job directory layout
+	static final String JOB_FILE = "job.properties";
+	static final String TODO = "todo";
+	static final String RUNNING = "running";
+	static final String DONE = "done";
+	static final String FINISHED = "finished";
+
+	/**
+	 * Receives progress updates from the coordinator.
+	 */
+	public interface Listener {
+
+		/**
+		 * Called when a completed shard has been merged.
+		 *
+		 * @param shard
+		 *            an int giving the shard number
+		 * @param completed
+		 *            an int giving the number of shards merged so far
+		 */
+		void shardCompleted(int shard, int completed);
+
+		/**
+		 * Called when a shard is returned to the queue after its worker
+		 * failed.
+		 *
+		 * @param shard
+		 *            an int giving the shard number
+		 */
+		void shardReassigned(int shard);
+	}
+
+	// Member fields
+	private File dir;
+	private ShardJob job;
+	private long timeout = 60000;
+	private long interval = 200;
+	private int reassigned = 0;
+
+	/**
+	 * Creates a ShardCoordinator.
+	 *
+	 * @param dir
+	 *            the job directory
+	 * @param job
+	 *            the ShardJob to run
+	 */
+	public ShardCoordinator(File dir, ShardJob job) {
+		this.dir = dir;
+		this.job = job;
+	}
+
+	/**
+	 * Sets the time after which a running shard which has not been touched is
+	 * reassigned. The default is one minute.
+	 *
+	 * @param timeout
+	 *            a long giving the timeout in milliseconds
+	 */
+	public void setTimeout(long timeout) {
+		this.timeout = timeout;
+	}
+
+	/**
+	 * Sets how often the job directory is checked. The default is 200 ms.
+	 *
+	 * @param interval
+	 *            a long giving the interval in milliseconds
+	 */
+	public void setPollInterval(long interval) {
+		this.interval = interval;
+	}
+
+	/**
+	 * Creates the job directory and queues every shard.
+	 *
+	 * @throws IOException
+	 *             if the job directory is not empty or cannot be written
+	 * @throws IllegalArgumentException
+	 *             if the job's population weights are not valid
+	 */
+	public void submit() throws IOException {
+		job.createGenerator();
+
+		String[] existing = dir.list();
+		if (existing != null && existing.length > 0)
+			throw new IOException("The job directory is not empty: " + dir);
+
+		File todo = new File(dir, TODO);
+		mkdirs(todo);
+		mkdirs(new File(dir, RUNNING));
+		mkdirs(new File(dir, DONE));
+
+		// Write the job last, so that workers only see a complete queue
+		for (int k = 0; k < job.getShards(); k++) {
+			if (!new File(todo, getName(k)).createNewFile())
+				throw new IOException("Unable to queue shard " + k);
+		}
+		File tmp = new File(dir, JOB_FILE + ".tmp");
+		job.save(tmp);
+		if (!tmp.renameTo(new File(dir, JOB_FILE)))
+			throw new IOException("Unable to write " + JOB_FILE);
+	}
+
+	private static void mkdirs(File f) throws IOException {
+		if (!f.isDirectory() && !f.mkdirs())
+			throw new IOException("Unable to create " + f);
+	}
+
+	/**
+	 * Waits for every shard to be completed, merging each one as it arrives
+	 * and reassigning the shards of failed workers.
+	 *
+	 * @param listener
+	 *            a Listener to notify of progress, or <code>null</code>
+	 * @return the PopulationAggregate of the whole population
+	 * @throws IOException
+	 *             if a completed shard cannot be read
+	 * @throws InterruptedException
+	 *             if interrupted while waiting
+	 */
+	public PopulationAggregate await(Listener listener) throws IOException,
+			InterruptedException {
+
+		int n = (int) job.getShards();
+		boolean[] merged = new boolean[n];
+		int completed = 0;
+		PopulationAggregate total = new PopulationAggregate();
+		File done = new File(dir, DONE);
+		File running = new File(dir, RUNNING);
+		File todo = new File(dir, TODO);
+
+		// The modification time of each running shard when it last changed,
+		// and when that change was seen
+		Map<Integer, Long> modified = new HashMap<Integer, Long>();
+		Map<Integer, Long> seen = new HashMap<Integer, Long>();
+
+		while (completed < n) {
+
+			// Merge any newly completed shards
+			for (int k = 0; k < n; k++) {
+				if (merged[k])
+					continue;
+				File f = new File(done, getName(k));
+				if (f.exists()) {
+					total.merge(PopulationAggregate.load(f));
+					merged[k] = true;
+					completed++;
+					if (listener != null)
+						listener.shardCompleted(k, completed);
+				}
+			}
+
+			// Return stale shards to the queue. Only the coordinator's clock
+			// is used, as the workers may be on other machines.
+			long now = System.nanoTime() / 1000000;
+			File[] files = running.listFiles();
+			if (files != null) {
+				for (File f : files) {
+					int k = getShard(f.getName());
+					if (k < 0 || merged[k])
+						continue;
+					long time = f.lastModified();
+					Long last = modified.get(k);
+					if (last == null || last != time) {
+						modified.put(k, time);
+						seen.put(k, now);
+					}
+					if (now - seen.get(k) <= timeout)
+						continue;
+					modified.remove(k);
+					seen.remove(k);
+					if (f.renameTo(new File(todo, f.getName()))) {
+						reassigned++;
+						if (listener != null)
+							listener.shardReassigned(k);
+					}
+				}
+			}
+
+			if (completed < n)
+				Thread.sleep(interval);
+		}
+
+		if (!new File(dir, FINISHED).createNewFile())
+			throw new IOException("Unable to mark the job as finished");
+		return total;
+	}
+
+	/**
+	 * Gets the number of shards which have been reassigned.
+	 *
+	 * @return an int
+	 */
+	public int getReassigned() {
+		return reassigned;
+	}
+
+	/**
+	 * Gets the file name used for a shard.
+	 *
+	 * @param shard
+	 *            an int giving the shard number
+	 * @return a String
+	 */
+	static String getName(int shard) {
+		return String.format("shard-%08d", shard);
+	}
+
+	/**
+	 * Gets the shard number from a file name.
+	 *
+	 * @param name
+	 *            a String giving the file name
+	 * @return an int giving the shard number, or -1 if this is not a shard
+	 */
+	static int getShard(String name) {
+		if (!name.startsWith("shard-") || name.length() < 14)
+			return -1;
+		try {
+			return Integer.parseInt(name.substring(6));
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+
+	/**
+	 * Runs a sharded population and writes the mean demand per household to
+	 * <code>population_totals.csv</code> in the job directory.
+	 *
+	 * @param args
+	 *            takes four arguments, plus one option. The first is the job
+	 *            directory, which must be empty or not exist. The second is
+	 *            the number of households, the third the number of households
+	 *            in each shard, and the fourth the scenario seed. The optional
+	 *            fifth argument is the number of local worker processes to
+	 *            start; if it is not given, workers must be started separately
+	 *            with {@link ShardWorker#main(String[])}.
+	 * @throws Exception
+	 */
+	public static void main(String[] args) throws Exception {
+		if (args.length != 4 && args.length != 5) {
+			System.err
+					.println("Usage: ShardCoordinator <dir> <households> <shard size> <seed> [workers]");
+			System.exit(1);
+		}
+
+		File dir = new File(args[0]);
+		ShardJob job = new ShardJob(Long.valueOf(args[1]),
+				Integer.valueOf(args[2]), Long.valueOf(args[3]));
+		final ShardCoordinator coordinator = new ShardCoordinator(dir, job);
+		coordinator.submit();
+
+		List<Process> workers = new ArrayList<Process>();
+		if (args.length == 5) {
+			for (int i = 0; i < Integer.valueOf(args[4]); i++)
+				workers.add(ShardWorker.start(dir, 1));
+		}
+
+		final long shards = job.getShards();
+		long start = System.currentTimeMillis();
+		PopulationAggregate total = coordinator.await(new Listener() {
+			@Override
+			public void shardCompleted(int shard, int completed) {
+				System.out.printf("Completed shard %d (%d of %d)%n", shard,
+						completed, shards);
+			}
+
+			@Override
+			public void shardReassigned(int shard) {
+				System.out.printf("Reassigned shard %d%n", shard);
+			}
+		});
+
+		for (Process p : workers)
+			p.waitFor();
+
+		File out = new File(dir, "population_totals.csv");
+		total.write(out, 1, false);
+		System.out.printf("Simulated %d households in %.1f s. Results in %s%n",
+				total.getCount(),
+				(System.currentTimeMillis() - start) / 1000.0, out);
+	}
+}
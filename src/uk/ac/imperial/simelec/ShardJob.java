@@ -0,0 +1,384 @@
+package uk.ac.imperial.simelec;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Describes a sharded population run: the population to generate, the number
+ * of households in each shard, the scenario seed and the model parameters.
+ * Shard <code>k</code>
+ * holds households <code>k * shardSize</code> onwards, so every process which
+ * reads the same job simulates exactly the same households.
+ *
+ * The population weights are checked when the generator is created by
+ * {@link #createGenerator()}. A job also records the external data
+ * directories (see {@link ModelData#setDataDirectories(File...)}), by default
+ * those of the process which creates it, so that every worker simulates from
+ * the same data.
+ *
+ * @author James Keirstead
+ *
+ */
+public class ShardJob {
+
+	// Property names
+	private static final String HOUSEHOLDS = "households";
+	private static final String SHARD_SIZE = "shard_size";
+	private static final String SEED = "seed";
+	private static final String POPULATION_SEED = "population_seed";
+	private static final String RESIDENTS = "resident_weights";
+	private static final String MONTHS = "month_weights";
+	private static final String WEEKEND = "weekend_probability";
+	private static final String CALENDAR = "calendar";
+	private static final String DATA = "data_directories";
+	private static final String FAST_VARIATES = "fast_variates";
+	private static final String PARAMETER = "parameter.";
+
+	// Member fields
+	private long households;
+	private int shardSize;
+	private long seed;
+	private long populationSeed;
+	private double[] residentWeights = { 1, 1, 1, 1, 1 };
+	private double[] monthWeights = { 31, 28, 31, 30, 31, 30, 31, 31, 30, 31,
+			30, 31 };
+	private double weekendProbability = 2.0 / 7;
+	private int calendar = 0;
+	private File[] dataDirectories = ModelData.getDataDirectories();
+	private ModelParameters parameters = new ModelParameters();
+	private boolean fastVariates = false;
+
+	/**
+	 * Creates a ShardJob with the default population weights. See
+	 * {@link PopulationGenerator#PopulationGenerator(long)}.
+	 *
+	 * @param households
+	 *            a long giving the number of households
+	 * @param shardSize
+	 *            an int giving the number of households in each shard
+	 * @param seed
+	 *            a long giving the scenario seed, which is also used as the
+	 *            population seed
+	 */
+	public ShardJob(long households, int shardSize, long seed) {
+		if (households < 1 || shardSize < 1)
+			throw new IllegalArgumentException(String.format(
+					"Invalid job of %d households in shards of %d",
+					households, shardSize));
+		if (PopulationGenerator.getShardCount(households, shardSize)
+				> Integer.MAX_VALUE)
+			throw new IllegalArgumentException(String.format(
+					"Too many shards for %d households in shards of %d",
+					households, shardSize));
+		this.households = households;
+		this.shardSize = shardSize;
+		this.seed = seed;
+		this.populationSeed = seed;
+	}
+
+	/**
+	 * Sets the seed used to generate the population.
+	 *
+	 * @param seed
+	 *            a long
+	 */
+	public void setPopulationSeed(long seed) {
+		this.populationSeed = seed;
+	}
+
+	/**
+	 * Sets the relative weights of one to five residents.
+	 *
+	 * @param weights
+	 *            five non-negative doubles
+	 * @see PopulationGenerator#setResidentWeights(double...)
+	 */
+	public void setResidentWeights(double... weights) {
+		this.residentWeights = weights.clone();
+	}
+
+	/**
+	 * Sets the relative weights of each month.
+	 *
+	 * @param weights
+	 *            twelve non-negative doubles
+	 * @see PopulationGenerator#setMonthWeights(double...)
+	 */
+	public void setMonthWeights(double... weights) {
+		this.monthWeights = weights.clone();
+		this.calendar = 0;
+	}
+
+	/**
+	 * Sets the probability that a household-day is a weekend.
+	 *
+	 * @param p
+	 *            a double between 0 and 1
+	 * @see PopulationGenerator#setWeekendProbability(double)
+	 */
+	public void setWeekendProbability(double p) {
+		this.weekendProbability = p;
+		this.calendar = 0;
+	}
+
+	/**
+	 * Weights each month and day type by a calendar year.
+	 *
+	 * @param year
+	 *            an int giving the year
+	 * @see PopulationGenerator#setCalendar(int)
+	 */
+	public void setCalendar(int year) {
+		this.calendar = year;
+	}
+
+	/**
+	 * Sets the external data directories used by the workers.
+	 *
+	 * @param dirs
+	 *            the directories to search, in order. If none are given, only
+	 *            the bundled data are used.
+	 * @see ModelData#setDataDirectories(File...)
+	 */
+	public void setDataDirectories(File... dirs) {
+		this.dataDirectories = dirs.clone();
+	}
+
+	/**
+	 * Gets the external data directories used by the workers.
+	 *
+	 * @return an array of File objects, which is empty if only the bundled
+	 *         data are used
+	 */
+	public File[] getDataDirectories() {
+		return dataDirectories.clone();
+	}
+
+	/**
+	 * Sets the calibration constants used to simulate every household.
+	 *
+	 * @param parameters
+	 *            the ModelParameters. A copy is taken.
+	 */
+	public void setParameters(ModelParameters parameters) {
+		this.parameters = new ModelParameters(parameters);
+	}
+
+	/**
+	 * Gets the calibration constants used to simulate every household.
+	 *
+	 * @return a copy of the ModelParameters
+	 */
+	public ModelParameters getParameters() {
+		return new ModelParameters(parameters);
+	}
+
+	/**
+	 * Sets whether the households are simulated with fast variates.
+	 *
+	 * @param fast
+	 *            a boolean indicating if the ziggurat kernels should be used
+	 * @see BatchRunner#setFastVariates(boolean)
+	 */
+	public void setFastVariates(boolean fast) {
+		this.fastVariates = fast;
+	}
+
+	/**
+	 * Are the households simulated with fast variates?
+	 *
+	 * @return a boolean
+	 */
+	public boolean isFastVariates() {
+		return fastVariates;
+	}
+
+	/**
+	 * Creates the generator for this job's population.
+	 *
+	 * @return a new PopulationGenerator
+	 */
+	public PopulationGenerator createGenerator() {
+		PopulationGenerator g = new PopulationGenerator(populationSeed);
+		g.setResidentWeights(residentWeights);
+		g.setMonthWeights(monthWeights);
+		g.setWeekendProbability(weekendProbability);
+		if (calendar != 0)
+			g.setCalendar(calendar);
+		return g;
+	}
+
+	/**
+	 * Gets the number of households.
+	 *
+	 * @return a long
+	 */
+	public long getHouseholds() {
+		return households;
+	}
+
+	/**
+	 * Gets the number of households in each shard.
+	 *
+	 * @return an int
+	 */
+	public int getShardSize() {
+		return shardSize;
+	}
+
+	/**
+	 * Gets the scenario seed.
+	 *
+	 * @return a long
+	 */
+	public long getSeed() {
+		return seed;
+	}
+
+	/**
+	 * Gets the number of shards. This is never more than
+	 * <code>Integer.MAX_VALUE</code>.
+	 *
+	 * @return a long
+	 */
+	public long getShards() {
+		return PopulationGenerator.getShardCount(households, shardSize);
+	}
+
+	/**
+	 * Gets the number of the first household in a shard.
+	 *
+	 * @param shard
+	 *            an int giving the shard number
+	 * @return a long
+	 */
+	public long getFirst(int shard) {
+		return (long) shard * shardSize;
+	}
+
+	/**
+	 * Gets the number of households in a shard. The last shard may be
+	 * smaller than the others.
+	 *
+	 * @param shard
+	 *            an int giving the shard number
+	 * @return an int
+	 */
+	public int getSize(int shard) {
+		return (int) Math.min(shardSize, households - getFirst(shard));
+	}
+
+	/**
+	 * Saves this job as a properties file.
+	 *
+	 * @param file
+	 *            the File to write
+	 * @throws IOException
+	 *             if the file cannot be written
+	 */
+	public void save(File file) throws IOException {
+		Properties p = new Properties();
+		p.setProperty(HOUSEHOLDS, String.valueOf(households));
+		p.setProperty(SHARD_SIZE, String.valueOf(shardSize));
+		p.setProperty(SEED, String.valueOf(seed));
+		p.setProperty(POPULATION_SEED, String.valueOf(populationSeed));
+		p.setProperty(RESIDENTS, join(residentWeights));
+		p.setProperty(MONTHS, join(monthWeights));
+		p.setProperty(WEEKEND, String.valueOf(weekendProbability));
+		p.setProperty(CALENDAR, String.valueOf(calendar));
+		StringBuilder sb = new StringBuilder();
+		for (File d : dataDirectories) {
+			if (sb.length() > 0)
+				sb.append(File.pathSeparatorChar);
+			sb.append(d.getAbsolutePath());
+		}
+		p.setProperty(DATA, sb.toString());
+		p.setProperty(FAST_VARIATES, String.valueOf(fastVariates));
+		for (Map.Entry<String, Double> e : parameters.getValues().entrySet())
+			p.setProperty(PARAMETER + e.getKey(), String.valueOf(e.getValue()));
+
+		OutputStream os = new FileOutputStream(file);
+		try {
+			p.store(os, "SimElec shard job");
+		} finally {
+			os.close();
+		}
+	}
+
+	/**
+	 * Loads a job saved by {@link #save(File)}.
+	 *
+	 * @param file
+	 *            the File to read
+	 * @return a new ShardJob
+	 * @throws IOException
+	 *             if the file cannot be read or is not valid
+	 */
+	public static ShardJob load(File file) throws IOException {
+		Properties p = new Properties();
+		InputStream is = new FileInputStream(file);
+		try {
+			p.load(is);
+		} finally {
+			is.close();
+		}
+
+		try {
+			ShardJob job = new ShardJob(Long.valueOf(p
+					.getProperty(HOUSEHOLDS)), Integer.valueOf(p
+					.getProperty(SHARD_SIZE)), Long.valueOf(p.getProperty(SEED)));
+			job.setPopulationSeed(Long.valueOf(p.getProperty(POPULATION_SEED)));
+			job.setResidentWeights(split(p.getProperty(RESIDENTS)));
+			job.setMonthWeights(split(p.getProperty(MONTHS)));
+			job.setWeekendProbability(Double.valueOf(p.getProperty(WEEKEND)));
+			job.setCalendar(Integer.valueOf(p.getProperty(CALENDAR)));
+
+			// Jobs saved before the data directories were recorded use the
+			// bundled data
+			String data = p.getProperty(DATA, "");
+			List<File> dirs = new ArrayList<File>();
+			for (String d : data.split(File.pathSeparator)) {
+				if (!d.isEmpty())
+					dirs.add(new File(d));
+			}
+			job.setDataDirectories(dirs.toArray(new File[dirs.size()]));
+
+			// and the default parameters
+			job.setFastVariates(Boolean.valueOf(p.getProperty(FAST_VARIATES)));
+			for (String name : p.stringPropertyNames()) {
+				if (name.startsWith(PARAMETER))
+					job.parameters.set(name.substring(PARAMETER.length()),
+							Double.valueOf(p.getProperty(name)));
+			}
+			return job;
+		} catch (RuntimeException e) {
+			throw new IOException("Invalid shard job: " + file, e);
+		}
+	}
+
+	private static String join(double[] values) {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < values.length; i++) {
+			if (i > 0)
+				sb.append(',');
+			sb.append(values[i]);
+		}
+		return sb.toString();
+	}
+
+	private static double[] split(String s) {
+		String[] parts = s.split(",");
+		double[] values = new double[parts.length];
+		for (int i = 0; i < parts.length; i++)
+			values[i] = Double.valueOf(parts[i].trim());
+		return values;
+	}
+}
@@ -0,0 +1,255 @@
+package uk.ac.imperial.simelec;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Timer;
+import java.util.TimerTask;
+
+/**
+ * Runs shards of a population queued by a {@link ShardCoordinator}. A worker
+ * repeatedly claims a shard from the job directory, simulates it with a
+ * {@link BatchRunner}, and saves its aggregate, until the coordinator marks
+ * the job as finished. Any number of workers may share a job directory.
+ *
+ * Before running any shards, a worker switches to the external data
+ * directories recorded in the job, so a worker sharing a process with other
+ * simulations changes the data that they use too.
+ *
+ * @author James Keirstead
+ *
+ */
+public class ShardWorker {
+
+	// Member fields
+	private File dir;
+	private int threads;
+	private long heartbeat = 5000;
+	private long interval = 200;
+	private volatile boolean stopped = false;
+
+	/**
+	 * Creates a ShardWorker.
+	 *
+	 * @param dir
+	 *            the job directory
+	 * @param threads
+	 *            an int giving the number of threads used to simulate each
+	 *            shard
+	 */
+	public ShardWorker(File dir, int threads) {
+		this.dir = dir;
+		this.threads = threads;
+	}
+
+	/**
+	 * Sets how often a running shard is touched to show that this worker is
+	 * alive. This must be well within the coordinator's timeout. The default
+	 * is five seconds.
+	 *
+	 * @param heartbeat
+	 *            a long giving the interval in milliseconds
+	 */
+	public void setHeartbeat(long heartbeat) {
+		this.heartbeat = heartbeat;
+	}
+
+	/**
+	 * Sets how often the queue is checked when it is empty. The default is 200
+	 * ms.
+	 *
+	 * @param interval
+	 *            a long giving the interval in milliseconds
+	 */
+	public void setPollInterval(long interval) {
+		this.interval = interval;
+	}
+
+	/**
+	 * Runs shards until the job is finished or this worker is stopped.
+	 *
+	 * @return an int giving the number of shards completed by this worker
+	 * @throws IOException
+	 *             if a shard cannot be simulated or saved. The shard is
+	 *             returned to the queue.
+	 * @throws InterruptedException
+	 *             if interrupted while waiting
+	 */
+	public int run() throws IOException, InterruptedException {
+
+		// Wait for the coordinator to submit the job
+		File jobFile = new File(dir, ShardCoordinator.JOB_FILE);
+		while (!jobFile.exists() && !stopped)
+			Thread.sleep(interval);
+		if (stopped)
+			return 0;
+
+		ShardJob job = ShardJob.load(jobFile);
+		applyDataDirectories(job);
+		PopulationGenerator generator = job.createGenerator();
+		File finished = new File(dir, ShardCoordinator.FINISHED);
+
+		int completed = 0;
+		while (!stopped && !finished.exists()) {
+			int k = claim();
+			if (k < 0) {
+				Thread.sleep(interval);
+			} else {
+				runShard(job, generator, k);
+				completed++;
+			}
+		}
+		return completed;
+	}
+
+	/**
+	 * Uses the external data directories of a job, unless this process already
+	 * uses them.
+	 *
+	 * @param job
+	 *            the ShardJob
+	 * @throws IOException
+	 *             if a data directory does not exist
+	 */
+	private static void applyDataDirectories(ShardJob job) throws IOException {
+		File[] dirs = job.getDataDirectories();
+		File[] current = ModelData.getDataDirectories();
+		boolean same = dirs.length == current.length;
+		for (int i = 0; same && i < dirs.length; i++) {
+			same = dirs[i].getAbsoluteFile().equals(
+					current[i].getAbsoluteFile());
+		}
+		if (same)
+			return;
+
+		try {
+			ModelData.setDataDirectories(dirs);
+		} catch (IllegalArgumentException e) {
+			throw new IOException("Invalid data directory for shard job", e);
+		}
+	}
+
+	/**
+	 * Stops this worker once the current shard is completed.
+	 */
+	public void stop() {
+		stopped = true;
+	}
+
+	/**
+	 * Claims the first shard in the queue.
+	 *
+	 * @return an int giving the shard number, or -1 if the queue is empty
+	 */
+	private int claim() {
+		File todo = new File(dir, ShardCoordinator.TODO);
+		File running = new File(dir, ShardCoordinator.RUNNING);
+		String[] names = todo.list();
+		if (names == null)
+			return -1;
+
+		Arrays.sort(names);
+		for (String name : names) {
+			int k = ShardCoordinator.getShard(name);
+			if (k < 0)
+				continue;
+
+			// Touch the file first, as moving it keeps the old time and
+			// the coordinator would otherwise think it was stale
+			File f = new File(todo, name);
+			f.setLastModified(System.currentTimeMillis());
+			if (f.renameTo(new File(running, name)))
+				return k;
+		}
+		return -1;
+	}
+
+	/**
+	 * Simulates a claimed shard and saves its aggregate.
+	 */
+	private void runShard(ShardJob job, PopulationGenerator generator, int k)
+			throws IOException, InterruptedException {
+
+		String name = ShardCoordinator.getName(k);
+		final File running = new File(new File(dir, ShardCoordinator.RUNNING),
+				name);
+		File done = new File(dir, ShardCoordinator.DONE);
+
+		Timer timer = new Timer(true);
+		timer.schedule(new TimerTask() {
+			@Override
+			public void run() {
+				running.setLastModified(System.currentTimeMillis());
+			}
+		}, heartbeat, heartbeat);
+
+		try {
+			long first = job.getFirst(k);
+			BatchRunner runner = new BatchRunner(generator.getShard(first,
+					job.getSize(k)), job.getSeed(), first, threads,
+					job.getParameters());
+			runner.setFastVariates(job.isFastVariates());
+			PopulationAggregate aggregate = runner.run(null);
+
+			// Write to a temporary file so that the coordinator never reads
+			// a partial aggregate
+			File tmp = File.createTempFile(name, ".tmp", done);
+			aggregate.save(tmp);
+			if (!tmp.renameTo(new File(done, name)))
+				tmp.delete();
+			running.delete();
+
+		} catch (IOException e) {
+			running.renameTo(new File(new File(dir, ShardCoordinator.TODO),
+					name));
+			throw e;
+		} finally {
+			timer.cancel();
+		}
+	}
+
+	/**
+	 * Starts a worker in a new Java process, using the classpath of this
+	 * process.
+	 *
+	 * @param dir
+	 *            the job directory
+	 * @param threads
+	 *            an int giving the number of threads for the worker
+	 * @return the worker Process
+	 * @throws IOException
+	 *             if the process cannot be started
+	 */
+	public static Process start(File dir, int threads) throws IOException {
+		String java = new File(new File(System.getProperty("java.home"),
+				"bin"), "java").getPath();
+		ProcessBuilder pb = new ProcessBuilder(java, "-cp",
+				System.getProperty("java.class.path"),
+				ShardWorker.class.getName(), dir.getPath(),
+				String.valueOf(threads));
+		pb.redirectErrorStream(true);
+		pb.redirectOutput(ProcessBuilder.Redirect.INHERIT);
+		return pb.start();
+	}
+
+	/**
+	 * Runs a worker.
+	 *
+	 * @param args
+	 *            takes one argument, plus one option. The first is the job
+	 *            directory. The optional second argument is the number of
+	 *            threads to use, which defaults to the number of processors.
+	 * @throws Exception
+	 */
+	public static void main(String[] args) throws Exception {
+		if (args.length != 1 && args.length != 2) {
+			System.err.println("Usage: ShardWorker <dir> [threads]");
+			System.exit(1);
+		}
+
+		int threads = args.length == 2 ? Integer.valueOf(args[1]) : Runtime
+				.getRuntime().availableProcessors();
+		int n = new ShardWorker(new File(args[0]), threads).run();
+		System.out.printf("Worker completed %d shards%n", n);
+	}
+}
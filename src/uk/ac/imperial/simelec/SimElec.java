@@ -28,16 +28,16 @@ package uk.ac.imperial.simelec;
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileNotFoundException;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 import org.apache.commons.io.FileUtils;
 
-import au.com.bytecode.opencsv.CSVWriter;
-
 /**
  * Simulates electricity demand for a single UK household
  * 
@@ -56,11 +56,31 @@ public class SimElec {
 	private boolean runOccupancy = true;
 	private boolean runLighting = true;
 	private boolean runAppliances = true;
+	private boolean makePlots = false;
 	private boolean makeRPlots = false;
+	private SummaryPlot plot;
 	private boolean applianceTotals = false;
 	private boolean lightingTotals = false;
 	private boolean grandTotals = true;
 	private double[] totalConsumption = new double[1440];
+	private boolean seeded = false;
+	private int seed;
+	private ResultCache cache;
+	private ResultsStore.Writer store;
+	private long household;
+	private OutputSink sink;
+	private MappedTotalsFile totalsFile;
+	private long totalsRecord;
+	private boolean commonRandomNumbers = false;
+	private RandomStreams streams;
+	private ModelParameters parameters = new ModelParameters();
+	private OccupancyModel sharedOccupancy;
+	private int resolution = 1;
+	private boolean energyOutput = false;
+	private boolean compressed = false;
+	private int precision = -1;
+	private boolean writeProfiles = true;
+	private List<LoadOperator> operators = new ArrayList<LoadOperator>();
 
 	/**
 	 * Run the simulation.
@@ -84,6 +104,7 @@ public class SimElec {
 		int residents;
 		boolean weekend;
 		String output_dir;
+		SimElec model;
 
 		if (args.length == 4 || args.length == 5) {
 			month = Integer.valueOf(args[0]);
@@ -91,8 +112,12 @@ public class SimElec {
 			weekend = args[2].equals("we") ? true : false;
 			output_dir = args[3];
 
-			if (args.length == 5)
-				SimElec.setSeed(Integer.valueOf(args[4]));
+			if (args.length == 5) {
+				model = new SimElec(month, residents, weekend, output_dir,
+						Integer.valueOf(args[4]));
+			} else {
+				model = new SimElec(month, residents, weekend, output_dir);
+			}
 
 		} else {
 			System.out.printf(
@@ -102,10 +127,10 @@ public class SimElec {
 			residents = 2;
 			weekend = false;
 			output_dir = ".";
+			model = new SimElec(month, residents, weekend, output_dir);
 		}
 
 		System.out.println("Running SimElec...");
-		SimElec model = new SimElec(month, residents, weekend, output_dir);
 		model.run();
 		System.out.printf("Complete.  Results can be found in '%s'%n",
 				output_dir);
@@ -133,6 +158,30 @@ public class SimElec {
 		this.output_dir = output_dir;
 	}
 
+	/**
+	 * Create a new SimElec model with specified arguments and a random number
+	 * seed. The seed is applied when the model is run, so that repeated calls
+	 * to {@link #run()} give identical results.
+	 * 
+	 * @param month
+	 *            an int giving the month of the year (1-12)
+	 * @param residents
+	 *            an int giving the number of residents in the household (1-5)
+	 * @param weekend
+	 *            a boolean indicating whether to simulating a weekend (
+	 *            <code>true</code>) or weekday (<code>false</code>)
+	 * @param output_dir
+	 *            a String giving the output directory
+	 * @param seed
+	 *            an int giving the random number seed
+	 */
+	public SimElec(int month, int residents, boolean weekend,
+			String output_dir, int seed) {
+		this(month, residents, weekend, output_dir);
+		this.seeded = true;
+		this.seed = seed;
+	}
+
 	/**
 	 * Validates a specified month.
 	 * 
@@ -176,6 +225,44 @@ public class SimElec {
 		}
 	}
 
+	/**
+	 * Validates an output time resolution.
+	 * 
+	 * @param minutes
+	 *            an int giving the length of each output interval in minutes
+	 * @return the specified value if it divides exactly into a day of 1440
+	 *         minutes, or 1 if not.
+	 */
+	public static int validateResolution(int minutes) {
+		if (minutes >= 1 && 1440 % minutes == 0) {
+			return (minutes);
+		} else {
+			System.out
+					.printf("Invalid resolution of %d minutes specified.  Defaulting to 1 minute.%n",
+							minutes);
+			return (1);
+		}
+	}
+
+	/**
+	 * Validates a number of decimal places for the output files.
+	 * 
+	 * @param digits
+	 *            an int giving the number of decimal places
+	 * @return the specified value if it is between 0 and 15 or is -1, meaning
+	 *         that values are written exactly, or -1 if not.
+	 */
+	public static int validatePrecision(int digits) {
+		if (digits >= -1 && digits <= DoubleFormatter.MAX_PRECISION) {
+			return (digits);
+		} else {
+			System.out
+					.printf("Invalid precision of %d decimal places specified.  Writing exact values.%n",
+							digits);
+			return (-1);
+		}
+	}
+
 	/**
 	 * Runs the simulation.
 	 * 
@@ -183,48 +270,208 @@ public class SimElec {
 	 */
 	public void run() throws IOException {
 
-		OccupancyModel occ = new OccupancyModel(residents, weekend, output_dir);
+		if (seeded && !commonRandomNumbers && streams == null)
+			SimElec.setSeed(seed);
+
+		// Serve the results from the cache if we've seen this run before
+		String key = null;
+		if (isCacheable()) {
+			key = ResultCache.digest(getSpecification());
+			ResultCache.Entry entry = cache.get(key);
+			if (entry != null) {
+				restoreResults(entry);
+				makePlots();
+				storeResults(entry);
+				return;
+			}
+		}
+
+		simulate();
+
+		ResultCache.Entry entry = null;
+		if (key != null || store != null)
+			entry = captureResults();
+
+		if (key != null) {
+			cache.put(key, entry);
+		}
+
+		makePlots();
+		storeResults(entry);
+		sink = null;
+	}
+
+	/**
+	 * Are the output files of this run collected in memory rather than
+	 * written? This is the case when the results are stored, unless plots are
+	 * requested, as the plots of a cached run are drawn from its files.
+	 * 
+	 * @return <code>true</code> if the output files are not written
+	 */
+	private boolean isStoredInMemory() {
+		return store != null && !makePlots && !makeRPlots;
+	}
+
+	/**
+	 * Writes the grand totals of this run to the MappedTotalsFile and appends
+	 * its results to the ResultsStore, if either is set, and then deletes any
+	 * output files written by the run if they were stored.
+	 * 
+	 * @param entry
+	 *            the results of the run
+	 * @throws IOException
+	 *             if the results cannot be stored
+	 */
+	private void storeResults(ResultCache.Entry entry) throws IOException {
+		if (totalsFile != null)
+			totalsFile.write(totalsRecord, totalConsumption);
+
+		if (store == null)
+			return;
+
+		store.append(household, seed, entry);
+		if (isStoredInMemory())
+			return;
+
+		// Leave an occupancy file that was provided or is shared
+		ArrayList<String> names = getOutputFileNames();
+		if (!runOccupancy || sharedOccupancy != null)
+			names.remove(0);
+		for (String name : names) {
+			new File(output_dir, name).delete();
+		}
+	}
+
+	/**
+	 * Runs each of the simulation models and writes their outputs.
+	 * 
+	 * @throws IOException
+	 */
+	private void simulate() throws IOException {
+
+		totalConsumption = new double[1440];
+		plot = makePlots ? new SummaryPlot() : null;
+		sink = isStoredInMemory() ? new OutputSink() : null;
+		double[] lighting = null;
+		RandomStreams streams = this.streams;
+		if (streams == null) {
+			streams = commonRandomNumbers ? new RandomStreams(seed)
+					: RandomStreams.global();
+		}
+
+		OccupancyModel occ;
+		if (sharedOccupancy != null) {
+			occ = sharedOccupancy;
+			if (!occ.hasRun())
+				occ.run();
+
+			// Keep a copy of the trajectory alongside the other outputs
+			File src = occ.getResultFile();
+			File dest = new File(output_dir, src.getName());
+			if (sink != null)
+				sink.put(dest.getName(), FileUtils.readFileToByteArray(src));
+			else if (!src.getCanonicalFile().equals(dest.getCanonicalFile()))
+				FileUtils.copyFile(src, dest);
 
-		if (runOccupancy) {
-			occ.run();
+		} else {
+			occ = new OccupancyModel(residents, weekend, output_dir);
+			occ.setRandomStreams(streams);
+			occ.setCompressedOutput(compressed);
+			occ.setOutputSink(sink);
+
+			if (runOccupancy) {
+				occ.run();
+			}
 		}
 
 		if (runLighting) {
 			LightingModel lights = new LightingModel(month, output_dir, occ);
+			lights.setRandomStreams(streams);
+			lights.setParameters(parameters);
+			lights.setOutputSink(sink);
 			lights.setTotalsOnly(lightingTotals);
+			lights.setOutputResolution(resolution);
+			lights.setOutputEnergy(energyOutput);
+			lights.setCompressedOutput(compressed);
+			lights.setOutputPrecision(precision);
+			lights.setWriteProfiles(writeProfiles);
+			for (LoadOperator op : operators) {
+				lights.addOperator(op);
+			}
 			lights.run();
+			lighting = lights.getTotalConsumption();
 
-			if (grandTotals) {
-				totalConsumption = addArrays(totalConsumption,
-						lights.getTotalConsumption());
-			}
+			totalConsumption = addArrays(totalConsumption,
+					lights.getTotalConsumption());
 
 		}
 
 		if (runAppliances) {
 			ApplianceModel appliances = new ApplianceModel(month, weekend,
 					output_dir, occ);
+			appliances.setRandomStreams(streams);
+			appliances.setParameters(parameters);
+			appliances.setOutputSink(sink);
 			appliances.setTotalsOnly(applianceTotals);
+			appliances.setOutputResolution(resolution);
+			appliances.setOutputEnergy(energyOutput);
+			appliances.setCompressedOutput(compressed);
+			appliances.setOutputPrecision(precision);
+			appliances.setWriteProfiles(writeProfiles);
+			for (LoadOperator op : operators) {
+				appliances.addOperator(op);
+			}
 			appliances.run();
 
-			if (grandTotals) {
-				totalConsumption = addArrays(totalConsumption,
-						appliances.getTotalConsumption());
+			totalConsumption = addArrays(totalConsumption,
+					appliances.getTotalConsumption());
+
+			if (plot != null) {
+				for (Appliance a : appliances.getLoads()) {
+					plot.addLoad(a.id, a.consumption);
+				}
 			}
 		}
 
-		if (grandTotals) {
-			// Build the results array (only one line)
-			ArrayList<String[]> results = new ArrayList<String[]>(1);
-			String[] totalString = Load.buildExportString("TOTAL",
-					totalConsumption);
-			results.add(totalString);
+		if (plot != null) {
+			if (lighting != null)
+				plot.addLoad("LIGHTS", lighting);
+			if (occ.hasRun() || occ.getResultFile().exists())
+				plot.setOccupancy(occ.getOccupancy());
+		}
 
-			// Write the data to a file
+		if (grandTotals && writeProfiles) {
+			// Write the data to a file (only one line)
 			File file = new File(output_dir, "totals.csv");
-			CSVWriter writer = new CSVWriter(new FileWriter(file), ',', '\0');
-			writer.writeAll(results);
-			writer.close();
+			ExportWriter writer = new ExportWriter(
+					OutputFiles.newOutputStream(file, compressed, sink), resolution,
+					energyOutput, precision);
+			try {
+				writer.writeRow("TOTAL", totalConsumption);
+			} finally {
+				writer.close();
+			}
+		}
+	}
+
+	/**
+	 * Makes the summary plots, if requested.
+	 */
+	private void makePlots() {
+		if (makePlots) {
+			try {
+				// After a cache hit, the plot is drawn from the output files,
+				// at the resolution at which they were written
+				if (plot == null)
+					plot = SummaryPlot.read(output_dir, resolution,
+							energyOutput);
+				plot.write(new File(output_dir, "simelec.png"));
+			} catch (IOException e) {
+				System.out.println("Unable to create summary plot.");
+				System.out.println(e.getMessage());
+				e.printStackTrace();
+			}
+			plot = null;
 		}
 
 		if (makeRPlots) {
@@ -239,6 +486,118 @@ public class SimElec {
 
 	}
 
+	/**
+	 * Can the results of this run be stored in a ResultCache? This requires a
+	 * cache to be set, a known random number seed, and that the occupancy
+	 * model is run by this SimElec (rather than read from an existing file or
+	 * shared with another run). The profiles must also be written and no
+	 * operators attached, as a cached run doesn't simulate any loads.
+	 * 
+	 * @return <code>true</code> if the results can be cached
+	 */
+	private boolean isCacheable() {
+		return cache != null && seeded && runOccupancy
+				&& sharedOccupancy == null && streams == null && writeProfiles
+				&& operators.isEmpty();
+	}
+
+	/**
+	 * Gets a String describing every input that affects the results of this
+	 * simulation.
+	 * 
+	 * @return a String specification of this run
+	 * @throws IOException
+	 *             if the external data files cannot be read
+	 */
+	String getSpecification() throws IOException {
+		// The version is increased whenever the model gives different results
+		// for the same inputs, so that older disk cache entries are not used
+		String spec = String.format("simelec-4|month=%d|residents=%d|weekend=%b|"
+				+ "seed=%d|lighting=%b|appliances=%b|lightingTotals=%b|"
+				+ "applianceTotals=%b|grandTotals=%b|crn=%b|"
+				+ "resolution=%d|energy=%b", month, residents, weekend, seed,
+				runLighting, runAppliances, lightingTotals, applianceTotals,
+				grandTotals, commonRandomNumbers, resolution, energyOutput);
+
+		// Only added when set, so that existing cache entries remain valid
+		if (compressed)
+			spec = spec.concat("|compressed=true");
+		if (precision >= 0)
+			spec = spec.concat(String.format("|precision=%d", precision));
+		String p = parameters.toString();
+		if (!p.equals(new ModelParameters().toString()))
+			spec = spec.concat("|parameters=").concat(p);
+		String data = ModelData.getDataDigest();
+		if (!data.isEmpty())
+			spec = spec.concat("|data=").concat(data);
+		return spec;
+	}
+
+	/**
+	 * Gets the names of the files written by this simulation.
+	 * 
+	 * @return an ArrayList of file names in the output directory
+	 */
+	private ArrayList<String> getOutputFileNames() {
+		ArrayList<String> names = new ArrayList<String>(4);
+		names.add(OccupancyModel.getOutputFile(output_dir).getName());
+		if (writeProfiles) {
+			if (runLighting)
+				names.add("lighting_output.csv");
+			if (runAppliances)
+				names.add("appliance_output.csv");
+			if (grandTotals)
+				names.add("totals.csv");
+		}
+		if (compressed) {
+			for (int i = 0; i < names.size(); i++) {
+				names.set(i, names.get(i).concat(OutputFiles.GZIP_SUFFIX));
+			}
+		}
+		return names;
+	}
+
+	/**
+	 * Reads the results of a completed run into a cache entry. Files which
+	 * were collected in memory are taken from the OutputSink, and any others,
+	 * such as a provided occupancy file, are read from the output directory.
+	 * 
+	 * @return a ResultCache.Entry holding the totals and output files
+	 * @throws IOException
+	 *             if the output files cannot be read
+	 */
+	private ResultCache.Entry captureResults() throws IOException {
+		Map<String, byte[]> files = new LinkedHashMap<String, byte[]>();
+		for (String name : getOutputFileNames()) {
+			byte[] bytes = sink == null ? null : sink.get(name);
+			if (bytes == null)
+				bytes = FileUtils.readFileToByteArray(new File(output_dir,
+						name));
+			files.put(name, bytes);
+		}
+		return new ResultCache.Entry(totalConsumption, files);
+	}
+
+	/**
+	 * Restores the results of a run from a cache entry, writing the stored
+	 * output files into the output directory unless they are only to be
+	 * stored.
+	 * 
+	 * @param entry
+	 *            the cached result
+	 * @throws IOException
+	 *             if the output files cannot be written
+	 */
+	private void restoreResults(ResultCache.Entry entry) throws IOException {
+		if (!isStoredInMemory()) {
+			for (Map.Entry<String, byte[]> f : entry.getFiles().entrySet()) {
+				FileUtils.writeByteArrayToFile(
+						new File(output_dir, f.getKey()), f.getValue());
+			}
+		}
+		totalConsumption = entry.getTotals();
+	}
+
 	/**
 	 * Performs an element-wise addition of two arrays
 	 * 
@@ -340,6 +699,148 @@ public class SimElec {
 		DiscretePDF.setSeed(seed);
 	}
 
+	/**
+	 * Sets a cache for the results of this SimElec model. Results are only
+	 * cached for runs with a specified random number seed.
+	 * 
+	 * @param cache
+	 *            the ResultCache to use, or <code>null</code> to disable
+	 *            caching
+	 */
+	public void setResultCache(ResultCache cache) {
+		this.cache = cache;
+	}
+
+	/**
+	 * Sets a {@link ResultsStore} to which the results of this SimElec model
+	 * are appended, under the given household number and the seed of this
+	 * model. The output files are collected in memory rather than written, so
+	 * a large batch of runs sharing an output directory leaves its results in
+	 * a few segment files, and runs on different threads may share the
+	 * directory.
+	 * 
+	 * If plots are requested, the output files are written and then deleted
+	 * once they have been stored, and the plots are kept. Such runs must not
+	 * share an output directory with any other run at the same time.
+	 * 
+	 * @param writer
+	 *            the ResultsStore.Writer to use, or <code>null</code> to keep
+	 *            the output files
+	 * @param household
+	 *            a long giving the household number under which to store the
+	 *            results
+	 * @throws IllegalStateException
+	 *             if this SimElec was created without a seed
+	 */
+	public void setResultsStore(ResultsStore.Writer writer, long household) {
+		if (writer != null && !seeded)
+			throw new IllegalStateException(
+					"Storing results requires a seeded SimElec model");
+		this.store = writer;
+		this.household = household;
+	}
+
+	/**
+	 * Sets a {@link MappedTotalsFile} into which the grand totals of this
+	 * SimElec model are written after each run. Several models running on
+	 * different threads may share a file, provided each writes its own
+	 * record.
+	 * 
+	 * @param file
+	 *            the MappedTotalsFile, or <code>null</code> to write no totals
+	 * @param record
+	 *            a long giving the record number
+	 */
+	public void setTotalsFile(MappedTotalsFile file, long record) {
+		this.totalsFile = file;
+		this.totalsRecord = record;
+	}
+
+	/**
+	 * Adds an operator, which is given the profile of each bulb and appliance
+	 * as it is simulated. The operator accumulates over every run of this
+	 * model, so a new operator should be added for each household unless a
+	 * population total is wanted. Runs with operators are not cached.
+	 * 
+	 * @param op
+	 *            the LoadOperator to add
+	 */
+	public void addOperator(LoadOperator op) {
+		operators.add(op);
+	}
+
+	/**
+	 * Sets whether the lighting, appliance and total profiles should be
+	 * written to file. If not, the results of a run are only available
+	 * through {@link #getGrandTotals()} and any operators. The occupancy file
+	 * is still written, and the summary plot can still be made, but the R
+	 * plots cannot. Runs without profiles are not cached.
+	 * 
+	 * @param write
+	 *            a boolean indicating if the profiles should be written
+	 */
+	public void setWriteProfiles(boolean write) {
+		this.writeProfiles = write;
+	}
+
+	/**
+	 * Set whether to use common random numbers. In this mode, the seed given
+	 * to the constructor identifies the household, and each part of the model
+	 * draws from its own fixed random number stream (see
+	 * {@link RandomStreams}). Two runs with the same seed then share their
+	 * random numbers wherever their logic matches, so that differences between
+	 * paired scenarios are not hidden by sampling noise.
+	 * 
+	 * @param crn
+	 *            a boolean indicating if common random numbers should be used
+	 * @throws IllegalStateException
+	 *             if this SimElec was created without a seed
+	 */
+	public void setCommonRandomNumbers(boolean crn) {
+		if (crn && !seeded)
+			throw new IllegalStateException(
+					"Common random numbers require a seeded SimElec model");
+		this.commonRandomNumbers = crn;
+	}
+
+	/**
+	 * Sets the random number streams for this SimElec model, for example those
+	 * planned for a household by a {@link SamplingPlanner}. This overrides the
+	 * seed and common random numbers settings.
+	 * 
+	 * @param streams
+	 *            the RandomStreams to use, or <code>null</code> to use the
+	 *            defaults
+	 */
+	public void setRandomStreams(RandomStreams streams) {
+		this.streams = streams;
+	}
+
+	/**
+	 * Sets the calibration constants of the lighting and appliance models.
+	 * 
+	 * @param parameters
+	 *            the ModelParameters to use. A copy is taken.
+	 */
+	public void setParameters(ModelParameters parameters) {
+		this.parameters = new ModelParameters(parameters);
+	}
+
+	/**
+	 * Sets an OccupancyModel to be shared with other runs. The model is run
+	 * once, if it hasn't been already, and its occupancy trajectory is then
+	 * reused by the load models of every SimElec to which it is given. This
+	 * allows paired scenarios to be compared against exactly the same
+	 * occupancy.
+	 * 
+	 * @param occ
+	 *            the shared OccupancyModel, or <code>null</code> to simulate
+	 *            occupancy within this SimElec
+	 */
+	public void setOccupancyModel(OccupancyModel occ) {
+		this.sharedOccupancy = occ;
+	}
+
 	/**
 	 * Set whether to run the Appliance simulation
 	 * 
@@ -359,7 +860,20 @@ public class SimElec {
 	}
 
 	/**
-	 * Set whether to make the R plots
+	 * Set whether to make the summary plot, <code>simelec.png</code>. The plot
+	 * is drawn in Java and does not need R to be installed.
+	 * 
+	 * @param makePlots
+	 *            a boolean indicating if the plot should be made
+	 */
+	public void setMakePlots(boolean makePlots) {
+		this.makePlots = makePlots;
+	}
+
+	/**
+	 * Set whether to make the R plots. This runs the bundled R scripts with
+	 * <code>Rscript</code>, which must be installed, and produces the same
+	 * summary plot as {@link #setMakePlots(boolean)}.
 	 * 
 	 * @param makePlots
 	 *            a boolean indicating if the plots should be made
@@ -368,6 +882,56 @@ public class SimElec {
 		this.makeRPlots = makePlots;
 	}
 
+	/**
+	 * Sets the time resolution of the lighting, appliance and total output
+	 * files, for example 30 for half-hourly data. The models always simulate
+	 * at one-minute intervals; the profiles are aggregated as they are
+	 * written. The occupancy output remains at ten-minute intervals.
+	 * 
+	 * @param minutes
+	 *            an int giving the length of each output interval in minutes.
+	 *            See {@link #validateResolution(int)}.
+	 */
+	public void setOutputResolution(int minutes) {
+		this.resolution = validateResolution(minutes);
+	}
+
+	/**
+	 * Sets whether the output files should report the energy in each interval
+	 * (Wh) rather than the mean power (W).
+	 * 
+	 * @param energy
+	 *            a boolean indicating if energy should be reported
+	 */
+	public void setOutputEnergy(boolean energy) {
+		this.energyOutput = energy;
+	}
+
+	/**
+	 * Sets the number of decimal places written in the lighting, appliance and
+	 * total output files. By default, each value is written exactly.
+	 * 
+	 * @param digits
+	 *            an int giving the number of decimal places, or -1 to write
+	 *            each value exactly. See {@link #validatePrecision(int)}.
+	 */
+	public void setOutputPrecision(int digits) {
+		this.precision = validatePrecision(digits);
+	}
+
+	/**
+	 * Sets whether the output files should be compressed with GZIP, in which
+	 * case <code>.gz</code> is added to their names. The blocks of each file
+	 * are compressed in parallel (see {@link ParallelGzipOutputStream}). The
+	 * summary plot is not affected.
+	 * 
+	 * @param compressed
+	 *            a boolean indicating if the output should be compressed
+	 */
+	public void setCompressedOutput(boolean compressed) {
+		this.compressed = compressed;
+	}
+
 	/**
 	 * Set whether to calculate only the total loads for the appliance model.
 	 * 
@@ -391,7 +955,9 @@ public class SimElec {
 	}
 
 	/**
-	 * Set whether to calculate the grand total of all load models.
+	 * Set whether to write the grand total of all load models to
+	 * <code>totals.csv</code>. The total is always calculated, and is given by
+	 * {@link #getGrandTotals()} and written to any totals file.
 	 * 
 	 * @param total
 	 *            a boolean indicating if the grand totals should be reported
@@ -402,8 +968,8 @@ public class SimElec {
 
 	/**
 	 * Set whether to run the occupancy simulation. If this is set to false,
-	 * then you must provide the file <code>occupancy_output.csv</code> in the
-	 * output directory.
+	 * then you must provide the file <code>occupancy_output.csv</code>, or
+	 * <code>occupancy_output.csv.gz</code>, in the output directory.
 	 * 
 	 * @param run
 	 *            should the occupancy model be run?
@@ -420,7 +986,7 @@ public class SimElec {
 		if (!run) {
 
 			File f = OccupancyModel.getOutputFile(output_dir);
-			if (!f.exists()) {
+			if (!OutputFiles.find(f).exists()) {
 				String msg = String.format(
 						"Occupancy model output file '%s' not found.",
 						f.toString());
@@ -0,0 +1,270 @@
+package uk.ac.imperial.simelec;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Publishes simulation results as they are produced. Results are only
+ * simulated when a subscriber has requested them, so a slow subscriber
+ * throttles the simulation rather than results being buffered.
+ *
+ * Each subscriber receives its own run of the simulation, starting from the
+ * same seed, and so receives the same results. The simulation runs on a
+ * supplied Executor; when a subscriber has outstanding demand, a single task
+ * simulates and delivers results until the demand is met.
+ *
+ * @author James Keirstead
+ *
+ * @param <T>
+ *            the type of result published
+ */
+public abstract class SimulationPublisher<T> implements Flow.Publisher<T> {
+
+	/**
+	 * A source of simulation results for one subscriber.
+	 *
+	 * @param <T>
+	 *            the type of result
+	 */
+	protected interface Source<T> {
+
+		/**
+		 * Are there more results?
+		 *
+		 * @return <code>true</code> if <code>next()</code> will return a
+		 *         result
+		 */
+		boolean hasNext();
+
+		/**
+		 * Simulates the next result.
+		 *
+		 * @return the next result
+		 * @throws IOException
+		 *             if the model data cannot be read
+		 */
+		T next() throws IOException;
+	}
+
+	// Member fields
+	private Executor executor;
+
+	/**
+	 * Creates a new SimulationPublisher.
+	 *
+	 * @param executor
+	 *            the Executor on which to run the simulation
+	 */
+	protected SimulationPublisher(Executor executor) {
+		this.executor = executor;
+	}
+
+	/**
+	 * Creates a source of results for a new subscriber.
+	 *
+	 * @return a new Source
+	 * @throws IOException
+	 *             if the model data cannot be read
+	 */
+	protected abstract Source<T> createSource() throws IOException;
+
+	@Override
+	public void subscribe(Flow.Subscriber<? super T> subscriber) {
+		if (subscriber == null)
+			throw new NullPointerException("subscriber");
+
+		Source<T> source;
+		try {
+			source = createSource();
+		} catch (IOException e) {
+			subscriber.onSubscribe(new SimulationSubscription<T>(subscriber,
+					null, executor));
+			subscriber.onError(e);
+			return;
+		}
+
+		subscriber.onSubscribe(new SimulationSubscription<T>(subscriber,
+				source, executor));
+	}
+
+	/**
+	 * Creates a SimulationPublisher which publishes the profiles of each
+	 * household in turn. Household <code>i</code> takes its random numbers
+	 * from {@link RandomStreams#forHousehold(long, long)}.
+	 *
+	 * @param specs
+	 *            a List of HouseholdSpec objects
+	 * @param seed
+	 *            a long giving the scenario seed
+	 * @param executor
+	 *            the Executor on which to run the simulation
+	 * @return a SimulationPublisher of HouseholdResult objects
+	 */
+	public static SimulationPublisher<HouseholdResult> households(
+			final List<HouseholdSpec> specs, final long seed, Executor executor) {
+
+		return new SimulationPublisher<HouseholdResult>(executor) {
+			@Override
+			protected Source<HouseholdResult> createSource() {
+				return new Source<HouseholdResult>() {
+					private int next = 0;
+
+					@Override
+					public boolean hasNext() {
+						return next < specs.size();
+					}
+
+					@Override
+					public HouseholdResult next() throws IOException {
+						int i = next++;
+						HouseholdSimulator h = new HouseholdSimulator(specs
+								.get(i), RandomStreams.forHousehold(seed, i));
+						return HouseholdResult.simulate(i, h);
+					}
+				};
+			}
+		};
+	}
+
+	/**
+	 * Creates a SimulationPublisher which publishes the total demand of a
+	 * population in each minute of the day. The households are simulated
+	 * together with a {@link LockstepEngine}.
+	 *
+	 * @param specs
+	 *            a List of HouseholdSpec objects
+	 * @param seed
+	 *            a long giving the scenario seed
+	 * @param executor
+	 *            the Executor on which to run the simulation
+	 * @return a SimulationPublisher of MinuteAggregate objects
+	 */
+	public static SimulationPublisher<MinuteAggregate> minutes(
+			final List<HouseholdSpec> specs, final long seed, Executor executor) {
+
+		return new SimulationPublisher<MinuteAggregate>(executor) {
+			@Override
+			protected Source<MinuteAggregate> createSource()
+					throws IOException {
+				final LockstepEngine engine = new LockstepEngine(specs, seed, 0);
+				return new Source<MinuteAggregate>() {
+					@Override
+					public boolean hasNext() {
+						return !engine.isFinished();
+					}
+
+					@Override
+					public MinuteAggregate next() {
+						engine.step();
+						return new MinuteAggregate(engine.getTime(),
+								specs.size(), engine.getLightingDemand(),
+								engine.getApplianceDemand());
+					}
+				};
+			}
+		};
+	}
+
+	/**
+	 * The Subscription of a single subscriber. Requests add to the
+	 * outstanding demand and schedule a drain task if one is not already
+	 * running. The drain task delivers results until the demand is met, and
+	 * runs again if more demand arrives in the meantime.
+	 */
+	private static class SimulationSubscription<T> implements
+			Flow.Subscription, Runnable {
+
+		private Flow.Subscriber<? super T> subscriber;
+		private Source<T> source;
+		private Executor executor;
+		private AtomicLong requested = new AtomicLong();
+		private AtomicInteger pending = new AtomicInteger();
+		private volatile boolean cancelled;
+		private volatile Throwable error;
+
+		private SimulationSubscription(Flow.Subscriber<? super T> subscriber,
+				Source<T> source, Executor executor) {
+			this.subscriber = subscriber;
+			this.source = source;
+			this.executor = executor;
+			this.cancelled = source == null;
+		}
+
+		@Override
+		public void request(long n) {
+			if (cancelled)
+				return;
+
+			if (n <= 0) {
+				error = new IllegalArgumentException(
+						"The number of items requested must be positive");
+			} else {
+				// Add to the demand, capping at Long.MAX_VALUE
+				long r, u;
+				do {
+					r = requested.get();
+					u = r + n;
+					if (u < 0)
+						u = Long.MAX_VALUE;
+				} while (!requested.compareAndSet(r, u));
+			}
+
+			if (pending.getAndIncrement() == 0)
+				executor.execute(this);
+		}
+
+		@Override
+		public void cancel() {
+			cancelled = true;
+		}
+
+		@Override
+		public void run() {
+			int missed = 1;
+			while (true) {
+				if (cancelled)
+					return;
+
+				if (error != null) {
+					cancelled = true;
+					subscriber.onError(error);
+					return;
+				}
+
+				long r = requested.get();
+				long delivered = 0;
+				while (delivered != r && source.hasNext()) {
+					T item;
+					try {
+						item = source.next();
+					} catch (Throwable e) {
+						cancelled = true;
+						subscriber.onError(e);
+						return;
+					}
+					subscriber.onNext(item);
+					delivered++;
+
+					if (cancelled)
+						return;
+				}
+
+				if (!source.hasNext()) {
+					cancelled = true;
+					subscriber.onComplete();
+					return;
+				}
+
+				if (delivered != 0 && r != Long.MAX_VALUE)
+					requested.addAndGet(-delivered);
+
+				missed = pending.addAndGet(-missed);
+				if (missed == 0)
+					return;
+			}
+		}
+	}
+}
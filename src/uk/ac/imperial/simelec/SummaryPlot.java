@@ -0,0 +1,447 @@
+package uk.ac.imperial.simelec;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Path2D;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.imageio.ImageIO;
+
+import au.com.bytecode.opencsv.CSVReader;
+
+/**
+ * Draws a summary plot of a SimElec run: the demand of each load stacked over
+ * the day, with the number of active occupants shown as a grey background.
+ * This is the same plot as <code>summary-plot.r</code>, but it is drawn with
+ * Java2D from profiles held in memory, so it needs neither R nor a display.
+ *
+ * @author James Keirstead
+ *
+ */
+public class SummaryPlot {
+
+	// Image size in pixels
+	private static final int WIDTH = 1000;
+	private static final int HEIGHT = 600;
+
+	// Plot margins in pixels
+	private static final int LEFT = 70;
+	private static final int RIGHT = 190;
+	private static final int TOP = 20;
+	private static final int BOTTOM = 55;
+
+	private static final Color OCCUPANCY_COLOR = new Color(0x99, 0x99, 0x99,
+			128);
+	private static final Color GRID_COLOR = new Color(0xeb, 0xeb, 0xeb);
+	private static final Color BORDER_COLOR = new Color(0x7f, 0x7f, 0x7f);
+
+	// Member fields
+	private List<String> ids = new ArrayList<String>();
+	private List<double[]> loads = new ArrayList<double[]>();
+	private int[] occupancy;
+
+	/**
+	 * Creates an empty SummaryPlot.
+	 */
+	public SummaryPlot() {
+	}
+
+	/**
+	 * Reads the output files of a SimElec run into a SummaryPlot. As in
+	 * <code>summary-plot.r</code>, each appliance with some demand is shown
+	 * separately and the lighting is shown as a single total. Compressed
+	 * output files are also read. The files must give the power at one-minute
+	 * intervals; see {@link #read(String, int, boolean)} for other outputs.
+	 *
+	 * @param dir
+	 *            a String giving the output directory
+	 * @return a SummaryPlot
+	 * @throws IOException
+	 *             if the output files cannot be read
+	 */
+	public static SummaryPlot read(String dir) throws IOException {
+		return read(dir, 1, false);
+	}
+
+	/**
+	 * Reads the output files of a SimElec run written at a specified time
+	 * resolution. Energy values are converted back to the mean power in each
+	 * interval, so that the plot is always of power.
+	 *
+	 * @param dir
+	 *            a String giving the output directory
+	 * @param resolution
+	 *            an int giving the length of each output interval in minutes
+	 * @param energy
+	 *            a boolean indicating whether the files give the energy in
+	 *            each interval in Wh (<code>true</code>) or the mean power in
+	 *            W (<code>false</code>)
+	 * @return a SummaryPlot
+	 * @throws IOException
+	 *             if the output files cannot be read
+	 */
+	public static SummaryPlot read(String dir, int resolution, boolean energy)
+			throws IOException {
+		double scale = energy ? 60.0 / resolution : 1;
+		SummaryPlot plot = new SummaryPlot();
+
+		File file = OutputFiles.find(new File(dir, "appliance_output.csv"));
+		if (file.exists()) {
+			for (String[] row : readAll(file)) {
+				plot.addLoad(row[0], parse(row, scale));
+			}
+		}
+
+		file = OutputFiles.find(new File(dir, "lighting_output.csv"));
+		if (file.exists()) {
+			double[] total = null;
+			for (String[] row : readAll(file)) {
+				double[] values = parse(row, scale);
+				if (total == null)
+					total = new double[values.length];
+				for (int i = 0; i < values.length; i++) {
+					total[i] += values[i];
+				}
+			}
+			if (total != null)
+				plot.addLoad("LIGHTS", total);
+		}
+
+		file = OutputFiles.find(OccupancyModel.getOutputFile(dir));
+		if (file.exists()) {
+			List<String[]> rows = readAll(file);
+			int[] occ = new int[rows.size()];
+			for (int i = 0; i < occ.length; i++) {
+				occ[i] = Integer.valueOf(rows.get(i)[1]);
+			}
+			plot.setOccupancy(occ);
+		}
+
+		return plot;
+	}
+
+	private static List<String[]> readAll(File file) throws IOException {
+		CSVReader reader = new CSVReader(OutputFiles.newReader(file));
+		List<String[]> rows = reader.readAll();
+		reader.close();
+		return rows;
+	}
+
+	private static double[] parse(String[] row, double scale) {
+		double[] values = new double[row.length - 1];
+		for (int i = 0; i < values.length; i++) {
+			values[i] = Double.valueOf(row[i + 1]) * scale;
+		}
+		return values;
+	}
+
+	/**
+	 * Adds a load to the plot. Loads with no demand during the day are not
+	 * shown.
+	 *
+	 * @param id
+	 *            a String giving the name of the load
+	 * @param power
+	 *            an array of demand values evenly spaced over the day (W).
+	 *            Every load must have the same number of values.
+	 */
+	public void addLoad(String id, double[] power) {
+		if (!loads.isEmpty() && loads.get(0).length != power.length)
+			throw new IllegalArgumentException(
+					"Every load must have the same number of values");
+
+		for (double p : power) {
+			if (p != 0) {
+				ids.add(id);
+				loads.add(power.clone());
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Gets the total demand of the loads shown on the plot.
+	 *
+	 * @return an array of demand values evenly spaced over the day (W), or
+	 *         <code>null</code> if no loads are shown
+	 */
+	double[] getTotal() {
+		if (loads.isEmpty())
+			return null;
+		double[] total = new double[loads.get(0).length];
+		for (double[] l : loads) {
+			for (int i = 0; i < total.length; i++) {
+				total[i] += l[i];
+			}
+		}
+		return total;
+	}
+
+	/**
+	 * Sets the number of active occupants.
+	 *
+	 * @param occupancy
+	 *            an array of values evenly spaced over the day
+	 */
+	public void setOccupancy(int[] occupancy) {
+		this.occupancy = occupancy.clone();
+	}
+
+	/**
+	 * Writes the plot to a PNG file.
+	 *
+	 * @param file
+	 *            the output File
+	 * @throws IOException
+	 *             if the file cannot be written
+	 */
+	public void write(File file) throws IOException {
+		ImageIO.write(render(WIDTH, HEIGHT), "png", file);
+	}
+
+	/**
+	 * Draws the plot.
+	 *
+	 * @param width
+	 *            an int giving the image width in pixels
+	 * @param height
+	 *            an int giving the image height in pixels
+	 * @return a BufferedImage
+	 */
+	public BufferedImage render(int width, int height) {
+		BufferedImage image = new BufferedImage(width, height,
+				BufferedImage.TYPE_INT_RGB);
+		Graphics2D g = image.createGraphics();
+		g.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
+				RenderingHints.VALUE_ANTIALIAS_ON);
+		g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING,
+				RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+		g.setColor(Color.WHITE);
+		g.fillRect(0, 0, width, height);
+
+		int x0 = LEFT;
+		int x1 = width - RIGHT;
+		int y0 = height - BOTTOM;
+		int y1 = TOP;
+
+		// Stack the loads in kW
+		double[][] stacked = new double[loads.size()][];
+		double ymax = 0;
+		for (int j = 0; j < loads.size(); j++) {
+			double[] l = loads.get(j);
+			stacked[j] = new double[l.length];
+			for (int i = 0; i < l.length; i++) {
+				stacked[j][i] = l[i] / 1000 + (j > 0 ? stacked[j - 1][i] : 0);
+				ymax = Math.max(ymax, stacked[j][i]);
+			}
+		}
+		double step = getTickStep(ymax > 0 ? ymax : 1);
+		double ytop = ymax > 0 ? ymax : 1;
+
+		Scale sx = new Scale(0, 1440, x0, x1);
+		Scale sy = new Scale(0, ytop, y0, y1);
+
+		// Grid lines and axis labels
+		g.setFont(new Font(Font.SANS_SERIF, Font.PLAIN, 12));
+		FontMetrics fm = g.getFontMetrics();
+		g.setStroke(new BasicStroke(1f));
+		for (int h = 0; h <= 24; h += 6) {
+			int x = sx.map(h * 60);
+			g.setColor(GRID_COLOR);
+			g.drawLine(x, y0, x, y1);
+			String label = String.format("%02d:00", h % 24);
+			g.setColor(Color.DARK_GRAY);
+			g.drawString(label, x - fm.stringWidth(label) / 2,
+					y0 + fm.getAscent() + 4);
+		}
+		for (int k = 0; k * step <= ytop + 1e-9; k++) {
+			int y = sy.map(k * step);
+			g.setColor(GRID_COLOR);
+			g.drawLine(x0, y, x1, y);
+			String label = formatTick(k * step, step);
+			g.setColor(Color.DARK_GRAY);
+			g.drawString(label, x0 - fm.stringWidth(label) - 6,
+					y + fm.getAscent() / 2 - 1);
+		}
+
+		// Occupancy, rescaled to the range of the demand
+		if (occupancy != null && occupancy.length > 1) {
+			int min = Integer.MAX_VALUE;
+			int max = Integer.MIN_VALUE;
+			for (int o : occupancy) {
+				min = Math.min(min, o);
+				max = Math.max(max, o);
+			}
+			double[] occ = new double[occupancy.length];
+			for (int i = 0; i < occ.length; i++) {
+				occ[i] = max == min ? ytop / 2 : (occupancy[i] - min)
+						* ytop / (max - min);
+			}
+			g.setColor(OCCUPANCY_COLOR);
+			g.fill(getArea(occ, null, sx, sy));
+		}
+
+		// Stacked loads, drawn from the top down
+		Color[] colors = getHuePalette(loads.size());
+		for (int j = loads.size() - 1; j >= 0; j--) {
+			double[] below = j > 0 ? stacked[j - 1] : null;
+			g.setColor(colors[j]);
+			g.fill(getArea(stacked[j], below, sx, sy));
+		}
+
+		// Panel border
+		g.setColor(BORDER_COLOR);
+		g.drawRect(x0, y1, x1 - x0, y0 - y1);
+
+		// Axis titles
+		g.setFont(new Font(Font.SANS_SERIF, Font.PLAIN, 14));
+		fm = g.getFontMetrics();
+		g.setColor(Color.BLACK);
+		String title = "Hour of the day";
+		g.drawString(title, (x0 + x1 - fm.stringWidth(title)) / 2, height - 12);
+		title = "Power (kW)";
+		AffineTransform at = g.getTransform();
+		g.rotate(-Math.PI / 2);
+		g.drawString(title, -(y0 + y1 + fm.stringWidth(title)) / 2, 20);
+		g.setTransform(at);
+
+		// Legend
+		if (!ids.isEmpty()) {
+			int lx = x1 + 20;
+			int ly = y1 + 10;
+			g.drawString("Load", lx, ly + fm.getAscent());
+			ly += fm.getHeight() + 6;
+			g.setFont(new Font(Font.SANS_SERIF, Font.PLAIN, 11));
+			fm = g.getFontMetrics();
+			int box = Math.max(fm.getHeight(), 12);
+			for (int j = 0; j < ids.size() && ly + box < y0 + BOTTOM; j++) {
+				g.setColor(colors[j]);
+				g.fillRect(lx, ly, box, box);
+				g.setColor(Color.BLACK);
+				g.drawString(ids.get(j), lx + box + 6, ly + fm.getAscent());
+				ly += box + 3;
+			}
+		}
+
+		g.dispose();
+		return image;
+	}
+
+	/**
+	 * Builds the area between two series of values evenly spaced over the
+	 * day.
+	 */
+	private static Path2D getArea(double[] top, double[] bottom, Scale sx,
+			Scale sy) {
+		double dx = 1440.0 / top.length;
+		Path2D.Double path = new Path2D.Double();
+		path.moveTo(sx.map(0), sy.map(bottom == null ? 0 : bottom[0]));
+		for (int i = 0; i < top.length; i++) {
+			path.lineTo(sx.map(i * dx), sy.map(top[i]));
+		}
+		for (int i = top.length - 1; i >= 0; i--) {
+			path.lineTo(sx.map(i * dx), sy.map(bottom == null ? 0 : bottom[i]));
+		}
+		path.closePath();
+		return path;
+	}
+
+	/**
+	 * Chooses a tick spacing of 1, 2 or 5 times a power of ten, giving around
+	 * five ticks.
+	 */
+	private static double getTickStep(double range) {
+		double raw = range / 5;
+		double magnitude = Math.pow(10, Math.floor(Math.log10(raw)));
+		double f = raw / magnitude;
+		if (f < 1.5) {
+			return magnitude;
+		} else if (f < 3.5) {
+			return 2 * magnitude;
+		} else if (f < 7.5) {
+			return 5 * magnitude;
+		}
+		return 10 * magnitude;
+	}
+
+	private static String formatTick(double value, double step) {
+		int decimals = (int) Math.max(0, -Math.floor(Math.log10(step)));
+		return String.format("%." + decimals + "f", value);
+	}
+
+	/**
+	 * Gets evenly spaced hues of equal lightness and chroma, as used by
+	 * ggplot2 for discrete fill scales.
+	 *
+	 * @param n
+	 *            an int giving the number of colours
+	 * @return an array of Colors
+	 */
+	static Color[] getHuePalette(int n) {
+		Color[] colors = new Color[n];
+		for (int i = 0; i < n; i++) {
+			colors[i] = hcl(15 + 360.0 * i / n, 100, 65);
+		}
+		return colors;
+	}
+
+	/**
+	 * Converts a CIE-LUV colour in polar coordinates to sRGB.
+	 */
+	private static Color hcl(double h, double c, double l) {
+
+		// D65 white point
+		double xn = 95.047;
+		double yn = 100.000;
+		double zn = 108.883;
+		double un = 4 * xn / (xn + 15 * yn + 3 * zn);
+		double vn = 9 * yn / (xn + 15 * yn + 3 * zn);
+
+		double u = c * Math.cos(Math.toRadians(h));
+		double v = c * Math.sin(Math.toRadians(h));
+		double y = yn * (l > 8 ? Math.pow((l + 16) / 116, 3) : l / 903.3);
+		double up = u / (13 * l) + un;
+		double vp = v / (13 * l) + vn;
+		double x = 9.0 * y * up / (4 * vp);
+		double z = -x / 3 - 5 * y + 3 * y / vp;
+
+		x /= 100;
+		y /= 100;
+		z /= 100;
+		return new Color(gamma(3.240479 * x - 1.537150 * y - 0.498535 * z),
+				gamma(-0.969256 * x + 1.875992 * y + 0.041556 * z),
+				gamma(0.055648 * x - 0.204043 * y + 1.057311 * z));
+	}
+
+	private static int gamma(double c) {
+		c = c > 0.00304 ? 1.055 * Math.pow(c, 1 / 2.4) - 0.055 : 12.92 * c;
+		return (int) Math.round(255 * Math.max(0, Math.min(1, c)));
+	}
+
+	/**
+	 * A linear mapping from data values to pixels.
+	 */
+	private static class Scale {
+		private double d0, d1, p0, p1;
+
+		private Scale(double d0, double d1, double p0, double p1) {
+			this.d0 = d0;
+			this.d1 = d1;
+			this.p0 = p0;
+			this.p1 = p1;
+		}
+
+		private int map(double d) {
+			return (int) Math.round(p0 + (d - d0) * (p1 - p0) / (d1 - d0));
+		}
+	}
+}
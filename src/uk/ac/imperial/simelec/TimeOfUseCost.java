@@ -0,0 +1,92 @@
+package uk.ac.imperial.simelec;
+
+/**
+ * Calculates the cost of the electricity used by the loads under a time of
+ * use tariff. The day is divided into equal periods, each with its own price
+ * per kWh; for example, 48 prices give a half-hourly tariff.
+ *
+ * Loads can be added from several threads.
+ *
+ * @author James Keirstead
+ *
+ */
+public class TimeOfUseCost implements LoadOperator {
+
+	// Member fields
+	private final double[] prices;
+	private final int period; // minutes
+	private double cost;
+	private double energy; // kWh
+
+	/**
+	 * Creates a new TimeOfUseCost.
+	 *
+	 * @param prices
+	 *            an array giving the price per kWh in each period of the day.
+	 *            Its length must divide exactly into 1440 minutes.
+	 * @throws IllegalArgumentException
+	 *             if the number of prices does not divide the day
+	 */
+	public TimeOfUseCost(double[] prices) {
+		if (prices.length == 0 || 1440 % prices.length != 0)
+			throw new IllegalArgumentException(String.format(
+					"%d prices do not divide 1440 minutes", prices.length));
+		this.prices = prices.clone();
+		this.period = 1440 / prices.length;
+	}
+
+	/**
+	 * Creates a TimeOfUseCost for a two-rate tariff, such as Economy 7, with a
+	 * cheaper price during a night period.
+	 *
+	 * @param dayPrice
+	 *            a double giving the price per kWh during the day
+	 * @param nightPrice
+	 *            a double giving the price per kWh during the night
+	 * @param nightStart
+	 *            an int giving the hour at which the night period starts
+	 *            (0-23)
+	 * @param nightHours
+	 *            an int giving the length of the night period in hours
+	 * @return a TimeOfUseCost with hourly prices
+	 */
+	public static TimeOfUseCost twoRate(double dayPrice, double nightPrice,
+			int nightStart, int nightHours) {
+		double[] prices = new double[24];
+		for (int h = 0; h < prices.length; h++) {
+			int sinceStart = (h - nightStart + 24) % 24;
+			prices[h] = sinceStart < nightHours ? nightPrice : dayPrice;
+		}
+		return new TimeOfUseCost(prices);
+	}
+
+	@Override
+	public synchronized void loadCompleted(Load load) {
+		for (int p = 0; p < prices.length; p++) {
+			double wh = 0;
+			for (int i = p * period; i < (p + 1) * period; i++)
+				wh += load.consumption[i];
+			wh /= 60;
+			energy += wh / 1000;
+			cost += wh / 1000 * prices[p];
+		}
+	}
+
+	/**
+	 * Gets the total cost of the loads.
+	 *
+	 * @return a double giving the cost in the units of the prices
+	 */
+	public synchronized double getCost() {
+		return cost;
+	}
+
+	/**
+	 * Gets the total energy used by the loads.
+	 *
+	 * @return a double giving the energy in kWh
+	 */
+	public synchronized double getEnergy() {
+		return energy;
+	}
+}
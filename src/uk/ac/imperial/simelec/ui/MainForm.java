@@ -6,28 +6,43 @@ import java.net.URL;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.Calendar;
+import java.util.Collections;
+import java.util.List;
 import java.util.ResourceBundle;
 
+import uk.ac.imperial.simelec.BatchRunner;
+import uk.ac.imperial.simelec.HouseholdResult;
+import uk.ac.imperial.simelec.HouseholdSpec;
+import uk.ac.imperial.simelec.PopulationAggregate;
 import uk.ac.imperial.simelec.SimElec;
+import javafx.animation.KeyFrame;
+import javafx.animation.Timeline;
 import javafx.beans.property.SimpleStringProperty;
 import javafx.beans.property.StringProperty;
+import javafx.beans.value.ChangeListener;
+import javafx.beans.value.ObservableValue;
 import javafx.collections.FXCollections;
 import javafx.concurrent.Task;
+import javafx.concurrent.WorkerStateEvent;
 import javafx.event.ActionEvent;
 import javafx.event.EventHandler;
 import javafx.fxml.FXML;
+import javafx.scene.chart.LineChart;
+import javafx.scene.chart.XYChart;
 import javafx.scene.control.Button;
 import javafx.scene.control.CheckBox;
 import javafx.scene.control.ChoiceBox;
 import javafx.scene.control.Label;
 import javafx.scene.control.Menu;
 import javafx.scene.control.MenuBar;
+import javafx.scene.control.ProgressBar;
 import javafx.scene.control.TextField;
 import javafx.scene.input.MouseEvent;
 import javafx.scene.paint.Color;
 import javafx.stage.DirectoryChooser;
 import javafx.stage.Modality;
 import javafx.stage.Stage;
+import javafx.util.Duration;
 
 /**
  * Main form for SimElec model
@@ -51,7 +66,7 @@ public class MainForm implements javafx.fxml.Initializable {
 	@FXML
 	private CheckBox chbAppliances;
 	@FXML
-	private CheckBox chbRPlots;
+	private CheckBox chbPlots;
 	@FXML
 	private Button btnRunSimElec;
 	@FXML
@@ -66,6 +81,14 @@ public class MainForm implements javafx.fxml.Initializable {
 	private CheckBox chbLightTotals;
 	@FXML
 	private CheckBox chbGrandTotals;
+	@FXML
+	private TextField txfHouseholds;
+	@FXML
+	private ProgressBar prgBatch;
+	@FXML
+	private Button btnCancel;
+	@FXML
+	private LineChart<Number, Number> chtProfile;
 
 	private Stage stage;
 	private StringProperty statusText;
@@ -88,17 +111,24 @@ public class MainForm implements javafx.fxml.Initializable {
 
 		/*
 		 * Make sure that "total" options grey out when the models are turned
-		 * off
+		 * off, and the file options when a batch is to be run
 		 */
 		chbLighting.setOnAction(new EventHandler<ActionEvent>() {
 			public void handle(ActionEvent arg0) {
-				chbLightTotals.setDisable(!chbLighting.isSelected());
+				updateOptions();
 			}
 		});
 
 		chbAppliances.setOnAction(new EventHandler<ActionEvent>() {
 			public void handle(ActionEvent arg0) {
-				chbApplianceTotals.setDisable(!chbAppliances.isSelected());
+				updateOptions();
+			}
+		});
+
+		txfHouseholds.textProperty().addListener(new ChangeListener<String>() {
+			public void changed(ObservableValue<? extends String> value,
+					String oldText, String newText) {
+				updateOptions();
 			}
 		});
 
@@ -151,9 +181,15 @@ public class MainForm implements javafx.fxml.Initializable {
 						"Weekend");
 				final String out_dir = txfOutdir.getText();
 
+				int households = getHouseholds();
+
 				if (out_dir == null || out_dir.equals("")) {
-					lblStatus.setTextFill(Color.RED);
-					lblStatus.setText("Please select an output directory");
+					showError("Please select an output directory");
+				} else if (households < 1) {
+					showError("Please enter a valid number of households");
+				} else if (households > 1) {
+					runBatch(households, new HouseholdSpec(month, residents,
+							weekend), out_dir);
 				} else {
 
 					lblStatus.setTextFill(Color.BLACK);
@@ -169,19 +205,19 @@ public class MainForm implements javafx.fxml.Initializable {
 
 							boolean runLighting = chbLighting.isSelected();
 							boolean runAppliances = chbAppliances.isSelected();
-							boolean runRPlots = chbRPlots.isSelected();
+							boolean runPlots = chbPlots.isSelected();
 							
 							model.setRunAppliances(runAppliances);
 							model.setRunLighting(runLighting);
 							model.setCalculateGrandTotals(chbGrandTotals.isSelected());
 							
-							boolean Rdisabled = false;
-							if (!runAppliances && !runLighting && runRPlots) {
-								runRPlots = false;
-								Rdisabled = true;
+							boolean plotDisabled = false;
+							if (!runAppliances && !runLighting && runPlots) {
+								runPlots = false;
+								plotDisabled = true;
 							}
 
-							model.setMakeRPlots(runRPlots);
+							model.setMakePlots(runPlots);
 							model.setLightingTotalsOnly(chbLightTotals
 									.isSelected());
 							model.setAppliancesTotalsOnly(chbApplianceTotals
@@ -193,7 +229,7 @@ public class MainForm implements javafx.fxml.Initializable {
 								io.printStackTrace();
 							}
 
-							String msg = Rdisabled ? "Occupancy model complete.\nNo R results."
+							String msg = plotDisabled ? "Occupancy model complete.\nNo summary plot."
 									: "Simulation models complete.";
 
 							updateMessage(msg);
@@ -201,6 +237,7 @@ public class MainForm implements javafx.fxml.Initializable {
 						}
 					};
 
+					prgBatch.setVisible(false);
 					lblStatus.textProperty().bind(task.messageProperty());
 
 					Thread thread = new Thread(task);
@@ -212,6 +249,178 @@ public class MainForm implements javafx.fxml.Initializable {
 
 	}
 
+	/**
+	 * Enables the options which apply to the selected models and number of
+	 * households. A batch only writes the population totals, so the options
+	 * for the output files of a single household are disabled.
+	 */
+	private void updateOptions() {
+		boolean batch = getHouseholds() > 1;
+		chbLightTotals.setDisable(!chbLighting.isSelected() || batch);
+		chbApplianceTotals.setDisable(!chbAppliances.isSelected() || batch);
+		chbGrandTotals.setDisable(batch);
+		chbPlots.setDisable(batch);
+	}
+
+	/**
+	 * Gets the number of households entered by the user.
+	 * 
+	 * @return an int giving the number of households, or -1 if the entry is
+	 *         not valid
+	 */
+	private int getHouseholds() {
+		try {
+			return Integer.valueOf(txfHouseholds.getText().trim());
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+
+	/**
+	 * Shows an error message in the status label.
+	 * 
+	 * @param message
+	 *            a String giving the message
+	 */
+	private void showError(String message) {
+		lblStatus.textProperty().unbind();
+		lblStatus.setTextFill(Color.RED);
+		lblStatus.setText(message);
+	}
+
+	/**
+	 * Runs a batch of households on a pool of worker threads. The progress,
+	 * throughput and estimated time remaining are shown as the batch runs,
+	 * and the chart shows the mean demand of the households completed so far.
+	 * The mean demand is written to <code>population_totals.csv</code>. Only
+	 * the lighting and appliance models selected by the user are simulated.
+	 * 
+	 * @param households
+	 *            an int giving the number of households
+	 * @param spec
+	 *            the HouseholdSpec shared by every household
+	 * @param out_dir
+	 *            a String giving the output directory
+	 */
+	private void runBatch(final int households, HouseholdSpec spec,
+			final String out_dir) {
+
+		lblStatus.setTextFill(Color.BLACK);
+
+		List<HouseholdSpec> specs = Collections.nCopies(households, spec);
+		final BatchRunner runner = new BatchRunner(specs,
+				System.currentTimeMillis(), Runtime.getRuntime()
+						.availableProcessors());
+		runner.setRunLighting(chbLighting.isSelected());
+		runner.setRunAppliances(chbAppliances.isSelected());
+
+		final Task<PopulationAggregate> task = new Task<PopulationAggregate>() {
+
+			@Override
+			protected PopulationAggregate call() throws Exception {
+				updateMessage("Starting batch run...");
+				final long start = System.nanoTime();
+
+				PopulationAggregate result = runner
+						.run(new BatchRunner.Listener() {
+							public void householdCompleted(
+									HouseholdResult household, int completed) {
+								double seconds = (System.nanoTime() - start) / 1e9;
+								double rate = completed / seconds;
+								long eta = Math.round((households - completed)
+										/ rate);
+								updateProgress(completed, households);
+								updateMessage(String.format(
+										"%d of %d households%n"
+												+ "%.1f per second, %d:%02d left",
+										completed, households, rate, eta / 60,
+										eta % 60));
+							}
+						});
+
+				long count = result.getCount();
+				if (count > 0) {
+					new File(out_dir).mkdirs();
+					result.write(new File(out_dir, "population_totals.csv"), 1,
+							false);
+				}
+
+				updateMessage(runner.isCancelled() ? String.format(
+						"Batch cancelled after %d households.", count)
+						: "Batch run complete.");
+				return result;
+			}
+		};
+
+		// Refresh the chart twice a second while the batch runs
+		final Timeline refresh = new Timeline(new KeyFrame(
+				Duration.millis(500), new EventHandler<ActionEvent>() {
+					public void handle(ActionEvent e) {
+						updateChart(runner.getAggregate());
+					}
+				}));
+		refresh.setCycleCount(Timeline.INDEFINITE);
+
+		EventHandler<WorkerStateEvent> finished = new EventHandler<WorkerStateEvent>() {
+			public void handle(WorkerStateEvent e) {
+				refresh.stop();
+				updateChart(runner.getAggregate());
+				btnRunSimElec.setDisable(false);
+				btnCancel.setDisable(true);
+				btnCancel.setOnAction(null);
+				if (task.getException() != null) {
+					task.getException().printStackTrace();
+					showError("Batch run failed.");
+				}
+			}
+		};
+		task.setOnSucceeded(finished);
+		task.setOnFailed(finished);
+
+		btnCancel.setOnAction(new EventHandler<ActionEvent>() {
+			public void handle(ActionEvent e) {
+				runner.cancel();
+				btnCancel.setDisable(true);
+			}
+		});
+
+		btnRunSimElec.setDisable(true);
+		btnCancel.setDisable(false);
+		prgBatch.setVisible(true);
+		prgBatch.progressProperty().bind(task.progressProperty());
+		lblStatus.textProperty().bind(task.messageProperty());
+		chtProfile.getData().clear();
+
+		Thread thread = new Thread(task);
+		thread.setDaemon(true);
+		thread.start();
+		refresh.play();
+	}
+
+	/**
+	 * Shows the mean total demand of a population on the chart, at ten-minute
+	 * intervals.
+	 * 
+	 * @param aggregate
+	 *            the PopulationAggregate
+	 */
+	private void updateChart(PopulationAggregate aggregate) {
+		if (aggregate.getCount() == 0)
+			return;
+
+		double[] mean = aggregate.getMeanTotal();
+		XYChart.Series<Number, Number> series = new XYChart.Series<Number, Number>();
+		for (int i = 0; i < mean.length; i += 10) {
+			double sum = 0;
+			for (int j = i; j < i + 10; j++) {
+				sum += mean[j];
+			}
+			series.getData().add(
+					new XYChart.Data<Number, Number>(i / 60.0, sum / 10 / 1000));
+		}
+		chtProfile.getData().setAll(Collections.singletonList(series));
+	}
+
 	public void setStage(Stage primaryStage) {
 		this.stage = primaryStage;
 
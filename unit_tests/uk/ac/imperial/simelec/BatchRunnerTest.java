@@ -0,0 +1,75 @@
+package uk.ac.imperial.simelec;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class BatchRunnerTest {
+
+	List<HouseholdSpec> specs;
+	double eps = 0.00001;
+
+	@Before
+	public void setUp() throws Exception {
+		specs = new ArrayList<HouseholdSpec>();
+		for (int i = 0; i < 12; i++) {
+			specs.add(new HouseholdSpec(1 + i % 12, 1 + i % 5, i % 2 == 0));
+		}
+	}
+
+	@Test
+	public void testThreads() throws Exception {
+		PopulationAggregate a = new BatchRunner(specs, 42, 1).run(null);
+		PopulationAggregate b = new BatchRunner(specs, 42, 3).run(null);
+		assertEquals(12, a.getCount());
+		assertEquals(12, b.getCount());
+		assertArrayEquals(a.getMeanTotal(), b.getMeanTotal(), eps);
+	}
+
+	@Test
+	public void testModels() throws Exception {
+		PopulationAggregate all = new BatchRunner(specs, 42, 2).run(null);
+
+		BatchRunner runner = new BatchRunner(specs, 42, 2);
+		runner.setRunLighting(false);
+		PopulationAggregate a = runner.run(null);
+		assertArrayEquals(new double[1440], a.getMeanLighting(), eps);
+		assertArrayEquals(all.getMeanAppliances(), a.getMeanAppliances(), eps);
+
+		runner = new BatchRunner(specs, 42, 2);
+		runner.setRunAppliances(false);
+		PopulationAggregate l = runner.run(null);
+		assertArrayEquals(new double[1440], l.getMeanAppliances(), eps);
+		assertArrayEquals(all.getMeanLighting(), l.getMeanLighting(), eps);
+	}
+
+	@Test
+	public void testMatchesLockstep() throws Exception {
+		PopulationAggregate a = new BatchRunner(specs, 42, 2).run(null);
+		double[] total = new LockstepEngine(specs, 42, 0).run();
+		double[] mean = a.getMeanTotal();
+		for (int i = 0; i < total.length; i++) {
+			assertEquals(total[i] / specs.size(), mean[i], eps);
+		}
+	}
+
+	@Test
+	public void testCancel() throws Exception {
+		final BatchRunner runner = new BatchRunner(specs, 42, 1);
+		PopulationAggregate a = runner.run(new BatchRunner.Listener() {
+			@Override
+			public void householdCompleted(HouseholdResult result,
+					int completed) {
+				if (completed == 4)
+					runner.cancel();
+			}
+		});
+		assertTrue(runner.isCancelled());
+		assertEquals(4, a.getCount());
+	}
+
+}
@@ -0,0 +1,70 @@
+package uk.ac.imperial.simelec;
+
+import static org.junit.Assert.*;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class CalibrationFitterTest {
+
+	CalibrationFitter fitter;
+	double eps = 0.00001;
+
+	@Before
+	public void setUp() throws Exception {
+		fitter = new CalibrationFitter(42, 2);
+		fitter.setTolerance(0.1);
+		fitter.setSampleSizes(420, 840);
+		fitter.setMaxIterations(10);
+	}
+
+	@Test
+	public void testFit() throws Exception {
+		double fridge = ModelData.getApplianceCatalogue().calibration[ModelData
+				.getApplianceCatalogue().indexOf("FRIDGE")];
+
+		// Start from a poor calibration and double the kettle target
+		ModelParameters start = new ModelParameters();
+		start.setApplianceCalibration("FRIDGE", fridge / 2);
+		fitter.setTarget("KETTLE", 2 * fitter.getTarget("KETTLE"));
+		fitter.fit(start);
+
+		assertTrue(fitter.isConverged());
+		assertEquals(fitter.getTarget("FRIDGE"), fitter.getEnergy("FRIDGE"),
+				0.1 * fitter.getTarget("FRIDGE"));
+		assertEquals(fitter.getTarget("KETTLE"), fitter.getEnergy("KETTLE"),
+				0.1 * fitter.getTarget("KETTLE"));
+		assertTrue(fitter.getCalibration("FRIDGE") > 0.75 * fridge);
+
+		// Standby-only appliances are left unchanged
+		assertEquals(8.76, fitter.getEnergy("PHONE"), 0.001);
+		assertEquals(4.14823E-11, fitter.getCalibration("PHONE"), eps);
+	}
+
+	@Test
+	public void testLastIteration() throws Exception {
+		// A fit which runs out of iterations reports the energy simulated with
+		// the calibration it returns
+		fitter.setMaxIterations(1);
+		fitter.setTarget("KETTLE", 2 * fitter.getTarget("KETTLE"));
+		ModelParameters p = fitter.fit();
+		assertFalse(fitter.isConverged());
+		assertEquals(1, fitter.getIterations());
+		assertEquals(ModelData.getApplianceCatalogue().calibration[ModelData
+				.getApplianceCatalogue().indexOf("KETTLE")],
+				fitter.getCalibration("KETTLE"), 0);
+
+		double energy = fitter.getEnergy("KETTLE");
+		fitter.setMaxIterations(10);
+		fitter.setTolerance(100);
+		fitter.fit(p);
+		assertEquals(1, fitter.getIterations());
+		assertEquals(energy, fitter.getEnergy("KETTLE"), eps);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testUnknownAppliance() {
+		fitter.setTarget("TIME_MACHINE", 1);
+	}
+
+}
@@ -0,0 +1,77 @@
+package uk.ac.imperial.simelec;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class CoSimulationTest {
+
+	List<HouseholdSpec> specs;
+	double eps = 0.00001;
+
+	@Before
+	public void setUp() throws Exception {
+		specs = new ArrayList<HouseholdSpec>();
+		for (int i = 0; i < 20; i++) {
+			specs.add(new HouseholdSpec(1 + i % 12, 1 + i % 5, i % 3 == 0));
+		}
+	}
+
+	@Test
+	public void testParallelBlocks() throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			CoSimulation serial = new CoSimulation(specs, 42);
+			CoSimulation parallel = new CoSimulation(specs, 42, executor, 3);
+			for (int t = 0; t < 1440; t++) {
+				double[] a = serial.step(t).clone();
+				double[] b = parallel.step(t);
+				assertArrayEquals(a, b, eps);
+			}
+			assertEquals(1439, serial.getTime());
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void testCurtailment() throws Exception {
+		CoSimulation sim = new CoSimulation(specs, 42);
+		sim.setCurtailed(0, true);
+
+		// With no cycles started, only standby power is drawn
+		ApplianceState state = sim.getHousehold(0).getApplianceState();
+		ApplianceCatalogue c = state.getCatalogue();
+		double standby = 0;
+		for (int i = 0; i < c.size(); i++) {
+			if (state.isOwned(i))
+				standby += c.standby[i];
+		}
+
+		for (int t = 0; t < 1440; t++) {
+			sim.step(t);
+			assertEquals(standby, sim.getHousehold(0).getApplianceDemand(),
+					eps);
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testOrder() throws Exception {
+		CoSimulation sim = new CoSimulation(specs, 42);
+		sim.step(0);
+		sim.step(2);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testUnknownAppliance() throws Exception {
+		CoSimulation sim = new CoSimulation(specs, 42);
+		sim.setCurtailed(0, "TIME_MACHINE", true);
+	}
+
+}
@@ -0,0 +1,87 @@
+package uk.ac.imperial.simelec;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class DataSnapshotTest {
+
+	DataSnapshot csv;
+	DataSnapshot snapshot;
+	double eps = 0.00001;
+
+	@Before
+	public void setUp() throws Exception {
+		csv = DataSnapshot.fromCsv();
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		csv.write(out);
+		snapshot = DataSnapshot.read(new ByteArrayInputStream(out
+				.toByteArray()));
+	}
+
+	@Test
+	public void testData() {
+		for (int m = 0; m < 12; m++) {
+			assertArrayEquals(csv.irradiance[m], snapshot.irradiance[m]);
+		}
+		assertEquals(csv.bulbs.length, snapshot.bulbs.length);
+		for (int i = 0; i < csv.bulbs.length; i++) {
+			assertArrayEquals(csv.bulbs[i], snapshot.bulbs[i]);
+		}
+		for (int d = 0; d < 2; d++) {
+			for (int r = 1; r <= 5; r++) {
+				assertArrayEquals(csv.startStates[d][r],
+						snapshot.startStates[d][r], eps);
+				double[][] a = csv.transitions[d][r];
+				double[][] b = snapshot.transitions[d][r];
+				assertEquals(a.length, b.length);
+				for (int j = 0; j < a.length; j++) {
+					assertArrayEquals(a[j], b[j], eps);
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testAppliances() {
+		ApplianceCatalogue a = csv.appliances;
+		ApplianceCatalogue b = snapshot.appliances;
+		assertEquals(a.size(), b.size());
+		assertArrayEquals(a.ids, b.ids);
+		assertArrayEquals(a.kind, b.kind);
+		assertArrayEquals(a.calibration, b.calibration, eps);
+		assertArrayEquals(a.monthOn, b.monthOn);
+		for (int i = 0; i < a.size(); i++) {
+			assertEquals(a.laundry[i], b.laundry[i]);
+			for (int p = 0; p < 144; p++) {
+				assertEquals(a.getActivityProbability(i, true, 2, p),
+						b.getActivityProbability(i, true, 2, p), eps);
+			}
+		}
+	}
+
+	@Test
+	public void testStale() throws Exception {
+		assertTrue(snapshot.isCurrent());
+
+		// The digest of the CSV files follows the format identifiers
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		csv.write(out);
+		byte[] bytes = out.toByteArray();
+		bytes[12] ^= 1;
+		assertFalse(DataSnapshot.read(new ByteArrayInputStream(bytes))
+				.isCurrent());
+	}
+
+	@Test(expected = IOException.class)
+	public void testInvalid() throws Exception {
+		DataSnapshot.read(new ByteArrayInputStream(new byte[] { 1, 2, 3, 4,
+				5, 6, 7, 8 }));
+	}
+
+}
@@ -0,0 +1,88 @@
+package uk.ac.imperial.simelec;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class DoubleFormatterTest {
+
+	DoubleFormatter formatter;
+
+	@Before
+	public void setUp() throws Exception {
+		formatter = new DoubleFormatter();
+	}
+
+	@Test
+	public void testIntegers() {
+		assertEquals("0", formatter.format(0));
+		assertEquals("-0", formatter.format(-0.0));
+		assertEquals("100", formatter.format(100));
+		assertEquals("-2500", formatter.format(-2500));
+		assertEquals("9007199254740991", formatter.format((1L << 53) - 1));
+	}
+
+	@Test
+	public void testShortest() {
+		assertEquals("0.1", formatter.format(0.1));
+		assertEquals("0.3", formatter.format(0.3));
+		assertEquals("0.30000000000000004", formatter.format(0.1 + 0.2));
+		assertEquals("12.5", formatter.format(12.5));
+		assertEquals("-0.05", formatter.format(-0.05));
+		assertEquals("1.0E-7", formatter.format(1e-7));
+		assertEquals("1.0E20", formatter.format(1e20));
+		assertEquals("NaN", formatter.format(Double.NaN));
+	}
+
+	@Test
+	public void testRoundTrip() {
+		Random random = new Random(42);
+		byte[] b = new byte[DoubleFormatter.MAX_LENGTH + 3];
+		for (int i = 0; i < 100000; i++) {
+			double x;
+			switch (i % 4) {
+			case 0:
+				x = random.nextDouble() * 3000;
+				break;
+			case 1:
+				x = random.nextInt(100000) / 60.0;
+				break;
+			case 2:
+				x = Double.longBitsToDouble(random.nextLong());
+				break;
+			default:
+				x = -random.nextInt(1000000) / 100.0;
+			}
+			if (Double.isNaN(x))
+				continue;
+
+			String s = formatter.format(x);
+			assertEquals(s, x, Double.valueOf(s), 0);
+			assertTrue(s.length() <= Double.toString(x).length());
+
+			// Writing at an offset gives the same bytes
+			int end = formatter.format(x, b, 3);
+			assertEquals(s, new String(b, 3, end - 3));
+		}
+	}
+
+	@Test
+	public void testPrecision() {
+		DoubleFormatter f = new DoubleFormatter(2);
+		assertEquals("3.14", f.format(Math.PI));
+		assertEquals("2.5", f.format(2.5));
+		assertEquals("100", f.format(100.001));
+		assertEquals("0", f.format(-0.001));
+		assertEquals("-0.01", f.format(-0.006));
+		assertEquals("0", new DoubleFormatter(0).format(0.4));
+		assertEquals("1.0E20", f.format(1e20));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidPrecision() {
+		new DoubleFormatter(16);
+	}
+}
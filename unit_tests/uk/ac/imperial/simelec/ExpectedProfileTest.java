@@ -0,0 +1,111 @@
+package uk.ac.imperial.simelec;
+
+import static org.junit.Assert.*;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class ExpectedProfileTest {
+
+	HouseholdSpec spec;
+	ExpectedProfile profile;
+	double eps = 0.00001;
+
+	@Before
+	public void setUp() throws Exception {
+		spec = new HouseholdSpec(1, 2, false);
+		profile = new ExpectedProfile(spec);
+	}
+
+	@Test
+	public void testOccupancyDistribution() throws Exception {
+		double[][] dist = profile.getOccupancyDistribution();
+		assertEquals(144, dist.length);
+		for (double[] d : dist) {
+			double sum = 0;
+			for (double p : d)
+				sum += p;
+			assertEquals(1, sum, eps);
+		}
+
+		double[] start = ModelData.getOccupancyStartStates(2, false);
+		double sum = 0;
+		for (double p : start)
+			sum += p;
+		for (int k = 0; k < start.length; k++) {
+			assertEquals(start[k] / sum, dist[0][k], eps);
+		}
+	}
+
+	@Test
+	public void testMatchesSimulation() throws Exception {
+		ApplianceCatalogue c = ModelData.getApplianceCatalogue();
+		String[] ids = { "FRIDGE", "KETTLE", "TV1" };
+		int n = 2000;
+		double occupancy = 0;
+		double[] energy = new double[ids.length];
+		for (int h = 0; h < n; h++) {
+			RandomStreams streams = RandomStreams.forHousehold(42, h);
+			int[] occ = OccupancyModel.simulate(2, false,
+					streams.get(RandomStreams.OCCUPANCY));
+			for (int o : occ)
+				occupancy += o;
+
+			ApplianceState state = new ApplianceState(c, streams);
+			for (int j = 0; j < ids.length; j++) {
+				double[] consumption = new double[HouseholdSimulator.MINUTES];
+				state.simulate(c.indexOf(ids[j]), occ, false, 1, consumption);
+				for (double x : consumption)
+					energy[j] += x;
+			}
+		}
+
+		double expected = 0;
+		for (double o : profile.getMeanOccupancy())
+			expected += o;
+		assertEquals(expected / 144, occupancy / n / 144, 0.02);
+
+		for (int j = 0; j < ids.length; j++) {
+			double e = 0;
+			for (double x : profile.getApplianceDemand(ids[j]))
+				e += x;
+			assertEquals(e, energy[j] / n, 0.1 * e);
+		}
+	}
+
+	@Test
+	public void testStorageHeater() throws Exception {
+
+		// Storage heaters can only start between 00:30 and 00:40
+		double[] starts = profile.getApplianceStartRate("STORAGE_HEATER");
+		double sum = 0;
+		for (int t = 0; t < starts.length; t++) {
+			if (t <= 40 || t > 50)
+				assertEquals(0, starts[t], eps);
+			sum += starts[t];
+		}
+		double ownership = ModelData.getApplianceCatalogue().ownership[ModelData
+				.getApplianceCatalogue().indexOf("STORAGE_HEATER")];
+		assertEquals(ownership, sum, eps);
+	}
+
+	@Test
+	public void testParameters() throws Exception {
+		ModelParameters parameters = new ModelParameters();
+		parameters.setApplianceCalibration("FRIDGE", 0);
+		parameters.setBulbCalibration(0);
+		ExpectedProfile p = new ExpectedProfile(spec, parameters);
+
+		assertArrayEquals(new double[HouseholdSimulator.MINUTES],
+				p.getApplianceDemand("FRIDGE"), eps);
+		assertArrayEquals(new double[HouseholdSimulator.MINUTES],
+				p.getLightingSwitchOnRate(), eps);
+		assertArrayEquals(profile.getApplianceDemand("KETTLE"),
+				p.getApplianceDemand("KETTLE"), eps);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testUnknownAppliance() {
+		profile.getApplianceDemand("TIME_MACHINE");
+	}
+}
@@ -0,0 +1,159 @@
+package uk.ac.imperial.simelec;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class LightingConditionsTest {
+
+	int n = 20000;
+
+	/**
+	 * Hourly statistics of a sample of bulb-days: the number of switch-on
+	 * events and of lit minutes in each hour, with their sums of squares.
+	 */
+	private static class HourlyStats {
+		double[] events = new double[24];
+		double[] eventSquares = new double[24];
+		double[] lit = new double[24];
+		double[] litSquares = new double[24];
+
+		void add(int[] dayEvents, int[] dayLit) {
+			for (int h = 0; h < 24; h++) {
+				events[h] += dayEvents[h];
+				eventSquares[h] += dayEvents[h] * dayEvents[h];
+				lit[h] += dayLit[h];
+				litSquares[h] += dayLit[h] * dayLit[h];
+			}
+		}
+	}
+
+	private static double mean(double sum, int n) {
+		return sum / n;
+	}
+
+	private static double variance(double sum, double sumSquares, int n) {
+		double m = sum / n;
+		return (sumSquares / n - m * m) / n;
+	}
+
+	/**
+	 * Simulates a bulb-day with the per-minute loop of the original lighting
+	 * model, testing for low light and a switch-on event in every minute.
+	 */
+	private static void perMinute(int[] irradiance, float threshold,
+			int[] occupancy, float weight, RandomStream random, int[] events,
+			int[] lit) {
+		int t = 0;
+		while (t < 1440) {
+			boolean lowLight = irradiance[t] < threshold
+					|| random.nextDouble() < 0.05;
+			float effective = LightingConditions
+					.getEffectiveOccupancy(occupancy[t / 10]);
+			if (lowLight && random.nextDouble() < effective * weight) {
+				events[t / 60]++;
+				int duration = LightingModel.getLightDuration(random);
+				for (int j = 0; j < duration && t < 1440; j++) {
+					lit[t / 60]++;
+					t++;
+				}
+			} else {
+				t++;
+			}
+		}
+	}
+
+	/**
+	 * Simulates a bulb-day by drawing the switch-on events directly, as in
+	 * LightingModel.
+	 */
+	private static void eventSampled(LightingConditions conditions,
+			float weight, RandomStream random, int[] events, int[] lit) {
+		int t = conditions.nextSwitchOn(0, weight, random);
+		while (t >= 0) {
+			events[t / 60]++;
+			int duration = LightingModel.getLightDuration(random);
+			for (int j = 0; j < duration && t < 1440; j++) {
+				lit[t / 60]++;
+				t++;
+			}
+			t = conditions.nextSwitchOn(t, weight, random);
+		}
+	}
+
+	@Test
+	public void testMatchesPerMinuteModel() throws Exception {
+		int[] irradiance = ModelData.getIrradiance(1);
+
+		// The households are drawn from a common stream, so that both models
+		// see the same thresholds, occupancy and bulb weights
+		RandomStream households = new RandomStream(1);
+		RandomStream a = new RandomStream(2);
+		RandomStream b = new RandomStream(3);
+		HourlyStats reference = new HourlyStats();
+		HourlyStats sampled = new HourlyStats();
+
+		int[] occupancy = null;
+		for (int i = 0; i < n; i++) {
+			if (i % 10 == 0)
+				occupancy = OccupancyModel.simulate(1 + i % 5, i % 20 == 0,
+						households);
+			float threshold = (float) households.nextNormal(
+					LightingModel.MEAN_IRRADIANCE,
+					LightingModel.SD_IRRADIANCE);
+			float weight = Bulb.getCalibratedWeight(households, 0.02f);
+
+			int[] events = new int[24];
+			int[] lit = new int[24];
+			perMinute(irradiance, threshold, occupancy, weight, a, events, lit);
+			reference.add(events, lit);
+
+			events = new int[24];
+			lit = new int[24];
+			eventSampled(new LightingConditions(irradiance, threshold,
+					occupancy), weight, b, events, lit);
+			sampled.add(events, lit);
+		}
+
+		// The hourly means agree to within sampling error. The limit is wide
+		// enough for 48 comparisons.
+		for (int h = 0; h < 24; h++) {
+			double se = Math.sqrt(variance(reference.events[h],
+					reference.eventSquares[h], n)
+					+ variance(sampled.events[h], sampled.eventSquares[h], n));
+			assertEquals("Switch-on events in hour " + h, mean(
+					reference.events[h], n), mean(sampled.events[h], n),
+					4.5 * se + 1e-9);
+
+			se = Math.sqrt(variance(reference.lit[h], reference.litSquares[h],
+					n) + variance(sampled.lit[h], sampled.litSquares[h], n));
+			assertEquals("Lit minutes in hour " + h,
+					mean(reference.lit[h], n), mean(sampled.lit[h], n),
+					4.5 * se + 1e-9);
+		}
+	}
+
+	@Test
+	public void testSegments() {
+		int[] irradiance = new int[1440];
+		int[] occupancy = new int[144];
+		for (int t = 720; t < 1440; t++)
+			irradiance[t] = 100;
+		for (int i = 72; i < 144; i++)
+			occupancy[i] = 2;
+
+		// Dark and empty, then light and occupied
+		LightingConditions c = new LightingConditions(irradiance, 50,
+				occupancy);
+		assertEquals(2, c.getSegmentCount());
+
+		RandomStream random = new RandomStream(42);
+		assertEquals(-1, c.nextSwitchOn(0, 0f, random));
+		assertEquals(-1, c.nextSwitchOn(1440, 1f, random));
+
+		// Certain to be switched on once there are occupants
+		c = new LightingConditions(new int[1440], 50, occupancy);
+		assertEquals(720, c.nextSwitchOn(0, 1f, random));
+		assertEquals(800, c.nextSwitchOn(800, 1f, random));
+	}
+}
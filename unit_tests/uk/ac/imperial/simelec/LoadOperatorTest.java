@@ -0,0 +1,149 @@
+package uk.ac.imperial.simelec;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Map;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class LoadOperatorTest {
+
+	File dir;
+	double eps = 0.00001;
+
+	@Before
+	public void setUp() throws Exception {
+		dir = new File(System.getProperty("java.io.tmpdir"),
+				"simelec-operators-" + System.nanoTime());
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		FileUtils.deleteDirectory(dir);
+	}
+
+	private static Load load(String id, double[] consumption) {
+		Load l = new Load() {
+		};
+		l.id = id;
+		l.consumption = consumption;
+		return l;
+	}
+
+	@Test
+	public void testTimeOfUseCost() {
+		// 1 kW for the first hour and 2 kW for the last hour of the day
+		double[] c = new double[1440];
+		Arrays.fill(c, 0, 60, 1000);
+		Arrays.fill(c, 1380, 1440, 2000);
+
+		TimeOfUseCost cost = TimeOfUseCost.twoRate(0.15, 0.05, 23, 7);
+		cost.loadCompleted(load("A", c));
+		assertEquals(3, cost.getEnergy(), eps);
+		assertEquals(3 * 0.05, cost.getCost(), eps);
+
+		double[] prices = new double[48];
+		prices[47] = 0.5;
+		cost = new TimeOfUseCost(prices);
+		cost.loadCompleted(load("A", c));
+		assertEquals(0.5, cost.getCost(), eps);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidTariff() {
+		new TimeOfUseCost(new double[7]);
+	}
+
+	@Test
+	public void testApplianceEnergy() {
+		double[] c = new double[1440];
+		Arrays.fill(c, 0, 30, 2000);
+
+		ApplianceEnergy e = new ApplianceEnergy();
+		e.loadCompleted(load("KETTLE", c));
+		e.loadCompleted(load("TV1", new double[1440]));
+		e.loadCompleted(load("KETTLE", c));
+		assertEquals(2, e.getEnergy("KETTLE"), eps);
+		assertEquals(0, e.getEnergy("TV1"), eps);
+		assertEquals(0, e.getEnergy("IRON"), eps);
+		assertEquals(Arrays.asList("KETTLE", "TV1"), Arrays.asList(e
+				.getEnergy().keySet().toArray()));
+	}
+
+	@Test
+	public void testPeakDemand() {
+		double[] a = new double[1440];
+		double[] b = new double[1440];
+		Arrays.fill(a, 100);
+		a[600] = 500;
+		b[600] = 400;
+		b[700] = 800;
+
+		PeakDemand peak = new PeakDemand();
+		assertEquals(0, peak.getLoadFactor(), eps);
+		peak.loadCompleted(load("A", a));
+		peak.loadCompleted(load("B", b));
+		assertEquals(900, peak.getPeak(), eps);
+		assertEquals(600, peak.getPeakMinute());
+		double mean = (100 * 1438 + 900 + 900) / 1440.0;
+		assertEquals(mean / 900, peak.getLoadFactor(), eps);
+	}
+
+	@Test
+	public void testSimElec() throws Exception {
+		File out = new File(dir, "files");
+		SimElec model = new SimElec(1, 3, false, out.getPath(), 42);
+		model.run();
+		double[] expected = model.getGrandTotals();
+
+		// The same run without profiles
+		File none = new File(dir, "none");
+		PeakDemand peak = new PeakDemand();
+		ApplianceEnergy energy = new ApplianceEnergy();
+		TimeOfUseCost cost = new TimeOfUseCost(new double[] { 0.1 });
+		model = new SimElec(1, 3, false, none.getPath(), 42);
+		model.setWriteProfiles(false);
+		model.addOperator(peak);
+		model.addOperator(energy);
+		model.addOperator(cost);
+		model.run();
+
+		assertArrayEquals(expected, model.getGrandTotals(), eps);
+		assertArrayEquals(expected, peak.getDemand(), eps);
+		assertEquals(Arrays.asList("occupancy_output.csv"),
+				Arrays.asList(none.list()));
+
+		double total = 0;
+		for (Map.Entry<String, Double> e : energy.getEnergy().entrySet())
+			total += e.getValue();
+		assertEquals(cost.getEnergy(), total, eps);
+		assertEquals(0.1 * total, cost.getCost(), eps);
+		assertTrue(energy.getEnergy().containsKey("BULB_1"));
+		assertTrue(energy.getEnergy().containsKey("TV1"));
+	}
+
+	@Test
+	public void testLoadModel() throws Exception {
+		OccupancyModel occ = new OccupancyModel(2, true, dir.getPath());
+		occ.run();
+		ApplianceModel model = new ApplianceModel(6, true, dir.getPath(), occ);
+		ApplianceEnergy energy = new ApplianceEnergy();
+		model.setWriteProfiles(false);
+		model.addOperator(energy);
+		model.run();
+
+		assertFalse(new File(dir, "appliance_output.csv").exists());
+		assertEquals(model.getLoads().size(), energy.getEnergy().size());
+		for (Appliance a : model.getLoads()) {
+			double wh = 0;
+			for (int i = 1; i <= 1440; i++)
+				wh += a.getConsumption(i);
+			assertEquals(wh / 60000, energy.getEnergy(a.getId()), eps);
+		}
+	}
+}
@@ -0,0 +1,90 @@
+package uk.ac.imperial.simelec;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.StringWriter;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import au.com.bytecode.opencsv.CSVWriter;
+
+public class LoadTest {
+
+	double[] consumption;
+	double eps = 0.00001;
+
+	@Before
+	public void setUp() throws Exception {
+		consumption = new double[1440];
+		for (int i = 0; i < consumption.length; i++) {
+			consumption[i] = i < 720 ? 100 : 40 + (i % 2) * 20;
+		}
+	}
+
+	@Test
+	public void testBuildExportString() {
+		String[] tmp = Load.buildExportString("TEST", consumption);
+		assertEquals(1441, tmp.length);
+		assertEquals("TEST", tmp[0]);
+		assertEquals("100", tmp[1]);
+	}
+
+	@Test
+	public void testMeanPower() {
+		String[] tmp = Load.buildExportString("TEST", consumption, 30, false);
+		assertEquals(49, tmp.length);
+		assertEquals(100, Double.valueOf(tmp[1]), eps);
+		assertEquals(50, Double.valueOf(tmp[48]), eps);
+	}
+
+	@Test
+	public void testEnergy() {
+		String[] tmp = Load.buildExportString("TEST", consumption, 60, true);
+		assertEquals(25, tmp.length);
+		assertEquals(100, Double.valueOf(tmp[1]), eps);
+		assertEquals(50, Double.valueOf(tmp[24]), eps);
+	}
+
+	@Test
+	public void testPrecision() {
+		consumption[0] = 1 / 3.0;
+		String[] tmp = Load.buildExportString("TEST", consumption, 1, false, 2);
+		assertEquals("0.33", tmp[1]);
+		assertEquals("100", tmp[2]);
+		tmp = Load.buildExportString("TEST", consumption, 1, false, -1);
+		assertEquals(1 / 3.0, Double.valueOf(tmp[1]), 0);
+	}
+
+	@Test
+	public void testExportWriter() throws Exception {
+		consumption[1] = 1 / 3.0;
+		consumption[2] = -12.25;
+		for (int resolution : new int[] { 1, 30 }) {
+			for (int precision : new int[] { -1, 2 }) {
+				StringWriter expected = new StringWriter();
+				CSVWriter csv = new CSVWriter(expected, ',', '\0');
+				csv.writeNext(Load.buildExportString("TEST", consumption,
+						resolution, true, precision));
+				csv.writeNext(Load.buildExportString("TEST2", consumption,
+						resolution, true, precision));
+				csv.close();
+
+				ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+				ExportWriter writer = new ExportWriter(bytes, resolution, true,
+						precision);
+				writer.writeRow("TEST", consumption);
+				writer.writeRow("TEST2", consumption);
+				writer.close();
+				assertEquals(expected.toString(), bytes.toString());
+			}
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidResolution() {
+		Load.buildExportString("TEST", consumption, 7, false);
+	}
+
+}
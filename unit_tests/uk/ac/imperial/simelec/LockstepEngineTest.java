@@ -0,0 +1,108 @@
+package uk.ac.imperial.simelec;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class LockstepEngineTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	List<HouseholdSpec> specs;
+	double eps = 0.00001;
+
+	@Before
+	public void setUp() throws Exception {
+		specs = new ArrayList<HouseholdSpec>();
+		specs.add(new HouseholdSpec(1, 2, false));
+		specs.add(new HouseholdSpec(7, 4, true));
+		specs.add(new HouseholdSpec(11, 1, false));
+	}
+
+	/**
+	 * Checks that a HouseholdSimulator gives the same demand as the lighting
+	 * and appliance models with the same parameters.
+	 */
+	private void assertMatchesModels(ModelParameters parameters)
+			throws Exception {
+		HouseholdSpec spec = specs.get(1);
+		String dir = folder.newFolder().getPath();
+
+		OccupancyModel occ = new OccupancyModel(spec.getResidents(),
+				spec.isWeekend(), dir);
+		occ.setRandomStreams(new RandomStreams(42));
+		ApplianceModel model = new ApplianceModel(spec.getMonth(),
+				spec.isWeekend(), dir, occ);
+		model.setRandomStreams(new RandomStreams(42));
+		model.setParameters(parameters);
+		model.run();
+		double[] expected = model.getTotalConsumption();
+		LightingModel lights = new LightingModel(spec.getMonth(), dir, occ);
+		lights.setRandomStreams(new RandomStreams(42));
+		lights.setParameters(parameters);
+		lights.run();
+		double[] lighting = lights.getTotalConsumption();
+
+		HouseholdSimulator h = new HouseholdSimulator(spec,
+				new RandomStreams(42), parameters);
+		assertArrayEquals(occ.getOccupancy(), h.getOccupancy());
+		for (int t = 0; t < expected.length; t++) {
+			h.step();
+			assertEquals(expected[t], h.getApplianceDemand(), eps);
+			assertEquals(lighting[t], h.getLightingDemand(), eps);
+		}
+		assertTrue(h.isFinished());
+	}
+
+	@Test
+	public void testMatchesModels() throws Exception {
+		assertMatchesModels(new ModelParameters());
+
+		ModelParameters p = new ModelParameters();
+		p.setMeanIrradiance(30);
+		p.setBulbCalibration(0.02);
+		p.setTemperatureModifier(7, 2);
+		p.setApplianceCalibration("KETTLE", 0.1);
+		assertMatchesModels(p);
+	}
+
+	@Test
+	public void testAggregate() throws Exception {
+		LockstepEngine engine = new LockstepEngine(specs, 42, 0);
+		List<HouseholdSimulator> households = engine.getHouseholds();
+		assertEquals(3, households.size());
+
+		while (!engine.isFinished()) {
+			double total = engine.step();
+			double sum = 0;
+			for (HouseholdSimulator h : households) {
+				assertEquals(engine.getTime(), h.getTime());
+				sum += h.getDemand();
+			}
+			assertEquals(sum, total, eps);
+		}
+		assertEquals(1439, engine.getTime());
+	}
+
+	@Test
+	public void testReproducible() throws Exception {
+		double[] a = new LockstepEngine(specs, 42, 0).run();
+		double[] b = new LockstepEngine(specs, 42, 0).run();
+		assertArrayEquals(a, b, eps);
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testFinished() throws Exception {
+		LockstepEngine engine = new LockstepEngine(specs, 42, 0);
+		engine.run();
+		engine.step();
+	}
+
+}
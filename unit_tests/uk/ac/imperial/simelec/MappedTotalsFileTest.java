@@ -0,0 +1,127 @@
+package uk.ac.imperial.simelec;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ReadOnlyBufferException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class MappedTotalsFileTest {
+
+	File file;
+	double eps = 0.00001;
+
+	@Before
+	public void setUp() throws Exception {
+		file = new File(System.getProperty("java.io.tmpdir"), "simelec-totals-"
+				+ System.nanoTime());
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		file.delete();
+	}
+
+	private static double[] profile(long record) {
+		double[] totals = new double[MappedTotalsFile.VALUES];
+		for (int i = 0; i < totals.length; i++)
+			totals[i] = record * 10000 + i;
+		return totals;
+	}
+
+	@Test
+	public void testChunks() throws Exception {
+		// Three records to a chunk, so that records fall across four chunks
+		MappedTotalsFile f = MappedTotalsFile.create(file, 10,
+				3 * MappedTotalsFile.VALUES * 8);
+		for (int r = 9; r >= 0; r -= 2)
+			f.write(r, profile(r));
+		f.force();
+
+		MappedTotalsFile g = MappedTotalsFile.open(file, true);
+		assertEquals(10, g.getRecords());
+		for (int r = 0; r < 10; r++) {
+			assertEquals(r % 2 == 1, g.isWritten(r));
+			double[] expected = r % 2 == 1 ? profile(r)
+					: new double[MappedTotalsFile.VALUES];
+			assertArrayEquals(expected, g.read(r), eps);
+		}
+	}
+
+	@Test
+	public void testBatchRunner() throws Exception {
+		List<HouseholdSpec> specs = new ArrayList<HouseholdSpec>();
+		for (int i = 0; i < 8; i++)
+			specs.add(new HouseholdSpec(1 + i, 1 + i % 5, i % 2 == 0));
+
+		final List<HouseholdResult> results = new ArrayList<HouseholdResult>();
+		final MappedTotalsFile f = MappedTotalsFile.create(file, 8);
+		new BatchRunner(specs, 42, 4).run(new BatchRunner.Listener() {
+			public void householdCompleted(HouseholdResult result,
+					int completed) {
+				f.householdCompleted(result, completed);
+				synchronized (results) {
+					results.add(result);
+				}
+			}
+		});
+		f.force();
+
+		MappedTotalsFile g = MappedTotalsFile.open(file, true);
+		assertEquals(8, results.size());
+		for (HouseholdResult r : results) {
+			assertArrayEquals(r.getTotal(), g.read(r.getHousehold()), eps);
+		}
+	}
+
+	@Test
+	public void testSimElec() throws Exception {
+		File dir = new File(file.getPath() + "-out");
+		MappedTotalsFile f = MappedTotalsFile.create(file, 3);
+		SimElec model = new SimElec(1, 2, false, dir.getPath(), 42);
+		model.setTotalsFile(f, 1);
+		model.run();
+		FileUtils.deleteDirectory(dir);
+
+		assertFalse(f.isWritten(0));
+		assertTrue(f.isWritten(1));
+		assertArrayEquals(model.getGrandTotals(), f.read(1), eps);
+
+		// The totals are written even if totals.csv is not
+		double[] expected = model.getGrandTotals();
+		model = new SimElec(1, 2, false, dir.getPath(), 42);
+		model.setCalculateGrandTotals(false);
+		model.setTotalsFile(f, 2);
+		model.run();
+		assertFalse(new File(dir, "totals.csv").exists());
+		FileUtils.deleteDirectory(dir);
+		assertArrayEquals(expected, f.read(2), eps);
+	}
+
+	@Test(expected = ReadOnlyBufferException.class)
+	public void testReadOnly() throws Exception {
+		MappedTotalsFile.create(file, 1);
+		MappedTotalsFile.open(file, true).write(0, profile(0));
+	}
+
+	@Test(expected = IndexOutOfBoundsException.class)
+	public void testOutOfRange() throws Exception {
+		MappedTotalsFile.create(file, 2).write(2, profile(2));
+	}
+
+	@Test(expected = IOException.class)
+	public void testInvalid() throws Exception {
+		FileOutputStream out = new FileOutputStream(file);
+		out.write(new byte[64]);
+		out.close();
+		MappedTotalsFile.open(file, false);
+	}
+}
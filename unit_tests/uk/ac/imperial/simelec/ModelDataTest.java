@@ -0,0 +1,82 @@
+package uk.ac.imperial.simelec;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileWriter;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ModelDataTest {
+
+	File dir;
+
+	@Before
+	public void setUp() throws Exception {
+		dir = new File(System.getProperty("java.io.tmpdir"), "simelec-data-"
+				+ System.nanoTime());
+		dir.mkdirs();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		ModelData.setDataDirectories();
+		FileUtils.deleteDirectory(dir);
+	}
+
+	@Test
+	public void testDataDirectories() throws Exception {
+		int bundled = ModelData.getBulbConfigurations().length;
+
+		// A custom bulbs file with ten header lines
+		FileWriter w = new FileWriter(new File(dir, "bulbs.csv"));
+		for (int i = 0; i < 10; i++)
+			w.write("header\n");
+		w.write("1,2,100,60,0\n2,1,40,0,0\n3,3,9,9,9\n");
+		w.close();
+
+		ModelData.setDataDirectories(dir);
+		int[][] bulbs = ModelData.getBulbConfigurations();
+		assertEquals(3, bulbs.length);
+		assertArrayEquals(new int[] { 100, 60 }, bulbs[0]);
+		assertArrayEquals(new int[] { 40 }, bulbs[1]);
+
+		// Other files still come from the bundled data
+		assertEquals(1440, ModelData.getIrradiance(1).length);
+
+		ModelData.setDataDirectories();
+		assertEquals(bundled, ModelData.getBulbConfigurations().length);
+	}
+
+	@Test
+	public void testDataDigest() throws Exception {
+		SimElec model = new SimElec(1, 2, false, dir.getPath(), 42);
+		String bundled = model.getSpecification();
+		assertEquals("", ModelData.getDataDigest());
+
+		FileUtils.writeStringToFile(new File(dir, "bulbs.csv"), "a");
+		ModelData.setDataDirectories(dir);
+		String a = ModelData.getDataDigest();
+		assertEquals(40, a.length());
+		assertEquals(bundled + "|data=" + a, model.getSpecification());
+
+		// Changed data give a different cache key
+		FileUtils.writeStringToFile(new File(dir, "bulbs.csv"), "b");
+		ModelData.setDataDirectories(dir);
+		assertFalse(a.equals(ModelData.getDataDigest()));
+
+		// Files which aren't data files are ignored
+		String b = ModelData.getDataDigest();
+		FileUtils.writeStringToFile(new File(dir, "notes.txt"), "c");
+		ModelData.setDataDirectories(dir);
+		assertEquals(b, ModelData.getDataDigest());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testMissingDirectory() {
+		ModelData.setDataDirectories(new File(dir, "missing"));
+	}
+}
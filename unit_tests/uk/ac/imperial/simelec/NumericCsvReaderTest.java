@@ -0,0 +1,97 @@
+package uk.ac.imperial.simelec;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+
+import org.junit.Test;
+
+public class NumericCsvReaderTest {
+
+	private static NumericCsvReader reader(String s, int skip) throws Exception {
+		return new NumericCsvReader(new ByteArrayInputStream(s.getBytes("UTF-8")),
+				skip);
+	}
+
+	@Test
+	public void testRows() throws Exception {
+		NumericCsvReader r = reader("header, 'with' \"quotes\"\r\nskip\r\n"
+				+ "1,2,3\r\n\r\nFRIDGE,,-4\n5", 2);
+
+		assertTrue(r.next());
+		assertEquals(3, r.getColumnCount());
+		assertEquals(1, r.getInt(0));
+		assertEquals(3, r.getInt(2));
+
+		// Blank lines are rows with one empty cell
+		assertTrue(r.next());
+		assertEquals(1, r.getColumnCount());
+		assertEquals("", r.getString(0));
+
+		assertTrue(r.next());
+		assertEquals(3, r.getColumnCount());
+		assertEquals("FRIDGE", r.getString(0));
+		assertEquals("", r.getString(1));
+		assertEquals(-4, r.getInt(2));
+
+		// The last line has no newline
+		assertTrue(r.next());
+		assertEquals(5, r.getInt(0));
+		assertFalse(r.next());
+		assertFalse(r.next());
+	}
+
+	@Test
+	public void testNumbers() throws Exception {
+		String[] values = { "0", "0.000", "-0", "-0.0", "1", "+2", "-17",
+				"0.163", "271.1319969", "6115.759329", "4.14823E-11",
+				"1.90259e-11", "8.22434E-4", "1e3", "2.5E+2", "0.1",
+				"0.30000000000000004", "123456789012345678901234567890",
+				"9007199254740993", "16777217", "3.4028235E38", "1e-320",
+				" 12.5 " };
+		StringBuilder sb = new StringBuilder();
+		for (String v : values) {
+			sb.append(v).append(',');
+		}
+		NumericCsvReader r = reader(sb.toString(), 0);
+		assertTrue(r.next());
+		for (int i = 0; i < values.length; i++) {
+			assertEquals(values[i], Double.valueOf(values[i]),
+					(Double) r.getDouble(i));
+			assertEquals(values[i], Float.valueOf(values[i]),
+					(Float) r.getFloat(i));
+		}
+		assertEquals(-17, r.getInt(6));
+	}
+
+	@Test
+	public void testLongRow() throws Exception {
+		StringBuilder sb = new StringBuilder("skipped\n");
+		for (int i = 0; i < 50000; i++) {
+			sb.append(i).append(',');
+		}
+		sb.append("0.5\n1\n");
+		NumericCsvReader r = reader(sb.toString(), 1);
+		assertTrue(r.next());
+		assertEquals(50001, r.getColumnCount());
+		assertEquals(49999, r.getInt(49999));
+		assertEquals(0.5, r.getDouble(50000), 0);
+		assertTrue(r.next());
+		assertEquals(1, r.getInt(0));
+		assertFalse(r.next());
+	}
+
+	@Test(expected = NumberFormatException.class)
+	public void testNotAnInteger() throws Exception {
+		NumericCsvReader r = reader("1.5", 0);
+		r.next();
+		r.getInt(0);
+	}
+
+	@Test(expected = NumberFormatException.class)
+	public void testNotANumber() throws Exception {
+		NumericCsvReader r = reader("FRIDGE", 0);
+		r.next();
+		r.getDouble(0);
+	}
+}
@@ -0,0 +1,103 @@
+package uk.ac.imperial.simelec;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.GZIPInputStream;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ParallelGzipOutputStreamTest {
+
+	File dir;
+	double eps = 0.00001;
+
+	@Before
+	public void setUp() throws Exception {
+		dir = new File(System.getProperty("java.io.tmpdir"), "simelec-gzip-"
+				+ System.nanoTime());
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		FileUtils.deleteDirectory(dir);
+	}
+
+	private static byte[] decompress(byte[] data) throws Exception {
+		InputStream in = new GZIPInputStream(new ByteArrayInputStream(data));
+		byte[] result = IOUtils.toByteArray(in);
+		in.close();
+		return result;
+	}
+
+	@Test
+	public void testBlocks() throws Exception {
+		byte[] data = new byte[100000];
+		Random random = new Random(42);
+		for (int i = 0; i < data.length; i++)
+			data[i] = (byte) ('0' + random.nextInt(10));
+
+		ExecutorService executor = Executors.newFixedThreadPool(3);
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ParallelGzipOutputStream out = new ParallelGzipOutputStream(bytes,
+				executor, 1000);
+		out.write(data[0]);
+		out.write(data, 1, 12344);
+		out.flush();
+		out.write(data, 12345, data.length - 12345);
+		out.close();
+		executor.shutdown();
+
+		assertArrayEquals(data, decompress(bytes.toByteArray()));
+	}
+
+	@Test
+	public void testEmpty() throws Exception {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		new ParallelGzipOutputStream(bytes).close();
+		assertEquals(0, decompress(bytes.toByteArray()).length);
+	}
+
+	@Test
+	public void testSimElec() throws Exception {
+		File plain = new File(dir, "plain");
+		File gz = new File(dir, "gz");
+
+		SimElec a = new SimElec(1, 2, false, plain.getPath(), 42);
+		a.setCommonRandomNumbers(true);
+		a.run();
+
+		SimElec b = new SimElec(1, 2, false, gz.getPath(), 42);
+		b.setCommonRandomNumbers(true);
+		b.setCompressedOutput(true);
+		b.run();
+
+		String[] names = { "occupancy_output.csv", "lighting_output.csv",
+				"appliance_output.csv", "totals.csv" };
+		for (String name : names) {
+			assertFalse(new File(gz, name).exists());
+			assertArrayEquals(FileUtils.readFileToByteArray(new File(plain,
+					name)), decompress(FileUtils.readFileToByteArray(new File(
+					gz, name + ".gz"))));
+		}
+
+		// The compressed occupancy can be read back in place of a new run
+		SimElec c = new SimElec(1, 2, false, gz.getPath(), 42);
+		c.setCommonRandomNumbers(true);
+		c.setRunOccupancy(false);
+		c.run();
+		assertArrayEquals(a.getGrandTotals(), c.getGrandTotals(), eps);
+		assertTrue(new File(gz, "totals.csv").exists());
+		assertFalse(new File(gz, "totals.csv.gz").exists());
+	}
+}
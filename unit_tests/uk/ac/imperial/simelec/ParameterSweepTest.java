@@ -0,0 +1,97 @@
+package uk.ac.imperial.simelec;
+
+import static org.junit.Assert.*;
+
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class ParameterSweepTest {
+
+	List<HouseholdSpec> specs;
+	double eps = 0.00001;
+
+	@Before
+	public void setUp() throws Exception {
+		specs = new ArrayList<HouseholdSpec>();
+		for (int i = 0; i < 6; i++) {
+			specs.add(new HouseholdSpec(1 + i % 12, 1 + i % 5, i % 2 == 0));
+		}
+	}
+
+	@Test
+	public void testGrid() {
+		ParameterSweep sweep = new ParameterSweep(specs, 42, 1);
+		sweep.addAxis(ModelParameters.MEAN_IRRADIANCE, 40, 60, 80);
+		sweep.addAxis(ModelParameters.BULB_CALIBRATION, 0.004, 0.008);
+		assertEquals(6, sweep.size());
+		assertArrayEquals(new double[] { 40, 0.004 }, sweep.getValues(0), eps);
+		assertArrayEquals(new double[] { 40, 0.008 }, sweep.getValues(1), eps);
+		assertArrayEquals(new double[] { 80, 0.008 }, sweep.getValues(5), eps);
+	}
+
+	@Test
+	public void testDefaults() throws Exception {
+		PopulationAggregate a = new BatchRunner(specs, 42, 1).run(null);
+
+		ModelParameters p = new ModelParameters();
+		p.setBulbCalibration(Bulb.CALIBRATION);
+		PopulationAggregate b = new BatchRunner(specs, 42, 2, p).run(null);
+		assertArrayEquals(a.getMeanTotal(), b.getMeanTotal(), eps);
+	}
+
+	@Test
+	public void testOverrides() throws Exception {
+		ParameterSweep sweep = new ParameterSweep(specs, 42, 2);
+		sweep.addAxis(ModelParameters.BULB_CALIBRATION, 0, 0.008153686);
+		sweep.addAxis("calibration.fridge", 0, 1);
+
+		final List<ParameterSweep.Point> points = new ArrayList<ParameterSweep.Point>();
+		sweep.run(new ParameterSweep.Listener() {
+			@Override
+			public void pointCompleted(ParameterSweep.Point point) {
+				points.add(point);
+			}
+		});
+		assertEquals(4, points.size());
+
+		// No bulbs are switched on without a weight
+		assertEquals(0, points.get(0).getLightingEnergy(), eps);
+		assertTrue(points.get(2).getLightingEnergy() > 0);
+
+		// The lighting is unaffected by the appliances
+		assertEquals(points.get(2).getLightingEnergy(), points.get(3)
+				.getLightingEnergy(), eps);
+		assertTrue(points.get(1).getApplianceEnergy() > points.get(0)
+				.getApplianceEnergy());
+	}
+
+	@Test
+	public void testTable() throws Exception {
+		ParameterSweep sweep = new ParameterSweep(specs, 42, 1);
+		sweep.addAxis(ModelParameters.SD_IRRADIANCE, 5, 10);
+		StringWriter out = new StringWriter();
+		sweep.run(out);
+
+		String[] lines = out.toString().split("\n");
+		assertEquals(3, lines.length);
+		assertTrue(lines[0].startsWith("point,sd_irradiance,households"));
+		assertTrue(lines[2].startsWith("1,10.0,6,"));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testUnknownParameter() {
+		new ParameterSweep(specs, 42, 1).addAxis("warp_factor", 1);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testUnknownAppliance() throws Exception {
+		ParameterSweep sweep = new ParameterSweep(specs, 42, 1);
+		sweep.addAxis("calibration.TIME_MACHINE", 1);
+		sweep.run(new StringWriter());
+	}
+
+}
@@ -0,0 +1,140 @@
+package uk.ac.imperial.simelec;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class PopulationAggregateTest {
+
+	List<HouseholdSpec> specs;
+	double eps = 0.00001;
+
+	@Before
+	public void setUp() throws Exception {
+		specs = new ArrayList<HouseholdSpec>();
+		for (int i = 0; i < 6; i++) {
+			specs.add(new HouseholdSpec(1 + i % 12, 1 + i % 5, i % 2 == 0));
+		}
+	}
+
+	private static HouseholdResult result(double lighting, double appliances) {
+		double[] l = new double[HouseholdSimulator.MINUTES];
+		double[] a = new double[HouseholdSimulator.MINUTES];
+		l[0] = lighting;
+		a[0] = appliances;
+		a[1] = 2 * appliances;
+		return new HouseholdResult(0, new HouseholdSpec(1, 1, false),
+				new int[144], l, a);
+	}
+
+	@Test
+	public void testStatistics() {
+		PopulationAggregate a = new PopulationAggregate();
+		a.add(result(60, 100));
+		a.add(result(0, 300));
+		a.add(result(120, 200));
+
+		assertEquals(3, a.getCount());
+		assertEquals(60, a.getMean(PopulationAggregate.LIGHTING)[0], eps);
+		assertEquals(60,
+				a.getStandardDeviation(PopulationAggregate.LIGHTING)[0], eps);
+		assertEquals(120, a.getMaximum(PopulationAggregate.LIGHTING)[0], eps);
+		assertEquals(260, a.getMean(PopulationAggregate.TOTAL)[0], eps);
+		assertEquals(400, a.getMean(PopulationAggregate.APPLIANCES)[1], eps);
+		assertEquals(0, a.getMean(PopulationAggregate.TOTAL)[2], eps);
+
+		// Daily energy is three times the appliance base in W-min
+		assertEquals(600.0 / 60,
+				a.getMeanEnergy(PopulationAggregate.APPLIANCES), eps);
+		assertEquals(300.0 / 60,
+				a.getEnergyStandardDeviation(PopulationAggregate.APPLIANCES),
+				eps);
+
+		// Peaks are at minute 1 for appliances
+		assertEquals(400, a.getMeanPeak(PopulationAggregate.APPLIANCES), eps);
+		assertEquals(200,
+				a.getPeakStandardDeviation(PopulationAggregate.APPLIANCES), eps);
+		assertEquals(600, a.getMaximumPeak(PopulationAggregate.APPLIANCES), eps);
+	}
+
+	@Test
+	public void testEmpty() {
+		PopulationAggregate a = new PopulationAggregate();
+		assertEquals(0, a.getCount());
+		assertEquals(0, a.getMeanTotal()[0], eps);
+		assertEquals(0, a.getMeanEnergy(PopulationAggregate.TOTAL), eps);
+		assertEquals(0, a.getPeakStandardDeviation(PopulationAggregate.TOTAL),
+				eps);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNonIntegral() {
+		new PopulationAggregate().add(result(0.5, 0));
+	}
+
+	@Test
+	public void testMerge() throws Exception {
+		PopulationAggregate a = new BatchRunner(specs.subList(0, 2), 42, 0, 1,
+				new ModelParameters()).run(null);
+		PopulationAggregate b = new BatchRunner(specs.subList(2, 4), 42, 2, 1,
+				new ModelParameters()).run(null);
+		PopulationAggregate c = new BatchRunner(specs.subList(4, 6), 42, 4, 1,
+				new ModelParameters()).run(null);
+		PopulationAggregate all = new BatchRunner(specs, 42, 1).run(null);
+
+		// (a + b) + c
+		PopulationAggregate x = a.copy();
+		x.merge(b);
+		x.merge(c);
+
+		// a + (b + c)
+		PopulationAggregate bc = b.copy();
+		bc.merge(c);
+		PopulationAggregate y = a.copy();
+		y.merge(bc);
+
+		// c + (a + b)
+		PopulationAggregate ab = a.copy();
+		ab.merge(b);
+		PopulationAggregate z = c.copy();
+		z.merge(ab);
+
+		assertEquals(x, y);
+		assertEquals(x, z);
+		assertEquals(all, x);
+		assertEquals(6, x.getCount());
+	}
+
+	@Test
+	public void testRoundTrip() throws Exception {
+		PopulationAggregate a = new BatchRunner(specs, 42, 1).run(null);
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		a.write(bytes);
+		PopulationAggregate b = PopulationAggregate
+				.read(new ByteArrayInputStream(bytes.toByteArray()));
+		assertEquals(a, b);
+		assertArrayEquals(a.getStandardDeviation(PopulationAggregate.TOTAL),
+				b.getStandardDeviation(PopulationAggregate.TOTAL), eps);
+	}
+
+	@Test(expected = IOException.class)
+	public void testInvalid() throws Exception {
+		PopulationAggregate.read(new ByteArrayInputStream(new byte[] { 1, 2,
+				3, 4, 5, 6, 7, 8 }));
+	}
+
+	@Test(expected = IOException.class)
+	public void testTruncated() throws Exception {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		new PopulationAggregate().write(bytes);
+		byte[] b = bytes.toByteArray();
+		PopulationAggregate.read(new ByteArrayInputStream(b, 0, b.length / 2));
+	}
+}
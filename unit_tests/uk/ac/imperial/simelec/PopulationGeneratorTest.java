@@ -0,0 +1,107 @@
+package uk.ac.imperial.simelec;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class PopulationGeneratorTest {
+
+	PopulationGenerator generator;
+	double eps = 0.00001;
+
+	@Before
+	public void setUp() throws Exception {
+		generator = new PopulationGenerator(42);
+	}
+
+	@Test
+	public void testShards() {
+		List<HouseholdSpec> all = generator.getShard(0, 100);
+		List<HouseholdSpec> shard = generator.getShard(60, 40);
+		assertEquals(40, shard.size());
+		for (int i = 0; i < shard.size(); i++) {
+			assertEquals(all.get(60 + i), shard.get(i));
+		}
+		assertEquals(all, new PopulationGenerator(42).getShard(0, 100));
+		assertEquals(3, PopulationGenerator.getShardCount(250, 100));
+	}
+
+	@Test
+	public void testWeights() {
+		generator.setResidentWeights(0, 3, 0, 1, 0);
+		generator.setMonthWeights(0, 0, 0, 0, 0, 0, 1, 0, 0, 0, 0, 0);
+		generator.setWeekendProbability(0.5);
+
+		int n = 20000;
+		int two = 0;
+		int weekends = 0;
+		for (HouseholdSpec s : generator.getShard(0, n)) {
+			assertEquals(7, s.getMonth());
+			assertTrue(s.getResidents() == 2 || s.getResidents() == 4);
+			if (s.getResidents() == 2)
+				two++;
+			if (s.isWeekend())
+				weekends++;
+		}
+		assertEquals(0.75, (double) two / n, 0.02);
+		assertEquals(0.5, (double) weekends / n, 0.02);
+	}
+
+	@Test
+	public void testCalendar() {
+		// 2013 had 104 weekend days, and 28 days in February
+		generator.setCalendar(2013);
+
+		int n = 30000;
+		int weekends = 0;
+		int february = 0;
+		for (HouseholdSpec s : generator.getShard(0, n)) {
+			if (s.isWeekend())
+				weekends++;
+			if (s.getMonth() == 2)
+				february++;
+		}
+		assertEquals(104.0 / 365, (double) weekends / n, 0.01);
+		assertEquals(28.0 / 365, (double) february / n, 0.01);
+	}
+
+	@Test
+	public void testBatchShards() throws Exception {
+		List<HouseholdSpec> all = generator.getShard(0, 8);
+		PopulationAggregate whole = new BatchRunner(all, 7, 1).run(null);
+
+		List<PopulationAggregate> parts = new ArrayList<PopulationAggregate>();
+		for (int s = 0; s < 2; s++) {
+			parts.add(new BatchRunner(generator.getShard(4 * s, 4), 7, 4 * s,
+					1, new ModelParameters()).run(null));
+		}
+
+		double[] expected = whole.getMeanTotal();
+		double[] a = parts.get(0).getMeanTotal();
+		double[] b = parts.get(1).getMeanTotal();
+		for (int i = 0; i < expected.length; i++) {
+			assertEquals(expected[i], (a[i] + b[i]) / 2, eps);
+		}
+	}
+
+	@Test
+	public void testSeparateStreams() {
+		// A population and its runs often share a seed, but the household
+		// specifications must not be drawn from the households' own streams
+		for (int i = 0; i < 100; i++) {
+			long key = PopulationGenerator.getKey(42, i);
+			assertFalse(key == RandomStreams.forHousehold(42, i).getSeed());
+			assertFalse(key == RandomStreams.forHousehold(42, i + 1).getSeed());
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidWeights() {
+		generator.setResidentWeights(0, 0, 0, 0, 0);
+	}
+
+}
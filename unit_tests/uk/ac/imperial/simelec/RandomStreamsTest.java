@@ -0,0 +1,178 @@
+package uk.ac.imperial.simelec;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class RandomStreamsTest {
+
+	File dir;
+	double eps = 0.00001;
+
+	@Before
+	public void setUp() throws Exception {
+		dir = new File(System.getProperty("java.io.tmpdir"), "simelec-crn-"
+				+ System.nanoTime());
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		FileUtils.deleteDirectory(dir);
+	}
+
+	/**
+	 * Runs a household with common random numbers, returning the simulated
+	 * loads.
+	 */
+	private List<Load> runPaired(String name, int month) throws Exception {
+		final List<Load> loads = new ArrayList<Load>();
+		SimElec model = new SimElec(month, 3, false, new File(dir, name)
+				.getPath(), 7);
+		model.setCommonRandomNumbers(true);
+		model.addOperator(new LoadOperator() {
+			@Override
+			public void loadCompleted(Load load) {
+				loads.add(load);
+			}
+		});
+		model.run();
+		return loads;
+	}
+
+	@Test
+	public void testPairedScenarios() throws Exception {
+		List<Load> january = runPaired("january", 1);
+		List<Load> july = runPaired("july", 7);
+
+		// The same occupancy
+		assertArrayEquals(FileUtils.readFileToByteArray(new File(dir,
+				"january/occupancy_output.csv")), FileUtils
+				.readFileToByteArray(new File(dir, "july/occupancy_output.csv")));
+
+		// The same bulbs and appliance ownership
+		assertEquals(january.size(), july.size());
+		int bulbs = 0;
+		int owned = 0;
+		for (int i = 0; i < january.size(); i++) {
+			Load a = january.get(i);
+			Load b = july.get(i);
+			assertEquals(a.getId(), b.getId());
+			if (a instanceof Bulb) {
+				assertEquals(((Bulb) a).rating, ((Bulb) b).rating);
+				assertEquals(((Bulb) a).weight, ((Bulb) b).weight, 0);
+				bulbs++;
+			} else {
+				assertEquals(((Appliance) a).isOwned(),
+						((Appliance) b).isOwned());
+				if (((Appliance) a).isOwned())
+					owned++;
+			}
+		}
+		assertTrue(bulbs > 0);
+		assertTrue(owned > 0);
+
+		// But the months give different demand
+		assertFalse(Arrays.equals(FileUtils.readFileToByteArray(new File(dir,
+				"january/totals.csv")), FileUtils.readFileToByteArray(new File(
+				dir, "july/totals.csv"))));
+	}
+
+	@Test
+	public void testCallOrder() {
+		String[] keys = { RandomStreams.OCCUPANCY, RandomStreams.BULBS,
+				RandomStreams.LIGHTING, RandomStreams.OWNERSHIP, "appliance.TV1" };
+
+		// Draw each household's streams in turn, one key at a time
+		double[][][] expected = new double[10][keys.length][5];
+		for (int h = 0; h < 10; h++) {
+			RandomStreams s = RandomStreams.forHousehold(42, h);
+			for (int k = 0; k < keys.length; k++) {
+				for (int d = 0; d < 5; d++)
+					expected[h][k][d] = s.get(keys[k]).nextDouble();
+			}
+		}
+
+		// Then create the households in reverse and interleave the draws
+		RandomStreams[] streams = new RandomStreams[10];
+		for (int h = 9; h >= 0; h--)
+			streams[h] = RandomStreams.forHousehold(42, h);
+		for (int d = 0; d < 5; d++) {
+			for (int k = keys.length - 1; k >= 0; k--) {
+				for (int h = 0; h < 10; h++) {
+					assertEquals(expected[h][k][d], streams[h].get(keys[k])
+							.nextDouble(), 0);
+				}
+			}
+		}
+
+		// Different households and scenarios have different streams
+		assertFalse(expected[0][0][0] == expected[1][0][0]);
+		assertFalse(expected[0][0][0] == RandomStreams.forHousehold(43, 0)
+				.get(keys[0]).nextDouble());
+	}
+
+	@Test
+	public void testEngine() {
+		// The first values of the MT19937 reference implementation for
+		// init_by_array({0x123, 0x234, 0x345, 0x456})
+		ArraySeededTwister engine = new ArraySeededTwister(new int[] { 0x123,
+				0x234, 0x345, 0x456 });
+		long[] expected = { 1067595299L, 955945823L, 477289528L, 4107218783L,
+				4228976476L };
+		for (long e : expected)
+			assertEquals(e, engine.nextInt() & 0xffffffffL);
+
+		// Household seeds which differ only in their upper bits give
+		// different streams
+		assertFalse(new RandomStreams(1).get(RandomStreams.OCCUPANCY)
+				.nextDouble() == new RandomStreams(1 + (1L << 32)).get(
+				RandomStreams.OCCUPANCY).nextDouble());
+	}
+
+	/**
+	 * Runs a batch, returning the result of each household.
+	 */
+	private Map<Long, HouseholdResult> runBatch(List<HouseholdSpec> specs,
+			int threads) throws Exception {
+		final Map<Long, HouseholdResult> results = new HashMap<Long, HouseholdResult>();
+		new BatchRunner(specs, 42, threads).run(new BatchRunner.Listener() {
+			@Override
+			public void householdCompleted(HouseholdResult result,
+					int completed) {
+				synchronized (results) {
+					results.put(result.getHousehold(), result);
+				}
+			}
+		});
+		return results;
+	}
+
+	@Test
+	public void testThreads() throws Exception {
+		List<HouseholdSpec> specs = new ArrayList<HouseholdSpec>();
+		for (int i = 0; i < 16; i++)
+			specs.add(new HouseholdSpec(1 + i % 12, 1 + i % 5, i % 3 == 0));
+
+		Map<Long, HouseholdResult> a = runBatch(specs, 1);
+		Map<Long, HouseholdResult> b = runBatch(specs, 4);
+		assertEquals(16, a.size());
+		assertEquals(a.keySet(), b.keySet());
+		for (Long h : a.keySet()) {
+			assertArrayEquals(a.get(h).getOccupancy(), b.get(h).getOccupancy());
+			assertArrayEquals(a.get(h).getLighting(), b.get(h).getLighting(),
+					eps);
+			assertArrayEquals(a.get(h).getAppliances(), b.get(h)
+					.getAppliances(), eps);
+		}
+	}
+}
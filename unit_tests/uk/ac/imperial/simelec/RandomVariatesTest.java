@@ -0,0 +1,155 @@
+package uk.ac.imperial.simelec;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import cern.jet.stat.Probability;
+
+public class RandomVariatesTest {
+
+	RandomStream random;
+	int n = 200000;
+
+	// The start of the tail of the normal ziggurat
+	static final double NORMAL_R = 3.442619855899;
+
+	// The interval bounds of the original LightingModel.getLightDuration
+	static final int[][] LIGHT_INTERVALS = { { 1, 1 }, { 2, 2 }, { 3, 4 },
+			{ 5, 8 }, { 9, 16 }, { 17, 27 }, { 28, 49 }, { 50, 91 },
+			{ 92, 259 } };
+
+	@Before
+	public void setUp() throws Exception {
+		random = new RandomStream(42);
+	}
+
+	/**
+	 * Gets the Kolmogorov-Smirnov statistic of a sample against the standard
+	 * normal (<code>normal = true</code>) or exponential distribution.
+	 */
+	private static double ksStatistic(double[] x, boolean normal) {
+		Arrays.sort(x);
+		double d = 0;
+		for (int i = 0; i < x.length; i++) {
+			double f = normal ? Probability.normal(x[i]) : 1 - Math.exp(-x[i]);
+			d = Math.max(d, Math.max(f - (double) i / x.length, (double) (i + 1)
+					/ x.length - f));
+		}
+		return d;
+	}
+
+	@Test
+	public void testNormal() {
+		double[] x = new double[n];
+		double sum = 0;
+		double sumSquares = 0;
+		int tail = 0;
+		for (int i = 0; i < n; i++) {
+			x[i] = RandomVariates.normal(random);
+			sum += x[i];
+			sumSquares += x[i] * x[i];
+			if (Math.abs(x[i]) > NORMAL_R)
+				tail++;
+		}
+		assertEquals(0, sum / n, 0.01);
+		assertEquals(1, sumSquares / n, 0.01);
+
+		// The critical value at the 1% level is 1.63 / sqrt(n)
+		assertTrue(ksStatistic(x, true) < 1.63 / Math.sqrt(n));
+
+		// The tail beyond the base strip is drawn too
+		double expected = 2 * (1 - Probability.normal(NORMAL_R)) * n;
+		assertEquals(expected, tail, 4 * Math.sqrt(expected));
+	}
+
+	@Test
+	public void testExponential() {
+		double[] x = new double[n];
+		double sum = 0;
+		for (int i = 0; i < n; i++) {
+			x[i] = RandomVariates.exponential(random);
+			sum += x[i];
+		}
+		assertEquals(1, sum / n, 0.01);
+		assertTrue(ksStatistic(x, false) < 1.63 / Math.sqrt(n));
+	}
+
+	@Test
+	public void testFastStream() {
+		RandomStream fast = new RandomStream(42, true);
+		double sum = 0;
+		double sumSquares = 0;
+		double exp = 0;
+		for (int i = 0; i < n; i++) {
+			double v = fast.nextNormal(100, 10);
+			sum += v;
+			sumSquares += (v - 100) * (v - 100);
+			exp += fast.nextExponential(0.5);
+		}
+		assertEquals(100, sum / n, 0.1);
+		assertEquals(10, Math.sqrt(sumSquares / n), 0.1);
+		assertEquals(0.5, exp / n, 0.01);
+
+		// The default stream is unchanged
+		RandomStream a = new RandomStream(7);
+		RandomStream b = new RandomStream(7);
+		assertEquals(-3 * Math.log(a.nextDouble()), b.nextExponential(3), 0);
+	}
+
+	private static int tvFormula(double u) {
+		return (int) Math.round(70 * Math.pow((0 - Math.log10(1 - u)), 1.1));
+	}
+
+	@Test
+	public void testTvViewingTime() {
+		for (int i = 0; i < n; i++) {
+			double u = random.nextDouble();
+			assertEquals(tvFormula(u), RandomVariates.tvViewingTime(u));
+		}
+
+		// Either side of every threshold. Close to one the doubles are too far
+		// apart to give every time, so a threshold may give more than k.
+		double[] t = RandomVariates.getTvThresholds();
+		for (int k = 1; k < t.length; k++) {
+			assertEquals(tvFormula(t[k]), RandomVariates.tvViewingTime(t[k]));
+			assertTrue(tvFormula(t[k]) >= k);
+			double below = Math.nextAfter(t[k], 0);
+			assertEquals(tvFormula(below), RandomVariates.tvViewingTime(below));
+			assertTrue(tvFormula(below) < k);
+		}
+
+		assertEquals(0, RandomVariates.tvViewingTime(0));
+		double top = Math.nextAfter(1.0, 0);
+		assertEquals(tvFormula(top), RandomVariates.tvViewingTime(top));
+	}
+
+	@Test
+	public void testLightDuration() {
+		RandomStream a = new RandomStream(42);
+		RandomStream b = new RandomStream(42);
+		for (int i = 0; i < n; i++) {
+			int interval = a.nextIntFromTo(0, 8);
+			float rnd = (float) a.nextDouble();
+			int low = LIGHT_INTERVALS[interval][0];
+			int up = LIGHT_INTERVALS[interval][1];
+			assertEquals((int) (low + rnd * (up - low)),
+					RandomVariates.lightDuration(b));
+		}
+	}
+
+	@Test
+	public void testBatchRunner() throws Exception {
+		HouseholdSpec spec = new HouseholdSpec(1, 2, false);
+		BatchRunner fast = new BatchRunner(Arrays.asList(spec, spec), 42, 1);
+		fast.setFastVariates(true);
+		PopulationAggregate a = fast.run(null);
+		PopulationAggregate b = new BatchRunner(Arrays.asList(spec, spec), 42,
+				1).run(null);
+		assertEquals(2, a.getCount());
+		assertFalse(a.equals(b));
+	}
+}
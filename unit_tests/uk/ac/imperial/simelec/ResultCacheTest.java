@@ -0,0 +1,95 @@
+package uk.ac.imperial.simelec;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ResultCacheTest {
+
+	File dir;
+	ResultCache.Entry entry;
+
+	@Before
+	public void setUp() throws Exception {
+		dir = new File(System.getProperty("java.io.tmpdir"), "simelec-cache-"
+				+ System.nanoTime());
+		Map<String, byte[]> files = new HashMap<String, byte[]>();
+		files.put("totals.csv", "TOTAL,1.0,2.0".getBytes("UTF-8"));
+		entry = new ResultCache.Entry(new double[] { 1, 2 }, files);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		FileUtils.deleteDirectory(dir);
+	}
+
+	@Test
+	public void testDigest() {
+		String a = ResultCache.digest("month=1");
+		assertEquals(40, a.length());
+		assertEquals(a, ResultCache.digest("month=1"));
+		assertFalse(a.equals(ResultCache.digest("month=2")));
+	}
+
+	@Test
+	public void testMemoryEviction() throws Exception {
+		ResultCache cache = new ResultCache(2);
+		cache.put("a", entry);
+		cache.put("b", entry);
+		cache.get("a");
+		cache.put("c", entry);
+		assertEquals(2, cache.size());
+		assertNotNull(cache.get("a"));
+		assertNull(cache.get("b"));
+	}
+
+	@Test
+	public void testDiskRoundTrip() throws Exception {
+		new ResultCache(1, dir, Long.MAX_VALUE).put("a", entry);
+
+		// A fresh cache has nothing in memory so must read from disk
+		ResultCache cache = new ResultCache(1, dir, Long.MAX_VALUE);
+		ResultCache.Entry e = cache.get("a");
+		assertNotNull(e);
+		assertArrayEquals(new double[] { 1, 2 }, e.getTotals(), 0);
+		assertEquals("TOTAL,1.0,2.0",
+				new String(e.getFiles().get("totals.csv"), "UTF-8"));
+	}
+
+	@Test
+	public void testDiskEviction() throws Exception {
+		ResultCache cache = new ResultCache(0, dir, 1);
+		cache.put("a", entry);
+		assertNull(cache.get("a"));
+		assertEquals(0, dir.listFiles().length);
+	}
+
+	@Test
+	public void testParameters() throws Exception {
+		ResultCache cache = new ResultCache(2);
+		SimElec a = new SimElec(1, 3, false, new File(dir, "a").getPath(), 42);
+		a.setResultCache(cache);
+		a.run();
+
+		// Without any lighting, the same run must not be found in the cache
+		ModelParameters p = new ModelParameters();
+		p.setBulbCalibration(0);
+		SimElec b = new SimElec(1, 3, false, new File(dir, "b").getPath(), 42);
+		b.setResultCache(cache);
+		b.setParameters(p);
+		b.run();
+		assertEquals(2, cache.size());
+		assertFalse(Arrays.equals(a.getGrandTotals(), b.getGrandTotals()));
+		assertEquals(a.getSpecification(), new SimElec(1, 3, false, dir
+				.getPath(), 42).getSpecification());
+	}
+
+}
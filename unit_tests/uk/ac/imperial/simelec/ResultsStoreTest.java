@@ -0,0 +1,205 @@
+package uk.ac.imperial.simelec;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ResultsStoreTest {
+
+	File dir;
+	double eps = 0.00001;
+
+	@Before
+	public void setUp() throws Exception {
+		dir = new File(System.getProperty("java.io.tmpdir"), "simelec-store-"
+				+ System.nanoTime());
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		FileUtils.deleteDirectory(dir);
+	}
+
+	private static ResultCache.Entry entry(long household) throws Exception {
+		Map<String, byte[]> files = new LinkedHashMap<String, byte[]>();
+		files.put("totals.csv", ("TOTAL," + household).getBytes("UTF-8"));
+		return new ResultCache.Entry(new double[] { household, 1 }, files);
+	}
+
+	@Test
+	public void testConcurrentWriters() throws Exception {
+		final ResultsStore store = new ResultsStore(dir, 2000);
+		List<Thread> threads = new ArrayList<Thread>();
+		final List<Exception> errors = new ArrayList<Exception>();
+		for (int t = 0; t < 4; t++) {
+			final int first = t * 100;
+			Thread thread = new Thread() {
+				public void run() {
+					try {
+						ResultsStore.Writer w = store.openWriter();
+						for (int i = first; i < first + 100; i++)
+							w.append(i, 42, entry(i));
+						w.close();
+					} catch (Exception e) {
+						synchronized (errors) {
+							errors.add(e);
+						}
+					}
+				}
+			};
+			threads.add(thread);
+			thread.start();
+		}
+		for (Thread t : threads)
+			t.join();
+		assertTrue(errors.isEmpty());
+
+		// Small segments are rolled over
+		assertTrue(dir.list().length > 8);
+
+		ResultsStore copy = new ResultsStore(dir);
+		assertEquals(400, copy.size());
+		for (int i = 0; i < 400; i++) {
+			ResultCache.Entry e = copy.get(i, 42);
+			assertEquals(i, e.getTotals()[0], eps);
+			assertEquals("TOTAL," + i,
+					new String(e.getFiles().get("totals.csv"), "UTF-8"));
+		}
+		assertNull(copy.get(0, 43));
+	}
+
+	@Test
+	public void testLatest() throws Exception {
+		ResultsStore store = new ResultsStore(dir);
+		ResultsStore.Writer w = store.openWriter();
+		w.append(1, 42, entry(1));
+		w.append(1, 42, entry(2));
+		w.close();
+
+		assertEquals(2, store.get(1, 42).getTotals()[0], eps);
+		assertEquals(2, new ResultsStore(dir).get(1, 42).getTotals()[0], eps);
+	}
+
+	@Test
+	public void testIncompleteIndex() throws Exception {
+		ResultsStore store = new ResultsStore(dir);
+		ResultsStore.Writer w = store.openWriter();
+		w.append(1, 42, entry(1));
+		w.close();
+
+		// A partly written index entry and a newly claimed segment
+		FileOutputStream out = new FileOutputStream(new File(dir,
+				"segment-00000.idx"), true);
+		out.write(new byte[10]);
+		out.close();
+		new File(dir, "segment-00001.idx").createNewFile();
+
+		ResultsStore copy = new ResultsStore(dir);
+		assertEquals(1, copy.size());
+		assertEquals(1, copy.get(1, 42).getTotals()[0], eps);
+
+		// New segments are claimed after the existing ones
+		w = copy.openWriter();
+		w.append(2, 42, entry(2));
+		w.close();
+		assertTrue(new File(dir, "segment-00002.dat").exists());
+	}
+
+	@Test
+	public void testSimElec() throws Exception {
+		ResultsStore store = new ResultsStore(new File(dir, "store"));
+		ResultsStore.Writer w = store.openWriter();
+		File out = new File(dir, "out");
+		double[][] totals = new double[3][];
+		for (int i = 0; i < 3; i++) {
+			SimElec model = new SimElec(1, 2, false, out.getPath(), i);
+			model.setResultsStore(w, i);
+			model.run();
+			totals[i] = model.getGrandTotals();
+		}
+		w.close();
+
+		assertEquals(0, out.list().length);
+		for (int i = 0; i < 3; i++) {
+			ResultCache.Entry e = store.get(i, i);
+			assertArrayEquals(totals[i], e.getTotals(), eps);
+			assertTrue(e.getFiles().containsKey("appliance_output.csv"));
+		}
+	}
+
+	@Test
+	public void testSharedDirectory() throws Exception {
+		// Two threads run households into the same output directory, each
+		// with its own random streams
+		final ResultsStore store = new ResultsStore(new File(dir, "shared"));
+		final ResultsStore.Writer w = store.openWriter();
+		final File out = new File(dir, "out");
+		List<Thread> threads = new ArrayList<Thread>();
+		final List<Exception> errors = new ArrayList<Exception>();
+		for (int t = 0; t < 2; t++) {
+			final int first = t * 3;
+			Thread thread = new Thread() {
+				public void run() {
+					try {
+						for (int i = first; i < first + 3; i++) {
+							SimElec model = new SimElec(1, 1 + i % 5, false,
+									out.getPath(), i);
+							model.setCommonRandomNumbers(true);
+							model.setResultsStore(w, i);
+							model.run();
+						}
+					} catch (Exception e) {
+						synchronized (errors) {
+							errors.add(e);
+						}
+					}
+				}
+			};
+			threads.add(thread);
+			thread.start();
+		}
+		for (Thread t : threads)
+			t.join();
+		w.close();
+		assertTrue(errors.isEmpty());
+		assertEquals(0, out.list().length);
+
+		// Each household's results match a run on its own
+		for (int i = 0; i < 6; i++) {
+			ResultsStore own = new ResultsStore(new File(dir, "own" + i));
+			ResultsStore.Writer ow = own.openWriter();
+			SimElec model = new SimElec(1, 1 + i % 5, false, new File(dir,
+					"out" + i).getPath(), i);
+			model.setCommonRandomNumbers(true);
+			model.setResultsStore(ow, i);
+			model.run();
+			ow.close();
+
+			ResultCache.Entry expected = own.get(i, i);
+			ResultCache.Entry actual = store.get(i, i);
+			assertArrayEquals(expected.getTotals(), actual.getTotals(), 0);
+			assertEquals(expected.getFiles().keySet(), actual.getFiles()
+					.keySet());
+			for (String name : expected.getFiles().keySet())
+				assertArrayEquals(name, expected.getFiles().get(name), actual
+						.getFiles().get(name));
+		}
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testUnseeded() throws Exception {
+		ResultsStore store = new ResultsStore(dir);
+		new SimElec(1, 2, false, dir.getPath()).setResultsStore(
+				store.openWriter(), 0);
+	}
+}
@@ -0,0 +1,76 @@
+package uk.ac.imperial.simelec;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class SamplingPlannerTest {
+
+	int n = 1000;
+
+	@Test
+	public void testPermute() {
+		for (int l : new int[] { 1, 7, 100, 1024, 1025 }) {
+			boolean[] seen = new boolean[l];
+			for (int i = 0; i < l; i++) {
+				int j = SamplingPlanner.permute(i, l, 0x1234567);
+				assertTrue(j >= 0 && j < l);
+				assertFalse(seen[j]);
+				seen[j] = true;
+			}
+		}
+	}
+
+	@Test
+	public void testStratification() {
+		for (SamplingPlanner.Method m : new SamplingPlanner.Method[] {
+				SamplingPlanner.Method.STRATIFIED,
+				SamplingPlanner.Method.LATIN_HYPERCUBE }) {
+			SamplingPlanner plan = new SamplingPlanner(n, 42, m);
+			for (int d = 0; d < 5; d++) {
+				boolean[] strata = new boolean[n];
+				for (int i = 0; i < n; i++) {
+					double u = plan.getUniform(d, i);
+					assertTrue(u > 0 && u < 1);
+					int s = (int) (u * n);
+					assertFalse(strata[s]);
+					strata[s] = true;
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testBulbConfigurations() {
+		// Every sample house should be used equally often
+		SamplingPlanner plan = new SamplingPlanner(n, 7,
+				SamplingPlanner.Method.LATIN_HYPERCUBE);
+		int[] counts = new int[100];
+		for (int i = 0; i < n; i++) {
+			RandomStream r = plan.getStreams(i).get(RandomStreams.BULBS);
+			counts[r.nextIntFromTo(0, 99)]++;
+		}
+		for (int c : counts)
+			assertEquals(n / 100, c);
+	}
+
+	@Test
+	public void testTail() {
+		// Once the planned draw is used, the household's own stream takes
+		// over, including its choice of kernels
+		SamplingPlanner plan = new SamplingPlanner(n, 7,
+				SamplingPlanner.Method.STRATIFIED);
+		for (int i = 0; i < 10; i++) {
+			RandomStreams streams = plan.getStreams(i);
+			streams.setFastVariates(true);
+			RandomStream r = streams.get(RandomStreams.BULBS);
+			RandomStreams expected = RandomStreams.forHousehold(7, i);
+			expected.setFastVariates(true);
+			RandomStream tail = expected.get(RandomStreams.BULBS);
+			r.nextDouble();
+			assertEquals(tail.nextExponential(2), r.nextExponential(2), 0);
+			assertEquals(tail.nextDouble(), r.nextDouble(), 0);
+		}
+	}
+
+}
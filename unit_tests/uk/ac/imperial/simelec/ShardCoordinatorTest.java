@@ -0,0 +1,165 @@
+package uk.ac.imperial.simelec;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ShardCoordinatorTest {
+
+	File dir;
+	ShardJob job;
+	double eps = 0.00001;
+
+	@Before
+	public void setUp() throws Exception {
+		dir = new File(System.getProperty("java.io.tmpdir"), "simelec-shards-"
+				+ System.nanoTime());
+		job = new ShardJob(10, 3, 42);
+		job.setResidentWeights(1, 2, 1, 1, 0);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		FileUtils.deleteDirectory(dir);
+	}
+
+	private double[] getExpected() throws Exception {
+		List<HouseholdSpec> all = job.createGenerator().getShard(0, 10);
+		return new BatchRunner(all, 42, 1).run(null).getMeanTotal();
+	}
+
+	@Test
+	public void testJob() throws Exception {
+		File f = new File(System.getProperty("java.io.tmpdir"), "simelec-job-"
+				+ System.nanoTime());
+		File data = new File(dir, "data");
+		job.setDataDirectories(data, new File("data"));
+		ModelParameters p = new ModelParameters();
+		p.setTemperatureModifier(3, 2);
+		p.setApplianceCalibration("KETTLE", 0.1);
+		job.setParameters(p);
+		job.setFastVariates(true);
+		job.save(f);
+		ShardJob copy = ShardJob.load(f);
+		f.delete();
+
+		assertArrayEquals(new File[] { data.getAbsoluteFile(),
+				new File("data").getAbsoluteFile() },
+				copy.getDataDirectories());
+		assertEquals(0, new ShardJob(10, 3, 42).getDataDirectories().length);
+
+		assertEquals(p.getValues(), copy.getParameters().getValues());
+		assertTrue(copy.isFastVariates());
+		assertFalse(new ShardJob(10, 3, 42).isFastVariates());
+
+		assertEquals(4, copy.getShards());
+		assertEquals(1, copy.getSize(3));
+		assertEquals(job.createGenerator().getShard(0, 10), copy
+				.createGenerator().getShard(0, 10));
+	}
+
+	@Test
+	public void testProcesses() throws Exception {
+		ShardCoordinator coordinator = new ShardCoordinator(dir, job);
+		coordinator.submit();
+
+		List<Process> workers = new ArrayList<Process>();
+		for (int i = 0; i < 2; i++)
+			workers.add(ShardWorker.start(dir, 1));
+
+		PopulationAggregate total = coordinator.await(null);
+		for (Process p : workers)
+			assertEquals(0, p.waitFor());
+
+		assertEquals(10, total.getCount());
+		assertArrayEquals(getExpected(), total.getMeanTotal(), eps);
+	}
+
+	@Test
+	public void testReassignment() throws Exception {
+		ShardCoordinator coordinator = new ShardCoordinator(dir, job);
+		coordinator.setTimeout(500);
+		coordinator.submit();
+
+		// A worker claims a shard and then fails without completing it
+		String name = ShardCoordinator.getName(1);
+		File claimed = new File(new File(dir, ShardCoordinator.RUNNING), name);
+		assertTrue(new File(new File(dir, ShardCoordinator.TODO), name)
+				.renameTo(claimed));
+		claimed.setLastModified(System.currentTimeMillis() - 10000);
+
+		final ShardWorker worker = new ShardWorker(dir, 1);
+		Thread t = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					worker.run();
+				} catch (Exception e) {
+					throw new RuntimeException(e);
+				}
+			}
+		});
+		t.start();
+
+		PopulationAggregate total = coordinator.await(null);
+		t.join();
+
+		assertEquals(1, coordinator.getReassigned());
+		assertEquals(10, total.getCount());
+		assertArrayEquals(getExpected(), total.getMeanTotal(), eps);
+	}
+
+	@Test
+	public void testClockSkew() throws Exception {
+		ShardCoordinator coordinator = new ShardCoordinator(dir, job);
+		coordinator.setTimeout(500);
+		coordinator.submit();
+
+		// A failed worker whose clock was an hour ahead of the coordinator's
+		String name = ShardCoordinator.getName(2);
+		File claimed = new File(new File(dir, ShardCoordinator.RUNNING), name);
+		assertTrue(new File(new File(dir, ShardCoordinator.TODO), name)
+				.renameTo(claimed));
+		claimed.setLastModified(System.currentTimeMillis() + 3600000);
+
+		final ShardWorker worker = new ShardWorker(dir, 1);
+		Thread t = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					worker.run();
+				} catch (Exception e) {
+					throw new RuntimeException(e);
+				}
+			}
+		});
+		t.start();
+
+		PopulationAggregate total = coordinator.await(null);
+		t.join();
+
+		assertEquals(1, coordinator.getReassigned());
+		assertEquals(10, total.getCount());
+	}
+
+	@Test
+	public void testShardCount() {
+		assertEquals(1L << 62,
+				PopulationGenerator.getShardCount(Long.MAX_VALUE, 2));
+		assertEquals((1L << 30) + 1,
+				new ShardJob((1L << 40) + 1, 1024, 42).getShards());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testTooManyShards() {
+		new ShardJob(Long.MAX_VALUE, 1, 42);
+	}
+
+}
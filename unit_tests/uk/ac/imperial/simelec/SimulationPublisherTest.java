@@ -0,0 +1,133 @@
+package uk.ac.imperial.simelec;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class SimulationPublisherTest {
+
+	List<HouseholdSpec> specs;
+	Executor direct;
+	double eps = 0.00001;
+
+	/**
+	 * Records everything it receives.
+	 */
+	static class Recorder<T> implements Flow.Subscriber<T> {
+		Flow.Subscription subscription;
+		List<T> items = new ArrayList<T>();
+		Throwable error;
+		boolean complete;
+
+		@Override
+		public void onSubscribe(Flow.Subscription subscription) {
+			this.subscription = subscription;
+		}
+
+		@Override
+		public void onNext(T item) {
+			items.add(item);
+		}
+
+		@Override
+		public void onError(Throwable throwable) {
+			error = throwable;
+		}
+
+		@Override
+		public void onComplete() {
+			complete = true;
+		}
+	}
+
+	@Before
+	public void setUp() throws Exception {
+		specs = new ArrayList<HouseholdSpec>();
+		specs.add(new HouseholdSpec(1, 2, false));
+		specs.add(new HouseholdSpec(7, 4, true));
+		specs.add(new HouseholdSpec(11, 1, false));
+
+		direct = new Executor() {
+			@Override
+			public void execute(Runnable command) {
+				command.run();
+			}
+		};
+	}
+
+	@Test
+	public void testDemand() {
+		Recorder<HouseholdResult> r = new Recorder<HouseholdResult>();
+		SimulationPublisher.households(specs, 42, direct).subscribe(r);
+		assertTrue(r.items.isEmpty());
+
+		r.subscription.request(2);
+		assertEquals(2, r.items.size());
+		assertFalse(r.complete);
+
+		r.subscription.request(5);
+		assertEquals(3, r.items.size());
+		assertTrue(r.complete);
+		assertEquals(2, r.items.get(2).getHousehold());
+		assertEquals(specs.get(2), r.items.get(2).getSpec());
+	}
+
+	@Test
+	public void testCancel() {
+		Recorder<MinuteAggregate> r = new Recorder<MinuteAggregate>();
+		SimulationPublisher.minutes(specs, 42, direct).subscribe(r);
+		r.subscription.request(10);
+		r.subscription.cancel();
+		r.subscription.request(10);
+		assertEquals(10, r.items.size());
+		assertFalse(r.complete);
+	}
+
+	@Test
+	public void testInvalidRequest() {
+		Recorder<MinuteAggregate> r = new Recorder<MinuteAggregate>();
+		SimulationPublisher.minutes(specs, 42, direct).subscribe(r);
+		r.subscription.request(0);
+		assertTrue(r.error instanceof IllegalArgumentException);
+	}
+
+	@Test
+	public void testMinutes() throws Exception {
+		Recorder<MinuteAggregate> r = new Recorder<MinuteAggregate>();
+		SimulationPublisher.minutes(specs, 42, direct).subscribe(r);
+		r.subscription.request(Long.MAX_VALUE);
+		assertTrue(r.complete);
+		assertEquals(1440, r.items.size());
+
+		double[] expected = new LockstepEngine(specs, 42, 0).run();
+		for (int i = 0; i < expected.length; i++) {
+			assertEquals(i, r.items.get(i).getMinute());
+			assertEquals(expected[i], r.items.get(i).getTotal(), eps);
+		}
+	}
+
+	@Test
+	public void testHouseholdsMatchMinutes() {
+		Recorder<HouseholdResult> h = new Recorder<HouseholdResult>();
+		SimulationPublisher.households(specs, 42, direct).subscribe(h);
+		h.subscription.request(Long.MAX_VALUE);
+
+		Recorder<MinuteAggregate> m = new Recorder<MinuteAggregate>();
+		SimulationPublisher.minutes(specs, 42, direct).subscribe(m);
+		m.subscription.request(Long.MAX_VALUE);
+
+		for (int i = 0; i < 1440; i++) {
+			double sum = 0;
+			for (HouseholdResult r : h.items) {
+				sum += r.getTotal()[i];
+			}
+			assertEquals(m.items.get(i).getTotal(), sum, eps);
+		}
+	}
+
+}
@@ -0,0 +1,104 @@
+package uk.ac.imperial.simelec;
+
+import static org.junit.Assert.*;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+
+import javax.imageio.ImageIO;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SummaryPlotTest {
+
+	File dir;
+	double eps = 0.00001;
+
+	@Before
+	public void setUp() throws Exception {
+		dir = new File(System.getProperty("java.io.tmpdir"), "simelec-plot-"
+				+ System.nanoTime());
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		FileUtils.deleteDirectory(dir);
+	}
+
+	private SimElec run(File out, int resolution, boolean energy)
+			throws Exception {
+		SimElec model = new SimElec(1, 3, false, out.getPath(), 42);
+		model.setOutputResolution(resolution);
+		model.setOutputEnergy(energy);
+		model.run();
+		return model;
+	}
+
+	@Test
+	public void testRoundTrip() throws Exception {
+		SimElec model = run(dir, 1, false);
+		SummaryPlot plot = SummaryPlot.read(dir.getPath());
+		assertArrayEquals(model.getGrandTotals(), plot.getTotal(), eps);
+
+		BufferedImage image = plot.render(500, 300);
+		assertEquals(500, image.getWidth());
+		assertEquals(300, image.getHeight());
+
+		// Some of the panel is filled by the loads
+		int filled = 0;
+		for (int x = 70; x < 500 - 190; x++) {
+			if (image.getRGB(x, 300 - 56) != 0xffffffff)
+				filled++;
+		}
+		assertTrue(filled > 0);
+
+		File png = new File(dir, "plot.png");
+		plot.write(png);
+		assertEquals(1000, ImageIO.read(png).getWidth());
+	}
+
+	@Test
+	public void testResolution() throws Exception {
+		SimElec model = run(new File(dir, "energy"), 30, true);
+		double[] expected = Load.aggregate(model.getGrandTotals(), 30, false);
+
+		// Energy in each interval is plotted as the mean power
+		SummaryPlot plot = SummaryPlot.read(new File(dir, "energy").getPath(),
+				30, true);
+		assertArrayEquals(expected, plot.getTotal(), eps);
+
+		run(new File(dir, "power"), 30, false);
+		plot = SummaryPlot.read(new File(dir, "power").getPath(), 30, false);
+		assertArrayEquals(expected, plot.getTotal(), eps);
+	}
+
+	@Test
+	public void testCacheHit() throws Exception {
+		ResultCache cache = new ResultCache(1);
+		for (int i = 0; i < 2; i++) {
+			SimElec model = new SimElec(1, 3, false, dir.getPath(), 42);
+			model.setResultCache(cache);
+			model.setOutputResolution(30);
+			model.setOutputEnergy(true);
+			model.setMakePlots(true);
+			File png = new File(dir, "simelec.png");
+			png.delete();
+			model.run();
+			assertTrue(png.exists());
+		}
+		assertEquals(1, cache.size());
+
+		// The cached plot is of the mean power in each interval
+		File expected = new File(dir, "expected.png");
+		SummaryPlot.read(dir.getPath(), 30, true).write(expected);
+		BufferedImage a = ImageIO.read(expected);
+		BufferedImage b = ImageIO.read(new File(dir, "simelec.png"));
+		for (int x = 0; x < a.getWidth(); x++) {
+			for (int y = 0; y < a.getHeight(); y++)
+				assertEquals(a.getRGB(x, y), b.getRGB(x, y));
+		}
+	}
+}